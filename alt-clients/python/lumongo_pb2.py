@@ -19,7 +19,7 @@ _sym_db = _symbol_database.Default()
 DESCRIPTOR = _descriptor.FileDescriptor(
   name='lumongo.proto',
   package='',
-  serialized_pb=_b('\n\rlumongo.proto\"\x13\n\x11GetMembersRequest\"v\n\x08LMMember\x12\x15\n\rserverAddress\x18\x01 \x02(\t\x12\x14\n\x0c\x65xternalPort\x18\x02 \x02(\r\x12\x14\n\x0cinternalPort\x18\x03 \x01(\r\x12\x15\n\rhazelcastPort\x18\x04 \x01(\r\x12\x10\n\x08restPort\x18\x05 \x01(\r\"T\n\x12GetMembersResponse\x12\x19\n\x06member\x18\x01 \x03(\x0b\x32\t.LMMember\x12#\n\x0cindexMapping\x18\x02 \x03(\x0b\x32\r.IndexMapping\"d\n\x0cIndexMapping\x12\x11\n\tindexName\x18\x01 \x02(\t\x12\x18\n\x10numberOfSegments\x18\x02 \x02(\r\x12\'\n\x0esegmentMapping\x18\x03 \x03(\x0b\x32\x0f.SegmentMapping\"B\n\x0eSegmentMapping\x12\x15\n\rsegmentNumber\x18\x01 \x02(\r\x12\x19\n\x06member\x18\x02 \x02(\x0b\x32\t.LMMember\"\xb3\x01\n\x0fGetTermsRequest\x12\x11\n\tindexName\x18\x01 \x02(\t\x12\x11\n\tfieldName\x18\x02 \x02(\t\x12\x0e\n\x06\x61mount\x18\x03 \x02(\r\x12\x14\n\x0cstartingTerm\x18\x04 \x01(\t\x12\x15\n\nminDocFreq\x18\x05 \x01(\r:\x01\x31\x12\x16\n\x08realTime\x18\x06 \x01(\x08:\x04true\x12\x12\n\ntermFilter\x18\x07 \x01(\t\x12\x11\n\ttermMatch\x18\x08 \x01(\t\"@\n\x10GetTermsResponse\x12\x13\n\x04term\x18\x01 \x03(\x0b\x32\x05.Term\x12\x17\n\x08lastTerm\x18\x02 \x01(\x0b\x32\x05.Term\"&\n\x04Term\x12\r\n\x05value\x18\x01 \x02(\t\x12\x0f\n\x07\x64ocFreq\x18\x02 \x01(\x04\")\n\x14GetFieldNamesRequest\x12\x11\n\tindexName\x18\x01 \x02(\t\"*\n\x15GetFieldNamesResponse\x12\x11\n\tfieldName\x18\x01 \x03(\t\"!\n\x0c\x43learRequest\x12\x11\n\tindexName\x18\x01 \x02(\t\"\x0f\n\rClearResponse\"$\n\x0fOptimizeRequest\x12\x11\n\tindexName\x18\x01 \x02(\t\"\x12\n\x10OptimizeResponse\"\x13\n\x11GetIndexesRequest\"\'\n\x12GetIndexesResponse\x12\x11\n\tindexName\x18\x01 \x03(\t\"C\n\x16GetNumberOfDocsRequest\x12\x11\n\tindexName\x18\x01 \x02(\t\x12\x16\n\x08realTime\x18\x02 \x01(\x08:\x04true\"d\n\x17GetNumberOfDocsResponse\x12\x14\n\x0cnumberOfDocs\x18\x01 \x02(\x04\x12\x33\n\x14segmentCountResponse\x18\x02 \x03(\x0b\x32\x15.SegmentCountResponse\"C\n\x14SegmentCountResponse\x12\x15\n\rsegmentNumber\x18\x01 \x02(\r\x12\x14\n\x0cnumberOfDocs\x18\x02 \x02(\r\"\x7f\n\x12IndexCreateRequest\x12\x11\n\tindexName\x18\x01 \x02(\t\x12\x15\n\runiqueIdField\x18\x02 \x02(\t\x12\x18\n\x10numberOfSegments\x18\x03 \x02(\r\x12%\n\rindexSettings\x18\x04 \x02(\x0b\x32\x0e.IndexSettings\"\x15\n\x13IndexCreateResponse\"P\n\x14IndexSettingsRequest\x12\x11\n\tindexName\x18\x01 \x02(\t\x12%\n\rindexSettings\x18\x04 \x02(\x0b\x32\x0e.IndexSettings\"\xa6\x03\n\rIndexSettings\x12\x1a\n\x12\x64\x65\x66\x61ultSearchField\x18\x01 \x02(\t\x12!\n\x0b\x66ieldConfig\x18\x02 \x03(\x0b\x32\x0c.FieldConfig\x12$\n\x16\x61pplyUncommitedDeletes\x18\x03 \x01(\x08:\x04true\x12\x18\n\rrequestFactor\x18\x04 \x01(\x01:\x01\x32\x12\x1c\n\x11minSegmentRequest\x18\x05 \x01(\r:\x01\x32\x12!\n\x15idleTimeWithoutCommit\x18\x06 \x01(\r:\x02\x33\x30\x12#\n\x15segmentCommitInterval\x18\x07 \x01(\r:\x04\x33\x32\x30\x30\x12\x1f\n\x10\x62lockCompression\x18\x08 \x01(\x08:\x05\x66\x61lse\x12\x1e\n\x10segmentTolerance\x18\t \x01(\x01:\x04\x30.05\x12\"\n\x14segmentFlushInterval\x18\n \x01(\r:\x04\x31\x36\x30\x30\x12\"\n\x15segmentQueryCacheSize\x18\x0b \x01(\r:\x03\x35\x31\x32\x12\'\n\x1asegmentQueryCacheMaxAmount\x18\x0c \x01(\r:\x03\x32\x35\x36\"u\n\x0b\x46ieldConfig\x12\x17\n\x0fstoredFieldName\x18\x01 \x02(\t\x12\x19\n\x07indexAs\x18\x02 \x03(\x0b\x32\x08.IndexAs\x12\x19\n\x07\x66\x61\x63\x65tAs\x18\x03 \x03(\x0b\x32\x08.FacetAs\x12\x17\n\x06sortAs\x18\x04 \x01(\x0b\x32\x07.SortAs\"@\n\x07IndexAs\x12\x16\n\x0eindexFieldName\x18\x01 \x02(\t\x12\x1d\n\x08\x61nalyzer\x18\x02 \x02(\x0e\x32\x0b.LMAnalyzer\"\x8a\x01\n\x07\x46\x61\x63\x65tAs\x12\x11\n\tfacetName\x18\x01 \x02(\t\x12\'\n\tfacetType\x18\x02 \x02(\x0e\x32\x14.FacetAs.LMFacetType\"C\n\x0bLMFacetType\x12\x0c\n\x08STANDARD\x10\x01\x12\x13\n\x0f\x44\x41TE_YYYY_MM_DD\x10\x02\x12\x11\n\rDATE_YYYYMMDD\x10\x03\"\xaf\x01\n\x06SortAs\x12\x15\n\rsortFieldName\x18\x01 \x02(\t\x12\"\n\x08sortType\x18\x02 \x02(\x0e\x32\x10.SortAs.SortType\"j\n\x08SortType\x12\n\n\x06STRING\x10\x01\x12\x0f\n\x0bNUMERIC_INT\x10\x02\x12\x10\n\x0cNUMERIC_LONG\x10\x03\x12\x11\n\rNUMERIC_FLOAT\x10\x04\x12\x12\n\x0eNUMERIC_DOUBLE\x10\x05\x12\x08\n\x04\x44\x41TE\x10\x06\"\x17\n\x15IndexSettingsResponse\"\'\n\x12IndexDeleteRequest\x12\x11\n\tindexName\x18\x01 \x02(\t\"\x15\n\x13IndexDeleteResponse\"\xb5\x01\n\x0cStoreRequest\x12\x10\n\x08uniqueId\x18\x01 \x02(\t\x12\x11\n\tindexName\x18\x02 \x02(\t\x12\'\n\x0eresultDocument\x18\x03 \x01(\x0b\x32\x0f.ResultDocument\x12/\n\x12\x61ssociatedDocument\x18\x04 \x03(\x0b\x32\x13.AssociatedDocument\x12&\n\x17\x63learExistingAssociated\x18\x05 \x01(\x08:\x05\x66\x61lse\"\x0f\n\rStoreResponse\"S\n\x05LMDoc\x12\x1e\n\x0cindexedField\x18\x01 \x03(\x0b\x32\x08.LMField\x12\x17\n\x05\x66\x61\x63\x65t\x18\x02 \x03(\x0b\x32\x08.LMFacet\x12\x11\n\ttimestamp\x18\x03 \x01(\x03\"&\n\x07LMFacet\x12\r\n\x05label\x18\x01 \x02(\t\x12\x0c\n\x04path\x18\x02 \x03(\t\"~\n\x07LMField\x12\x11\n\tfieldName\x18\x01 \x02(\t\x12\x12\n\nfieldValue\x18\x02 \x03(\t\x12\x10\n\x08intValue\x18\x03 \x03(\x05\x12\x11\n\tlongValue\x18\x04 \x03(\x03\x12\x12\n\nfloatValue\x18\x05 \x03(\x02\x12\x13\n\x0b\x64oubleValue\x18\x06 \x03(\x01\"w\n\x0eResultDocument\x12\x10\n\x08uniqueId\x18\x01 \x02(\t\x12\x11\n\tindexName\x18\x02 \x02(\t\x12\x10\n\x08\x64ocument\x18\x03 \x01(\x0c\x12\x1b\n\x08metadata\x18\x04 \x03(\x0b\x32\t.Metadata\x12\x11\n\ttimestamp\x18\x05 \x01(\x03\"\xb0\x01\n\x12\x41ssociatedDocument\x12\x10\n\x08\x66ilename\x18\x01 \x02(\t\x12\x18\n\x10\x64ocumentUniqueId\x18\x02 \x02(\t\x12\x11\n\tindexName\x18\x03 \x02(\t\x12\x10\n\x08\x64ocument\x18\x04 \x01(\x0c\x12\x19\n\ncompressed\x18\x05 \x01(\x08:\x05\x66\x61lse\x12\x1b\n\x08metadata\x18\x06 \x03(\x0b\x32\t.Metadata\x12\x11\n\ttimestamp\x18\x07 \x01(\x03\"&\n\x08Metadata\x12\x0b\n\x03key\x18\x01 \x02(\t\x12\r\n\x05value\x18\x02 \x02(\t\"\xfc\x01\n\x0cScoredResult\x12\x10\n\x08uniqueId\x18\x01 \x02(\t\x12\r\n\x05score\x18\x02 \x02(\x02\x12\r\n\x05\x64ocId\x18\x03 \x02(\r\x12\x11\n\tindexName\x18\x04 \x02(\t\x12\x0f\n\x07segment\x18\x05 \x02(\r\x12\x13\n\x0bresultIndex\x18\x06 \x02(\r\x12\x10\n\x08sortTerm\x18\x07 \x03(\t\x12\x13\n\x0bsortInteger\x18\x08 \x03(\x05\x12\x10\n\x08sortLong\x18\t \x03(\x03\x12\x11\n\tsortFloat\x18\n \x03(\x02\x12\x12\n\nsortDouble\x18\x0b \x03(\x01\x12\x10\n\x08sortDate\x18\x0c \x03(\x03\x12\x11\n\ttimestamp\x18\r \x02(\x03\",\n\x0bSortRequest\x12\x1d\n\tfieldSort\x18\x01 \x03(\x0b\x32\n.FieldSort\"~\n\tFieldSort\x12\x11\n\tsortField\x18\x01 \x02(\t\x12\x32\n\tdirection\x18\x02 \x01(\x0e\x32\x14.FieldSort.Direction:\tASCENDING\"*\n\tDirection\x12\r\n\tASCENDING\x10\x01\x12\x0e\n\nDESCENDING\x10\x02\"R\n\nFacetGroup\x12#\n\x0c\x63ountRequest\x18\x01 \x02(\x0b\x32\r.CountRequest\x12\x1f\n\nfacetCount\x18\x02 \x03(\x0b\x32\x0b.FacetCount\"*\n\nFacetCount\x12\r\n\x05\x66\x61\x63\x65t\x18\x01 \x02(\t\x12\r\n\x05\x63ount\x18\x02 \x02(\x04\"n\n\x0c\x46\x61\x63\x65tRequest\x12#\n\x0c\x63ountRequest\x18\x01 \x03(\x0b\x32\r.CountRequest\x12\x1b\n\tdrillDown\x18\x02 \x03(\x0b\x32\x08.LMFacet\x12\x1c\n\rdrillSideways\x18\x03 \x01(\x08:\x05\x66\x61lse\"C\n\x0c\x43ountRequest\x12\x1c\n\nfacetField\x18\x01 \x02(\x0b\x32\x08.LMFacet\x12\x15\n\tmaxFacets\x18\x02 \x01(\r:\x02\x31\x30\"\xb1\x01\n\x0fSegmentResponse\x12\x15\n\rsegmentNumber\x18\x01 \x02(\r\x12\x11\n\tindexName\x18\x02 \x02(\t\x12\x11\n\ttotalHits\x18\x03 \x02(\r\x12#\n\x0cscoredResult\x18\x04 \x03(\x0b\x32\r.ScoredResult\x12\x1b\n\x04next\x18\x05 \x01(\x0b\x32\r.ScoredResult\x12\x1f\n\nfacetGroup\x18\x06 \x03(\x0b\x32\x0b.FacetGroup\"K\n\x0fLastIndexResult\x12\x11\n\tindexName\x18\x01 \x02(\t\x12%\n\x0elastForSegment\x18\x02 \x03(\x0b\x32\r.ScoredResult\"7\n\nLastResult\x12)\n\x0flastIndexResult\x18\x01 \x03(\x0b\x32\x10.LastIndexResult\"L\n\x15InternalQueryResponse\x12\x33\n\x14indexSegmentResponse\x18\x01 \x03(\x0b\x32\x15.IndexSegmentResponse\"S\n\x14IndexSegmentResponse\x12\x11\n\tindexName\x18\x01 \x02(\t\x12(\n\x0esegmentReponse\x18\x02 \x03(\x0b\x32\x10.SegmentResponse\"\xb2\x03\n\x0cQueryRequest\x12\r\n\x05index\x18\x01 \x03(\t\x12\r\n\x05query\x18\x02 \x01(\t\x12\x0e\n\x06\x61mount\x18\x03 \x02(\r\x12\x1f\n\nlastResult\x18\x04 \x01(\x0b\x32\x0b.LastResult\x12\x18\n\tfetchFull\x18\x05 \x01(\x08:\x05\x66\x61lse\x12\x16\n\x08realTime\x18\x06 \x01(\x08:\x04true\x12#\n\x0c\x66\x61\x63\x65tRequest\x18\x07 \x01(\x0b\x32\r.FacetRequest\x12!\n\x0bsortRequest\x18\x08 \x01(\x0b\x32\x0c.SortRequest\x12\x12\n\nqueryField\x18\t \x03(\t\x12\x13\n\x0b\x66ilterQuery\x18\n \x03(\t\x12\x0e\n\x06\x66ields\x18\x0b \x03(\t\x12)\n\x0fresultFetchType\x18\x0c \x01(\x0e\x32\n.FetchType:\x04NONE\x12#\n\x18minimumNumberShouldMatch\x18\r \x01(\r:\x01\x30\x12\x33\n\x0f\x64\x65\x66\x61ultOperator\x18\x0e \x01(\x0e\x32\x16.QueryRequest.Operator:\x02OR\"\x1b\n\x08Operator\x12\x07\n\x03\x41ND\x10\x01\x12\x06\n\x02OR\x10\x02\"\x84\x01\n\rQueryResponse\x12\x11\n\ttotalHits\x18\x01 \x02(\x04\x12\x1e\n\x07results\x18\x02 \x03(\x0b\x32\r.ScoredResult\x12\x1f\n\nlastResult\x18\x03 \x02(\x0b\x32\x0b.LastResult\x12\x1f\n\nfacetGroup\x18\x04 \x03(\x0b\x32\x0b.FacetGroup\"\x87\x01\n\rDeleteRequest\x12\x11\n\tindexName\x18\x01 \x02(\t\x12\x10\n\x08uniqueId\x18\x02 \x02(\t\x12\x10\n\x08\x66ilename\x18\x03 \x01(\t\x12\x1c\n\x0e\x64\x65leteDocument\x18\x04 \x01(\x08:\x04true\x12!\n\x13\x64\x65leteAllAssociated\x18\x05 \x01(\x08:\x04true\"\x10\n\x0e\x44\x65leteResponse\"5\n\x12\x42\x61tchDeleteRequest\x12\x1f\n\x07request\x18\x01 \x03(\x0b\x32\x0e.DeleteRequest\"\x15\n\x13\x42\x61tchDeleteResponse\"8\n\x11\x42\x61tchFetchRequest\x12#\n\x0c\x66\x65tchRequest\x18\x01 \x03(\x0b\x32\r.FetchRequest\";\n\x12\x42\x61tchFetchResponse\x12%\n\rfetchResponse\x18\x01 \x03(\x0b\x32\x0e.FetchResponse\"\xd5\x01\n\x0c\x46\x65tchRequest\x12\x10\n\x08uniqueId\x18\x01 \x02(\t\x12\x11\n\tindexName\x18\x02 \x02(\t\x12\x10\n\x08\x66ileName\x18\x03 \x01(\t\x12)\n\x0fresultFetchType\x18\x04 \x01(\x0e\x32\n.FetchType:\x04\x46ULL\x12-\n\x13\x61ssociatedFetchType\x18\x05 \x01(\x0e\x32\n.FetchType:\x04META\x12\x16\n\x0e\x64ocumentFields\x18\x06 \x03(\t\x12\x1c\n\x14\x64ocumentMaskedFields\x18\x07 \x03(\t\"i\n\rFetchResponse\x12\'\n\x0eresultDocument\x18\x01 \x01(\x0b\x32\x0f.ResultDocument\x12/\n\x12\x61ssociatedDocument\x18\x02 \x03(\x0b\x32\x13.AssociatedDocument*\xf8\x01\n\nLMAnalyzer\x12\x0b\n\x07KEYWORD\x10\x01\x12\x0e\n\nLC_KEYWORD\x10\x02\x12\x0e\n\nWHITESPACE\x10\x03\x12\x11\n\rLC_WHITESPACE\x10\x04\x12\x0c\n\x08STANDARD\x10\x05\x12\x0f\n\x0bNUMERIC_INT\x10\x06\x12\x10\n\x0cNUMERIC_LONG\x10\x07\x12\x11\n\rNUMERIC_FLOAT\x10\x08\x12\x12\n\x0eNUMERIC_DOUBLE\x10\t\x12\x14\n\x10STANDARD_FOLDING\x10\n\x12\x14\n\x10STANDARD_NO_STOP\x10\x0b\x12\x1c\n\x18STANDARD_FOLDING_NO_STOP\x10\x0c\x12\x08\n\x04\x44\x41TE\x10\r*)\n\tFetchType\x12\x08\n\x04\x46ULL\x10\x01\x12\x08\n\x04META\x10\x02\x12\x08\n\x04NONE\x10\x03\x32\xd5\x06\n\x0f\x45xternalService\x12&\n\x05Query\x12\r.QueryRequest\x1a\x0e.QueryResponse\x12&\n\x05Store\x12\r.StoreRequest\x1a\x0e.StoreResponse\x12)\n\x06\x44\x65lete\x12\x0e.DeleteRequest\x1a\x0f.DeleteResponse\x12\x38\n\x0b\x42\x61tchDelete\x12\x13.BatchDeleteRequest\x1a\x14.BatchDeleteResponse\x12&\n\x05\x46\x65tch\x12\r.FetchRequest\x1a\x0e.FetchResponse\x12\x35\n\nBatchFetch\x12\x12.BatchFetchRequest\x1a\x13.BatchFetchResponse\x12\x38\n\x0b\x43reateIndex\x12\x13.IndexCreateRequest\x1a\x14.IndexCreateResponse\x12<\n\x0b\x43hangeIndex\x12\x15.IndexSettingsRequest\x1a\x16.IndexSettingsResponse\x12\x38\n\x0b\x44\x65leteIndex\x12\x13.IndexDeleteRequest\x1a\x14.IndexDeleteResponse\x12\x35\n\nGetIndexes\x12\x12.GetIndexesRequest\x1a\x13.GetIndexesResponse\x12\x44\n\x0fGetNumberOfDocs\x12\x17.GetNumberOfDocsRequest\x1a\x18.GetNumberOfDocsResponse\x12&\n\x05\x43lear\x12\r.ClearRequest\x1a\x0e.ClearResponse\x12/\n\x08Optimize\x12\x10.OptimizeRequest\x1a\x11.OptimizeResponse\x12>\n\rGetFieldNames\x12\x15.GetFieldNamesRequest\x1a\x16.GetFieldNamesResponse\x12/\n\x08GetTerms\x12\x10.GetTermsRequest\x1a\x11.GetTermsResponse\x12\x35\n\nGetMembers\x12\x12.GetMembersRequest\x1a\x13.GetMembersResponse2\xa4\x03\n\x0fInternalService\x12.\n\x05Query\x12\r.QueryRequest\x1a\x16.InternalQueryResponse\x12&\n\x05Store\x12\r.StoreRequest\x1a\x0e.StoreResponse\x12)\n\x06\x44\x65lete\x12\x0e.DeleteRequest\x1a\x0f.DeleteResponse\x12\x44\n\x0fGetNumberOfDocs\x12\x17.GetNumberOfDocsRequest\x1a\x18.GetNumberOfDocsResponse\x12&\n\x05\x43lear\x12\r.ClearRequest\x1a\x0e.ClearResponse\x12/\n\x08Optimize\x12\x10.OptimizeRequest\x1a\x11.OptimizeResponse\x12>\n\rGetFieldNames\x12\x15.GetFieldNamesRequest\x1a\x16.GetFieldNamesResponse\x12/\n\x08GetTerms\x12\x10.GetTermsRequest\x1a\x11.GetTermsResponseB \n\x1borg.lumongo.cluster.message\x88\x01\x01')
+  serialized_pb=_b('\n\rlumongo.proto\"\x13\n\x11GetMembersRequest\"v\n\x08LMMember\x12\x15\n\rserverAddress\x18\x01 \x02(\t\x12\x14\n\x0c\x65xternalPort\x18\x02 \x02(\r\x12\x14\n\x0cinternalPort\x18\x03 \x01(\r\x12\x15\n\rhazelcastPort\x18\x04 \x01(\r\x12\x10\n\x08restPort\x18\x05 \x01(\r\"T\n\x12GetMembersResponse\x12\x19\n\x06member\x18\x01 \x03(\x0b\x32\t.LMMember\x12#\n\x0cindexMapping\x18\x02 \x03(\x0b\x32\r.IndexMapping\"d\n\x0cIndexMapping\x12\x11\n\tindexName\x18\x01 \x02(\t\x12\x18\n\x10numberOfSegments\x18\x02 \x02(\r\x12\'\n\x0esegmentMapping\x18\x03 \x03(\x0b\x32\x0f.SegmentMapping\"B\n\x0eSegmentMapping\x12\x15\n\rsegmentNumber\x18\x01 \x02(\r\x12\x19\n\x06member\x18\x02 \x02(\x0b\x32\t.LMMember\"\xb3\x01\n\x0fGetTermsRequest\x12\x11\n\tindexName\x18\x01 \x02(\t\x12\x11\n\tfieldName\x18\x02 \x02(\t\x12\x0e\n\x06\x61mount\x18\x03 \x02(\r\x12\x14\n\x0cstartingTerm\x18\x04 \x01(\t\x12\x15\n\nminDocFreq\x18\x05 \x01(\r:\x01\x31\x12\x16\n\x08realTime\x18\x06 \x01(\x08:\x04true\x12\x12\n\ntermFilter\x18\x07 \x01(\t\x12\x11\n\ttermMatch\x18\x08 \x01(\t\"@\n\x10GetTermsResponse\x12\x13\n\x04term\x18\x01 \x03(\x0b\x32\x05.Term\x12\x17\n\x08lastTerm\x18\x02 \x01(\x0b\x32\x05.Term\"&\n\x04Term\x12\r\n\x05value\x18\x01 \x02(\t\x12\x0f\n\x07\x64ocFreq\x18\x02 \x01(\x04\")\n\x14GetFieldNamesRequest\x12\x11\n\tindexName\x18\x01 \x02(\t\"*\n\x15GetFieldNamesResponse\x12\x11\n\tfieldName\x18\x01 \x03(\t\"!\n\x0c\x43learRequest\x12\x11\n\tindexName\x18\x01 \x02(\t\"\x0f\n\rClearResponse\"$\n\x0fOptimizeRequest\x12\x11\n\tindexName\x18\x01 \x02(\t\"\x12\n\x10OptimizeResponse\"\x13\n\x11GetIndexesRequest\"\'\n\x12GetIndexesResponse\x12\x11\n\tindexName\x18\x01 \x03(\t\"C\n\x16GetNumberOfDocsRequest\x12\x11\n\tindexName\x18\x01 \x02(\t\x12\x16\n\x08realTime\x18\x02 \x01(\x08:\x04true\"d\n\x17GetNumberOfDocsResponse\x12\x14\n\x0cnumberOfDocs\x18\x01 \x02(\x04\x12\x33\n\x14segmentCountResponse\x18\x02 \x03(\x0b\x32\x15.SegmentCountResponse\"u\n\x14SegmentCountResponse\x12\x15\n\rsegmentNumber\x18\x01 \x02(\r\x12\x14\n\x0cnumberOfDocs\x18\x02 \x02(\r\x12\x16\n\x0equeryCacheHits\x18\x03 \x01(\x04\x12\x18\n\x10queryCacheMisses\x18\x04 \x01(\x04\"\x7f\n\x12IndexCreateRequest\x12\x11\n\tindexName\x18\x01 \x02(\t\x12\x15\n\runiqueIdField\x18\x02 \x02(\t\x12\x18\n\x10numberOfSegments\x18\x03 \x02(\r\x12%\n\rindexSettings\x18\x04 \x02(\x0b\x32\x0e.IndexSettings\"\x15\n\x13IndexCreateResponse\"P\n\x14IndexSettingsRequest\x12\x11\n\tindexName\x18\x01 \x02(\t\x12%\n\rindexSettings\x18\x04 \x02(\x0b\x32\x0e.IndexSettings\"\xc3\x03\n\rIndexSettings\x12\x1a\n\x12\x64\x65\x66\x61ultSearchField\x18\x01 \x02(\t\x12!\n\x0b\x66ieldConfig\x18\x02 \x03(\x0b\x32\x0c.FieldConfig\x12$\n\x16\x61pplyUncommitedDeletes\x18\x03 \x01(\x08:\x04true\x12\x18\n\rrequestFactor\x18\x04 \x01(\x01:\x01\x32\x12\x1c\n\x11minSegmentRequest\x18\x05 \x01(\r:\x01\x32\x12!\n\x15idleTimeWithoutCommit\x18\x06 \x01(\r:\x02\x33\x30\x12#\n\x15segmentCommitInterval\x18\x07 \x01(\r:\x04\x33\x32\x30\x30\x12\x1f\n\x10\x62lockCompression\x18\x08 \x01(\x08:\x05\x66\x61lse\x12\x1e\n\x10segmentTolerance\x18\t \x01(\x01:\x04\x30.05\x12\"\n\x14segmentFlushInterval\x18\n \x01(\r:\x04\x31\x36\x30\x30\x12\"\n\x15segmentQueryCacheSize\x18\x0b \x01(\r:\x03\x35\x31\x32\x12\'\n\x1asegmentQueryCacheMaxAmount\x18\x0c \x01(\r:\x03\x32\x35\x36\x12\x1b\n\x10\x62lockCacheWeight\x18\r \x01(\r:\x01\x31\"u\n\x0b\x46ieldConfig\x12\x17\n\x0fstoredFieldName\x18\x01 \x02(\t\x12\x19\n\x07indexAs\x18\x02 \x03(\x0b\x32\x08.IndexAs\x12\x19\n\x07\x66\x61\x63\x65tAs\x18\x03 \x03(\x0b\x32\x08.FacetAs\x12\x17\n\x06sortAs\x18\x04 \x01(\x0b\x32\x07.SortAs\"@\n\x07IndexAs\x12\x16\n\x0eindexFieldName\x18\x01 \x02(\t\x12\x1d\n\x08\x61nalyzer\x18\x02 \x02(\x0e\x32\x0b.LMAnalyzer\"\x8a\x01\n\x07\x46\x61\x63\x65tAs\x12\x11\n\tfacetName\x18\x01 \x02(\t\x12\'\n\tfacetType\x18\x02 \x02(\x0e\x32\x14.FacetAs.LMFacetType\"C\n\x0bLMFacetType\x12\x0c\n\x08STANDARD\x10\x01\x12\x13\n\x0f\x44\x41TE_YYYY_MM_DD\x10\x02\x12\x11\n\rDATE_YYYYMMDD\x10\x03\"\xaf\x01\n\x06SortAs\x12\x15\n\rsortFieldName\x18\x01 \x02(\t\x12\"\n\x08sortType\x18\x02 \x02(\x0e\x32\x10.SortAs.SortType\"j\n\x08SortType\x12\n\n\x06STRING\x10\x01\x12\x0f\n\x0bNUMERIC_INT\x10\x02\x12\x10\n\x0cNUMERIC_LONG\x10\x03\x12\x11\n\rNUMERIC_FLOAT\x10\x04\x12\x12\n\x0eNUMERIC_DOUBLE\x10\x05\x12\x08\n\x04\x44\x41TE\x10\x06\"\x17\n\x15IndexSettingsResponse\"\'\n\x12IndexDeleteRequest\x12\x11\n\tindexName\x18\x01 \x02(\t\"\x15\n\x13IndexDeleteResponse\"\xb5\x01\n\x0cStoreRequest\x12\x10\n\x08uniqueId\x18\x01 \x02(\t\x12\x11\n\tindexName\x18\x02 \x02(\t\x12\'\n\x0eresultDocument\x18\x03 \x01(\x0b\x32\x0f.ResultDocument\x12/\n\x12\x61ssociatedDocument\x18\x04 \x03(\x0b\x32\x13.AssociatedDocument\x12&\n\x17\x63learExistingAssociated\x18\x05 \x01(\x08:\x05\x66\x61lse\"\x0f\n\rStoreResponse\"8\n\x11\x42\x61tchStoreRequest\x12#\n\x0cstoreRequest\x18\x01 \x03(\x0b\x32\r.StoreRequest\"7\n\x12\x42\x61tchStoreResponse\x12!\n\x0bstoreStatus\x18\x01 \x03(\x0b\x32\x0c.StoreStatus\"X\n\x0bStoreStatus\x12\x10\n\x08uniqueId\x18\x01 \x02(\t\x12\x11\n\tindexName\x18\x02 \x02(\t\x12\x0e\n\x06stored\x18\x03 \x02(\x08\x12\x14\n\x0c\x65rrorMessage\x18\x04 \x01(\t\"S\n\x05LMDoc\x12\x1e\n\x0cindexedField\x18\x01 \x03(\x0b\x32\x08.LMField\x12\x17\n\x05\x66\x61\x63\x65t\x18\x02 \x03(\x0b\x32\x08.LMFacet\x12\x11\n\ttimestamp\x18\x03 \x01(\x03\"&\n\x07LMFacet\x12\r\n\x05label\x18\x01 \x02(\t\x12\x0c\n\x04path\x18\x02 \x03(\t\"~\n\x07LMField\x12\x11\n\tfieldName\x18\x01 \x02(\t\x12\x12\n\nfieldValue\x18\x02 \x03(\t\x12\x10\n\x08intValue\x18\x03 \x03(\x05\x12\x11\n\tlongValue\x18\x04 \x03(\x03\x12\x12\n\nfloatValue\x18\x05 \x03(\x02\x12\x13\n\x0b\x64oubleValue\x18\x06 \x03(\x01\"w\n\x0eResultDocument\x12\x10\n\x08uniqueId\x18\x01 \x02(\t\x12\x11\n\tindexName\x18\x02 \x02(\t\x12\x10\n\x08\x64ocument\x18\x03 \x01(\x0c\x12\x1b\n\x08metadata\x18\x04 \x03(\x0b\x32\t.Metadata\x12\x11\n\ttimestamp\x18\x05 \x01(\x03\"\xb0\x01\n\x12\x41ssociatedDocument\x12\x10\n\x08\x66ilename\x18\x01 \x02(\t\x12\x18\n\x10\x64ocumentUniqueId\x18\x02 \x02(\t\x12\x11\n\tindexName\x18\x03 \x02(\t\x12\x10\n\x08\x64ocument\x18\x04 \x01(\x0c\x12\x19\n\ncompressed\x18\x05 \x01(\x08:\x05\x66\x61lse\x12\x1b\n\x08metadata\x18\x06 \x03(\x0b\x32\t.Metadata\x12\x11\n\ttimestamp\x18\x07 \x01(\x03\"&\n\x08Metadata\x12\x0b\n\x03key\x18\x01 \x02(\t\x12\r\n\x05value\x18\x02 \x02(\t\"\xfc\x01\n\x0cScoredResult\x12\x10\n\x08uniqueId\x18\x01 \x02(\t\x12\r\n\x05score\x18\x02 \x02(\x02\x12\r\n\x05\x64ocId\x18\x03 \x02(\r\x12\x11\n\tindexName\x18\x04 \x02(\t\x12\x0f\n\x07segment\x18\x05 \x02(\r\x12\x13\n\x0bresultIndex\x18\x06 \x02(\r\x12\x10\n\x08sortTerm\x18\x07 \x03(\t\x12\x13\n\x0bsortInteger\x18\x08 \x03(\x05\x12\x10\n\x08sortLong\x18\t \x03(\x03\x12\x11\n\tsortFloat\x18\n \x03(\x02\x12\x12\n\nsortDouble\x18\x0b \x03(\x01\x12\x10\n\x08sortDate\x18\x0c \x03(\x03\x12\x11\n\ttimestamp\x18\r \x02(\x03\",\n\x0bSortRequest\x12\x1d\n\tfieldSort\x18\x01 \x03(\x0b\x32\n.FieldSort\"~\n\tFieldSort\x12\x11\n\tsortField\x18\x01 \x02(\t\x12\x32\n\tdirection\x18\x02 \x01(\x0e\x32\x14.FieldSort.Direction:\tASCENDING\"*\n\tDirection\x12\r\n\tASCENDING\x10\x01\x12\x0e\n\nDESCENDING\x10\x02\"R\n\nFacetGroup\x12#\n\x0c\x63ountRequest\x18\x01 \x02(\x0b\x32\r.CountRequest\x12\x1f\n\nfacetCount\x18\x02 \x03(\x0b\x32\x0b.FacetCount\"*\n\nFacetCount\x12\r\n\x05\x66\x61\x63\x65t\x18\x01 \x02(\t\x12\r\n\x05\x63ount\x18\x02 \x02(\x04\"n\n\x0c\x46\x61\x63\x65tRequest\x12#\n\x0c\x63ountRequest\x18\x01 \x03(\x0b\x32\r.CountRequest\x12\x1b\n\tdrillDown\x18\x02 \x03(\x0b\x32\x08.LMFacet\x12\x1c\n\rdrillSideways\x18\x03 \x01(\x08:\x05\x66\x61lse\"C\n\x0c\x43ountRequest\x12\x1c\n\nfacetField\x18\x01 \x02(\x0b\x32\x08.LMFacet\x12\x15\n\tmaxFacets\x18\x02 \x01(\r:\x02\x31\x30\"\xb1\x01\n\x0fSegmentResponse\x12\x15\n\rsegmentNumber\x18\x01 \x02(\r\x12\x11\n\tindexName\x18\x02 \x02(\t\x12\x11\n\ttotalHits\x18\x03 \x02(\r\x12#\n\x0cscoredResult\x18\x04 \x03(\x0b\x32\r.ScoredResult\x12\x1b\n\x04next\x18\x05 \x01(\x0b\x32\r.ScoredResult\x12\x1f\n\nfacetGroup\x18\x06 \x03(\x0b\x32\x0b.FacetGroup\"K\n\x0fLastIndexResult\x12\x11\n\tindexName\x18\x01 \x02(\t\x12%\n\x0elastForSegment\x18\x02 \x03(\x0b\x32\r.ScoredResult\"7\n\nLastResult\x12)\n\x0flastIndexResult\x18\x01 \x03(\x0b\x32\x10.LastIndexResult\"L\n\x15InternalQueryResponse\x12\x33\n\x14indexSegmentResponse\x18\x01 \x03(\x0b\x32\x15.IndexSegmentResponse\"S\n\x14IndexSegmentResponse\x12\x11\n\tindexName\x18\x01 \x02(\t\x12(\n\x0esegmentReponse\x18\x02 \x03(\x0b\x32\x10.SegmentResponse\"\xdf\x03\n\x0cQueryRequest\x12\r\n\x05index\x18\x01 \x03(\t\x12\r\n\x05query\x18\x02 \x01(\t\x12\x0e\n\x06\x61mount\x18\x03 \x02(\r\x12\x1f\n\nlastResult\x18\x04 \x01(\x0b\x32\x0b.LastResult\x12\x18\n\tfetchFull\x18\x05 \x01(\x08:\x05\x66\x61lse\x12\x16\n\x08realTime\x18\x06 \x01(\x08:\x04true\x12#\n\x0c\x66\x61\x63\x65tRequest\x18\x07 \x01(\x0b\x32\r.FacetRequest\x12!\n\x0bsortRequest\x18\x08 \x01(\x0b\x32\x0c.SortRequest\x12\x12\n\nqueryField\x18\t \x03(\t\x12\x13\n\x0b\x66ilterQuery\x18\n \x03(\t\x12\x0e\n\x06\x66ields\x18\x0b \x03(\t\x12)\n\x0fresultFetchType\x18\x0c \x01(\x0e\x32\n.FetchType:\x04NONE\x12#\n\x18minimumNumberShouldMatch\x18\r \x01(\r:\x01\x30\x12\x33\n\x0f\x64\x65\x66\x61ultOperator\x18\x0e \x01(\x0e\x32\x16.QueryRequest.Operator:\x02OR\x12\x1a\n\x0fmaxCacheStaleMs\x18\x0f \x01(\r:\x01\x30\x12\x0f\n\x07refresh\x18\x10 \x01(\x08\"\x1b\n\x08Operator\x12\x07\n\x03\x41ND\x10\x01\x12\x06\n\x02OR\x10\x02\"\x84\x01\n\rQueryResponse\x12\x11\n\ttotalHits\x18\x01 \x02(\x04\x12\x1e\n\x07results\x18\x02 \x03(\x0b\x32\r.ScoredResult\x12\x1f\n\nlastResult\x18\x03 \x02(\x0b\x32\x0b.LastResult\x12\x1f\n\nfacetGroup\x18\x04 \x03(\x0b\x32\x0b.FacetGroup\"\x87\x01\n\rDeleteRequest\x12\x11\n\tindexName\x18\x01 \x02(\t\x12\x10\n\x08uniqueId\x18\x02 \x02(\t\x12\x10\n\x08\x66ilename\x18\x03 \x01(\t\x12\x1c\n\x0e\x64\x65leteDocument\x18\x04 \x01(\x08:\x04true\x12!\n\x13\x64\x65leteAllAssociated\x18\x05 \x01(\x08:\x04true\"\x10\n\x0e\x44\x65leteResponse\"5\n\x12\x42\x61tchDeleteRequest\x12\x1f\n\x07request\x18\x01 \x03(\x0b\x32\x0e.DeleteRequest\"\x15\n\x13\x42\x61tchDeleteResponse\"8\n\x11\x42\x61tchFetchRequest\x12#\n\x0c\x66\x65tchRequest\x18\x01 \x03(\x0b\x32\r.FetchRequest\";\n\x12\x42\x61tchFetchResponse\x12%\n\rfetchResponse\x18\x01 \x03(\x0b\x32\x0e.FetchResponse\"\xd5\x01\n\x0c\x46\x65tchRequest\x12\x10\n\x08uniqueId\x18\x01 \x02(\t\x12\x11\n\tindexName\x18\x02 \x02(\t\x12\x10\n\x08\x66ileName\x18\x03 \x01(\t\x12)\n\x0fresultFetchType\x18\x04 \x01(\x0e\x32\n.FetchType:\x04\x46ULL\x12-\n\x13\x61ssociatedFetchType\x18\x05 \x01(\x0e\x32\n.FetchType:\x04META\x12\x16\n\x0e\x64ocumentFields\x18\x06 \x03(\t\x12\x1c\n\x14\x64ocumentMaskedFields\x18\x07 \x03(\t\"i\n\rFetchResponse\x12\'\n\x0eresultDocument\x18\x01 \x01(\x0b\x32\x0f.ResultDocument\x12/\n\x12\x61ssociatedDocument\x18\x02 \x03(\x0b\x32\x13.AssociatedDocument*\xf8\x01\n\nLMAnalyzer\x12\x0b\n\x07KEYWORD\x10\x01\x12\x0e\n\nLC_KEYWORD\x10\x02\x12\x0e\n\nWHITESPACE\x10\x03\x12\x11\n\rLC_WHITESPACE\x10\x04\x12\x0c\n\x08STANDARD\x10\x05\x12\x0f\n\x0bNUMERIC_INT\x10\x06\x12\x10\n\x0cNUMERIC_LONG\x10\x07\x12\x11\n\rNUMERIC_FLOAT\x10\x08\x12\x12\n\x0eNUMERIC_DOUBLE\x10\t\x12\x14\n\x10STANDARD_FOLDING\x10\n\x12\x14\n\x10STANDARD_NO_STOP\x10\x0b\x12\x1c\n\x18STANDARD_FOLDING_NO_STOP\x10\x0c\x12\x08\n\x04\x44\x41TE\x10\r*)\n\tFetchType\x12\x08\n\x04\x46ULL\x10\x01\x12\x08\n\x04META\x10\x02\x12\x08\n\x04NONE\x10\x03\x32\x8c\x07\n\x0f\x45xternalService\x12&\n\x05Query\x12\r.QueryRequest\x1a\x0e.QueryResponse\x12&\n\x05Store\x12\r.StoreRequest\x1a\x0e.StoreResponse\x12\x35\n\nBatchStore\x12\x12.BatchStoreRequest\x1a\x13.BatchStoreResponse\x12)\n\x06\x44\x65lete\x12\x0e.DeleteRequest\x1a\x0f.DeleteResponse\x12\x38\n\x0b\x42\x61tchDelete\x12\x13.BatchDeleteRequest\x1a\x14.BatchDeleteResponse\x12&\n\x05\x46\x65tch\x12\r.FetchRequest\x1a\x0e.FetchResponse\x12\x35\n\nBatchFetch\x12\x12.BatchFetchRequest\x1a\x13.BatchFetchResponse\x12\x38\n\x0b\x43reateIndex\x12\x13.IndexCreateRequest\x1a\x14.IndexCreateResponse\x12<\n\x0b\x43hangeIndex\x12\x15.IndexSettingsRequest\x1a\x16.IndexSettingsResponse\x12\x38\n\x0b\x44\x65leteIndex\x12\x13.IndexDeleteRequest\x1a\x14.IndexDeleteResponse\x12\x35\n\nGetIndexes\x12\x12.GetIndexesRequest\x1a\x13.GetIndexesResponse\x12\x44\n\x0fGetNumberOfDocs\x12\x17.GetNumberOfDocsRequest\x1a\x18.GetNumberOfDocsResponse\x12&\n\x05\x43lear\x12\r.ClearRequest\x1a\x0e.ClearResponse\x12/\n\x08Optimize\x12\x10.OptimizeRequest\x1a\x11.OptimizeResponse\x12>\n\rGetFieldNames\x12\x15.GetFieldNamesRequest\x1a\x16.GetFieldNamesResponse\x12/\n\x08GetTerms\x12\x10.GetTermsRequest\x1a\x11.GetTermsResponse\x12\x35\n\nGetMembers\x12\x12.GetMembersRequest\x1a\x13.GetMembersResponse2\xdb\x03\n\x0fInternalService\x12.\n\x05Query\x12\r.QueryRequest\x1a\x16.InternalQueryResponse\x12&\n\x05Store\x12\r.StoreRequest\x1a\x0e.StoreResponse\x12\x35\n\nBatchStore\x12\x12.BatchStoreRequest\x1a\x13.BatchStoreResponse\x12)\n\x06\x44\x65lete\x12\x0e.DeleteRequest\x1a\x0f.DeleteResponse\x12\x44\n\x0fGetNumberOfDocs\x12\x17.GetNumberOfDocsRequest\x1a\x18.GetNumberOfDocsResponse\x12&\n\x05\x43lear\x12\r.ClearRequest\x1a\x0e.ClearResponse\x12/\n\x08Optimize\x12\x10.OptimizeRequest\x1a\x11.OptimizeResponse\x12>\n\rGetFieldNames\x12\x15.GetFieldNamesRequest\x1a\x16.GetFieldNamesResponse\x12/\n\x08GetTerms\x12\x10.GetTermsRequest\x1a\x11.GetTermsResponseB \n\x1borg.lumongo.cluster.message\x88\x01\x01')
 )
 _sym_db.RegisterFileDescriptor(DESCRIPTOR)
 
@@ -84,8 +84,8 @@ _LMANALYZER = _descriptor.EnumDescriptor(
   ],
   containing_type=None,
   options=None,
-  serialized_start=5711,
-  serialized_end=5959,
+  serialized_start=6040,
+  serialized_end=6288,
 )
 _sym_db.RegisterEnumDescriptor(_LMANALYZER)
 
@@ -111,8 +111,8 @@ _FETCHTYPE = _descriptor.EnumDescriptor(
   ],
   containing_type=None,
   options=None,
-  serialized_start=5961,
-  serialized_end=6002,
+  serialized_start=6290,
+  serialized_end=6331,
 )
 _sym_db.RegisterEnumDescriptor(_FETCHTYPE)
 
@@ -156,8 +156,8 @@ _FACETAS_LMFACETTYPE = _descriptor.EnumDescriptor(
   ],
   containing_type=None,
   options=None,
-  serialized_start=2117,
-  serialized_end=2184,
+  serialized_start=2196,
+  serialized_end=2263,
 )
 _sym_db.RegisterEnumDescriptor(_FACETAS_LMFACETTYPE)
 
@@ -194,8 +194,8 @@ _SORTAS_SORTTYPE = _descriptor.EnumDescriptor(
   ],
   containing_type=None,
   options=None,
-  serialized_start=2256,
-  serialized_end=2362,
+  serialized_start=2335,
+  serialized_end=2441,
 )
 _sym_db.RegisterEnumDescriptor(_SORTAS_SORTTYPE)
 
@@ -216,8 +216,8 @@ _FIELDSORT_DIRECTION = _descriptor.EnumDescriptor(
   ],
   containing_type=None,
   options=None,
-  serialized_start=3632,
-  serialized_end=3674,
+  serialized_start=3916,
+  serialized_end=3958,
 )
 _sym_db.RegisterEnumDescriptor(_FIELDSORT_DIRECTION)
 
@@ -238,8 +238,8 @@ _QUERYREQUEST_OPERATOR = _descriptor.EnumDescriptor(
   ],
   containing_type=None,
   options=None,
-  serialized_start=4870,
-  serialized_end=4897,
+  serialized_start=5199,
+  serialized_end=5226,
 )
 _sym_db.RegisterEnumDescriptor(_QUERYREQUEST_OPERATOR)
 
@@ -910,6 +910,20 @@ _SEGMENTCOUNTRESPONSE = _descriptor.Descriptor(
       message_type=None, enum_type=None, containing_type=None,
       is_extension=False, extension_scope=None,
       options=None),
+    _descriptor.FieldDescriptor(
+      name='queryCacheHits', full_name='SegmentCountResponse.queryCacheHits', index=2,
+      number=3, type=4, cpp_type=4, label=1,
+      has_default_value=False, default_value=0,
+      message_type=None, enum_type=None, containing_type=None,
+      is_extension=False, extension_scope=None,
+      options=None),
+    _descriptor.FieldDescriptor(
+      name='queryCacheMisses', full_name='SegmentCountResponse.queryCacheMisses', index=3,
+      number=4, type=4, cpp_type=4, label=1,
+      has_default_value=False, default_value=0,
+      message_type=None, enum_type=None, containing_type=None,
+      is_extension=False, extension_scope=None,
+      options=None),
   ],
   extensions=[
   ],
@@ -922,7 +936,7 @@ _SEGMENTCOUNTRESPONSE = _descriptor.Descriptor(
   oneofs=[
   ],
   serialized_start=1132,
-  serialized_end=1199,
+  serialized_end=1249,
 )
 
 
@@ -972,8 +986,8 @@ _INDEXCREATEREQUEST = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=1201,
-  serialized_end=1328,
+  serialized_start=1251,
+  serialized_end=1378,
 )
 
 
@@ -995,8 +1009,8 @@ _INDEXCREATERESPONSE = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=1330,
-  serialized_end=1351,
+  serialized_start=1380,
+  serialized_end=1401,
 )
 
 
@@ -1032,8 +1046,8 @@ _INDEXSETTINGSREQUEST = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=1353,
-  serialized_end=1433,
+  serialized_start=1403,
+  serialized_end=1483,
 )
 
 
@@ -1128,6 +1142,13 @@ _INDEXSETTINGS = _descriptor.Descriptor(
       message_type=None, enum_type=None, containing_type=None,
       is_extension=False, extension_scope=None,
       options=None),
+    _descriptor.FieldDescriptor(
+      name='blockCacheWeight', full_name='IndexSettings.blockCacheWeight', index=12,
+      number=13, type=13, cpp_type=3, label=1,
+      has_default_value=True, default_value=1,
+      message_type=None, enum_type=None, containing_type=None,
+      is_extension=False, extension_scope=None,
+      options=None),
   ],
   extensions=[
   ],
@@ -1139,8 +1160,8 @@ _INDEXSETTINGS = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=1436,
-  serialized_end=1858,
+  serialized_start=1486,
+  serialized_end=1937,
 )
 
 
@@ -1190,8 +1211,8 @@ _FIELDCONFIG = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=1860,
-  serialized_end=1977,
+  serialized_start=1939,
+  serialized_end=2056,
 )
 
 
@@ -1227,8 +1248,8 @@ _INDEXAS = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=1979,
-  serialized_end=2043,
+  serialized_start=2058,
+  serialized_end=2122,
 )
 
 
@@ -1265,8 +1286,8 @@ _FACETAS = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=2046,
-  serialized_end=2184,
+  serialized_start=2125,
+  serialized_end=2263,
 )
 
 
@@ -1303,8 +1324,8 @@ _SORTAS = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=2187,
-  serialized_end=2362,
+  serialized_start=2266,
+  serialized_end=2441,
 )
 
 
@@ -1326,8 +1347,8 @@ _INDEXSETTINGSRESPONSE = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=2364,
-  serialized_end=2387,
+  serialized_start=2443,
+  serialized_end=2466,
 )
 
 
@@ -1356,8 +1377,8 @@ _INDEXDELETEREQUEST = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=2389,
-  serialized_end=2428,
+  serialized_start=2468,
+  serialized_end=2507,
 )
 
 
@@ -1379,8 +1400,8 @@ _INDEXDELETERESPONSE = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=2430,
-  serialized_end=2451,
+  serialized_start=2509,
+  serialized_end=2530,
 )
 
 
@@ -1437,8 +1458,8 @@ _STOREREQUEST = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=2454,
-  serialized_end=2635,
+  serialized_start=2533,
+  serialized_end=2714,
 )
 
 
@@ -1460,8 +1481,119 @@ _STORERESPONSE = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=2637,
-  serialized_end=2652,
+  serialized_start=2716,
+  serialized_end=2731,
+)
+
+
+_BATCHSTOREREQUEST = _descriptor.Descriptor(
+  name='BatchStoreRequest',
+  full_name='BatchStoreRequest',
+  filename=None,
+  file=DESCRIPTOR,
+  containing_type=None,
+  fields=[
+    _descriptor.FieldDescriptor(
+      name='storeRequest', full_name='BatchStoreRequest.storeRequest', index=0,
+      number=1, type=11, cpp_type=10, label=3,
+      has_default_value=False, default_value=[],
+      message_type=None, enum_type=None, containing_type=None,
+      is_extension=False, extension_scope=None,
+      options=None),
+  ],
+  extensions=[
+  ],
+  nested_types=[],
+  enum_types=[
+  ],
+  options=None,
+  is_extendable=False,
+  extension_ranges=[],
+  oneofs=[
+  ],
+  serialized_start=2733,
+  serialized_end=2789,
+)
+
+
+_BATCHSTORERESPONSE = _descriptor.Descriptor(
+  name='BatchStoreResponse',
+  full_name='BatchStoreResponse',
+  filename=None,
+  file=DESCRIPTOR,
+  containing_type=None,
+  fields=[
+    _descriptor.FieldDescriptor(
+      name='storeStatus', full_name='BatchStoreResponse.storeStatus', index=0,
+      number=1, type=11, cpp_type=10, label=3,
+      has_default_value=False, default_value=[],
+      message_type=None, enum_type=None, containing_type=None,
+      is_extension=False, extension_scope=None,
+      options=None),
+  ],
+  extensions=[
+  ],
+  nested_types=[],
+  enum_types=[
+  ],
+  options=None,
+  is_extendable=False,
+  extension_ranges=[],
+  oneofs=[
+  ],
+  serialized_start=2791,
+  serialized_end=2846,
+)
+
+
+_STORESTATUS = _descriptor.Descriptor(
+  name='StoreStatus',
+  full_name='StoreStatus',
+  filename=None,
+  file=DESCRIPTOR,
+  containing_type=None,
+  fields=[
+    _descriptor.FieldDescriptor(
+      name='uniqueId', full_name='StoreStatus.uniqueId', index=0,
+      number=1, type=9, cpp_type=9, label=2,
+      has_default_value=False, default_value=_b("").decode('utf-8'),
+      message_type=None, enum_type=None, containing_type=None,
+      is_extension=False, extension_scope=None,
+      options=None),
+    _descriptor.FieldDescriptor(
+      name='indexName', full_name='StoreStatus.indexName', index=1,
+      number=2, type=9, cpp_type=9, label=2,
+      has_default_value=False, default_value=_b("").decode('utf-8'),
+      message_type=None, enum_type=None, containing_type=None,
+      is_extension=False, extension_scope=None,
+      options=None),
+    _descriptor.FieldDescriptor(
+      name='stored', full_name='StoreStatus.stored', index=2,
+      number=3, type=8, cpp_type=7, label=2,
+      has_default_value=False, default_value=False,
+      message_type=None, enum_type=None, containing_type=None,
+      is_extension=False, extension_scope=None,
+      options=None),
+    _descriptor.FieldDescriptor(
+      name='errorMessage', full_name='StoreStatus.errorMessage', index=3,
+      number=4, type=9, cpp_type=9, label=1,
+      has_default_value=False, default_value=_b("").decode('utf-8'),
+      message_type=None, enum_type=None, containing_type=None,
+      is_extension=False, extension_scope=None,
+      options=None),
+  ],
+  extensions=[
+  ],
+  nested_types=[],
+  enum_types=[
+  ],
+  options=None,
+  is_extendable=False,
+  extension_ranges=[],
+  oneofs=[
+  ],
+  serialized_start=2848,
+  serialized_end=2936,
 )
 
 
@@ -1504,8 +1636,8 @@ _LMDOC = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=2654,
-  serialized_end=2737,
+  serialized_start=2938,
+  serialized_end=3021,
 )
 
 
@@ -1541,8 +1673,8 @@ _LMFACET = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=2739,
-  serialized_end=2777,
+  serialized_start=3023,
+  serialized_end=3061,
 )
 
 
@@ -1606,8 +1738,8 @@ _LMFIELD = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=2779,
-  serialized_end=2905,
+  serialized_start=3063,
+  serialized_end=3189,
 )
 
 
@@ -1664,8 +1796,8 @@ _RESULTDOCUMENT = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=2907,
-  serialized_end=3026,
+  serialized_start=3191,
+  serialized_end=3310,
 )
 
 
@@ -1736,8 +1868,8 @@ _ASSOCIATEDDOCUMENT = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=3029,
-  serialized_end=3205,
+  serialized_start=3313,
+  serialized_end=3489,
 )
 
 
@@ -1773,8 +1905,8 @@ _METADATA = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=3207,
-  serialized_end=3245,
+  serialized_start=3491,
+  serialized_end=3529,
 )
 
 
@@ -1887,8 +2019,8 @@ _SCOREDRESULT = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=3248,
-  serialized_end=3500,
+  serialized_start=3532,
+  serialized_end=3784,
 )
 
 
@@ -1917,8 +2049,8 @@ _SORTREQUEST = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=3502,
-  serialized_end=3546,
+  serialized_start=3786,
+  serialized_end=3830,
 )
 
 
@@ -1955,8 +2087,8 @@ _FIELDSORT = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=3548,
-  serialized_end=3674,
+  serialized_start=3832,
+  serialized_end=3958,
 )
 
 
@@ -1992,8 +2124,8 @@ _FACETGROUP = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=3676,
-  serialized_end=3758,
+  serialized_start=3960,
+  serialized_end=4042,
 )
 
 
@@ -2029,8 +2161,8 @@ _FACETCOUNT = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=3760,
-  serialized_end=3802,
+  serialized_start=4044,
+  serialized_end=4086,
 )
 
 
@@ -2073,8 +2205,8 @@ _FACETREQUEST = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=3804,
-  serialized_end=3914,
+  serialized_start=4088,
+  serialized_end=4198,
 )
 
 
@@ -2110,8 +2242,8 @@ _COUNTREQUEST = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=3916,
-  serialized_end=3983,
+  serialized_start=4200,
+  serialized_end=4267,
 )
 
 
@@ -2175,8 +2307,8 @@ _SEGMENTRESPONSE = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=3986,
-  serialized_end=4163,
+  serialized_start=4270,
+  serialized_end=4447,
 )
 
 
@@ -2212,8 +2344,8 @@ _LASTINDEXRESULT = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=4165,
-  serialized_end=4240,
+  serialized_start=4449,
+  serialized_end=4524,
 )
 
 
@@ -2242,8 +2374,8 @@ _LASTRESULT = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=4242,
-  serialized_end=4297,
+  serialized_start=4526,
+  serialized_end=4581,
 )
 
 
@@ -2272,8 +2404,8 @@ _INTERNALQUERYRESPONSE = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=4299,
-  serialized_end=4375,
+  serialized_start=4583,
+  serialized_end=4659,
 )
 
 
@@ -2309,8 +2441,8 @@ _INDEXSEGMENTRESPONSE = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=4377,
-  serialized_end=4460,
+  serialized_start=4661,
+  serialized_end=4744,
 )
 
 
@@ -2419,6 +2551,20 @@ _QUERYREQUEST = _descriptor.Descriptor(
       message_type=None, enum_type=None, containing_type=None,
       is_extension=False, extension_scope=None,
       options=None),
+    _descriptor.FieldDescriptor(
+      name='maxCacheStaleMs', full_name='QueryRequest.maxCacheStaleMs', index=14,
+      number=15, type=13, cpp_type=3, label=1,
+      has_default_value=True, default_value=0,
+      message_type=None, enum_type=None, containing_type=None,
+      is_extension=False, extension_scope=None,
+      options=None),
+    _descriptor.FieldDescriptor(
+      name='refresh', full_name='QueryRequest.refresh', index=15,
+      number=16, type=8, cpp_type=7, label=1,
+      has_default_value=False, default_value=False,
+      message_type=None, enum_type=None, containing_type=None,
+      is_extension=False, extension_scope=None,
+      options=None),
   ],
   extensions=[
   ],
@@ -2431,8 +2577,8 @@ _QUERYREQUEST = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=4463,
-  serialized_end=4897,
+  serialized_start=4747,
+  serialized_end=5226,
 )
 
 
@@ -2482,8 +2628,8 @@ _QUERYRESPONSE = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=4900,
-  serialized_end=5032,
+  serialized_start=5229,
+  serialized_end=5361,
 )
 
 
@@ -2540,8 +2686,8 @@ _DELETEREQUEST = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=5035,
-  serialized_end=5170,
+  serialized_start=5364,
+  serialized_end=5499,
 )
 
 
@@ -2563,8 +2709,8 @@ _DELETERESPONSE = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=5172,
-  serialized_end=5188,
+  serialized_start=5501,
+  serialized_end=5517,
 )
 
 
@@ -2593,8 +2739,8 @@ _BATCHDELETEREQUEST = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=5190,
-  serialized_end=5243,
+  serialized_start=5519,
+  serialized_end=5572,
 )
 
 
@@ -2616,8 +2762,8 @@ _BATCHDELETERESPONSE = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=5245,
-  serialized_end=5266,
+  serialized_start=5574,
+  serialized_end=5595,
 )
 
 
@@ -2646,8 +2792,8 @@ _BATCHFETCHREQUEST = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=5268,
-  serialized_end=5324,
+  serialized_start=5597,
+  serialized_end=5653,
 )
 
 
@@ -2676,8 +2822,8 @@ _BATCHFETCHRESPONSE = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=5326,
-  serialized_end=5385,
+  serialized_start=5655,
+  serialized_end=5714,
 )
 
 
@@ -2748,8 +2894,8 @@ _FETCHREQUEST = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=5388,
-  serialized_end=5601,
+  serialized_start=5717,
+  serialized_end=5930,
 )
 
 
@@ -2785,8 +2931,8 @@ _FETCHRESPONSE = _descriptor.Descriptor(
   extension_ranges=[],
   oneofs=[
   ],
-  serialized_start=5603,
-  serialized_end=5708,
+  serialized_start=5932,
+  serialized_end=6037,
 )
 
 _GETMEMBERSRESPONSE.fields_by_name['member'].message_type = _LMMEMBER
@@ -2809,6 +2955,8 @@ _SORTAS.fields_by_name['sortType'].enum_type = _SORTAS_SORTTYPE
 _SORTAS_SORTTYPE.containing_type = _SORTAS
 _STOREREQUEST.fields_by_name['resultDocument'].message_type = _RESULTDOCUMENT
 _STOREREQUEST.fields_by_name['associatedDocument'].message_type = _ASSOCIATEDDOCUMENT
+_BATCHSTOREREQUEST.fields_by_name['storeRequest'].message_type = _STOREREQUEST
+_BATCHSTORERESPONSE.fields_by_name['storeStatus'].message_type = _STORESTATUS
 _LMDOC.fields_by_name['indexedField'].message_type = _LMFIELD
 _LMDOC.fields_by_name['facet'].message_type = _LMFACET
 _RESULTDOCUMENT.fields_by_name['metadata'].message_type = _METADATA
@@ -2876,6 +3024,9 @@ DESCRIPTOR.message_types_by_name['IndexDeleteRequest'] = _INDEXDELETEREQUEST
 DESCRIPTOR.message_types_by_name['IndexDeleteResponse'] = _INDEXDELETERESPONSE
 DESCRIPTOR.message_types_by_name['StoreRequest'] = _STOREREQUEST
 DESCRIPTOR.message_types_by_name['StoreResponse'] = _STORERESPONSE
+DESCRIPTOR.message_types_by_name['BatchStoreRequest'] = _BATCHSTOREREQUEST
+DESCRIPTOR.message_types_by_name['BatchStoreResponse'] = _BATCHSTORERESPONSE
+DESCRIPTOR.message_types_by_name['StoreStatus'] = _STORESTATUS
 DESCRIPTOR.message_types_by_name['LMDoc'] = _LMDOC
 DESCRIPTOR.message_types_by_name['LMFacet'] = _LMFACET
 DESCRIPTOR.message_types_by_name['LMField'] = _LMFIELD
@@ -3131,6 +3282,27 @@ StoreResponse = _reflection.GeneratedProtocolMessageType('StoreResponse', (_mess
   ))
 _sym_db.RegisterMessage(StoreResponse)
 
+BatchStoreRequest = _reflection.GeneratedProtocolMessageType('BatchStoreRequest', (_message.Message,), dict(
+  DESCRIPTOR = _BATCHSTOREREQUEST,
+  __module__ = 'lumongo_pb2'
+  # @@protoc_insertion_point(class_scope:BatchStoreRequest)
+  ))
+_sym_db.RegisterMessage(BatchStoreRequest)
+
+BatchStoreResponse = _reflection.GeneratedProtocolMessageType('BatchStoreResponse', (_message.Message,), dict(
+  DESCRIPTOR = _BATCHSTORERESPONSE,
+  __module__ = 'lumongo_pb2'
+  # @@protoc_insertion_point(class_scope:BatchStoreResponse)
+  ))
+_sym_db.RegisterMessage(BatchStoreResponse)
+
+StoreStatus = _reflection.GeneratedProtocolMessageType('StoreStatus', (_message.Message,), dict(
+  DESCRIPTOR = _STORESTATUS,
+  __module__ = 'lumongo_pb2'
+  # @@protoc_insertion_point(class_scope:StoreStatus)
+  ))
+_sym_db.RegisterMessage(StoreStatus)
+
 LMDoc = _reflection.GeneratedProtocolMessageType('LMDoc', (_message.Message,), dict(
   DESCRIPTOR = _LMDOC,
   __module__ = 'lumongo_pb2'
@@ -0,0 +1,110 @@
+package org.lumongo.benchmark;
+
+import org.lumongo.storage.lucene.MongoFile;
+import org.lumongo.storage.lucene.NosqlFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a block read from a MongoFile that hits the block cache against one that has to fetch the block from mongo.
+ * Needs a mongo server, see {@link org.lumongo.util.TestHelper#getMongo()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class BlockCacheBenchmark {
+
+	public static final int READ_SIZE = 4096;
+
+	private static final String DATA_FILE = "data.bin";
+
+	@Param({ "131072" })
+	public int blockSize;
+
+	@Param({ "64" })
+	public int blocks;
+
+	private StorageBackend.Storage storage;
+	private NosqlFile nosqlFile;
+	private Random random;
+	private byte[] buffer;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		storage = StorageBackend.MONGO.open(blockSize);
+
+		random = new Random(0);
+		NosqlFile writeFile = storage.getNosqlDirectory().getFileHandle(DATA_FILE, true);
+		byte[] block = new byte[blockSize];
+		for (int i = 0; i < blocks; i++) {
+			random.nextBytes(block);
+			writeFile.write((long) i * blockSize, block, 0, blockSize);
+		}
+		writeFile.flush();
+		writeFile.close();
+		storage.getNosqlDirectory().sync(Collections.singleton(DATA_FILE));
+
+		nosqlFile = storage.getNosqlDirectory().getFileHandle(DATA_FILE);
+		buffer = new byte[READ_SIZE];
+	}
+
+	/**
+	 * Loads every block of the file into the block cache before the reads of {@link #cacheHit}
+	 */
+	@Setup(Level.Iteration)
+	public void warm() throws IOException {
+		nosqlFile.warm();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		storage.close();
+		MongoFile.clearCache();
+	}
+
+	/**
+	 * Empties the block cache before every read of {@link #cacheMiss}
+	 */
+	@State(Scope.Thread)
+	public static class ColdCache {
+		@Setup(Level.Invocation)
+		public void clear() {
+			MongoFile.clearCache();
+		}
+	}
+
+	private byte readRandomBlock() throws IOException {
+		long position = (long) random.nextInt(blocks) * blockSize;
+		nosqlFile.readBytes(position, buffer, 0, READ_SIZE);
+		return buffer[0];
+	}
+
+	@Benchmark
+	public byte cacheHit() throws IOException {
+		return readRandomBlock();
+	}
+
+	@Benchmark
+	public byte cacheMiss(ColdCache coldCache) throws IOException {
+		return readRandomBlock();
+	}
+}
@@ -0,0 +1,198 @@
+package org.lumongo.benchmark;
+
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads through a lucene IndexInput, for the lumongo backends that is {@link org.lumongo.storage.lucene.DistributedIndexInput}
+ * with its block cursor.  Every operation reads {@link #READS} values, time is reported per value.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class IndexInputBenchmark {
+
+	public static final int READS = 4096;
+	public static final int READ_BYTES_SIZE = 1024;
+
+	private static final String DATA_FILE = "data.bin";
+	private static final String VINT_FILE = "vint.bin";
+
+	@Param({ "MEMORY", "OFFHEAP", "MAPPED", "LUCENE_MMAP", "LUCENE_RAM" })
+	public StorageBackend backend;
+
+	@Param({ "131072" })
+	public int blockSize;
+
+	@Param({ "16" })
+	public int fileSizeMB;
+
+	private StorageBackend.Storage storage;
+	private IndexInput dataInput;
+	private IndexInput vIntInput;
+	private long[] randomPositions;
+	private byte[] buffer;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		storage = backend.open(blockSize);
+
+		long fileSize = fileSizeMB * 1024L * 1024L;
+		Random random = new Random(0);
+
+		byte[] chunk = new byte[64 * 1024];
+		try (IndexOutput output = storage.getDirectory().createOutput(DATA_FILE, IOContext.DEFAULT)) {
+			for (long written = 0; written < fileSize; written += chunk.length) {
+				random.nextBytes(chunk);
+				output.writeBytes(chunk, chunk.length);
+			}
+		}
+
+		try (IndexOutput output = storage.getDirectory().createOutput(VINT_FILE, IOContext.DEFAULT)) {
+			while (output.getFilePointer() < fileSize) {
+				output.writeVInt(random.nextInt() >>> random.nextInt(32));
+			}
+		}
+
+		storage.getDirectory().sync(Arrays.asList(DATA_FILE, VINT_FILE));
+
+		dataInput = storage.getDirectory().openInput(DATA_FILE, IOContext.DEFAULT);
+		vIntInput = storage.getDirectory().openInput(VINT_FILE, IOContext.DEFAULT);
+
+		randomPositions = new long[READS];
+		for (int i = 0; i < READS; i++) {
+			randomPositions[i] = (long) (random.nextDouble() * (fileSize - Long.BYTES));
+		}
+		buffer = new byte[READ_BYTES_SIZE];
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		dataInput.close();
+		vIntInput.close();
+		storage.close();
+	}
+
+	/**
+	 * Wraps around to the start of the file when fewer than the needed bytes are left
+	 */
+	private static void ensureRemaining(IndexInput input, long needed) throws IOException {
+		if (input.length() - input.getFilePointer() < needed) {
+			input.seek(0);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(READS)
+	public int readByte() throws IOException {
+		ensureRemaining(dataInput, READS);
+		int sum = 0;
+		for (int i = 0; i < READS; i++) {
+			sum += dataInput.readByte();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(READS)
+	public int readBytes() throws IOException {
+		int sum = 0;
+		for (int i = 0; i < READS; i++) {
+			ensureRemaining(dataInput, READ_BYTES_SIZE);
+			dataInput.readBytes(buffer, 0, READ_BYTES_SIZE);
+			sum += buffer[0];
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(READS)
+	public int readShort() throws IOException {
+		ensureRemaining(dataInput, (long) READS * Short.BYTES);
+		int sum = 0;
+		for (int i = 0; i < READS; i++) {
+			sum += dataInput.readShort();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(READS)
+	public int readInt() throws IOException {
+		ensureRemaining(dataInput, (long) READS * Integer.BYTES);
+		int sum = 0;
+		for (int i = 0; i < READS; i++) {
+			sum += dataInput.readInt();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(READS)
+	public long readLong() throws IOException {
+		ensureRemaining(dataInput, (long) READS * Long.BYTES);
+		long sum = 0;
+		for (int i = 0; i < READS; i++) {
+			sum += dataInput.readLong();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(READS)
+	public int readVInt() throws IOException {
+		//a vint is at most 5 bytes
+		ensureRemaining(vIntInput, (long) READS * 5);
+		int sum = 0;
+		for (int i = 0; i < READS; i++) {
+			sum += vIntInput.readVInt();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(READS)
+	public long seekReadLong() throws IOException {
+		long sum = 0;
+		for (int i = 0; i < READS; i++) {
+			dataInput.seek(randomPositions[i]);
+			sum += dataInput.readLong();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(READS)
+	public long sliceReadLong() throws IOException {
+		IndexInput slice = dataInput.slice("slice", 0, dataInput.length());
+		long sum = 0;
+		for (int i = 0; i < READS; i++) {
+			slice.seek(randomPositions[i]);
+			sum += slice.readLong();
+		}
+		return sum;
+	}
+}
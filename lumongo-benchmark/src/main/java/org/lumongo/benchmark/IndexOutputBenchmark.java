@@ -0,0 +1,119 @@
+package org.lumongo.benchmark;
+
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes, syncs and deletes a whole file through a lucene IndexOutput, for the lumongo backends that is
+ * {@link org.lumongo.storage.lucene.DistributedIndexOutput}.  Time is reported per file, divide the file size by it
+ * for the write throughput.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class IndexOutputBenchmark {
+
+	public static final int WRITE_BYTES_SIZE = 4096;
+
+	@Param({ "MEMORY", "OFFHEAP", "MAPPED", "LUCENE_MMAP", "LUCENE_RAM" })
+	public StorageBackend backend;
+
+	@Param({ "131072" })
+	public int blockSize;
+
+	@Param({ "16" })
+	public int fileSizeMB;
+
+	private StorageBackend.Storage storage;
+	private long fileSize;
+	private byte[] bytes;
+	private int fileNumber;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		storage = backend.open(blockSize);
+		fileSize = fileSizeMB * 1024L * 1024L;
+		bytes = new byte[WRITE_BYTES_SIZE];
+		new Random(0).nextBytes(bytes);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		storage.close();
+	}
+
+	private interface FileWriter {
+		void write(IndexOutput output) throws IOException;
+	}
+
+	private long writeFile(FileWriter fileWriter) throws IOException {
+		String fileName = "out" + (fileNumber++);
+		long checksum;
+		try (IndexOutput output = storage.getDirectory().createOutput(fileName, IOContext.DEFAULT)) {
+			fileWriter.write(output);
+			checksum = output.getChecksum();
+		}
+		storage.getDirectory().sync(Collections.singleton(fileName));
+		storage.getDirectory().deleteFile(fileName);
+		return checksum;
+	}
+
+	@Benchmark
+	public long writeBytes() throws IOException {
+		return writeFile(output -> {
+			for (long written = 0; written < fileSize; written += WRITE_BYTES_SIZE) {
+				output.writeBytes(bytes, WRITE_BYTES_SIZE);
+			}
+		});
+	}
+
+	@Benchmark
+	public long writeByte() throws IOException {
+		return writeFile(output -> {
+			for (long written = 0; written < fileSize; written++) {
+				output.writeByte(bytes[(int) (written & (WRITE_BYTES_SIZE - 1))]);
+			}
+		});
+	}
+
+	@Benchmark
+	public long writeLong() throws IOException {
+		return writeFile(output -> {
+			for (long written = 0; written < fileSize; written += Long.BYTES) {
+				output.writeLong(written);
+			}
+		});
+	}
+
+	@Benchmark
+	public long writeVInt() throws IOException {
+		return writeFile(output -> {
+			int value = 0;
+			while (output.getFilePointer() < fileSize) {
+				output.writeVInt(value);
+				value += 127;
+			}
+		});
+	}
+}
@@ -0,0 +1,130 @@
+package org.lumongo.benchmark;
+
+import org.lumongo.storage.lucene.NosqlFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Positional reads straight from a {@link NosqlFile} without the block cursor of the index input, the path taken by
+ * readers that do not decode from the block.  Run with -p backend=MONGO for MongoFile.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class NosqlFileBenchmark {
+
+	public static final int READS = 4096;
+
+	private static final String DATA_FILE = "data.bin";
+
+	@Param({ "MEMORY", "OFFHEAP", "MAPPED" })
+	public StorageBackend backend;
+
+	@Param({ "131072" })
+	public int blockSize;
+
+	@Param({ "16" })
+	public int fileSizeMB;
+
+	@Param({ "1024" })
+	public int readBytesSize;
+
+	private StorageBackend.Storage storage;
+	private NosqlFile nosqlFile;
+	private long fileSize;
+	private long[] randomPositions;
+	private byte[] buffer;
+	private long position;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		if (!backend.isLumongo()) {
+			throw new IllegalArgumentException("Backend <" + backend + "> has no nosql file");
+		}
+		storage = backend.open(blockSize);
+		fileSize = fileSizeMB * 1024L * 1024L;
+
+		Random random = new Random(0);
+		NosqlFile writeFile = storage.getNosqlDirectory().getFileHandle(DATA_FILE, true);
+		byte[] chunk = new byte[64 * 1024];
+		for (long written = 0; written < fileSize; written += chunk.length) {
+			random.nextBytes(chunk);
+			writeFile.write(written, chunk, 0, chunk.length);
+		}
+		writeFile.flush();
+		writeFile.close();
+		storage.getNosqlDirectory().sync(Collections.singleton(DATA_FILE));
+
+		nosqlFile = storage.getNosqlDirectory().getFileHandle(DATA_FILE);
+
+		randomPositions = new long[READS];
+		for (int i = 0; i < READS; i++) {
+			randomPositions[i] = (long) (random.nextDouble() * (fileSize - readBytesSize));
+		}
+		buffer = new byte[readBytesSize];
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		storage.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(READS)
+	public int readByte() throws IOException {
+		if (position + READS > fileSize) {
+			position = 0;
+		}
+		int sum = 0;
+		for (int i = 0; i < READS; i++) {
+			sum += nosqlFile.readByte(position++);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(READS)
+	public int readBytes() throws IOException {
+		int sum = 0;
+		for (int i = 0; i < READS; i++) {
+			if (position + readBytesSize > fileSize) {
+				position = 0;
+			}
+			nosqlFile.readBytes(position, buffer, 0, readBytesSize);
+			position += readBytesSize;
+			sum += buffer[0];
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(READS)
+	public int randomReadBytes() throws IOException {
+		int sum = 0;
+		for (int i = 0; i < READS; i++) {
+			nosqlFile.readBytes(randomPositions[i], buffer, 0, readBytesSize);
+			sum += buffer[0];
+		}
+		return sum;
+	}
+}
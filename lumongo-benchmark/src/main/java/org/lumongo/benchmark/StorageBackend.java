@@ -0,0 +1,130 @@
+package org.lumongo.benchmark;
+
+import com.mongodb.MongoClient;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.lumongo.storage.lucene.DistributedDirectory;
+import org.lumongo.storage.lucene.MappedDirectory;
+import org.lumongo.storage.lucene.MemoryDirectory;
+import org.lumongo.storage.lucene.MongoDirectory;
+import org.lumongo.storage.lucene.NosqlDirectory;
+import org.lumongo.util.TestHelper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Storage a benchmark runs against.  The lumongo backends go through {@link DistributedDirectory} so they are measured
+ * the way the server uses them, the lucene directories are the baseline.  MONGO needs a mongo server, see
+ * {@link TestHelper#getMongo()}.
+ */
+public enum StorageBackend {
+
+	MEMORY,
+	OFFHEAP,
+	MAPPED,
+	MONGO,
+	LUCENE_MMAP,
+	LUCENE_RAM;
+
+	public static final String BENCHMARK_DATABASE_NAME = "lumongoBenchmark";
+	public static final String BENCHMARK_INDEX_NAME = "benchmark";
+
+	public boolean isLumongo() {
+		return this != LUCENE_MMAP && this != LUCENE_RAM;
+	}
+
+	/**
+	 * @param blockSize - block size of the lumongo backends
+	 * @return a new empty storage, closing it removes everything written to it
+	 */
+	public Storage open(int blockSize) throws IOException {
+		return new Storage(this, blockSize);
+	}
+
+	public static class Storage implements Closeable {
+
+		private final StorageBackend backend;
+		private final Path path;
+		private final MongoClient mongo;
+		private final NosqlDirectory nosqlDirectory;
+		private final Directory directory;
+
+		private Storage(StorageBackend backend, int blockSize) throws IOException {
+			this.backend = backend;
+			this.path = Files.createTempDirectory(BENCHMARK_DATABASE_NAME);
+
+			if (MONGO.equals(backend)) {
+				mongo = TestHelper.getMongo();
+				mongo.dropDatabase(BENCHMARK_DATABASE_NAME);
+			}
+			else {
+				mongo = null;
+			}
+
+			switch (backend) {
+				case MEMORY:
+					nosqlDirectory = new MemoryDirectory(BENCHMARK_DATABASE_NAME, BENCHMARK_INDEX_NAME, blockSize, false);
+					break;
+				case OFFHEAP:
+					nosqlDirectory = new MemoryDirectory(BENCHMARK_DATABASE_NAME, BENCHMARK_INDEX_NAME, blockSize, true);
+					break;
+				case MAPPED:
+					nosqlDirectory = new MappedDirectory(path, BENCHMARK_DATABASE_NAME, BENCHMARK_INDEX_NAME, blockSize);
+					break;
+				case MONGO:
+					nosqlDirectory = new MongoDirectory(mongo, BENCHMARK_DATABASE_NAME, BENCHMARK_INDEX_NAME, false, blockSize);
+					break;
+				default:
+					nosqlDirectory = null;
+			}
+
+			switch (backend) {
+				case LUCENE_MMAP:
+					directory = new MMapDirectory(path);
+					break;
+				case LUCENE_RAM:
+					directory = new RAMDirectory();
+					break;
+				default:
+					directory = new DistributedDirectory(nosqlDirectory);
+			}
+		}
+
+		/**
+		 * @return the nosql directory of a lumongo backend, null for the lucene baselines
+		 */
+		public NosqlDirectory getNosqlDirectory() {
+			return nosqlDirectory;
+		}
+
+		public Directory getDirectory() {
+			return directory;
+		}
+
+		@Override
+		public void close() throws IOException {
+			directory.close();
+			switch (backend) {
+				case MEMORY:
+				case OFFHEAP:
+					MemoryDirectory.dropIndex(BENCHMARK_DATABASE_NAME, BENCHMARK_INDEX_NAME);
+					break;
+				case MONGO:
+					mongo.dropDatabase(BENCHMARK_DATABASE_NAME);
+					mongo.close();
+					break;
+				default:
+					break;
+			}
+			try (Stream<Path> paths = Files.walk(path)) {
+				paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+			}
+		}
+	}
+}
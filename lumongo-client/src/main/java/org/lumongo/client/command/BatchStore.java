@@ -0,0 +1,62 @@
+package org.lumongo.client.command;
+
+import com.google.protobuf.RpcController;
+import com.google.protobuf.ServiceException;
+import org.lumongo.client.command.base.SimpleCommand;
+import org.lumongo.client.pool.LumongoConnection;
+import org.lumongo.client.result.BatchStoreResult;
+import org.lumongo.cluster.message.Lumongo.BatchStoreRequest;
+import org.lumongo.cluster.message.Lumongo.BatchStoreResponse;
+import org.lumongo.cluster.message.Lumongo.ExternalService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Stores many documents in one request, the node receiving it forwards each other node its documents in one request
+ */
+public class BatchStore extends SimpleCommand<BatchStoreRequest, BatchStoreResult> {
+	
+	private List<Store> stores;
+	
+	public BatchStore() {
+		stores = new ArrayList<Store>();
+	}
+	
+	public BatchStore addStore(Store store) {
+		stores.add(store);
+		return this;
+	}
+	
+	public BatchStore addStores(Collection<Store> stores) {
+		this.stores.addAll(stores);
+		return this;
+	}
+	
+	public int size() {
+		return stores.size();
+	}
+	
+	@Override
+	public BatchStoreRequest getRequest() {
+		BatchStoreRequest.Builder batchStoreRequest = BatchStoreRequest.newBuilder();
+		
+		for (Store store : stores) {
+			batchStoreRequest.addStoreRequest(store.getRequest());
+		}
+		
+		return batchStoreRequest.build();
+	}
+	
+	@Override
+	public BatchStoreResult execute(LumongoConnection lumongoConnection) throws ServiceException {
+		ExternalService.BlockingInterface service = lumongoConnection.getService();
+		RpcController controller = lumongoConnection.getController();
+		
+		BatchStoreResponse batchStoreResponse = service.batchStore(controller, getRequest());
+		
+		return new BatchStoreResult(batchStoreResponse);
+	}
+	
+}
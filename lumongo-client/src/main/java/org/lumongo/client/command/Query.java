@@ -35,6 +35,8 @@ public class Query extends SimpleCommand<QueryRequest, QueryResult> {
 	private int amount;
 	private Collection<String> indexes;
 	private Boolean realTime;
+	private Integer maxCacheStaleMs;
+	private Boolean refresh;
 	private QueryResult lastResult;
 	private List<CountRequest> countRequests = Collections.emptyList();
 	private List<LMFacet> drillDowns = Collections.emptyList();
@@ -104,6 +106,36 @@ public class Query extends SimpleCommand<QueryRequest, QueryResult> {
 		return realTime;
 	}
 	
+	/**
+	 * Allows each segment to answer from its query cache without checking the response was searched on its current
+	 * searcher, as long as the cached response is not older than the given age.  Without it cached responses are only
+	 * used until the searcher is next refreshed.
+	 * @param maxCacheStaleMs - maximum age of a cached response in milliseconds, 0 to only use cached responses that are current
+	 */
+	public Query setMaxCacheStaleMs(Integer maxCacheStaleMs) {
+		this.maxCacheStaleMs = maxCacheStaleMs;
+		return this;
+	}
+	
+	public Integer getMaxCacheStaleMs() {
+		return maxCacheStaleMs;
+	}
+	
+	/**
+	 * By default segments refresh their searchers before searching if they changed, unless the cluster refreshes them
+	 * in the background.  Not refreshing searches the segments as of their last refresh, so a query can miss changes
+	 * made since but does not wait on reopening the searchers that changed.
+	 * @param refresh - true to refresh the searchers before searching, false to use them as of their last refresh
+	 */
+	public Query setRefresh(Boolean refresh) {
+		this.refresh = refresh;
+		return this;
+	}
+	
+	public Boolean getRefresh() {
+		return refresh;
+	}
+	
 	public Boolean getDrillSideways() {
 		return drillSideways;
 	}
@@ -249,6 +281,12 @@ public class Query extends SimpleCommand<QueryRequest, QueryResult> {
 		if (realTime != null) {
 			requestBuilder.setRealTime(realTime);
 		}
+		if (maxCacheStaleMs != null) {
+			requestBuilder.setMaxCacheStaleMs(maxCacheStaleMs);
+		}
+		if (refresh != null) {
+			requestBuilder.setRefresh(refresh);
+		}
 		if (lastResult != null) {
 			requestBuilder.setLastResult(lastResult.getLastResult());
 		}
@@ -21,6 +21,7 @@ public class IndexConfig {
 	private Double segmentTolerance;
 	private Integer segmentQueryCacheSize;
 	private Integer segmentQueryCacheMaxAmount;
+	private Integer blockCacheWeight;
 	
 	private TreeMap<String, FieldConfig> fieldMap;
 	
@@ -148,6 +149,14 @@ public class IndexConfig {
 		this.segmentQueryCacheMaxAmount = segmentQueryCacheMaxAmount;
 	}
 
+	public Integer getBlockCacheWeight() {
+		return blockCacheWeight;
+	}
+
+	public void setBlockCacheWeight(Integer blockCacheWeight) {
+		this.blockCacheWeight = blockCacheWeight;
+	}
+
 	public void addFieldConfig(FieldConfigBuilder FieldConfigBuilder) {
 		addFieldConfig(FieldConfigBuilder.build());
 	}
@@ -200,6 +209,10 @@ public class IndexConfig {
 		if (segmentQueryCacheMaxAmount != null) {
 			isb.setSegmentQueryCacheMaxAmount(segmentQueryCacheMaxAmount);
 		}
+
+		if (blockCacheWeight != null) {
+			isb.setBlockCacheWeight(blockCacheWeight);
+		}
 		
 		for (String fieldName : fieldMap.keySet()) {
 			FieldConfig fieldConfig = fieldMap.get(fieldName);
@@ -221,6 +234,7 @@ public class IndexConfig {
 		this.segmentTolerance = indexSettings.getSegmentTolerance();
 		this.segmentQueryCacheSize = indexSettings.getSegmentQueryCacheSize();
 		this.segmentQueryCacheMaxAmount = indexSettings.getSegmentQueryCacheMaxAmount();
+		this.blockCacheWeight = indexSettings.getBlockCacheWeight();
 		this.fieldMap = new TreeMap<>();
 		
 		for (FieldConfig fc : indexSettings.getFieldConfigList()) {
@@ -6,6 +6,7 @@ import org.lumongo.client.config.IndexConfig;
 import org.lumongo.client.config.LumongoPoolConfig;
 import org.lumongo.client.result.BatchDeleteResult;
 import org.lumongo.client.result.BatchFetchResult;
+import org.lumongo.client.result.BatchStoreResult;
 import org.lumongo.client.result.ClearIndexResult;
 import org.lumongo.client.result.CreateIndexResult;
 import org.lumongo.client.result.CreateOrUpdateIndexResult;
@@ -87,6 +88,14 @@ public class LumongoWorkPool extends LumongoBaseWorkPool {
 		return executeAsync(batchDelete);
 	}
 
+	public BatchStoreResult batchStore(BatchStore batchStore) throws Exception {
+		return execute(batchStore);
+	}
+
+	public ListenableFuture<BatchStoreResult> batchStoreAsync(BatchStore batchStore) throws Exception {
+		return executeAsync(batchStore);
+	}
+
 	public DeleteIndexResult deleteIndex(String indexName) throws Exception {
 		return execute(new DeleteIndex(indexName));
 	}
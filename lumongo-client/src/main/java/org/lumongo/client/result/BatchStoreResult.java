@@ -0,0 +1,43 @@
+package org.lumongo.client.result;
+
+import org.lumongo.cluster.message.Lumongo.BatchStoreResponse;
+import org.lumongo.cluster.message.Lumongo.StoreStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchStoreResult extends Result {
+	
+	private BatchStoreResponse batchStoreResponse;
+	
+	public BatchStoreResult(BatchStoreResponse batchStoreResponse) {
+		this.batchStoreResponse = batchStoreResponse;
+	}
+	
+	/**
+	 * @return the status of every store in the order they were added to the batch
+	 */
+	public List<StoreStatus> getStoreStatuses() {
+		return batchStoreResponse.getStoreStatusList();
+	}
+	
+	public List<StoreStatus> getFailedStoreStatuses() {
+		List<StoreStatus> failed = new ArrayList<StoreStatus>();
+		for (StoreStatus storeStatus : batchStoreResponse.getStoreStatusList()) {
+			if (!storeStatus.getStored()) {
+				failed.add(storeStatus);
+			}
+		}
+		return failed;
+	}
+	
+	public boolean isAllStored() {
+		for (StoreStatus storeStatus : batchStoreResponse.getStoreStatusList()) {
+			if (!storeStatus.getStored()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+}
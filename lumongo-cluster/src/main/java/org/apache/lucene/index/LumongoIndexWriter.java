@@ -35,6 +35,27 @@ public class LumongoIndexWriter extends IndexWriter {
 		return r;
 	}
 
+	/**
+	 * @return a new reader if the index changed since the given reader from {@link #getReader(boolean, boolean)} was
+	 * opened, null if it is still current
+	 */
+	public DirectoryReader openIfChanged(DirectoryReader reader, boolean applyAllDeletes, boolean realTime) throws IOException {
+
+		if (realTime) {
+			return DirectoryReader.openIfChanged(reader, this, applyAllDeletes);
+		}
+
+		ensureOpen();
+
+		synchronized (this) {
+			maybeApplyDeletes(applyAllDeletes);
+			if (reader.getVersion() == segmentInfos.getVersion()) {
+				return null;
+			}
+			return StandardDirectoryReader.open(this, segmentInfos, applyAllDeletes);
+		}
+	}
+
 	public void flush(boolean applyAllDeletes) throws CorruptIndexException, IOException {
 		flush(false, applyAllDeletes);
 	}
@@ -9,13 +9,17 @@ import org.lumongo.server.config.Nodes;
 import org.lumongo.server.connection.ExternalServiceHandler;
 import org.lumongo.server.connection.InternalServiceHandler;
 import org.lumongo.server.hazelcast.HazelcastManager;
+import org.lumongo.server.indexing.LumongoIndex;
 import org.lumongo.server.indexing.LumongoIndexManager;
+import org.lumongo.server.indexing.LumongoSegment;
 import org.lumongo.server.rest.RestServiceManager;
+import org.lumongo.storage.lucene.DistributedDirectory;
 import org.lumongo.storage.lucene.MongoDirectory;
 import org.lumongo.util.ClusterHelper;
 import org.lumongo.util.LogUtil;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 
 public class LuceneNode {
 	private final static Logger log = Logger.getLogger(LuceneNode.class);
@@ -44,7 +48,19 @@ public class LuceneNode {
 
 		log.info("Loaded cluster config: <" + clusterConfig + ">");
 
-		MongoDirectory.setMaxIndexBlocks(clusterConfig.getMaxIndexBlocks());
+		MongoDirectory.setBlockCacheSize(clusterConfig.getIndexBlockCacheSize());
+		MongoDirectory.setBlockCacheOffHeap(clusterConfig.isIndexBlockCacheOffHeap());
+		DistributedDirectory.setReadAheadBlocks(clusterConfig.getIndexReadAheadBlocks());
+		MongoDirectory.setFlushBatchSize(clusterConfig.getIndexFlushBatchSize());
+		LumongoSegment.setSearcherRefreshMs(clusterConfig.getSearcherRefreshMs());
+		LumongoIndex.setDocumentConversionThreads(clusterConfig.getDocumentConversionThreads());
+		LumongoSegment.setIndexingBufferMB(clusterConfig.getIndexingBufferMB());
+		if (localNodeConfig.hasDiskCache()) {
+			MongoDirectory.setDiskCache(Paths.get(localNodeConfig.getDiskCacheDirectory()), localNodeConfig.getDiskCacheMB() * 1024L * 1024L);
+		}
+		if (localNodeConfig.hasScratchDirectory()) {
+			DistributedDirectory.setScratchRoot(Paths.get(localNodeConfig.getScratchDirectory()));
+		}
 
 		this.indexManager = new LumongoIndexManager(mongoConfig, clusterConfig);
 
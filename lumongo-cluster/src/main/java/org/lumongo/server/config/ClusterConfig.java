@@ -1,23 +1,62 @@
 package org.lumongo.server.config;
 
 import org.bson.Document;
+import org.lumongo.server.indexing.LumongoSegment;
+import org.lumongo.storage.lucene.DistributedDirectory;
+import org.lumongo.storage.lucene.MongoDirectory;
 import org.lumongo.util.properties.PropertiesReader;
 import org.lumongo.util.properties.PropertiesReader.PropertyException;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ClusterConfig {
 	
 	public static final String SHARDED = "sharded";
 	public static final String INDEX_BLOCK_SIZE = "indexBlockSize";
 	public static final String MAX_INDEX_BLOCKS = "maxIndexBlocks";
+	public static final String INDEX_BLOCK_CACHE_MB = "indexBlockCacheMB";
+	public static final String INDEX_BLOCK_CACHE_OFF_HEAP = "indexBlockCacheOffHeap";
+	public static final String INDEX_READ_AHEAD_BLOCKS = "indexReadAheadBlocks";
+	public static final String INDEX_FLUSH_BATCH_SIZE = "indexFlushBatchSize";
+	public static final String INDEX_WARM_FILE_TYPES = "indexWarmFileTypes";
+	public static final String INDEX_STORAGE = "indexStorage";
+	public static final String LOCAL_STORAGE_DIRECTORY = "localStorageDirectory";
+	public static final String SEARCHER_REFRESH_MS = "searcherRefreshMs";
+	public static final String DOCUMENT_CONVERSION_THREADS = "documentConversionThreads";
+	public static final String INDEXING_BUFFER_MB = "indexingBufferMB";
 	public static final String MAX_INTERNAL_CLIENT_CONNECTIONS = "maxInternalClientConnections";
 	public static final String INTERNAL_WORKERS = "internalWorkers";
 	public static final String EXTERNAL_WORKERS = "externalWorkers";
 	public static final String INTERNAL_SHUTDOWN_TIMEOUT = "internalShutdownTimeout";
 	public static final String EXTERNAL_SHUTDOWN_TIMEOUT = "externalShutdownTimeout";
 	
+	public static final String DEFAULT_INDEX_WARM_FILE_TYPES = "tip,nvd,dvd";
+
+	/**
+	 * Where index segments and stored documents are kept, cluster and index settings are always kept in mongo
+	 */
+	public enum IndexStorage {
+		/**
+		 * mongo, the only storage shared between nodes
+		 */
+		MONGO,
+		/**
+		 * java heap of the node, lost when the node stops
+		 */
+		MEMORY,
+		/**
+		 * direct memory of the node for index files and the java heap for documents, lost when the node stops
+		 */
+		OFFHEAP,
+		/**
+		 * memory mapped files under localStorageDirectory
+		 */
+		MAPPED
+	}
+	
 	public static ClusterConfig getClusterConfig(File propertiesFile) throws IOException, PropertyException {
 		PropertiesReader propertiesReader = new PropertiesReader(propertiesFile);
 		return new ClusterConfig(propertiesReader);
@@ -34,6 +73,16 @@ public class ClusterConfig {
 	// general
 	private int indexBlockSize;
 	private int maxIndexBlocks;
+	private int indexBlockCacheMB;
+	private boolean indexBlockCacheOffHeap;
+	private int indexReadAheadBlocks = DistributedDirectory.DEFAULT_READ_AHEAD_BLOCKS;
+	private int indexFlushBatchSize = MongoDirectory.DEFAULT_FLUSH_BATCH_SIZE;
+	private String indexWarmFileTypes = DEFAULT_INDEX_WARM_FILE_TYPES;
+	private IndexStorage indexStorage = IndexStorage.MONGO;
+	private String localStorageDirectory;
+	private long searcherRefreshMs = LumongoSegment.DEFAULT_SEARCHER_REFRESH_MS;
+	private int documentConversionThreads;
+	private int indexingBufferMB;
 	
 	// sockets
 	private int maxInternalClientConnections;
@@ -54,6 +103,36 @@ public class ClusterConfig {
 		
 		indexBlockSize = propertiesReader.getInteger(INDEX_BLOCK_SIZE);
 		maxIndexBlocks = propertiesReader.getInteger(MAX_INDEX_BLOCKS);
+		if (propertiesReader.hasKey(INDEX_BLOCK_CACHE_MB)) {
+			indexBlockCacheMB = propertiesReader.getInteger(INDEX_BLOCK_CACHE_MB);
+		}
+		if (propertiesReader.hasKey(INDEX_BLOCK_CACHE_OFF_HEAP)) {
+			indexBlockCacheOffHeap = propertiesReader.getBoolean(INDEX_BLOCK_CACHE_OFF_HEAP);
+		}
+		if (propertiesReader.hasKey(INDEX_READ_AHEAD_BLOCKS)) {
+			indexReadAheadBlocks = propertiesReader.getInteger(INDEX_READ_AHEAD_BLOCKS);
+		}
+		if (propertiesReader.hasKey(INDEX_FLUSH_BATCH_SIZE)) {
+			indexFlushBatchSize = propertiesReader.getInteger(INDEX_FLUSH_BATCH_SIZE);
+		}
+		if (propertiesReader.hasKey(INDEX_WARM_FILE_TYPES)) {
+			indexWarmFileTypes = propertiesReader.getString(INDEX_WARM_FILE_TYPES);
+		}
+		if (propertiesReader.hasKey(INDEX_STORAGE)) {
+			indexStorage = IndexStorage.valueOf(propertiesReader.getString(INDEX_STORAGE).toUpperCase());
+		}
+		if (propertiesReader.hasKey(LOCAL_STORAGE_DIRECTORY)) {
+			localStorageDirectory = propertiesReader.getString(LOCAL_STORAGE_DIRECTORY);
+		}
+		if (propertiesReader.hasKey(SEARCHER_REFRESH_MS)) {
+			searcherRefreshMs = propertiesReader.getInteger(SEARCHER_REFRESH_MS);
+		}
+		if (propertiesReader.hasKey(DOCUMENT_CONVERSION_THREADS)) {
+			documentConversionThreads = propertiesReader.getInteger(DOCUMENT_CONVERSION_THREADS);
+		}
+		if (propertiesReader.hasKey(INDEXING_BUFFER_MB)) {
+			indexingBufferMB = propertiesReader.getInteger(INDEXING_BUFFER_MB);
+		}
 		
 		maxInternalClientConnections = propertiesReader.getInteger(MAX_INTERNAL_CLIENT_CONNECTIONS);
 		internalWorkers = propertiesReader.getInteger(INTERNAL_WORKERS);
@@ -75,6 +154,79 @@ public class ClusterConfig {
 	public int getMaxIndexBlocks() {
 		return maxIndexBlocks;
 	}
+
+	public int getIndexBlockCacheMB() {
+		return indexBlockCacheMB;
+	}
+
+	/**
+	 * @return the size of the node block cache in bytes, using maxIndexBlocks full blocks if indexBlockCacheMB is not set
+	 */
+	public long getIndexBlockCacheSize() {
+		if (indexBlockCacheMB > 0) {
+			return indexBlockCacheMB * 1024L * 1024L;
+		}
+		return (long) maxIndexBlocks * indexBlockSize;
+	}
+
+	public boolean isIndexBlockCacheOffHeap() {
+		return indexBlockCacheOffHeap;
+	}
+
+	public int getIndexReadAheadBlocks() {
+		return indexReadAheadBlocks;
+	}
+
+	public int getIndexFlushBatchSize() {
+		return indexFlushBatchSize;
+	}
+
+	/**
+	 * @return extensions of the index files loaded into the block cache when a segment is loaded, empty to disable
+	 */
+	public List<String> getIndexWarmFileTypes() {
+		List<String> fileTypes = new ArrayList<>();
+		for (String fileType : indexWarmFileTypes.split(",")) {
+			fileType = fileType.trim();
+			if (!fileType.isEmpty()) {
+				fileTypes.add(fileType);
+			}
+		}
+		return fileTypes;
+	}
+
+	public IndexStorage getIndexStorage() {
+		return indexStorage;
+	}
+
+	/**
+	 * @return directory memory mapped index segments and stored documents are kept under, null if not set
+	 */
+	public String getLocalStorageDirectory() {
+		return localStorageDirectory;
+	}
+
+	/**
+	 * @return milliseconds between background refreshes of the segment searchers, which opts searches into seeing changes
+	 * up to this old, 0 to refresh before every search instead
+	 */
+	public long getSearcherRefreshMs() {
+		return searcherRefreshMs;
+	}
+
+	/**
+	 * @return threads converting the documents of batch stores on a node, 0 for the number of available processors
+	 */
+	public int getDocumentConversionThreads() {
+		return documentConversionThreads;
+	}
+
+	/**
+	 * @return megabytes of buffered documents shared by the index writers of a node, 0 for a share of the max heap
+	 */
+	public int getIndexingBufferMB() {
+		return indexingBufferMB;
+	}
 	
 	public int getMaxInternalClientConnections() {
 		return maxInternalClientConnections;
@@ -101,6 +253,18 @@ public class ClusterConfig {
 		document.put(SHARDED, sharded);
 		document.put(INDEX_BLOCK_SIZE, indexBlockSize);
 		document.put(MAX_INDEX_BLOCKS, maxIndexBlocks);
+		document.put(INDEX_BLOCK_CACHE_MB, indexBlockCacheMB);
+		document.put(INDEX_BLOCK_CACHE_OFF_HEAP, indexBlockCacheOffHeap);
+		document.put(INDEX_READ_AHEAD_BLOCKS, indexReadAheadBlocks);
+		document.put(INDEX_FLUSH_BATCH_SIZE, indexFlushBatchSize);
+		document.put(INDEX_WARM_FILE_TYPES, indexWarmFileTypes);
+		document.put(INDEX_STORAGE, indexStorage.name());
+		if (localStorageDirectory != null) {
+			document.put(LOCAL_STORAGE_DIRECTORY, localStorageDirectory);
+		}
+		document.put(SEARCHER_REFRESH_MS, searcherRefreshMs);
+		document.put(DOCUMENT_CONVERSION_THREADS, documentConversionThreads);
+		document.put(INDEXING_BUFFER_MB, indexingBufferMB);
 		document.put(MAX_INTERNAL_CLIENT_CONNECTIONS, maxInternalClientConnections);
 		document.put(INTERNAL_WORKERS, internalWorkers);
 		document.put(EXTERNAL_WORKERS, externalWorkers);
@@ -115,6 +279,36 @@ public class ClusterConfig {
 		clusterConfig.sharded = (boolean) settings.get(SHARDED);
 		clusterConfig.indexBlockSize = (int) settings.get(INDEX_BLOCK_SIZE);
 		clusterConfig.maxIndexBlocks = (int) settings.get(MAX_INDEX_BLOCKS);
+		if (settings.containsKey(INDEX_BLOCK_CACHE_MB)) {
+			clusterConfig.indexBlockCacheMB = (int) settings.get(INDEX_BLOCK_CACHE_MB);
+		}
+		if (settings.containsKey(INDEX_BLOCK_CACHE_OFF_HEAP)) {
+			clusterConfig.indexBlockCacheOffHeap = (boolean) settings.get(INDEX_BLOCK_CACHE_OFF_HEAP);
+		}
+		if (settings.containsKey(INDEX_READ_AHEAD_BLOCKS)) {
+			clusterConfig.indexReadAheadBlocks = (int) settings.get(INDEX_READ_AHEAD_BLOCKS);
+		}
+		if (settings.containsKey(INDEX_FLUSH_BATCH_SIZE)) {
+			clusterConfig.indexFlushBatchSize = (int) settings.get(INDEX_FLUSH_BATCH_SIZE);
+		}
+		if (settings.containsKey(INDEX_WARM_FILE_TYPES)) {
+			clusterConfig.indexWarmFileTypes = (String) settings.get(INDEX_WARM_FILE_TYPES);
+		}
+		if (settings.containsKey(INDEX_STORAGE)) {
+			clusterConfig.indexStorage = IndexStorage.valueOf((String) settings.get(INDEX_STORAGE));
+		}
+		if (settings.containsKey(LOCAL_STORAGE_DIRECTORY)) {
+			clusterConfig.localStorageDirectory = (String) settings.get(LOCAL_STORAGE_DIRECTORY);
+		}
+		if (settings.containsKey(SEARCHER_REFRESH_MS)) {
+			clusterConfig.searcherRefreshMs = ((Number) settings.get(SEARCHER_REFRESH_MS)).longValue();
+		}
+		if (settings.containsKey(DOCUMENT_CONVERSION_THREADS)) {
+			clusterConfig.documentConversionThreads = (int) settings.get(DOCUMENT_CONVERSION_THREADS);
+		}
+		if (settings.containsKey(INDEXING_BUFFER_MB)) {
+			clusterConfig.indexingBufferMB = (int) settings.get(INDEXING_BUFFER_MB);
+		}
 		clusterConfig.maxInternalClientConnections = (int) settings.get(MAX_INTERNAL_CLIENT_CONNECTIONS);
 		clusterConfig.internalWorkers = (int) settings.get(INTERNAL_WORKERS);
 		clusterConfig.externalWorkers = (int) settings.get(EXTERNAL_WORKERS);
@@ -126,6 +320,11 @@ public class ClusterConfig {
 	@Override
 	public String toString() {
 		return "ClusterConfig [sharded=" + sharded + ", indexBlockSize=" + indexBlockSize + ", maxIndexBlocks=" + maxIndexBlocks
+						+ ", indexBlockCacheMB=" + indexBlockCacheMB + ", indexBlockCacheOffHeap=" + indexBlockCacheOffHeap
+						+ ", indexReadAheadBlocks=" + indexReadAheadBlocks + ", indexFlushBatchSize=" + indexFlushBatchSize
+						+ ", indexWarmFileTypes=" + indexWarmFileTypes + ", indexStorage=" + indexStorage + ", localStorageDirectory=" + localStorageDirectory
+						+ ", searcherRefreshMs=" + searcherRefreshMs + ", documentConversionThreads=" + documentConversionThreads
+						+ ", indexingBufferMB=" + indexingBufferMB
 						+ ", maxInternalClientConnections=" + maxInternalClientConnections + ", internalWorkers=" + internalWorkers + ", externalWorkers="
 						+ externalWorkers + ", internalShutdownTimeout=" + internalShutdownTimeout + ", externalShutdownTimeout=" + externalShutdownTimeout
 						+ "]";
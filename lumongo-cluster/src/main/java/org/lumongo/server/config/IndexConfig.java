@@ -31,6 +31,8 @@ public class IndexConfig {
 	public static final String SEGMENT_QUERY_CACHE_SIZE = "segmentQueryCacheSize";
 	public static final String SEGMENT_QUERY_CACHE_MAX_AMOUNT = "segmentQueryCacheMaxAmount";
 	public static final String SEGMENT_TOLERANCE = "segmentTolerance";
+	public static final String BLOCK_CACHE_WEIGHT = "blockCacheWeight";
+	public static final String BLOCK_COMPRESSION = "blockCompression";
 	public static final String FIELD_CONFIGS = "fieldConfigs";
 	public static final String STORED_FIELD_NAME = "storedFieldName";
 	public static final String INDEXED_FIELD_NAME = "indexedFieldName";
@@ -55,6 +57,7 @@ public class IndexConfig {
 	private int segmentCommitInterval;
 	private int segmentQueryCacheSize;
 	private int segmentQueryCacheMaxAmount;
+	private int blockCacheWeight;
 
 	private boolean blockCompression;
 	private double segmentTolerance;
@@ -153,6 +156,17 @@ public class IndexConfig {
 			indexConfig.segmentQueryCacheMaxAmount = (int) settings.get(SEGMENT_QUERY_CACHE_MAX_AMOUNT);
 		}
 
+		if (settings.containsKey(BLOCK_CACHE_WEIGHT)) {
+			indexConfig.blockCacheWeight = (int) settings.get(BLOCK_CACHE_WEIGHT);
+		}
+		else {
+			indexConfig.blockCacheWeight = 1;
+		}
+
+		if (settings.containsKey(BLOCK_COMPRESSION)) {
+			indexConfig.blockCompression = (boolean) settings.get(BLOCK_COMPRESSION);
+		}
+
 		if (settings.containsKey(SEGMENT_FLUSH_INTERVAL)) {
 			indexConfig.segmentFlushInterval = (int) settings.get(SEGMENT_FLUSH_INTERVAL);
 		}
@@ -212,11 +226,13 @@ public class IndexConfig {
 		this.minSegmentRequest = indexSettings.getMinSegmentRequest();
 		this.blockCompression = indexSettings.getBlockCompression();
 		this.segmentCommitInterval = indexSettings.getSegmentCommitInterval();
-		this.segmentFlushInterval = indexSettings.getSegmentFlushInterval();
+		//flushes are driven by the node's indexing buffer unless the client asks for an interval
+		this.segmentFlushInterval = indexSettings.hasSegmentFlushInterval() ? indexSettings.getSegmentFlushInterval() : 0;
 		this.idleTimeWithoutCommit = indexSettings.getIdleTimeWithoutCommit();
 		this.segmentTolerance = indexSettings.getSegmentTolerance();
 		this.segmentQueryCacheSize = indexSettings.getSegmentQueryCacheSize();
 		this.segmentQueryCacheMaxAmount = indexSettings.getSegmentQueryCacheMaxAmount();
+		this.blockCacheWeight = indexSettings.getBlockCacheWeight();
 
 		ConcurrentHashMap<String, FieldConfig> fieldConfigMap = new ConcurrentHashMap<>();
 
@@ -245,6 +261,7 @@ public class IndexConfig {
 		isb.setSegmentFlushInterval(segmentFlushInterval);
 		isb.setSegmentQueryCacheSize(segmentQueryCacheSize);
 		isb.setSegmentQueryCacheMaxAmount(segmentQueryCacheMaxAmount);
+		isb.setBlockCacheWeight(blockCacheWeight);
 		return isb.build();
 	}
 
@@ -352,6 +369,14 @@ public class IndexConfig {
 		return segmentQueryCacheMaxAmount;
 	}
 
+	public int getBlockCacheWeight() {
+		return blockCacheWeight;
+	}
+
+	public boolean isBlockCompression() {
+		return blockCompression;
+	}
+
 	public Document toDocument() {
 		Document dbObject = new Document();
 		dbObject.put(DEFAULT_SEARCH_FIELD, defaultSearchField);
@@ -367,6 +392,8 @@ public class IndexConfig {
 		dbObject.put(SEGMENT_FLUSH_INTERVAL, segmentFlushInterval);
 		dbObject.put(SEGMENT_QUERY_CACHE_SIZE, segmentQueryCacheSize);
 		dbObject.put(SEGMENT_QUERY_CACHE_MAX_AMOUNT, segmentQueryCacheMaxAmount);
+		dbObject.put(BLOCK_CACHE_WEIGHT, blockCacheWeight);
+		dbObject.put(BLOCK_COMPRESSION, blockCompression);
 
 		List<Document> fieldConfigs = new ArrayList<>();
 		for (FieldConfig fc : fieldConfigMap.values()) {
@@ -417,7 +444,8 @@ public class IndexConfig {
 						+ requestFactor + ", minSegmentRequest=" + minSegmentRequest + ", numberOfSegments=" + numberOfSegments + ", indexName=" + indexName
 						+ ", uniqueIdField=" + uniqueIdField + ", idleTimeWithoutCommit=" + idleTimeWithoutCommit + ", segmentFlushInterval="
 						+ segmentFlushInterval + ", segmentCommitInterval=" + segmentCommitInterval + ", segmentQueryCacheSize=" + segmentQueryCacheSize
-						+ ", segmentQueryCacheMaxAmount=" + segmentQueryCacheMaxAmount + ", segmentTolerance="
+						+ ", segmentQueryCacheMaxAmount=" + segmentQueryCacheMaxAmount + ", blockCacheWeight=" + blockCacheWeight + ", blockCompression=" + blockCompression
+						+ ", segmentTolerance="
 						+ segmentTolerance + ", fieldConfigMap=" + fieldConfigMap + ", indexAsMap=" + indexAsMap + "]";
 	}
 	
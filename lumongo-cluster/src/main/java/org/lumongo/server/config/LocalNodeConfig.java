@@ -13,6 +13,11 @@ public class LocalNodeConfig {
 	public static final String INTERNAL_SERVICE_PORT = "internalServicePort";
 	public static final String EXTERNAL_SERVICE_PORT = "externalServicePort";
 	public static final String REST_PORT = "restPort";
+	public static final String DISK_CACHE_DIRECTORY = "diskCacheDirectory";
+	public static final String DISK_CACHE_MB = "diskCacheMB";
+	public static final String SCRATCH_DIRECTORY = "scratchDirectory";
+
+	public static final int DEFAULT_DISK_CACHE_MB = 10240;
 	
 	public static LocalNodeConfig getNodeConfig(File propertiesFile) throws IOException, PropertyException {
 		PropertiesReader propertiesReader = new PropertiesReader(propertiesFile);
@@ -32,9 +37,17 @@ public class LocalNodeConfig {
 	private int externalServicePort;
 	
 	private int restPort;
+
+	// local disk tier of the index block cache
+	private String diskCacheDirectory;
+	private int diskCacheMB;
+
+	// local directory new index files are written to until they are committed
+	private String scratchDirectory;
 	
 	protected LocalNodeConfig() {
 		restPort = -1;
+		diskCacheMB = DEFAULT_DISK_CACHE_MB;
 	}
 	
 	public LocalNodeConfig(PropertiesReader propertiesReader) throws PropertyException {
@@ -45,6 +58,15 @@ public class LocalNodeConfig {
 		if (propertiesReader.hasKey(REST_PORT)) {
 			restPort = propertiesReader.getInteger(REST_PORT);
 		}
+		if (propertiesReader.hasKey(DISK_CACHE_DIRECTORY)) {
+			diskCacheDirectory = propertiesReader.getString(DISK_CACHE_DIRECTORY);
+		}
+		if (propertiesReader.hasKey(DISK_CACHE_MB)) {
+			diskCacheMB = propertiesReader.getInteger(DISK_CACHE_MB);
+		}
+		if (propertiesReader.hasKey(SCRATCH_DIRECTORY)) {
+			scratchDirectory = propertiesReader.getString(SCRATCH_DIRECTORY);
+		}
 	}
 	
 	public int getHazelcastPort() {
@@ -62,6 +84,26 @@ public class LocalNodeConfig {
 	public int getRestPort() {
 		return restPort;
 	}
+
+	public String getDiskCacheDirectory() {
+		return diskCacheDirectory;
+	}
+
+	public int getDiskCacheMB() {
+		return diskCacheMB;
+	}
+
+	public boolean hasDiskCache() {
+		return (diskCacheDirectory != null);
+	}
+
+	public String getScratchDirectory() {
+		return scratchDirectory;
+	}
+
+	public boolean hasScratchDirectory() {
+		return (scratchDirectory != null);
+	}
 	
 	public Document toDocument() {
 		Document document = new Document();
@@ -69,6 +111,13 @@ public class LocalNodeConfig {
 		document.put(INTERNAL_SERVICE_PORT, internalServicePort);
 		document.put(EXTERNAL_SERVICE_PORT, externalServicePort);
 		document.put(REST_PORT, restPort);
+		if (diskCacheDirectory != null) {
+			document.put(DISK_CACHE_DIRECTORY, diskCacheDirectory);
+		}
+		document.put(DISK_CACHE_MB, diskCacheMB);
+		if (scratchDirectory != null) {
+			document.put(SCRATCH_DIRECTORY, scratchDirectory);
+		}
 		return document;
 		
 	}
@@ -85,6 +134,15 @@ public class LocalNodeConfig {
 		if (settings.containsKey(REST_PORT)) {
 			localNodeConfig.restPort = (int) settings.get(REST_PORT);
 		}
+		if (settings.containsKey(DISK_CACHE_DIRECTORY)) {
+			localNodeConfig.diskCacheDirectory = (String) settings.get(DISK_CACHE_DIRECTORY);
+		}
+		if (settings.containsKey(DISK_CACHE_MB)) {
+			localNodeConfig.diskCacheMB = (int) settings.get(DISK_CACHE_MB);
+		}
+		if (settings.containsKey(SCRATCH_DIRECTORY)) {
+			localNodeConfig.scratchDirectory = (String) settings.get(SCRATCH_DIRECTORY);
+		}
 		
 		return localNodeConfig;
 	}
@@ -92,7 +150,8 @@ public class LocalNodeConfig {
 	@Override
 	public String toString() {
 		return "LocalNodeConfig [hazelcastPort=" + hazelcastPort + ", internalServicePort=" + internalServicePort + ", externalServicePort="
-						+ externalServicePort + ", restPort=" + restPort + "]";
+						+ externalServicePort + ", restPort=" + restPort + ", diskCacheDirectory=" + diskCacheDirectory + ", diskCacheMB=" + diskCacheMB
+						+ ", scratchDirectory=" + scratchDirectory + "]";
 	}
 	
 }
@@ -18,6 +18,8 @@ import org.lumongo.cluster.message.Lumongo.BatchDeleteRequest;
 import org.lumongo.cluster.message.Lumongo.BatchDeleteResponse;
 import org.lumongo.cluster.message.Lumongo.BatchFetchRequest;
 import org.lumongo.cluster.message.Lumongo.BatchFetchResponse;
+import org.lumongo.cluster.message.Lumongo.BatchStoreRequest;
+import org.lumongo.cluster.message.Lumongo.BatchStoreResponse;
 import org.lumongo.cluster.message.Lumongo.ClearRequest;
 import org.lumongo.cluster.message.Lumongo.ClearResponse;
 import org.lumongo.cluster.message.Lumongo.DeleteRequest;
@@ -334,6 +336,19 @@ public class ExternalServiceHandler extends ExternalService {
 		}
 	}
 	
+	@Override
+	public void batchStore(RpcController controller, BatchStoreRequest request, RpcCallback<BatchStoreResponse> done) {
+		try {
+			BatchStoreResponse r = indexManger.batchStore(request);
+			done.run(r);
+		}
+		catch (Exception e) {
+			log.error("Failed to batch store: <" + request.getStoreRequestCount() + "> documents: " + e.getClass().getSimpleName() + ": ", e);
+			controller.setFailed(e.getMessage());
+			done.run(null);
+		}
+	}
+	
 	@Override
 	public void batchDelete(RpcController controller, BatchDeleteRequest request, RpcCallback<BatchDeleteResponse> done) {
 		try {
@@ -3,6 +3,8 @@ package org.lumongo.server.connection;
 import com.google.protobuf.RpcController;
 import com.hazelcast.core.Member;
 import org.apache.log4j.Logger;
+import org.lumongo.cluster.message.Lumongo.BatchStoreRequest;
+import org.lumongo.cluster.message.Lumongo.BatchStoreResponse;
 import org.lumongo.cluster.message.Lumongo.ClearRequest;
 import org.lumongo.cluster.message.Lumongo.ClearResponse;
 import org.lumongo.cluster.message.Lumongo.DeleteRequest;
@@ -204,6 +206,34 @@ public class InternalClient {
 		
 	}
 	
+	public BatchStoreResponse executeBatchStore(Member m, BatchStoreRequest request) throws Exception {
+		
+		ReadWriteLock lock = getLockForMember(m);
+		lock.readLock().lock();
+		
+		InternalRpcConnection rpcConnection = null;
+		try {
+			rpcConnection = getInternalRpcConnection(m);
+			RpcController controller = rpcConnection.getClientRPCController();
+			BatchStoreResponse response = rpcConnection.getService().batchStore(controller, request);
+			if (controller.failed()) {
+				throw new Exception(m + ":" + controller.errorText());
+			}
+			
+			returnInternalBlockingConnection(m, rpcConnection, true);
+			
+			return response;
+		}
+		catch (Exception e) {
+			returnInternalBlockingConnection(m, rpcConnection, false);
+			throw e;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+		
+	}
+	
 	public DeleteResponse executeDelete(Member m, DeleteRequest request) throws Exception {
 		
 		ReadWriteLock lock = getLockForMember(m);
@@ -12,6 +12,8 @@ import io.netty.channel.ChannelOption;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import org.apache.log4j.Logger;
+import org.lumongo.cluster.message.Lumongo.BatchStoreRequest;
+import org.lumongo.cluster.message.Lumongo.BatchStoreResponse;
 import org.lumongo.cluster.message.Lumongo.ClearRequest;
 import org.lumongo.cluster.message.Lumongo.ClearResponse;
 import org.lumongo.cluster.message.Lumongo.DeleteRequest;
@@ -131,6 +133,19 @@ public class InternalServiceHandler extends InternalService {
 		}
 	}
 	
+	@Override
+	public void batchStore(RpcController controller, BatchStoreRequest request, RpcCallback<BatchStoreResponse> done) {
+		try {
+			BatchStoreResponse r = indexManager.batchStoreInternal(request);
+			done.run(r);
+		}
+		catch (Exception e) {
+			log.error("Failed to run internal batch index: <" + request.getStoreRequestCount() + "> documents: " + e.getClass().getSimpleName() + ": ", e);
+			controller.setFailed(e.getMessage());
+			done.run(null);
+		}
+	}
+	
 	@Override
 	public void delete(RpcController controller, DeleteRequest request, RpcCallback<DeleteResponse> done) {
 		try {
@@ -0,0 +1,127 @@
+package org.lumongo.server.indexing;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.store.AlreadyClosedException;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Shares one indexing buffer between the index writers of every segment on the node
+ *
+ * Segments register when they open and report each change.  Every {@link #CHECK_INTERVAL} changes on the node the
+ * budget is checked, which sums the buffers of every segment, so the buffers can go past the budget by what that many
+ * changes use.  When the documents buffered by all of the writers use more than the budget the segment with the largest
+ * buffer is flushed until they fit again, so a few busy segments can use the whole budget while idle ones use none.  A
+ * check that finds another check running is skipped instead of waiting.
+ */
+public class IndexingMemoryController {
+
+	private final static Logger log = Logger.getLogger(IndexingMemoryController.class);
+
+	/**
+	 * Share of the max heap used for the indexing buffer when no size is set
+	 */
+	public static final double DEFAULT_HEAP_FRACTION = 0.1;
+
+	/**
+	 * Number of changes on the node between checks of the budget
+	 */
+	public static final int CHECK_INTERVAL = 64;
+
+	private final Set<LumongoSegment> segments;
+	private final ReentrantLock checkLock;
+	private final AtomicLong changes;
+
+	private volatile long bufferBytes;
+
+	public IndexingMemoryController() {
+		this.segments = ConcurrentHashMap.newKeySet();
+		this.checkLock = new ReentrantLock();
+		this.changes = new AtomicLong();
+		setBufferMB(0);
+	}
+
+	/**
+	 * @param bufferMB - megabytes shared by the index writers of the node, 0 for {@link #DEFAULT_HEAP_FRACTION} of the max heap
+	 */
+	public void setBufferMB(int bufferMB) {
+		if (bufferMB > 0) {
+			bufferBytes = bufferMB * 1024L * 1024L;
+		}
+		else {
+			bufferBytes = (long) (Runtime.getRuntime().maxMemory() * DEFAULT_HEAP_FRACTION);
+		}
+	}
+
+	public long getBufferBytes() {
+		return bufferBytes;
+	}
+
+	public void register(LumongoSegment segment) {
+		segments.add(segment);
+	}
+
+	public void unregister(LumongoSegment segment) {
+		segments.remove(segment);
+	}
+
+	/**
+	 * Checks the budget every {@link #CHECK_INTERVAL} calls
+	 */
+	public void changed() {
+		if ((changes.incrementAndGet() % CHECK_INTERVAL) == 0) {
+			checkBudget();
+		}
+	}
+
+	/**
+	 * Flushes the segments with the largest buffers while the buffers of all segments use more than the budget
+	 */
+	public void checkBudget() {
+		if (!checkLock.tryLock()) {
+			return;
+		}
+		try {
+			//each pass flushes one segment, bounded by the number of segments so a segment that cannot flush does not loop
+			for (int pass = 0; pass < segments.size(); pass++) {
+				long total = 0;
+				long largestBytes = 0;
+				LumongoSegment largest = null;
+				for (LumongoSegment segment : segments) {
+					long bytes = segment.getRamBytesUsed();
+					total += bytes;
+					if (bytes > largestBytes) {
+						largestBytes = bytes;
+						largest = segment;
+					}
+				}
+
+				if (total <= bufferBytes || largest == null) {
+					return;
+				}
+
+				try {
+					log.info("Indexing buffers use <" + total + "> of <" + bufferBytes + "> bytes, flushing segment <" + largest.getSegmentNumber()
+									+ "> of index <" + largest.getIndexName() + "> with <" + largestBytes + "> bytes");
+					largest.flush();
+				}
+				catch (AlreadyClosedException e) {
+					//the segment is closing or reopening its writers, the next check picks up what is left
+					return;
+				}
+				catch (IOException e) {
+					log.error("Failed to flush segment <" + largest.getSegmentNumber() + "> of index <" + largest.getIndexName() + ">: " + e.getMessage(), e);
+					return;
+				}
+			}
+		}
+		finally {
+			checkLock.unlock();
+		}
+	}
+
+}
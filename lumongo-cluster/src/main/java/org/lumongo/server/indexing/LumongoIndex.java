@@ -21,6 +21,7 @@ import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.LumongoIndexWriter;
 import org.apache.lucene.queryparser.classic.QueryParser.Operator;
 import org.apache.lucene.search.*;
+import org.apache.lucene.store.SingleInstanceLockFactory;
 import org.bson.BSON;
 import org.bson.BasicBSONObject;
 import org.bson.Document;
@@ -37,9 +38,15 @@ import org.lumongo.server.hazelcast.UpdateSegmentsTask;
 import org.lumongo.server.indexing.field.IndexWriterManager;
 import org.lumongo.server.searching.QueryWithFilters;
 import org.lumongo.storage.constants.MongoConstants;
+import org.lumongo.storage.lucene.BlockCodec;
 import org.lumongo.storage.lucene.DistributedDirectory;
+import org.lumongo.storage.lucene.MappedDirectory;
+import org.lumongo.storage.lucene.MemoryDirectory;
 import org.lumongo.storage.lucene.MongoDirectory;
+import org.lumongo.storage.lucene.NosqlDirectory;
 import org.lumongo.storage.rawfiles.DocumentStorage;
+import org.lumongo.storage.rawfiles.FileDocumentStorage;
+import org.lumongo.storage.rawfiles.MemoryDocumentStorage;
 import org.lumongo.storage.rawfiles.MongoDocumentStorage;
 import org.lumongo.util.LockHandler;
 import org.lumongo.util.LumongoThreadFactory;
@@ -47,9 +54,11 @@ import org.lumongo.util.SegmentUtil;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -63,6 +72,20 @@ public class LumongoIndex implements IndexWriterManager {
 	private static final String SETTINGS_ID = "settings";
 	public static final String CONFIG_SUFFIX = "_config";
 
+	public static final int DOCUMENT_CONVERSION_QUEUE_SIZE = 1024;
+
+	/**
+	 * Number of documents of a batch store whose document locks are held together while they are stored
+	 */
+	public static final int STORE_LOCK_BATCH_SIZE = 100;
+
+	/**
+	 * Converts the documents of batch stores to lucene documents for every index on the node.  When the queue is full
+	 * the storing thread converts the document itself, which holds back the rpc layer until the workers catch up
+	 */
+	private static final ThreadPoolExecutor documentConverter = createDocumentConverter(Runtime.getRuntime().availableProcessors(),
+					DOCUMENT_CONVERSION_QUEUE_SIZE);
+
 	private final IndexConfig indexConfig;
 	private final MongoConfig mongoConfig;
 	private final ClusterConfig clusterConfig;
@@ -98,7 +121,7 @@ public class LumongoIndex implements IndexWriterManager {
 	private LockHandler documentLockHandler;
 
 	private LumongoIndex(HazelcastManager hazelcastManger, MongoConfig mongoConfig, ClusterConfig clusterConfig, IndexConfig indexConfig)
-					throws UnknownHostException, MongoException {
+					throws IOException, MongoException {
 
 		this.documentLockHandler = new LockHandler();
 
@@ -117,7 +140,7 @@ public class LumongoIndex implements IndexWriterManager {
 
 		String rawStorageDb = mongoConfig.getDatabaseName() + "_" + indexName + STORAGE_DB_SUFFIX;
 
-		this.documentStorage = new MongoDocumentStorage(storageMongoClient, indexName, rawStorageDb, RESULT_STORAGE_COLLECTION, clusterConfig.isSharded());
+		this.documentStorage = createDocumentStorage(rawStorageDb);
 
 		this.segmentPool = Executors.newCachedThreadPool(new LumongoThreadFactory(indexName + "-segments"));
 
@@ -316,6 +339,14 @@ public class LumongoIndex implements IndexWriterManager {
 				IndexWriterManager indexWriterManager = this;
 
 				LumongoSegment s = new LumongoSegment(segmentNumber, indexWriterManager, indexConfig);
+				if (!clusterConfig.getIndexWarmFileTypes().isEmpty()) {
+					try {
+						s.warmCache(clusterConfig.getIndexWarmFileTypes());
+					}
+					catch (Exception e) {
+						log.warn("Failed to warm segment <" + segmentNumber + "> for index <" + indexName + ">: " + e.getMessage());
+					}
+				}
 				segmentMap.put(segmentNumber, s);
 
 				log.info("Loaded segment <" + segmentNumber + "> for index <" + indexName + ">");
@@ -328,27 +359,87 @@ public class LumongoIndex implements IndexWriterManager {
 		}
 	}
 
+	private DocumentStorage createDocumentStorage(String rawStorageDb) throws IOException {
+		switch (clusterConfig.getIndexStorage()) {
+			case MEMORY:
+			case OFFHEAP:
+				return MemoryDocumentStorage.getStorage(indexName, rawStorageDb);
+			case MAPPED:
+				return new FileDocumentStorage(getLocalStorageRoot(), indexName, rawStorageDb);
+			default:
+				return new MongoDocumentStorage(storageMongoClient, indexName, rawStorageDb, RESULT_STORAGE_COLLECTION, clusterConfig.isSharded());
+		}
+	}
+
+	private Path getLocalStorageRoot() throws IOException {
+		if (clusterConfig.getLocalStorageDirectory() == null) {
+			throw new IOException(ClusterConfig.LOCAL_STORAGE_DIRECTORY + " must be set for index storage <" + clusterConfig.getIndexStorage() + ">");
+		}
+		return Paths.get(clusterConfig.getLocalStorageDirectory());
+	}
+
+	private NosqlDirectory createNosqlDirectory(String dbName, String collectionName) throws IOException {
+		switch (clusterConfig.getIndexStorage()) {
+			case MEMORY:
+				return new MemoryDirectory(dbName, collectionName, clusterConfig.getIndexBlockSize(), false);
+			case OFFHEAP:
+				return new MemoryDirectory(dbName, collectionName, clusterConfig.getIndexBlockSize(), true);
+			case MAPPED:
+				return new MappedDirectory(getLocalStorageRoot(), dbName, collectionName, clusterConfig.getIndexBlockSize());
+			default:
+				MongoDirectory mongoDirectory = new MongoDirectory(mongo, dbName, collectionName, clusterConfig.isSharded(), clusterConfig.getIndexBlockSize());
+				mongoDirectory.setCacheWeight(indexConfig.getBlockCacheWeight());
+				mongoDirectory.setBlockCodec(indexConfig.isBlockCompression() ? BlockCodec.LZ4 : BlockCodec.NONE);
+				return mongoDirectory;
+		}
+	}
+
+	private void dropNosqlDirectory(String dbName, String collectionName) throws IOException {
+		switch (clusterConfig.getIndexStorage()) {
+			case MEMORY:
+			case OFFHEAP:
+				MemoryDirectory.dropIndex(dbName, collectionName);
+				break;
+			case MAPPED:
+				MappedDirectory.dropIndex(getLocalStorageRoot(), dbName, collectionName);
+				break;
+			default:
+				MongoDirectory.dropIndex(mongo, dbName, collectionName);
+		}
+	}
+
+	/**
+	 * Only directories in mongo write through a local scratch directory, local storage is already on the node
+	 */
+	private DistributedDirectory createDirectory(String dbName, String collectionName) throws IOException {
+		NosqlDirectory nosqlDirectory = createNosqlDirectory(dbName, collectionName);
+		Path scratchRoot = DistributedDirectory.getScratchRoot();
+		if (scratchRoot == null || !(nosqlDirectory instanceof MongoDirectory)) {
+			return new DistributedDirectory(nosqlDirectory);
+		}
+		Path scratchPath = scratchRoot.resolve(dbName).resolve(collectionName);
+		return new DistributedDirectory(nosqlDirectory, new SingleInstanceLockFactory(), scratchPath);
+	}
+
 	public LumongoDirectoryTaxonomyWriter getLumongoDirectoryTaxonomyWriter(int segmentNumber) throws IOException {
 		String indexSegmentDbName = getIndexSegmentDbName(segmentNumber);
 		String indexSegmentCollectionName = getIndexSegmentCollectionName(segmentNumber);
 
-		MongoDirectory mongoFacetDirectory = new MongoDirectory(mongo, indexSegmentDbName, indexSegmentCollectionName + "_" + FACETS_SUFFIX,
-						clusterConfig.isSharded(), clusterConfig.getIndexBlockSize());
-		DistributedDirectory ddFacet = new DistributedDirectory(mongoFacetDirectory);
+		DistributedDirectory ddFacet = createDirectory(indexSegmentDbName, indexSegmentCollectionName + "_" + FACETS_SUFFIX);
 		return new LumongoDirectoryTaxonomyWriter(ddFacet);
 	}
 
 	public LumongoIndexWriter getLumongoIndexWriter(int segmentNumber) throws Exception {
 		String indexSegmentDbName = getIndexSegmentDbName(segmentNumber);
 		String indexSegmentCollectionName = getIndexSegmentCollectionName(segmentNumber);
-		MongoDirectory mongoDirectory = new MongoDirectory(mongo, indexSegmentDbName, indexSegmentCollectionName, clusterConfig.isSharded(), clusterConfig.getIndexBlockSize());
-		DistributedDirectory dd = new DistributedDirectory(mongoDirectory);
+		DistributedDirectory dd = createDirectory(indexSegmentDbName, indexSegmentCollectionName);
 
 		IndexWriterConfig config = new IndexWriterConfig(lumongoAnalyzerFactory.getAnalyzer());
 
-		//use flush interval to flush
-		config.setMaxBufferedDocs(Integer.MAX_VALUE);
-		config.setRAMBufferSizeMB(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+		//the node's indexing memory controller flushes the largest writer when all of them together use more than the
+		//indexing buffer, the whole buffer is the limit of a single writer
+		config.setMaxBufferedDocs(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+		config.setRAMBufferSizeMB(LumongoSegment.getIndexingBufferBytes() / (1024.0 * 1024.0));
 
 		return new LumongoIndexWriter(dd, config);
 	}
@@ -639,8 +730,8 @@ public class LumongoIndex implements IndexWriterManager {
 
 			String dbName = getIndexSegmentDbName(i);
 			String collectionName = getIndexSegmentCollectionName(i);
-			MongoDirectory.dropIndex(mongo, dbName, collectionName);
-			MongoDirectory.dropIndex(mongo, dbName, collectionName + "_" + FACETS_SUFFIX);
+			dropNosqlDirectory(dbName, collectionName);
+			dropNosqlDirectory(dbName, collectionName + "_" + FACETS_SUFFIX);
 
 			documentStorage.drop();
 		}
@@ -693,6 +784,206 @@ public class LumongoIndex implements IndexWriterManager {
 		}
 	}
 
+	/**
+	 * @param threads - number of threads converting documents
+	 * @param queueSize - number of documents waiting for a thread before the submitting thread converts them itself
+	 * @return a pool of daemon threads named LumongoDocumentConverter-N that runs tasks on the submitting thread when
+	 * its queue is full
+	 */
+	public static ThreadPoolExecutor createDocumentConverter(int threads, int queueSize) {
+		AtomicInteger threadNumber = new AtomicInteger();
+		return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), r -> {
+			Thread thread = new Thread(r, "LumongoDocumentConverter-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}, new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+
+	/**
+	 * Sets the number of threads converting documents of batch stores on the node
+	 * @param threads - number of threads, 0 for the number of available processors
+	 */
+	public static void setDocumentConversionThreads(int threads) {
+		if (threads <= 0) {
+			threads = Runtime.getRuntime().availableProcessors();
+		}
+		if (threads > documentConverter.getMaximumPoolSize()) {
+			documentConverter.setMaximumPoolSize(threads);
+			documentConverter.setCorePoolSize(threads);
+		}
+		else {
+			documentConverter.setCorePoolSize(threads);
+			documentConverter.setMaximumPoolSize(threads);
+		}
+	}
+
+	/**
+	 * Stores a batch of documents under one cluster timestamp.  The documents are decoded and converted to lucene
+	 * documents in parallel on the node's document converter first.  The batch is then stored in chunks of
+	 * {@link #STORE_LOCK_BATCH_SIZE} documents, holding the locks of the unique ids of a chunk while its source
+	 * documents are written with one bulk write and its documents are indexed in request order.  Larger chunks mean
+	 * fewer bulk writes but hold more of the document locks for longer.  Sources are written before indexing so a
+	 * document that failed is never searchable without its source
+	 * @return the status of every request in request order, a failed document does not stop the rest of the batch
+	 */
+	public List<StoreStatus> storeInternal(List<StoreRequest> storeRequests) throws Exception {
+		indexLock.readLock().lock();
+
+		try {
+
+			long timestamp = hazelcastManager.getClusterTime();
+
+			List<Future<ConvertedDocument>> conversions = new ArrayList<>(storeRequests.size());
+			for (StoreRequest storeRequest : storeRequests) {
+				if (storeRequest.hasResultDocument()) {
+					conversions.add(documentConverter.submit(() -> convertDocument(storeRequest, timestamp)));
+				}
+				else {
+					conversions.add(null);
+				}
+			}
+
+			StoreStatus[] statuses = new StoreStatus[storeRequests.size()];
+			for (int start = 0; start < storeRequests.size(); start += STORE_LOCK_BATCH_SIZE) {
+				int end = Math.min(start + STORE_LOCK_BATCH_SIZE, storeRequests.size());
+				storeChunk(storeRequests, conversions, statuses, start, end, timestamp);
+			}
+			return Arrays.asList(statuses);
+
+		}
+		finally {
+			indexLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Stores the requests from start (inclusive) to end (exclusive) of a batch while holding their document locks
+	 * @param statuses - statuses of the whole batch, filled in for the chunk
+	 */
+	private void storeChunk(List<StoreRequest> storeRequests, List<Future<ConvertedDocument>> conversions, StoreStatus[] statuses, int start, int end,
+					long timestamp) throws Exception {
+
+		List<String> uniqueIds = new ArrayList<>(end - start);
+		for (int i = start; i < end; i++) {
+			uniqueIds.add(storeRequests.get(i).getUniqueId());
+		}
+
+		List<ReadWriteLock> documentLocks = documentLockHandler.getLocks(uniqueIds);
+		for (ReadWriteLock documentLock : documentLocks) {
+			documentLock.writeLock().lock();
+		}
+		try {
+			ConvertedDocument[] convertedDocuments = new ConvertedDocument[end - start];
+
+			List<Integer> sourcePositions = new ArrayList<>();
+			List<String> sourceUniqueIds = new ArrayList<>();
+			List<BasicBSONObject> sourceDocuments = new ArrayList<>();
+			List<List<Metadata>> sourceMetadata = new ArrayList<>();
+
+			for (int i = start; i < end; i++) {
+				StoreRequest storeRequest = storeRequests.get(i);
+				Future<ConvertedDocument> conversion = conversions.get(i);
+				if (conversion != null) {
+					try {
+						ConvertedDocument convertedDocument = getConvertedDocument(conversion);
+						convertedDocuments[i - start] = convertedDocument;
+
+						sourcePositions.add(i);
+						sourceUniqueIds.add(storeRequest.getUniqueId());
+						sourceDocuments.add(convertedDocument.document);
+						sourceMetadata.add(storeRequest.getResultDocument().getMetadataList());
+					}
+					catch (Exception e) {
+						log.error("Failed to store <" + storeRequest.getUniqueId() + "> in index <" + indexName + ">: " + e.getClass().getSimpleName() + ": ", e);
+						statuses[i] = LumongoIndexManager.getStoreStatus(storeRequest, e);
+					}
+				}
+			}
+
+			try {
+				documentStorage.storeSourceDocuments(sourceUniqueIds, timestamp, sourceDocuments, sourceMetadata);
+			}
+			catch (Exception e) {
+				log.error("Failed to store <" + sourceUniqueIds.size() + "> source documents in index <" + indexName + ">: " + e.getClass().getSimpleName()
+								+ ": ", e);
+				for (int position : sourcePositions) {
+					statuses[position] = LumongoIndexManager.getStoreStatus(storeRequests.get(position), e);
+				}
+			}
+
+			for (int i = start; i < end; i++) {
+				if (statuses[i] != null) {
+					//the document could not be converted or its source could not be stored so it is not indexed
+					continue;
+				}
+
+				StoreRequest storeRequest = storeRequests.get(i);
+				String uniqueId = storeRequest.getUniqueId();
+				try {
+					ConvertedDocument convertedDocument = convertedDocuments[i - start];
+					if (convertedDocument != null) {
+						convertedDocument.segment.indexDocument(uniqueId, convertedDocument.indexDocument);
+					}
+
+					if (storeRequest.getClearExistingAssociated()) {
+						documentStorage.deleteAssociatedDocuments(uniqueId);
+					}
+
+					for (AssociatedDocument ad : storeRequest.getAssociatedDocumentList()) {
+						ad = AssociatedDocument.newBuilder(ad).setTimestamp(timestamp).build();
+						documentStorage.storeAssociatedDocument(ad);
+					}
+
+					statuses[i] = LumongoIndexManager.getStoreStatus(storeRequest, null);
+				}
+				catch (Exception e) {
+					log.error("Failed to store <" + uniqueId + "> in index <" + indexName + ">: " + e.getClass().getSimpleName() + ": ", e);
+					statuses[i] = LumongoIndexManager.getStoreStatus(storeRequest, e);
+				}
+			}
+		}
+		finally {
+			for (ReadWriteLock documentLock : documentLocks) {
+				documentLock.writeLock().unlock();
+			}
+		}
+	}
+
+	private ConvertedDocument convertDocument(StoreRequest storeRequest, long timestamp) throws Exception {
+		String uniqueId = storeRequest.getUniqueId();
+		BasicBSONObject document = (BasicBSONObject) BSON.decode(storeRequest.getResultDocument().getDocument().toByteArray());
+
+		LumongoSegment s = findSegmentFromUniqueId(uniqueId);
+		return new ConvertedDocument(s, document, s.getIndexDocument(uniqueId, document, timestamp));
+	}
+
+	private static ConvertedDocument getConvertedDocument(Future<ConvertedDocument> conversion) throws Exception {
+		try {
+			return conversion.get();
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * A stored document with the lucene document converted from it for the segment it belongs to
+	 */
+	private static class ConvertedDocument {
+		private final LumongoSegment segment;
+		private final BasicBSONObject document;
+		private final org.apache.lucene.document.Document indexDocument;
+
+		public ConvertedDocument(LumongoSegment segment, BasicBSONObject document, org.apache.lucene.document.Document indexDocument) {
+			this.segment = segment;
+			this.document = document;
+			this.indexDocument = indexDocument;
+		}
+	}
+
 	public void deleteDocument(DeleteRequest deleteRequest) throws Exception {
 
 		indexLock.readLock().lock();
@@ -846,12 +1137,14 @@ public class LumongoIndex implements IndexWriterManager {
 
 			List<Future<SegmentResponse>> responses = new ArrayList<>();
 
+			QueryCacheKey queryCacheKey = new QueryCacheKey(queryRequest);
+
 			for (final LumongoSegment segment : segmentMap.values()) {
 
 				Future<SegmentResponse> response = segmentPool
 								.submit(() -> segment.querySegment(queryWithFilters, requestedAmount, lastScoreDocMap.get(segment.getSegmentNumber()),
 																queryRequest.getFacetRequest(), queryRequest.getSortRequest(), queryRequest.getRealTime(),
-																new QueryCacheKey(queryRequest)));
+																queryRequest.hasRefresh() ? queryRequest.getRefresh() : null, queryCacheKey, queryRequest.getMaxCacheStaleMs()));
 
 				responses.add(response);
 
@@ -1140,7 +1433,7 @@ public class LumongoIndex implements IndexWriterManager {
 	}
 
 	public static LumongoIndex loadIndex(HazelcastManager hazelcastManager, MongoConfig mongoConfig, MongoClient mongo, ClusterConfig clusterConfig,
-					String indexName) throws InvalidIndexConfig, UnknownHostException, MongoException {
+					String indexName) throws InvalidIndexConfig, IOException, MongoException {
 		IndexConfig indexConfig = loadIndexSettings(mongo, mongoConfig.getDatabaseName(), indexName);
 		log.info("Loading index <" + indexName + ">");
 
@@ -1149,7 +1442,7 @@ public class LumongoIndex implements IndexWriterManager {
 	}
 
 	public static LumongoIndex createIndex(HazelcastManager hazelcastManager, MongoConfig mongoConfig, ClusterConfig clusterConfig, IndexConfig indexConfig)
-					throws UnknownHostException, MongoException {
+					throws IOException, MongoException {
 		log.info("Creating index <" + indexConfig.getIndexName() + ">: " + indexConfig);
 		LumongoIndex i = new LumongoIndex(hazelcastManager, mongoConfig, clusterConfig, indexConfig);
 		i.storeIndexSettings();
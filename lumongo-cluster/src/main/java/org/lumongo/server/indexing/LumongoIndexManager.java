@@ -14,6 +14,8 @@ import org.apache.lucene.queryparser.classic.QueryParser.Operator;
 import org.apache.lucene.search.Query;
 import org.lumongo.cluster.message.Lumongo;
 import org.lumongo.cluster.message.Lumongo.AssociatedDocument;
+import org.lumongo.cluster.message.Lumongo.BatchStoreRequest;
+import org.lumongo.cluster.message.Lumongo.BatchStoreResponse;
 import org.lumongo.cluster.message.Lumongo.ClearRequest;
 import org.lumongo.cluster.message.Lumongo.ClearResponse;
 import org.lumongo.cluster.message.Lumongo.DeleteRequest;
@@ -52,6 +54,7 @@ import org.lumongo.cluster.message.Lumongo.SegmentCountResponse;
 import org.lumongo.cluster.message.Lumongo.SegmentMapping;
 import org.lumongo.cluster.message.Lumongo.StoreRequest;
 import org.lumongo.cluster.message.Lumongo.StoreResponse;
+import org.lumongo.cluster.message.Lumongo.StoreStatus;
 import org.lumongo.cluster.message.Lumongo.Term;
 import org.lumongo.server.config.ClusterConfig;
 import org.lumongo.server.config.IndexConfig;
@@ -76,15 +79,18 @@ import java.io.InputStream;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -543,6 +549,135 @@ public class LumongoIndexManager {
 		}
 	}
 	
+	/**
+	 * Stores the documents of the batch that belong to this node, grouped by index
+	 * @return the status of every request in request order
+	 */
+	public BatchStoreResponse batchStoreInternal(BatchStoreRequest batchStoreRequest) throws Exception {
+		globalLock.readLock().lock();
+		try {
+			List<StoreRequest> storeRequests = batchStoreRequest.getStoreRequestList();
+			StoreStatus[] statuses = new StoreStatus[storeRequests.size()];
+
+			Map<String, List<Integer>> indexPositions = new LinkedHashMap<>();
+			for (int i = 0; i < storeRequests.size(); i++) {
+				indexPositions.computeIfAbsent(storeRequests.get(i).getIndexName(), indexName -> new ArrayList<>()).add(i);
+			}
+
+			for (String indexName : indexPositions.keySet()) {
+				List<Integer> positions = indexPositions.get(indexName);
+				LumongoIndex i = indexMap.get(indexName);
+				if (i == null) {
+					for (int position : positions) {
+						statuses[position] = getStoreStatus(storeRequests.get(position), new IndexDoesNotExist(indexName));
+					}
+					continue;
+				}
+
+				List<StoreRequest> indexRequests = new ArrayList<>(positions.size());
+				for (int position : positions) {
+					indexRequests.add(storeRequests.get(position));
+				}
+
+				List<StoreStatus> indexStatuses = i.storeInternal(indexRequests);
+				for (int j = 0; j < positions.size(); j++) {
+					statuses[positions.get(j)] = indexStatuses.get(j);
+				}
+			}
+
+			return BatchStoreResponse.newBuilder().addAllStoreStatus(Arrays.asList(statuses)).build();
+		}
+		finally {
+			globalLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Splits the batch by the member each document belongs to and sends every member its part in one request, the
+	 * members are called in parallel
+	 * @return the status of every request in request order
+	 */
+	public BatchStoreResponse batchStore(BatchStoreRequest batchStoreRequest) throws Exception {
+		globalLock.readLock().lock();
+		try {
+			List<StoreRequest> storeRequests = batchStoreRequest.getStoreRequestList();
+			StoreStatus[] statuses = new StoreStatus[storeRequests.size()];
+
+			Map<Member, List<Integer>> memberPositions = new LinkedHashMap<>();
+			for (int i = 0; i < storeRequests.size(); i++) {
+				StoreRequest storeRequest = storeRequests.get(i);
+				LumongoIndex index = indexMap.get(storeRequest.getIndexName());
+				if (index == null) {
+					statuses[i] = getStoreStatus(storeRequest, new IndexDoesNotExist(storeRequest.getIndexName()));
+					continue;
+				}
+				Member m = index.findMember(storeRequest.getUniqueId());
+				memberPositions.computeIfAbsent(m, member -> new ArrayList<>()).add(i);
+			}
+
+			Member self = hazelcastManager.getSelf();
+
+			Map<Member, Future<BatchStoreResponse>> responses = new LinkedHashMap<>();
+			BatchStoreRequest selfRequest = null;
+			for (Member m : memberPositions.keySet()) {
+				BatchStoreRequest.Builder memberRequest = BatchStoreRequest.newBuilder();
+				for (int position : memberPositions.get(m)) {
+					memberRequest.addStoreRequest(storeRequests.get(position));
+				}
+
+				if (!self.equals(m)) {
+					responses.put(m, pool.submit(() -> internalClient.executeBatchStore(m, memberRequest.build())));
+				}
+				else {
+					selfRequest = memberRequest.build();
+				}
+			}
+
+			//stored on this thread while the other members work, it already holds the global lock
+			if (selfRequest != null) {
+				setStoreStatuses(statuses, memberPositions.get(self), batchStoreInternal(selfRequest));
+			}
+
+			for (Member m : responses.keySet()) {
+				List<Integer> positions = memberPositions.get(m);
+				try {
+					setStoreStatuses(statuses, positions, responses.get(m).get());
+				}
+				catch (ExecutionException e) {
+					Exception cause = (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+					log.error("Failed to store <" + positions.size() + "> documents on <" + m + ">: " + cause.getClass().getSimpleName() + ": ", cause);
+					for (int position : positions) {
+						statuses[position] = getStoreStatus(storeRequests.get(position), cause);
+					}
+				}
+			}
+
+			return BatchStoreResponse.newBuilder().addAllStoreStatus(Arrays.asList(statuses)).build();
+		}
+		finally {
+			globalLock.readLock().unlock();
+		}
+	}
+
+	private static void setStoreStatuses(StoreStatus[] statuses, List<Integer> positions, BatchStoreResponse batchStoreResponse) {
+		List<StoreStatus> storeStatuses = batchStoreResponse.getStoreStatusList();
+		for (int j = 0; j < positions.size(); j++) {
+			statuses[positions.get(j)] = storeStatuses.get(j);
+		}
+	}
+
+	/**
+	 * @param e - why the document was not stored, null if it was
+	 */
+	public static StoreStatus getStoreStatus(StoreRequest storeRequest, Exception e) {
+		StoreStatus.Builder storeStatus = StoreStatus.newBuilder().setUniqueId(storeRequest.getUniqueId()).setIndexName(storeRequest.getIndexName());
+		storeStatus.setStored(e == null);
+		if (e != null) {
+			storeStatus.setErrorMessage(e.getClass().getSimpleName() + ": " + e.getMessage());
+		}
+		return storeStatus.build();
+	}
+
 	public StoreResponse storeDocument(StoreRequest storeRequest) throws Exception {
 		globalLock.readLock().lock();
 		try {
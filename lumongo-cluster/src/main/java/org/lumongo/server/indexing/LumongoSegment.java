@@ -13,6 +13,8 @@ import org.apache.lucene.index.*;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TermsEnum.SeekStatus;
 import org.apache.lucene.search.*;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.NumericUtils;
 import org.bson.BSONObject;
@@ -28,10 +30,16 @@ import org.lumongo.cluster.message.Lumongo.FieldSort.Direction;
 import org.lumongo.server.config.IndexConfig;
 import org.lumongo.server.indexing.field.*;
 import org.lumongo.server.searching.QueryWithFilters;
+import org.lumongo.storage.lucene.CacheWarmer;
+import org.lumongo.storage.lucene.DistributedDirectory;
 import org.lumongo.util.LumongoUtil;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
@@ -41,6 +49,18 @@ public class LumongoSegment {
 
 	private final static Logger log = Logger.getLogger(LumongoSegment.class);
 
+	public static final long DEFAULT_SEARCHER_REFRESH_MS = 0;
+
+	private static final ScheduledExecutorService searcherRefresher = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "LumongoSearcherRefresher");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private static volatile long searcherRefreshMs = DEFAULT_SEARCHER_REFRESH_MS;
+
+	private static final IndexingMemoryController indexingMemoryController = new IndexingMemoryController();
+
 	private final int segmentNumber;
 
 
@@ -48,12 +68,16 @@ public class LumongoSegment {
 	private final FacetsConfig facetsConfig;
 	private final String uniqueIdField;
 	private final AtomicLong counter;
+	private final AtomicLong changes;
 	private final Set<String> fetchSet;
 	private final IndexWriterManager indexWriterManager;
 
-	private LumongoIndexWriter indexWriter;
-	private LumongoDirectoryTaxonomyWriter taxonomyWriter;
+	private volatile LumongoIndexWriter indexWriter;
+	private volatile LumongoDirectoryTaxonomyWriter taxonomyWriter;
 	private LumongoDirectoryTaxonomyReader taxonomyReader;
+	private volatile SegmentSearcherManager searcherManager;
+	private volatile SegmentSearcherManager searcherManagerRealtime;
+	private ScheduledFuture<?> refreshTask;
 	private Long lastCommit;
 	private Long lastChange;
 	private String indexName;
@@ -72,11 +96,14 @@ public class LumongoSegment {
 		this.segmentNumber = segmentNumber;
 
 		this.indexWriterManager = indexWriterManager;
-		
-		openIndexWriters();
 
+		this.changes = new AtomicLong();
 
 		this.indexConfig = indexConfig;
+
+		openIndexWriters();
+
+
 		this.facetsConfig = getFacetsConfig();
 
 		this.uniqueIdField = indexConfig.getUniqueIdField();
@@ -88,6 +115,39 @@ public class LumongoSegment {
 		this.lastChange = null;
 		this.indexName = indexConfig.getIndexName();
 
+		long refreshMs = searcherRefreshMs;
+		if (refreshMs > 0) {
+			this.refreshTask = searcherRefresher.scheduleWithFixedDelay(this::refreshSearchers, refreshMs, refreshMs, TimeUnit.MILLISECONDS);
+		}
+
+		indexingMemoryController.register(this);
+
+	}
+
+	/**
+	 * Sets how often the searchers of every segment on the node are reopened in the background to pick up changes.
+	 * By default every search reopens the searcher first if the segment changed, so it sees all changes.  With a
+	 * background refresh searches use the current searcher without reopening it instead, so they can miss changes made
+	 * up to this long ago unless they ask for a refresh.  Commits also reopen the searchers.
+	 * @param refreshMs - milliseconds between refreshes, 0 for no background refresh
+	 */
+	public static void setSearcherRefreshMs(long refreshMs) {
+		searcherRefreshMs = refreshMs;
+	}
+
+	/**
+	 * Sets the indexing buffer shared by the index writers of every segment on the node
+	 * @param bufferMB - megabytes, 0 for a share of the max heap
+	 */
+	public static void setIndexingBufferMB(int bufferMB) {
+		indexingMemoryController.setBufferMB(bufferMB);
+	}
+
+	/**
+	 * @return bytes of the indexing buffer shared by the index writers of every segment on the node
+	 */
+	public static long getIndexingBufferBytes() {
+		return indexingMemoryController.getBufferBytes();
 	}
 
 	private void reopenIndexWritersIfNecessary() throws Exception {
@@ -95,6 +155,7 @@ public class LumongoSegment {
 			synchronized (this) {
 				if (!indexWriter.isOpen()) {
 					this.indexWriter = this.indexWriterManager.getLumongoIndexWriter(segmentNumber);
+					openSearcherManagers();
 				}
 			}
 		}
@@ -104,6 +165,7 @@ public class LumongoSegment {
 				if (!taxonomyWriter.getLumongoIndexWriter().isOpen()) {
 					this.indexWriter = this.indexWriterManager.getLumongoIndexWriter(segmentNumber);
 					this.taxonomyReader = new LumongoDirectoryTaxonomyReader(taxonomyWriter);
+					openSearcherManagers();
 				}
 			}
 		}
@@ -126,6 +188,73 @@ public class LumongoSegment {
 		}
 		this.taxonomyReader = new LumongoDirectoryTaxonomyReader(taxonomyWriter);
 
+		openSearcherManagers();
+
+	}
+
+	private synchronized void openSearcherManagers() throws IOException {
+		closeSearcherManagers();
+		this.searcherManager = new SegmentSearcherManager(indexWriter, indexConfig.getApplyUncommitedDeletes(), false);
+		this.searcherManagerRealtime = new SegmentSearcherManager(indexWriter, indexConfig.getApplyUncommitedDeletes(), true);
+	}
+
+	private void closeSearcherManagers() throws IOException {
+		if (searcherManager != null) {
+			searcherManager.close();
+		}
+		if (searcherManagerRealtime != null) {
+			searcherManagerRealtime.close();
+		}
+	}
+
+	/**
+	 * @return a searcher that sees every change unless there is a background refresh, release it with {@link #releaseSearcher(IndexSearcher)}
+	 */
+	private IndexSearcher acquireSearcher(boolean realTime) throws IOException {
+		return acquireSearcher(realTime, refreshTask == null);
+	}
+
+	/**
+	 * @param refresh - true to reopen the searcher first if the segment changed since its last refresh
+	 * @return a searcher for the view, release it with {@link #releaseSearcher(IndexSearcher)}
+	 */
+	private IndexSearcher acquireSearcher(boolean realTime, boolean refresh) throws IOException {
+		while (true) {
+			SegmentSearcherManager manager = realTime ? searcherManagerRealtime : searcherManager;
+			try {
+				if (refresh) {
+					manager.refresh(changes.get());
+				}
+				return manager.acquire();
+			}
+			catch (AlreadyClosedException e) {
+				//the searcher managers are replaced while holding the lock when the index writer is reopened
+				synchronized (this) {
+					if (manager == (realTime ? searcherManagerRealtime : searcherManager)) {
+						throw e;
+					}
+				}
+			}
+		}
+	}
+
+	private void releaseSearcher(IndexSearcher is) throws IOException {
+		//releasing only decrements the reader so it does not matter if the manager was replaced since
+		is.getIndexReader().decRef();
+	}
+
+	private void refreshSearchers() {
+		try {
+			long currentChanges = changes.get();
+			searcherManagerRealtime.refresh(currentChanges);
+			searcherManager.refresh(currentChanges);
+		}
+		catch (AlreadyClosedException e) {
+			//the index writer is being reopened or the segment is closing
+		}
+		catch (Exception e) {
+			log.error("Failed to refresh searchers for segment <" + segmentNumber + "> of index <" + indexName + ">: " + e.getMessage(), e);
+		}
 	}
 	
 	public static Object getValueFromDocument(BSONObject document, String storedFieldName) {
@@ -203,22 +332,27 @@ public class LumongoSegment {
 		return segmentNumber;
 	}
 
+	/**
+	 * @param refresh - true to reopen the searcher first so the search sees every change, false to use the searcher as of
+	 *                the last refresh, null to only reopen first when there is no background refresh, see {@link #setSearcherRefreshMs(long)}
+	 * @param maxCacheStaleMs - maximum age in milliseconds of a cached response used without checking it was searched
+	 *                        on the current reader, 0 to only use responses searched on the current reader
+	 */
 	public SegmentResponse querySegment(QueryWithFilters queryWithFilters, int amount, FieldDoc after, FacetRequest facetRequest, SortRequest sortRequest,
-					boolean realTime, QueryCacheKey queryCacheKey) throws Exception {
+					boolean realTime, Boolean refresh, QueryCacheKey queryCacheKey, long maxCacheStaleMs) throws Exception {
 
-		IndexReader ir = null;
+		IndexSearcher is = null;
 
 		try {
 
 			QueryResultCache qrc = realTime ? queryResultCacheRealtime : queryResultCache;
 
 			boolean useCache = queryCacheEnabled && ((segmentQueryCacheMaxAmount <= 0) || (segmentQueryCacheMaxAmount >= amount));
-			if (useCache) {
-				SegmentResponse cacheSegmentResponse = qrc.getCacheSegmentResponse(queryCacheKey);
+			if (useCache && maxCacheStaleMs > 0) {
+				SegmentResponse cacheSegmentResponse = qrc.getRecentSegmentResponse(queryCacheKey, maxCacheStaleMs);
 				if (cacheSegmentResponse != null) {
 					return cacheSegmentResponse;
 				}
-
 			}
 
 			Query q = queryWithFilters.getQuery();
@@ -235,9 +369,15 @@ public class LumongoSegment {
 
 			reopenIndexWritersIfNecessary();
 
-			ir = indexWriter.getReader(indexConfig.getApplyUncommitedDeletes(), realTime);
+			is = acquireSearcher(realTime, refresh != null ? refresh : refreshTask == null);
 
-			IndexSearcher is = new IndexSearcher(ir);
+			long readerVersion = ((DirectoryReader) is.getIndexReader()).getVersion();
+			if (useCache) {
+				SegmentResponse cacheSegmentResponse = qrc.getCacheSegmentResponse(queryCacheKey, readerVersion);
+				if (cacheSegmentResponse != null) {
+					return cacheSegmentResponse;
+				}
+			}
 
 			int hasMoreAmount = amount + 1;
 
@@ -355,13 +495,13 @@ public class LumongoSegment {
 
 			SegmentResponse segmentResponse = builder.build();
 			if (useCache) {
-				qrc.storeInCache(queryCacheKey, segmentResponse);
+				qrc.storeInCache(queryCacheKey, readerVersion, segmentResponse);
 			}
 			return segmentResponse;
 		}
 		finally {
-			if (ir != null) {
-				ir.close();
+			if (is != null) {
+				releaseSearcher(is);
 			}
 
 		}
@@ -468,18 +608,44 @@ public class LumongoSegment {
 
 	private void possibleCommit() throws IOException {
 		lastChange = System.currentTimeMillis();
+		changes.incrementAndGet();
 
+		//the intervals are optional caps on top of the node's indexing buffer, 0 disables them
 		long count = counter.incrementAndGet();
-		if ((count % indexConfig.getSegmentCommitInterval()) == 0) {
+		int commitInterval = indexConfig.getSegmentCommitInterval();
+		int flushInterval = indexConfig.getSegmentFlushInterval();
+		if (commitInterval > 0 && (count % commitInterval) == 0) {
 			forceCommit();
 		}
-		else if ((count % indexConfig.getSegmentFlushInterval()) == 0) {
-			taxonomyWriter.flush();
-			indexWriter.flush(indexConfig.getApplyUncommitedDeletes());
+		else if (flushInterval > 0 && (count % flushInterval) == 0) {
+			flush();
 		}
-		if (queryCacheEnabled) {
-			queryResultCacheRealtime.clear();
+		indexingMemoryController.changed();
+	}
+
+	/**
+	 * Writes the documents buffered by the index and taxonomy writers to new segments without committing them
+	 */
+	public void flush() throws IOException {
+		taxonomyWriter.flush();
+		indexWriter.flush(indexConfig.getApplyUncommitedDeletes());
+	}
+
+	/**
+	 * @return bytes used by the documents and deletes buffered in the index and taxonomy writers
+	 */
+	public long getRamBytesUsed() {
+		try {
+			return indexWriter.ramBytesUsed() + taxonomyWriter.getLumongoIndexWriter().ramBytesUsed();
 		}
+		catch (AlreadyClosedException e) {
+			//the index writer is being reopened or the segment is closing
+			return 0;
+		}
+	}
+
+	public String getIndexName() {
+		return indexName;
 	}
 
 	public void forceCommit() throws IOException {
@@ -487,14 +653,13 @@ public class LumongoSegment {
 
 		taxonomyWriter.commit();
 		indexWriter.commit();
-
-		if (queryCacheEnabled) {
-			queryResultCacheRealtime.clear();
-			queryResultCache.clear();
-		}
+		changes.incrementAndGet();
 
 		lastCommit = currentTime;
 
+		//the committed view only changes here
+		refreshSearchers();
+
 	}
 
 	public void doCommit() throws IOException {
@@ -515,15 +680,30 @@ public class LumongoSegment {
 	}
 
 	public void close() throws IOException {
+		indexingMemoryController.unregister(this);
+		if (refreshTask != null) {
+			refreshTask.cancel(false);
+		}
 		forceCommit();
+		closeSearcherManagers();
 
 		taxonomyWriter.close();
 		indexWriter.close();
 	}
 
 	public void index(String uniqueId, BSONObject document, long timestamp) throws Exception {
-		reopenIndexWritersIfNecessary();
+		indexDocument(uniqueId, getIndexDocument(uniqueId, document, timestamp));
+	}
 
+	/**
+	 * Converts a document to the lucene document indexed for it.  Only reads the index config so documents can be
+	 * converted in parallel on any thread ahead of {@link #indexDocument(String, Document)}
+	 * @param uniqueId - unique id of the document
+	 * @param document - stored document
+	 * @param timestamp - cluster time of the store
+	 * @return lucene document with its facet fields not yet built against the taxonomy
+	 */
+	public Document getIndexDocument(String uniqueId, BSONObject document, long timestamp) throws Exception {
 		Document d = new Document();
 
 		List<FacetField> facetFields = new ArrayList<>();
@@ -568,13 +748,8 @@ public class LumongoSegment {
 
 		}
 
-		if (!facetFields.isEmpty()) {
-
-			for (FacetField ff : facetFields) {
-				d.add(ff);
-			}
-			d = facetsConfig.build(taxonomyWriter, d);
-
+		for (FacetField ff : facetFields) {
+			d.add(ff);
 		}
 
 		d.removeFields(indexConfig.getUniqueIdField());
@@ -585,14 +760,36 @@ public class LumongoSegment {
 
 		d.add(new LongField(LumongoConstants.TIMESTAMP_FIELD, timestamp, Store.YES));
 
-		Term term = new Term(indexConfig.getUniqueIdField(), uniqueId);
+		return d;
+	}
+
+	/**
+	 * Builds the facets of a converted document against the taxonomy of the segment and adds or replaces it in the index
+	 * @param uniqueId - unique id of the document
+	 * @param d - lucene document from {@link #getIndexDocument(String, BSONObject, long)}
+	 */
+	public void indexDocument(String uniqueId, Document d) throws Exception {
+		reopenIndexWritersIfNecessary();
 
+		if (hasFacetFields(d)) {
+			d = facetsConfig.build(taxonomyWriter, d);
+		}
 
+		Term term = new Term(indexConfig.getUniqueIdField(), uniqueId);
 
 		indexWriter.updateDocument(term, d);
 		possibleCommit();
 	}
 
+	private static boolean hasFacetFields(Document d) {
+		for (IndexableField field : d) {
+			if (field instanceof FacetField) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private void handleSortForStoredField(Document d, String storedFieldName, FieldConfig fc, Object o) {
 		if (fc.hasSortAs()) {
 			Lumongo.SortAs sortAs = fc.getSortAs();
@@ -701,6 +898,19 @@ public class LumongoSegment {
 
 	}
 
+	/**
+	 * Loads the index files with the given extensions into the block cache so the first queries do not fetch them
+	 * @param fileTypes - extensions of the files to load
+	 */
+	public void warmCache(Collection<String> fileTypes) throws IOException {
+		Directory directory = indexWriter.getDirectory();
+		if (directory instanceof DistributedDirectory) {
+			CacheWarmer cacheWarmer = ((DistributedDirectory) directory).warm(fileTypes);
+			log.info("Warmed segment <" + segmentNumber + "> for index <" + indexName + ">: <" + cacheWarmer.getFilesWarmed() + "> files with <"
+							+ cacheWarmer.getBytesWarmed() + "> bytes in <" + cacheWarmer.getElapsedMs() + "ms>");
+		}
+	}
+
 	public void optimize() throws IOException {
 		lastChange = System.currentTimeMillis();
 		indexWriter.forceMerge(1);
@@ -710,17 +920,21 @@ public class LumongoSegment {
 	public GetFieldNamesResponse getFieldNames() throws IOException {
 		GetFieldNamesResponse.Builder builder = GetFieldNamesResponse.newBuilder();
 
-		DirectoryReader ir = DirectoryReader.open(indexWriter, indexConfig.getApplyUncommitedDeletes());
-
 		Set<String> fields = new HashSet<>();
 
-		for (LeafReaderContext subreaderContext : ir.leaves()) {
-			FieldInfos fieldInfos = subreaderContext.reader().getFieldInfos();
-			for (FieldInfo fi : fieldInfos) {
-				String fieldName = fi.name;
-				fields.add(fieldName);
+		IndexSearcher is = acquireSearcher(true);
+		try {
+			for (LeafReaderContext subreaderContext : is.getIndexReader().leaves()) {
+				FieldInfos fieldInfos = subreaderContext.reader().getFieldInfos();
+				for (FieldInfo fi : fieldInfos) {
+					String fieldName = fi.name;
+					fields.add(fieldName);
+				}
 			}
 		}
+		finally {
+			releaseSearcher(is);
+		}
 
 		fields.forEach(builder::addFieldName);
 
@@ -736,9 +950,9 @@ public class LumongoSegment {
 	public GetTermsResponse getTerms(GetTermsRequest request) throws IOException {
 		GetTermsResponse.Builder builder = GetTermsResponse.newBuilder();
 
-		DirectoryReader ir = null;
+		IndexSearcher is = acquireSearcher(request.getRealTime());
 		try {
-			ir = indexWriter.getReader(indexConfig.getApplyUncommitedDeletes(), request.getRealTime());
+			IndexReader ir = is.getIndexReader();
 
 			String fieldName = request.getFieldName();
 			String startTerm = "";
@@ -805,9 +1019,7 @@ public class LumongoSegment {
 			return builder.build();
 		}
 		finally {
-			if (ir != null) {
-				ir.close();
-			}
+			releaseSearcher(is);
 		}
 	}
 
@@ -834,17 +1046,18 @@ public class LumongoSegment {
 	}
 
 	public SegmentCountResponse getNumberOfDocs(boolean realTime) throws IOException {
-		IndexReader ir = null;
-
+		IndexSearcher is = acquireSearcher(realTime);
 		try {
-			ir = indexWriter.getReader(indexConfig.getApplyUncommitedDeletes(), realTime);
-			int count = ir.numDocs();
-			return SegmentCountResponse.newBuilder().setNumberOfDocs(count).setSegmentNumber(segmentNumber).build();
+			int count = is.getIndexReader().numDocs();
+			SegmentCountResponse.Builder builder = SegmentCountResponse.newBuilder().setNumberOfDocs(count).setSegmentNumber(segmentNumber);
+			if (queryCacheEnabled) {
+				QueryResultCache qrc = realTime ? queryResultCacheRealtime : queryResultCache;
+				builder.setQueryCacheHits(qrc.getHits()).setQueryCacheMisses(qrc.getMisses());
+			}
+			return builder.build();
 		}
 		finally {
-			if (ir != null) {
-				ir.close();
-			}
+			releaseSearcher(is);
 		}
 	}
 
@@ -7,7 +7,10 @@ public class QueryCacheKey {
 	private QueryRequest queryRequest;
 	
 	public QueryCacheKey(QueryRequest queryRequest) {
-		this.queryRequest = queryRequest;
+		//how stale a cached response may be and whether the searcher is refreshed first do not change the response
+		this.queryRequest = (queryRequest.hasMaxCacheStaleMs() || queryRequest.hasRefresh()) ?
+						queryRequest.toBuilder().clearMaxCacheStaleMs().clearRefresh().build() :
+						queryRequest;
 	}
 	
 	@Override
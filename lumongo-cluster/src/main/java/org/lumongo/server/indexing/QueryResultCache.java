@@ -4,22 +4,83 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import org.lumongo.cluster.message.Lumongo.SegmentResponse;
 
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Segment responses cached with the version of the reader they were searched on
+ *
+ * Writes do not clear the cache, a cached response is only used while the searcher is still on the same reader
+ * version, or when the query accepts a response up to some age.  Under steady writes the searcher moves to a new
+ * version with each refresh, so repeated queries hit between refreshes and miss once after each one, see
+ * {@link LumongoSegment#setSearcherRefreshMs(long)}.  Searches that refresh first see a new version after every
+ * change and only hit while nothing was written.  Responses for older versions are replaced on the next miss or age
+ * out of the cache.
+ */
 public class QueryResultCache {
-	private Cache<QueryCacheKey, SegmentResponse> queryResultCache;
-	
+	private Cache<QueryCacheKey, CachedSegmentResponse> queryResultCache;
+
+	private final AtomicLong hits;
+	private final AtomicLong misses;
+
 	public QueryResultCache(int maxSize, int concurrency) {
 		queryResultCache = CacheBuilder.newBuilder().concurrencyLevel(concurrency).maximumSize(maxSize).build();
+		hits = new AtomicLong();
+		misses = new AtomicLong();
+	}
+
+	/**
+	 * @param readerVersion - version of the reader the query would be searched on
+	 * @return the response cached for the query on the same reader version, null if there is none
+	 */
+	public SegmentResponse getCacheSegmentResponse(QueryCacheKey queryCacheKey, long readerVersion) {
+		CachedSegmentResponse cached = queryResultCache.getIfPresent(queryCacheKey);
+		if (cached != null && cached.readerVersion == readerVersion) {
+			hits.incrementAndGet();
+			return cached.segmentResponse;
+		}
+		misses.incrementAndGet();
+		return null;
 	}
-	
-	public SegmentResponse getCacheSegmentResponse(QueryCacheKey queryCacheKey) {
-		return queryResultCache.getIfPresent(queryCacheKey);
+
+	/**
+	 * A miss is not counted, the query goes on to {@link #getCacheSegmentResponse(QueryCacheKey, long)}
+	 * @param maxStaleMs - maximum age of the response in milliseconds whatever reader version it was searched on
+	 * @return the response cached for the query if it is recent enough, null if there is none
+	 */
+	public SegmentResponse getRecentSegmentResponse(QueryCacheKey queryCacheKey, long maxStaleMs) {
+		CachedSegmentResponse cached = queryResultCache.getIfPresent(queryCacheKey);
+		if (cached != null && (System.currentTimeMillis() - cached.cachedTime) <= maxStaleMs) {
+			hits.incrementAndGet();
+			return cached.segmentResponse;
+		}
+		return null;
 	}
-	
-	public void storeInCache(QueryCacheKey queryCacheKey, SegmentResponse segmentResponse) {
-		queryResultCache.put(queryCacheKey, segmentResponse);
+
+	public void storeInCache(QueryCacheKey queryCacheKey, long readerVersion, SegmentResponse segmentResponse) {
+		queryResultCache.put(queryCacheKey, new CachedSegmentResponse(readerVersion, segmentResponse));
 	}
-	
+
 	public void clear() {
 		queryResultCache.invalidateAll();
 	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	private static class CachedSegmentResponse {
+		private final long readerVersion;
+		private final long cachedTime;
+		private final SegmentResponse segmentResponse;
+
+		public CachedSegmentResponse(long readerVersion, SegmentResponse segmentResponse) {
+			this.readerVersion = readerVersion;
+			this.cachedTime = System.currentTimeMillis();
+			this.segmentResponse = segmentResponse;
+		}
+	}
 }
@@ -0,0 +1,72 @@
+package org.lumongo.server.indexing;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.LumongoIndexWriter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ReferenceManager;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reference counted searcher over either the realtime or the committed view of a segment's index writer
+ *
+ * Searches acquire the current searcher and release it when done instead of opening a reader each.  The searcher is
+ * replaced by {@link #refresh(long)}, which only reopens when the segment changed since the last refresh, so it can be
+ * called both by the background refresh and before a search that has to see every change.
+ */
+public class SegmentSearcherManager extends ReferenceManager<IndexSearcher> {
+
+	private final LumongoIndexWriter indexWriter;
+	private final boolean applyAllDeletes;
+	private final boolean realTime;
+	private final AtomicLong refreshedChanges;
+
+	public SegmentSearcherManager(LumongoIndexWriter indexWriter, boolean applyAllDeletes, boolean realTime) throws IOException {
+		this.indexWriter = indexWriter;
+		this.applyAllDeletes = applyAllDeletes;
+		this.realTime = realTime;
+		this.refreshedChanges = new AtomicLong();
+		this.current = new IndexSearcher(indexWriter.getReader(applyAllDeletes, realTime));
+	}
+
+	public LumongoIndexWriter getIndexWriter() {
+		return indexWriter;
+	}
+
+	/**
+	 * Reopens the searcher if there were changes to the segment since the last refresh
+	 * @param changes - number of changes made to the segment so far
+	 */
+	public void refresh(long changes) throws IOException {
+		if (refreshedChanges.get() < changes) {
+			maybeRefreshBlocking();
+			refreshedChanges.accumulateAndGet(changes, Math::max);
+		}
+	}
+
+	@Override
+	protected void decRef(IndexSearcher reference) throws IOException {
+		reference.getIndexReader().decRef();
+	}
+
+	@Override
+	protected IndexSearcher refreshIfNeeded(IndexSearcher referenceToRefresh) throws IOException {
+		DirectoryReader reader = (DirectoryReader) referenceToRefresh.getIndexReader();
+		DirectoryReader newReader = indexWriter.openIfChanged(reader, applyAllDeletes, realTime);
+		if (newReader == null) {
+			return null;
+		}
+		return new IndexSearcher(newReader);
+	}
+
+	@Override
+	protected boolean tryIncRef(IndexSearcher reference) {
+		return reference.getIndexReader().tryIncRef();
+	}
+
+	@Override
+	protected int getRefCount(IndexSearcher reference) {
+		return reference.getIndexReader().getRefCount();
+	}
+}
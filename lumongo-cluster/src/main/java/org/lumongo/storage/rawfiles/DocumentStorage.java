@@ -12,6 +12,12 @@ import java.util.List;
 
 public interface DocumentStorage {
 	public void storeSourceDocument(String uniqueId, long timeStamp, BasicBSONObject document, List<Metadata> metaDataList) throws Exception;
+
+	/**
+	 * Stores many source documents at once, the lists are in the same order
+	 */
+	public void storeSourceDocuments(List<String> uniqueIds, long timeStamp, List<BasicBSONObject> documents, List<List<Metadata>> metaDataLists)
+					throws Exception;
 	
 	public void storeAssociatedDocument(AssociatedDocument docs) throws Exception;
 	
@@ -0,0 +1,166 @@
+package org.lumongo.storage.rawfiles;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Document storage in local files under root/database, one file per document in documents/ and one directory of files
+ * per document with associated files in associated/.  Names are url safe base 64 encoded unique ids and file names.
+ * Files are written to a temporary file and moved in place so a reader never sees half a document.
+ */
+public class FileDocumentStorage extends LocalDocumentStorage {
+
+	private final static Logger log = Logger.getLogger(FileDocumentStorage.class);
+
+	private static final String DOCUMENTS = "documents";
+	private static final String ASSOCIATED = "associated";
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private final Path path;
+	private final Path documentsPath;
+	private final Path associatedPath;
+
+	/**
+	 * @param root - local directory the storage of every index is kept under
+	 * @param indexName - name of the index
+	 * @param dbName - database name of the raw storage of the index
+	 */
+	public FileDocumentStorage(Path root, String indexName, String dbName) throws IOException {
+		super(indexName);
+		this.path = root.resolve(dbName);
+		this.documentsPath = path.resolve(DOCUMENTS);
+		this.associatedPath = path.resolve(ASSOCIATED);
+
+		Files.createDirectories(documentsPath);
+		Files.createDirectories(associatedPath);
+	}
+
+	private static String encode(String name) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(name.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void write(Path file, byte[] bytes) throws IOException {
+		Files.createDirectories(file.getParent());
+		Path tempFile = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+		Files.write(tempFile, bytes);
+		Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static byte[] read(Path file) throws IOException {
+		try {
+			return Files.readAllBytes(file);
+		}
+		catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	private static void delete(Path file) {
+		try {
+			if (Files.isDirectory(file)) {
+				try (Stream<Path> paths = Files.walk(file)) {
+					paths.sorted(Comparator.reverseOrder()).forEach(p -> {
+						try {
+							Files.deleteIfExists(p);
+						}
+						catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					});
+				}
+			}
+			else {
+				Files.deleteIfExists(file);
+			}
+		}
+		catch (IOException | UncheckedIOException e) {
+			log.error("Failed to delete <" + file + ">: " + e.getMessage());
+		}
+	}
+
+	@Override
+	protected void storeSource(String uniqueId, byte[] bytes) throws IOException {
+		write(documentsPath.resolve(encode(uniqueId)), bytes);
+	}
+
+	@Override
+	protected byte[] loadSource(String uniqueId) throws IOException {
+		return read(documentsPath.resolve(encode(uniqueId)));
+	}
+
+	@Override
+	protected void removeSource(String uniqueId) throws IOException {
+		Files.deleteIfExists(documentsPath.resolve(encode(uniqueId)));
+	}
+
+	@Override
+	protected void storeAssociated(String uniqueId, String fileName, byte[] bytes) throws IOException {
+		write(associatedPath.resolve(encode(uniqueId)).resolve(encode(fileName)), bytes);
+	}
+
+	@Override
+	protected byte[] loadAssociated(String uniqueId, String fileName) throws IOException {
+		return read(associatedPath.resolve(encode(uniqueId)).resolve(encode(fileName)));
+	}
+
+	@Override
+	protected List<byte[]> loadAssociated(String uniqueId) throws IOException {
+		List<byte[]> documents = new ArrayList<>();
+		Path documentPath = associatedPath.resolve(encode(uniqueId));
+		if (!Files.isDirectory(documentPath)) {
+			return documents;
+		}
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(documentPath)) {
+			for (Path file : stream) {
+				if (!file.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+					byte[] bytes = read(file);
+					if (bytes != null) {
+						documents.add(bytes);
+					}
+				}
+			}
+		}
+		return documents;
+	}
+
+	@Override
+	protected void removeAssociated(String uniqueId, String fileName) {
+		delete(associatedPath.resolve(encode(uniqueId)).resolve(encode(fileName)));
+	}
+
+	@Override
+	protected void removeAssociated(String uniqueId) {
+		delete(associatedPath.resolve(encode(uniqueId)));
+	}
+
+	@Override
+	public void deleteAllDocuments() {
+		delete(documentsPath);
+		delete(associatedPath);
+		try {
+			Files.createDirectories(documentsPath);
+			Files.createDirectories(associatedPath);
+		}
+		catch (IOException e) {
+			log.error("Failed to recreate <" + path + ">: " + e.getMessage());
+		}
+	}
+
+	@Override
+	public void drop() {
+		delete(path);
+	}
+}
@@ -0,0 +1,316 @@
+package org.lumongo.storage.rawfiles;
+
+import com.google.protobuf.ByteString;
+import org.bson.BSON;
+import org.bson.BSONObject;
+import org.bson.BasicBSONObject;
+import org.lumongo.cluster.message.Lumongo.AssociatedDocument;
+import org.lumongo.cluster.message.Lumongo.FetchType;
+import org.lumongo.cluster.message.Lumongo.Metadata;
+import org.lumongo.cluster.message.Lumongo.ResultDocument;
+import org.lumongo.storage.constants.MongoConstants;
+import org.lumongo.util.CommonCompression;
+import org.lumongo.util.CommonCompression.CompressionLevel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Document storage kept on the local node instead of mongo, for single node benchmarks and tests
+ *
+ * Documents are kept as the same BSON documents {@link MongoDocumentStorage} stores, encoded to bytes, so results are
+ * identical whichever storage is used.  Subclasses only decide where the bytes are kept.
+ */
+public abstract class LocalDocumentStorage implements DocumentStorage {
+
+	private static final String FILENAME = "filename";
+	private static final String ASSOCIATED_METADATA = "metadata";
+	private static final String BYTES = "bytes";
+
+	private static final String TIMESTAMP = "_tstamp_";
+	private static final String METADATA = "_meta_";
+	private static final String COMPRESSED_FLAG = "_comp_";
+	private static final String DOCUMENT_UNIQUE_ID_KEY = "_uid_";
+
+	private final String indexName;
+
+	protected LocalDocumentStorage(String indexName) {
+		this.indexName = indexName;
+	}
+
+	protected abstract void storeSource(String uniqueId, byte[] bytes) throws IOException;
+
+	/**
+	 * @return the encoded document or null if there is no document for the unique id
+	 */
+	protected abstract byte[] loadSource(String uniqueId) throws IOException;
+
+	protected abstract void removeSource(String uniqueId) throws IOException;
+
+	protected abstract void storeAssociated(String uniqueId, String fileName, byte[] bytes) throws IOException;
+
+	/**
+	 * @return the encoded associated document or null if the document has no associated file with the name
+	 */
+	protected abstract byte[] loadAssociated(String uniqueId, String fileName) throws IOException;
+
+	/**
+	 * @return the encoded associated documents of the document
+	 */
+	protected abstract List<byte[]> loadAssociated(String uniqueId) throws IOException;
+
+	protected abstract void removeAssociated(String uniqueId, String fileName);
+
+	protected abstract void removeAssociated(String uniqueId);
+
+	@Override
+	public void storeSourceDocument(String uniqueId, long timeStamp, BasicBSONObject document, List<Metadata> metaDataList) throws Exception {
+		BasicBSONObject object = new BasicBSONObject();
+		object.put(MongoConstants.StandardFields._ID, uniqueId);
+		object.putAll((BSONObject) document);
+
+		if (!metaDataList.isEmpty()) {
+			BasicBSONObject metadata = new BasicBSONObject();
+			for (Metadata meta : metaDataList) {
+				metadata.put(meta.getKey(), meta.getValue());
+			}
+			object.put(METADATA, metadata);
+		}
+
+		object.put(TIMESTAMP, timeStamp);
+
+		storeSource(uniqueId, BSON.encode(object));
+	}
+
+	@Override
+	public void storeSourceDocuments(List<String> uniqueIds, long timeStamp, List<BasicBSONObject> documents, List<List<Metadata>> metaDataLists)
+					throws Exception {
+		for (int i = 0; i < uniqueIds.size(); i++) {
+			storeSourceDocument(uniqueIds.get(i), timeStamp, documents.get(i), metaDataLists.get(i));
+		}
+	}
+
+	@Override
+	public ResultDocument getSourceDocument(String uniqueId, FetchType fetchType, List<String> fieldsToReturn, List<String> fieldsToMask) throws Exception {
+		if (FetchType.NONE.equals(fetchType)) {
+			return null;
+		}
+
+		byte[] bytes = loadSource(uniqueId);
+		if (bytes == null) {
+			return null;
+		}
+
+		BSONObject result = BSON.decode(bytes);
+
+		ResultDocument.Builder dBuilder = ResultDocument.newBuilder();
+		dBuilder.setUniqueId(uniqueId);
+		dBuilder.setTimestamp((long) result.removeField(TIMESTAMP));
+
+		BSONObject metadata = (BSONObject) result.removeField(METADATA);
+		if (metadata != null) {
+			for (String key : metadata.keySet()) {
+				dBuilder.addMetadata(Metadata.newBuilder().setKey(key).setValue((String) metadata.get(key)));
+			}
+		}
+
+		if (FetchType.FULL.equals(fetchType)) {
+			BSONObject resultObj = result;
+			if (!fieldsToReturn.isEmpty()) {
+				resultObj = new BasicBSONObject(MongoConstants.StandardFields._ID, result.get(MongoConstants.StandardFields._ID));
+				for (String fieldToReturn : fieldsToReturn) {
+					copyField(result, resultObj, fieldToReturn);
+				}
+			}
+			else {
+				for (String fieldToMask : fieldsToMask) {
+					removeField(result, fieldToMask);
+				}
+			}
+			dBuilder.setDocument(ByteString.copyFrom(BSON.encode(resultObj)));
+		}
+
+		dBuilder.setIndexName(indexName);
+		return dBuilder.build();
+	}
+
+	/**
+	 * Copies a field given by a dotted path, creating the parent documents in the target
+	 */
+	private static void copyField(BSONObject source, BSONObject target, String path) {
+		int dot = path.indexOf('.');
+		if (dot < 0) {
+			if (source.containsField(path)) {
+				target.put(path, source.get(path));
+			}
+			return;
+		}
+
+		String key = path.substring(0, dot);
+		Object child = source.get(key);
+		if (child instanceof BSONObject && !(child instanceof List)) {
+			Object targetChild = target.get(key);
+			if (!(targetChild instanceof BSONObject)) {
+				targetChild = new BasicBSONObject();
+				target.put(key, targetChild);
+			}
+			copyField((BSONObject) child, (BSONObject) targetChild, path.substring(dot + 1));
+		}
+	}
+
+	private static void removeField(BSONObject source, String path) {
+		int dot = path.indexOf('.');
+		if (dot < 0) {
+			source.removeField(path);
+			return;
+		}
+
+		Object child = source.get(path.substring(0, dot));
+		if (child instanceof BSONObject && !(child instanceof List)) {
+			removeField((BSONObject) child, path.substring(dot + 1));
+		}
+	}
+
+	@Override
+	public void deleteSourceDocument(String uniqueId) throws Exception {
+		removeSource(uniqueId);
+	}
+
+	@Override
+	public void storeAssociatedDocument(String uniqueId, String fileName, InputStream is, boolean compress, long timestamp, HashMap<String, String> metadataMap)
+					throws Exception {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = is.read(buffer)) != -1) {
+			baos.write(buffer, 0, read);
+		}
+
+		Map<String, String> metadata = metadataMap != null ? metadataMap : new HashMap<>();
+		storeAssociated(uniqueId, fileName, baos.toByteArray(), compress, timestamp, metadata);
+	}
+
+	@Override
+	public void storeAssociatedDocument(AssociatedDocument doc) throws Exception {
+		Map<String, String> metadata = new HashMap<>();
+		for (Metadata meta : doc.getMetadataList()) {
+			metadata.put(meta.getKey(), meta.getValue());
+		}
+		storeAssociated(doc.getDocumentUniqueId(), doc.getFilename(), doc.getDocument().toByteArray(), doc.getCompressed(), doc.getTimestamp(), metadata);
+	}
+
+	private void storeAssociated(String uniqueId, String fileName, byte[] bytes, boolean compress, long timestamp, Map<String, String> metadataMap)
+					throws IOException {
+		if (compress) {
+			bytes = CommonCompression.compressZlib(bytes, CompressionLevel.FASTEST);
+		}
+
+		BasicBSONObject metadata = new BasicBSONObject();
+		metadata.putAll(metadataMap);
+		metadata.put(TIMESTAMP, timestamp);
+		metadata.put(COMPRESSED_FLAG, compress);
+		metadata.put(DOCUMENT_UNIQUE_ID_KEY, uniqueId);
+
+		BasicBSONObject object = new BasicBSONObject();
+		object.put(FILENAME, fileName);
+		object.put(ASSOCIATED_METADATA, metadata);
+		object.put(BYTES, bytes);
+
+		storeAssociated(uniqueId, fileName, BSON.encode(object));
+	}
+
+	@Override
+	public List<AssociatedDocument> getAssociatedDocuments(String uniqueId, FetchType fetchType) throws Exception {
+		List<AssociatedDocument> assocDocs = new ArrayList<>();
+		if (!FetchType.NONE.equals(fetchType)) {
+			for (byte[] bytes : loadAssociated(uniqueId)) {
+				assocDocs.add(toAssociatedDocument(BSON.decode(bytes), fetchType));
+			}
+		}
+		return assocDocs;
+	}
+
+	@Override
+	public AssociatedDocument getAssociatedDocument(String uniqueId, String fileName, FetchType fetchType) throws Exception {
+		if (!FetchType.NONE.equals(fetchType)) {
+			byte[] bytes = loadAssociated(uniqueId, fileName);
+			if (bytes != null) {
+				return toAssociatedDocument(BSON.decode(bytes), fetchType);
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public InputStream getAssociatedDocumentStream(String uniqueId, String fileName) {
+		try {
+			byte[] bytes = loadAssociated(uniqueId, fileName);
+			if (bytes == null) {
+				return null;
+			}
+			BSONObject object = BSON.decode(bytes);
+			BSONObject metadata = (BSONObject) object.get(ASSOCIATED_METADATA);
+			byte[] document = (byte[]) object.get(BYTES);
+			if (Boolean.TRUE.equals(metadata.get(COMPRESSED_FLAG))) {
+				document = CommonCompression.uncompressZlib(document);
+			}
+			return new ByteArrayInputStream(document);
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Failed to read associated document <" + fileName + "> of <" + uniqueId + ">", e);
+		}
+	}
+
+	private AssociatedDocument toAssociatedDocument(BSONObject object, FetchType fetchType) throws IOException {
+		AssociatedDocument.Builder aBuilder = AssociatedDocument.newBuilder();
+		aBuilder.setFilename((String) object.get(FILENAME));
+		BSONObject metadata = (BSONObject) object.get(ASSOCIATED_METADATA);
+
+		boolean compressed = (boolean) metadata.removeField(COMPRESSED_FLAG);
+		long timestamp = (long) metadata.removeField(TIMESTAMP);
+
+		aBuilder.setCompressed(compressed);
+		aBuilder.setTimestamp(timestamp);
+
+		aBuilder.setDocumentUniqueId((String) metadata.removeField(DOCUMENT_UNIQUE_ID_KEY));
+		for (String field : metadata.keySet()) {
+			aBuilder.addMetadata(Metadata.newBuilder().setKey(field).setValue((String) metadata.get(field)));
+		}
+
+		if (FetchType.FULL.equals(fetchType)) {
+			byte[] bytes = (byte[]) object.get(BYTES);
+			if (compressed) {
+				bytes = CommonCompression.uncompressZlib(bytes);
+			}
+			aBuilder.setDocument(ByteString.copyFrom(bytes));
+		}
+		aBuilder.setIndexName(indexName);
+		return aBuilder.build();
+	}
+
+	@Override
+	public List<String> getAssociatedFilenames(String uniqueId) throws Exception {
+		List<String> fileNames = new ArrayList<>();
+		for (byte[] bytes : loadAssociated(uniqueId)) {
+			fileNames.add((String) BSON.decode(bytes).get(FILENAME));
+		}
+		return fileNames;
+	}
+
+	@Override
+	public void deleteAssociatedDocument(String uniqueId, String fileName) {
+		removeAssociated(uniqueId, fileName);
+	}
+
+	@Override
+	public void deleteAssociatedDocuments(String uniqueId) {
+		removeAssociated(uniqueId);
+	}
+
+}
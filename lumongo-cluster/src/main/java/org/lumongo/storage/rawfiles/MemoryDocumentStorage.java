@@ -0,0 +1,89 @@
+package org.lumongo.storage.rawfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Document storage held on the java heap of the node, kept for the life of the process under the database name so an
+ * index that is closed and loaded again sees the same documents.  Nothing is durable.
+ */
+public class MemoryDocumentStorage extends LocalDocumentStorage {
+
+	private static final ConcurrentMap<String, MemoryDocumentStorage> storages = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, byte[]> sourceDocuments;
+	private final ConcurrentMap<String, Map<String, byte[]>> associatedDocuments;
+
+	/**
+	 * @return the storage of the database, created if it does not exist yet
+	 */
+	public static MemoryDocumentStorage getStorage(String indexName, String dbName) {
+		return storages.computeIfAbsent(dbName, key -> new MemoryDocumentStorage(indexName));
+	}
+
+	private MemoryDocumentStorage(String indexName) {
+		super(indexName);
+		this.sourceDocuments = new ConcurrentHashMap<>();
+		this.associatedDocuments = new ConcurrentHashMap<>();
+	}
+
+	@Override
+	protected void storeSource(String uniqueId, byte[] bytes) {
+		sourceDocuments.put(uniqueId, bytes);
+	}
+
+	@Override
+	protected byte[] loadSource(String uniqueId) {
+		return sourceDocuments.get(uniqueId);
+	}
+
+	@Override
+	protected void removeSource(String uniqueId) {
+		sourceDocuments.remove(uniqueId);
+	}
+
+	@Override
+	protected void storeAssociated(String uniqueId, String fileName, byte[] bytes) {
+		associatedDocuments.computeIfAbsent(uniqueId, key -> new ConcurrentHashMap<>()).put(fileName, bytes);
+	}
+
+	@Override
+	protected byte[] loadAssociated(String uniqueId, String fileName) {
+		Map<String, byte[]> files = associatedDocuments.get(uniqueId);
+		return files != null ? files.get(fileName) : null;
+	}
+
+	@Override
+	protected List<byte[]> loadAssociated(String uniqueId) {
+		Map<String, byte[]> files = associatedDocuments.get(uniqueId);
+		return files != null ? new ArrayList<>(files.values()) : new ArrayList<>();
+	}
+
+	@Override
+	protected void removeAssociated(String uniqueId, String fileName) {
+		Map<String, byte[]> files = associatedDocuments.get(uniqueId);
+		if (files != null) {
+			files.remove(fileName);
+		}
+	}
+
+	@Override
+	protected void removeAssociated(String uniqueId) {
+		associatedDocuments.remove(uniqueId);
+	}
+
+	@Override
+	public void deleteAllDocuments() {
+		sourceDocuments.clear();
+		associatedDocuments.clear();
+	}
+
+	@Override
+	public void drop() {
+		deleteAllDocuments();
+		storages.values().remove(this);
+	}
+}
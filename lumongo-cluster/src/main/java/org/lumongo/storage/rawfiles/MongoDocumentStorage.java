@@ -7,7 +7,10 @@ import com.mongodb.DBObject;
 import com.mongodb.MongoClient;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.ReplaceOneModel;
 import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.gridfs.GridFS;
 import com.mongodb.gridfs.GridFSDBFile;
 import com.mongodb.gridfs.GridFSFile;
@@ -92,6 +95,30 @@ public class MongoDocumentStorage implements DocumentStorage {
 	public void storeSourceDocument(String uniqueId, long timeStamp, BasicBSONObject document, List<Metadata> metaDataList) throws Exception {
 		MongoDatabase db = pool.getDatabase(database);
 		MongoCollection<Document> coll = db.getCollection(rawCollectionName);
+
+		ReplaceOneModel<Document> storeModel = getStoreModel(uniqueId, timeStamp, document, metaDataList);
+		coll.replaceOne(storeModel.getFilter(), storeModel.getReplacement(), storeModel.getOptions());
+	}
+
+	@Override
+	public void storeSourceDocuments(List<String> uniqueIds, long timeStamp, List<BasicBSONObject> documents, List<List<Metadata>> metaDataLists)
+					throws Exception {
+		if (uniqueIds.isEmpty()) {
+			return;
+		}
+
+		MongoDatabase db = pool.getDatabase(database);
+		MongoCollection<Document> coll = db.getCollection(rawCollectionName);
+
+		List<WriteModel<Document>> storeModels = new ArrayList<>(uniqueIds.size());
+		for (int i = 0; i < uniqueIds.size(); i++) {
+			storeModels.add(getStoreModel(uniqueIds.get(i), timeStamp, documents.get(i), metaDataLists.get(i)));
+		}
+		//ordered so the last of the same unique id in a batch wins
+		coll.bulkWrite(storeModels, new BulkWriteOptions().ordered(true));
+	}
+
+	private ReplaceOneModel<Document> getStoreModel(String uniqueId, long timeStamp, BasicBSONObject document, List<Metadata> metaDataList) {
 		Document object = new Document();
 		object.putAll(document);
 
@@ -108,7 +135,7 @@ public class MongoDocumentStorage implements DocumentStorage {
 		
 		Document query = new Document(MongoConstants.StandardFields._ID, uniqueId);
 		
-		coll.replaceOne(query, object, new UpdateOptions().upsert(true));
+		return new ReplaceOneModel<>(query, object, new UpdateOptions().upsert(true));
 	}
 	
 	@Override
@@ -0,0 +1,50 @@
+package org.lumongo.test.cluster;
+
+import org.lumongo.server.indexing.LumongoIndex;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+public class DocumentConverterTest {
+
+	@Test
+	public void testCallerRunsWhenSaturated() throws Exception {
+		ThreadPoolExecutor documentConverter = LumongoIndex.createDocumentConverter(2, 2);
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			//both threads are busy and the queue is full
+			CountDownLatch started = new CountDownLatch(2);
+			for (int i = 0; i < 2; i++) {
+				documentConverter.submit(() -> {
+					started.countDown();
+					release.await();
+					return null;
+				});
+			}
+			assertTrue(started.await(10, TimeUnit.SECONDS));
+
+			Future<String> queuedFirst = documentConverter.submit(() -> Thread.currentThread().getName());
+			Future<String> queuedSecond = documentConverter.submit(() -> Thread.currentThread().getName());
+			assertEquals(2, documentConverter.getQueue().size());
+
+			//the submitting thread converts the document itself instead of failing or waiting
+			Future<String> overflow = documentConverter.submit(() -> Thread.currentThread().getName());
+			assertTrue(overflow.isDone());
+			assertEquals(Thread.currentThread().getName(), overflow.get());
+
+			release.countDown();
+			assertTrue(queuedFirst.get(10, TimeUnit.SECONDS).matches("LumongoDocumentConverter-[12]"));
+			assertTrue(queuedSecond.get(10, TimeUnit.SECONDS).matches("LumongoDocumentConverter-[12]"));
+		}
+		finally {
+			release.countDown();
+			documentConverter.shutdownNow();
+		}
+	}
+}
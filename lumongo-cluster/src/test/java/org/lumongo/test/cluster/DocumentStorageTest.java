@@ -0,0 +1,171 @@
+package org.lumongo.test.cluster;
+
+import com.google.protobuf.ByteString;
+import org.bson.BSON;
+import org.bson.BSONObject;
+import org.bson.BasicBSONObject;
+import org.lumongo.cluster.message.Lumongo.AssociatedDocument;
+import org.lumongo.cluster.message.Lumongo.FetchType;
+import org.lumongo.cluster.message.Lumongo.Metadata;
+import org.lumongo.cluster.message.Lumongo.ResultDocument;
+import org.lumongo.storage.rawfiles.DocumentStorage;
+import org.lumongo.storage.rawfiles.FileDocumentStorage;
+import org.lumongo.storage.rawfiles.MemoryDocumentStorage;
+import org.lumongo.util.StreamHelper;
+import org.lumongo.util.TestHelper;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.stream.Stream;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Round trips source and associated documents through the document storages kept on the local node
+ */
+public class DocumentStorageTest {
+	private static final String STORAGE_TEST_INDEX = "documentStorageTest";
+	private static final String STORAGE_TEST_DB = TestHelper.TEST_DATABASE_NAME + "_" + STORAGE_TEST_INDEX;
+
+	private static Path root;
+
+	@BeforeClass
+	public static void init() throws Exception {
+		root = Files.createTempDirectory("lumongoDocumentStorageTest");
+	}
+
+	@AfterClass
+	public static void cleanUp() throws Exception {
+		try (Stream<Path> paths = Files.walk(root)) {
+			for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+				Files.deleteIfExists(path);
+			}
+		}
+	}
+
+	@Test
+	public void testMemoryDocumentStorage() throws Exception {
+		testRoundTrip(() -> MemoryDocumentStorage.getStorage(STORAGE_TEST_INDEX, STORAGE_TEST_DB));
+	}
+
+	@Test
+	public void testFileDocumentStorage() throws Exception {
+		testRoundTrip(() -> new FileDocumentStorage(root, STORAGE_TEST_INDEX, STORAGE_TEST_DB));
+		assertFalse(Files.exists(root.resolve(STORAGE_TEST_DB)));
+	}
+
+	/**
+	 * Stores, reads, replaces and deletes documents, reopening the storage between steps, then drops it
+	 * @param storageFactory - opens the storage under test, called again to reopen it
+	 */
+	private static void testRoundTrip(Callable<DocumentStorage> storageFactory) throws Exception {
+		DocumentStorage documentStorage = storageFactory.call();
+
+		BasicBSONObject address = new BasicBSONObject("city", "Paris").append("zip", "75001");
+		BasicBSONObject document = new BasicBSONObject("title", "Really big fish").append("rating", 5).append("address", address);
+		List<Metadata> metadata = Collections.singletonList(Metadata.newBuilder().setKey("source").setValue("test").build());
+		documentStorage.storeSourceDocument("id-1", 1000L, document, metadata);
+
+		documentStorage.storeSourceDocuments(Arrays.asList("id-2", "id-3"), 2000L,
+						Arrays.asList(new BasicBSONObject("title", "Java is awesome"), new BasicBSONObject("title", "MongoDB is awesome")),
+						Arrays.asList(Collections.emptyList(), Collections.emptyList()));
+
+		byte[] fileBytes = new byte[10000];
+		Arrays.fill(fileBytes, (byte) 'a');
+		HashMap<String, String> fileMetadata = new HashMap<>();
+		fileMetadata.put("contentType", "text/plain");
+		documentStorage.storeAssociatedDocument("id-1", "notes.txt", new ByteArrayInputStream(fileBytes), true, 3000L, fileMetadata);
+		documentStorage.storeAssociatedDocument(AssociatedDocument.newBuilder().setFilename("raw.bin").setDocumentUniqueId("id-1").setIndexName(STORAGE_TEST_INDEX)
+						.setDocument(ByteString.copyFrom(new byte[] { 1, 2, 3 })).setTimestamp(4000L).build());
+
+		documentStorage = storageFactory.call();
+
+		ResultDocument result = documentStorage.getSourceDocument("id-1", FetchType.FULL, Collections.emptyList(), Collections.emptyList());
+		assertEquals("id-1", result.getUniqueId());
+		assertEquals(STORAGE_TEST_INDEX, result.getIndexName());
+		assertEquals(1000L, result.getTimestamp());
+		assertEquals(metadata, result.getMetadataList());
+		BSONObject stored = BSON.decode(result.getDocument().toByteArray());
+		assertEquals("id-1", stored.get("_id"));
+		assertEquals("Really big fish", stored.get("title"));
+		assertEquals(5, stored.get("rating"));
+		assertEquals("75001", ((BSONObject) stored.get("address")).get("zip"));
+
+		BSONObject projected = BSON.decode(documentStorage.getSourceDocument("id-1", FetchType.FULL, Collections.singletonList("address.city"),
+						Collections.emptyList()).getDocument().toByteArray());
+		assertEquals(new HashSet<>(Arrays.asList("_id", "address")), projected.keySet());
+		assertEquals(Collections.singleton("city"), ((BSONObject) projected.get("address")).keySet());
+
+		BSONObject masked = BSON.decode(documentStorage.getSourceDocument("id-1", FetchType.FULL, Collections.emptyList(),
+						Arrays.asList("rating", "address.zip")).getDocument().toByteArray());
+		assertFalse(masked.containsField("rating"));
+		assertEquals(Collections.singleton("city"), ((BSONObject) masked.get("address")).keySet());
+
+		ResultDocument meta = documentStorage.getSourceDocument("id-1", FetchType.META, Collections.emptyList(), Collections.emptyList());
+		assertFalse(meta.hasDocument());
+		assertEquals(1000L, meta.getTimestamp());
+		assertNull(documentStorage.getSourceDocument("id-1", FetchType.NONE, Collections.emptyList(), Collections.emptyList()));
+
+		assertEquals(2000L, documentStorage.getSourceDocument("id-3", FetchType.FULL, Collections.emptyList(), Collections.emptyList()).getTimestamp());
+		assertNull(documentStorage.getSourceDocument("id-4", FetchType.FULL, Collections.emptyList(), Collections.emptyList()));
+
+		assertEquals(new HashSet<>(Arrays.asList("notes.txt", "raw.bin")), new HashSet<>(documentStorage.getAssociatedFilenames("id-1")));
+		assertEquals(2, documentStorage.getAssociatedDocuments("id-1", FetchType.FULL).size());
+		AssociatedDocument notes = documentStorage.getAssociatedDocument("id-1", "notes.txt", FetchType.FULL);
+		assertTrue(notes.getCompressed());
+		assertEquals(3000L, notes.getTimestamp());
+		assertEquals("id-1", notes.getDocumentUniqueId());
+		assertEquals(Collections.singletonList(Metadata.newBuilder().setKey("contentType").setValue("text/plain").build()), notes.getMetadataList());
+		assertTrue(Arrays.equals(fileBytes, notes.getDocument().toByteArray()));
+		assertFalse(documentStorage.getAssociatedDocument("id-1", "notes.txt", FetchType.META).hasDocument());
+		try (InputStream is = documentStorage.getAssociatedDocumentStream("id-1", "notes.txt")) {
+			assertTrue(Arrays.equals(fileBytes, StreamHelper.getBytesFromStream(is)));
+		}
+		assertTrue(Arrays.equals(new byte[] { 1, 2, 3 }, documentStorage.getAssociatedDocument("id-1", "raw.bin", FetchType.FULL).getDocument().toByteArray()));
+
+		//replace a document and delete the others
+		documentStorage.storeSourceDocument("id-1", 5000L, new BasicBSONObject("title", "Small fish"), Collections.emptyList());
+		documentStorage.deleteSourceDocument("id-2");
+		documentStorage.deleteAssociatedDocument("id-1", "raw.bin");
+
+		documentStorage = storageFactory.call();
+
+		result = documentStorage.getSourceDocument("id-1", FetchType.FULL, Collections.emptyList(), Collections.emptyList());
+		assertEquals(5000L, result.getTimestamp());
+		assertEquals(0, result.getMetadataCount());
+		assertEquals("Small fish", BSON.decode(result.getDocument().toByteArray()).get("title"));
+		assertNull(documentStorage.getSourceDocument("id-2", FetchType.FULL, Collections.emptyList(), Collections.emptyList()));
+		assertNotNull(documentStorage.getSourceDocument("id-3", FetchType.FULL, Collections.emptyList(), Collections.emptyList()));
+		assertEquals(Collections.singletonList("notes.txt"), documentStorage.getAssociatedFilenames("id-1"));
+		assertNull(documentStorage.getAssociatedDocument("id-1", "raw.bin", FetchType.FULL));
+
+		documentStorage.deleteAssociatedDocuments("id-1");
+		assertTrue(documentStorage.getAssociatedFilenames("id-1").isEmpty());
+
+		documentStorage.deleteAllDocuments();
+		assertNull(documentStorage.getSourceDocument("id-3", FetchType.FULL, Collections.emptyList(), Collections.emptyList()));
+
+		documentStorage.storeSourceDocument("id-5", 6000L, new BasicBSONObject("title", "Dropped"), Collections.emptyList());
+		documentStorage.drop();
+
+		documentStorage = storageFactory.call();
+		assertNull(documentStorage.getSourceDocument("id-5", FetchType.FULL, Collections.emptyList(), Collections.emptyList()));
+		documentStorage.drop();
+	}
+}
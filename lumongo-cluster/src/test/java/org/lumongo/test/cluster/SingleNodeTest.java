@@ -3,6 +3,7 @@ package org.lumongo.test.cluster;
 import com.mongodb.BasicDBObject;
 import com.mongodb.DBObject;
 import org.joda.time.DateTime;
+import org.lumongo.client.command.BatchStore;
 import org.lumongo.client.command.DeleteAllAssociated;
 import org.lumongo.client.command.DeleteAssociated;
 import org.lumongo.client.command.DeleteFull;
@@ -14,6 +15,7 @@ import org.lumongo.client.command.Query;
 import org.lumongo.client.command.Store;
 import org.lumongo.client.config.IndexConfig;
 import org.lumongo.client.pool.LumongoWorkPool;
+import org.lumongo.client.result.BatchStoreResult;
 import org.lumongo.client.result.FetchResult;
 import org.lumongo.client.result.GetIndexesResult;
 import org.lumongo.client.result.QueryResult;
@@ -309,8 +311,78 @@ public class SingleNodeTest extends ServerTestBase {
 				
 			}
 		}
+
+		{
+			final String batchUniqueIdPrefix = "batchUniqueId-";
+
+			BatchStore batchStore = new BatchStore();
+			for (int i = 0; i < DOCUMENTS_LOADED; i++) {
+				String uniqueId = batchUniqueIdPrefix + i;
+
+				DBObject object = new BasicDBObject();
+				object.put("issn", "5678-5678");
+				object.put("title", "Batched Search and Storage System");
+				object.put("an", 100 + i);
+
+				batchStore.addStore(new Store(uniqueId, MY_TEST_INDEX).setResultDocument(ResultDocBuilder.newBuilder().setDocument(object)));
+			}
+
+			BatchStoreResult batchStoreResult = lumongoWorkPool.batchStore(batchStore);
+			assertEquals("Store status count is not " + DOCUMENTS_LOADED, DOCUMENTS_LOADED, batchStoreResult.getStoreStatuses().size());
+			assertTrue("Batch store failed", batchStoreResult.isAllStored());
+
+			QueryResult qr = lumongoWorkPool.query(new Query(MY_TEST_INDEX, "issn:5678-5678", 20));
+			assertEquals("Total hits is not " + DOCUMENTS_LOADED, DOCUMENTS_LOADED, qr.getTotalHits());
+
+			qr = lumongoWorkPool.query(new Query(MY_TEST_INDEX, "an:102", 10));
+			assertEquals("Total hits is not 1", 1, qr.getTotalHits());
+			assertEquals("Unique id does not match expected", batchUniqueIdPrefix + 2, qr.getResults().get(0).getUniqueId());
+
+			for (int i = 0; i < DOCUMENTS_LOADED; i++) {
+				String uniqueId = batchUniqueIdPrefix + i;
+
+				FetchResult response = lumongoWorkPool.fetch(new FetchDocument(uniqueId, MY_TEST_INDEX));
+				assertTrue("Fetch failed for <" + uniqueId + ">", response.hasResultDocument());
+				DBObject dbObject = response.getDocument();
+				assertEquals("Stored issn does not match expected", "5678-5678", dbObject.get("issn"));
+				assertEquals("Stored an does not match expected", 100 + i, dbObject.get("an"));
+			}
+		}
 	}
-	
+
+	@Test
+	public void test04Refresh() throws Exception {
+		LumongoWorkPool lumongoWorkPool = getLumongoWorkPool();
+
+		final String refreshTestIndex = "refreshTestIndex";
+
+		IndexConfig indexConfig = new IndexConfig("title");
+		indexConfig.addFieldConfig(FieldConfigBuilder.create("title").indexAs(LMAnalyzer.STANDARD));
+		indexConfig.addFieldConfig(FieldConfigBuilder.create("uid").indexAs(LMAnalyzer.LC_KEYWORD));
+		lumongoWorkPool.createIndex(refreshTestIndex, 1, "uid", indexConfig);
+
+		try {
+			DBObject object = new BasicDBObject();
+			object.put("title", "Refresh Test");
+			lumongoWorkPool.store(new Store("refreshId-1", refreshTestIndex).setResultDocument(ResultDocBuilder.newBuilder().setDocument(object)));
+
+			QueryResult qr = lumongoWorkPool.query(new Query(refreshTestIndex, "title:refresh", 10));
+			assertEquals("Total hits is not 1", 1, qr.getTotalHits());
+
+			lumongoWorkPool.store(new Store("refreshId-2", refreshTestIndex).setResultDocument(ResultDocBuilder.newBuilder().setDocument(object)));
+
+			//opting out of the refresh searches the segment as of the last search
+			qr = lumongoWorkPool.query(new Query(refreshTestIndex, "title:refresh", 10).setRefresh(false));
+			assertEquals("Total hits is not 1 without a refresh", 1, qr.getTotalHits());
+
+			qr = lumongoWorkPool.query(new Query(refreshTestIndex, "title:refresh", 10));
+			assertEquals("Total hits is not 2", 2, qr.getTotalHits());
+		}
+		finally {
+			lumongoWorkPool.deleteIndex(new DeleteIndex(refreshTestIndex));
+		}
+	}
+
 	@Test
 	public void test05Bson() throws Exception {
 		LumongoWorkPool lumongoWorkPool = getLumongoWorkPool();
@@ -0,0 +1,506 @@
+package org.lumongo.storage.lucene;
+
+import org.lumongo.util.LockIndexer;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to You under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+/**
+ * Node level cache of index blocks bounded by bytes instead of block count
+ *
+ * Blocks are grouped by the index number encoded in the block key.  When the cache is over its size the index using
+ * the most bytes relative to its weight gives up a block, so a busy index cannot push out the blocks of every other
+ * index.  An index can also be given a hard byte quota.
+ *
+ * The blocks of an index are split over lock segments that each keep their blocks in access order.  Eviction takes the
+ * least recently used block of the next segment in turn, so the order is only close to least recently used.
+ *
+ * A block is never evicted by its own insert, so a block larger than the quota of its index stays cached until the next
+ * insert and the caller can read it.  The cache can be over its size or a quota by that block in the meantime.
+ *
+ * Every block leaving the cache is released after the removal listener runs so off heap blocks can hand their memory
+ * back to the allocator.
+ */
+public class BlockCache {
+
+	public static final int DEFAULT_WEIGHT = 1;
+
+	private static final int SEGMENT_BITS = 4;
+
+	//block numbers are never negative so no block has this key
+	private static final long NO_BLOCK = -1;
+
+	private final ConcurrentHashMap<Short, IndexCache> indexCacheMap;
+	private final Consumer<MongoBlock> removalListener;
+	private final AtomicLong usedBytes;
+
+	private volatile long maxBytes;
+
+	public BlockCache(long maxBytes, Consumer<MongoBlock> removalListener) {
+		this.maxBytes = maxBytes;
+		this.removalListener = removalListener;
+		this.indexCacheMap = new ConcurrentHashMap<>();
+		this.usedBytes = new AtomicLong();
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Changes the size of the cache in place, evicting blocks if the cache shrunk
+	 * @param maxBytes - new maximum size of the cache in bytes
+	 */
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+		evictIfNeeded(NO_BLOCK);
+	}
+
+	public long getUsedBytes() {
+		return usedBytes.get();
+	}
+
+	public void registerIndex(short indexNumber, String indexName) {
+		getIndexCache(indexNumber).indexName = indexName;
+	}
+
+	/**
+	 * Sets the share of the cache an index gets relative to the other indexes when the cache is full
+	 * @param indexNumber - index number the blocks are keyed by
+	 * @param weight - relative weight, defaults to {@link #DEFAULT_WEIGHT}
+	 */
+	public void setIndexWeight(short indexNumber, int weight) {
+		if (weight < 1) {
+			throw new IllegalArgumentException("Cache weight must be at least 1, found <" + weight + ">");
+		}
+		getIndexCache(indexNumber).weight = weight;
+	}
+
+	/**
+	 * Sets a hard limit on the bytes an index can hold in the cache
+	 * @param indexNumber - index number the blocks are keyed by
+	 * @param quotaBytes - maximum bytes for the index or 0 for no limit
+	 */
+	public void setIndexQuota(short indexNumber, long quotaBytes) {
+		IndexCache indexCache = getIndexCache(indexNumber);
+		indexCache.quotaBytes = quotaBytes;
+		evictOverQuota(indexCache, NO_BLOCK);
+	}
+
+	/**
+	 * @return true if the key is cached, does not count a hit or miss or change the eviction order
+	 */
+	public boolean contains(long blockKey) {
+		return getIndexCache(blockKey).contains(blockKey);
+	}
+
+	/**
+	 * Returns the block for the key if it is cached without counting a hit or miss
+	 */
+	public MongoBlock getIfPresent(long blockKey) {
+		return getIndexCache(blockKey).get(blockKey);
+	}
+
+	/**
+	 * Returns the block for the key, loading it with the given loader on a miss.  Concurrent misses on the same key only
+	 * load the block once.
+	 */
+	public MongoBlock get(long blockKey, Callable<MongoBlock> loader) throws ExecutionException {
+		IndexCache indexCache = getIndexCache(blockKey);
+		MongoBlock mongoBlock = indexCache.get(blockKey);
+		if (mongoBlock != null) {
+			indexCache.hits.increment();
+			return mongoBlock;
+		}
+		indexCache.misses.increment();
+
+		FutureTask<MongoBlock> loadTask = new FutureTask<>(loader);
+		FutureTask<MongoBlock> existingTask = indexCache.loading.putIfAbsent(blockKey, loadTask);
+		if (existingTask != null) {
+			return getLoaded(existingTask);
+		}
+
+		try {
+			loadTask.run();
+			MongoBlock loaded = getLoaded(loadTask);
+			MongoBlock existing = indexCache.putIfAbsent(loaded);
+			if (existing != null) {
+				return existing;
+			}
+			onInsert(indexCache, loaded);
+			return loaded;
+		}
+		finally {
+			indexCache.loading.remove(blockKey, loadTask);
+		}
+	}
+
+	private static MongoBlock getLoaded(FutureTask<MongoBlock> loadTask) throws ExecutionException {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					MongoBlock mongoBlock = loadTask.get();
+					if (mongoBlock == null) {
+						throw new ExecutionException(new NullPointerException("Block loader returned null"));
+					}
+					return mongoBlock;
+				}
+				catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Adds a block unless the key is already cached, used to insert blocks that were read ahead without counting a miss
+	 * @return true if the block was added
+	 */
+	public boolean putIfAbsent(MongoBlock mongoBlock) {
+		IndexCache indexCache = getIndexCache(mongoBlock.blockKey);
+		if (indexCache.putIfAbsent(mongoBlock) != null) {
+			return false;
+		}
+		onInsert(indexCache, mongoBlock);
+		return true;
+	}
+
+	public void put(MongoBlock mongoBlock) {
+		IndexCache indexCache = getIndexCache(mongoBlock.blockKey);
+		MongoBlock replaced = indexCache.put(mongoBlock);
+		if (replaced == null) {
+			onInsert(indexCache, mongoBlock);
+		}
+		else if (replaced != mongoBlock) {
+			indexCache.adjustBytes(weigh(mongoBlock) - weigh(replaced));
+			usedBytes.addAndGet(weigh(mongoBlock) - weigh(replaced));
+			removalListener.accept(replaced);
+			replaced.release();
+			evictIfNeeded(mongoBlock.blockKey);
+		}
+	}
+
+	/**
+	 * Removes a block without notifying the removal listener
+	 */
+	public void invalidate(long blockKey) {
+		IndexCache indexCache = getIndexCache(blockKey);
+		MongoBlock removed = indexCache.remove(blockKey);
+		if (removed != null) {
+			usedBytes.addAndGet(-weigh(removed));
+			removed.release();
+		}
+	}
+
+	/**
+	 * Removes all blocks without notifying the removal listener
+	 */
+	public void clear() {
+		for (IndexCache indexCache : indexCacheMap.values()) {
+			List<MongoBlock> cleared = indexCache.clear();
+			for (MongoBlock mongoBlock : cleared) {
+				usedBytes.addAndGet(-weigh(mongoBlock));
+				mongoBlock.release();
+			}
+		}
+	}
+
+	public List<BlockCacheStats> getStats() {
+		List<BlockCacheStats> stats = new ArrayList<>();
+		for (IndexCache indexCache : indexCacheMap.values()) {
+			stats.add(indexCache.getStats());
+		}
+		return stats;
+	}
+
+	public BlockCacheStats getStats(short indexNumber) {
+		return getIndexCache(indexNumber).getStats();
+	}
+
+	/**
+	 * Evicts for a new block without evicting the new block itself, an off heap block evicted right after it is loaded
+	 * would be released before the caller could read it
+	 */
+	private void onInsert(IndexCache indexCache, MongoBlock mongoBlock) {
+		usedBytes.addAndGet(weigh(mongoBlock));
+		evictOverQuota(indexCache, mongoBlock.blockKey);
+		evictIfNeeded(mongoBlock.blockKey);
+	}
+
+	/**
+	 * @param keptKey - key of a block that is not evicted, {@link #NO_BLOCK} to evict any block
+	 */
+	private void evictOverQuota(IndexCache indexCache, long keptKey) {
+		long quotaBytes = indexCache.quotaBytes;
+		if (quotaBytes > 0) {
+			while (indexCache.usedBytes.get() > quotaBytes) {
+				if (!evictFrom(indexCache, keptKey)) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param keptKey - key of a block that is not evicted, {@link #NO_BLOCK} to evict any block
+	 */
+	private void evictIfNeeded(long keptKey) {
+		while (usedBytes.get() > maxBytes) {
+			IndexCache victim = selectVictim();
+			if (victim == null || !evictFrom(victim, keptKey)) {
+				return;
+			}
+		}
+	}
+
+	private boolean evictFrom(IndexCache indexCache, long keptKey) {
+		MongoBlock evicted = indexCache.evictEldest(keptKey);
+		if (evicted == null) {
+			return false;
+		}
+		usedBytes.addAndGet(-weigh(evicted));
+		indexCache.evictions.increment();
+		removalListener.accept(evicted);
+		evicted.release();
+		return true;
+	}
+
+	/**
+	 * @return the index holding the most bytes relative to its weight
+	 */
+	private IndexCache selectVictim() {
+		IndexCache victim = null;
+		double victimUsage = 0;
+		for (IndexCache indexCache : indexCacheMap.values()) {
+			double usage = (double) indexCache.usedBytes.get() / indexCache.weight;
+			if (usage > victimUsage) {
+				victim = indexCache;
+				victimUsage = usage;
+			}
+		}
+		return victim;
+	}
+
+	private IndexCache getIndexCache(long blockKey) {
+		return getIndexCache((short) (blockKey >>> 48));
+	}
+
+	private IndexCache getIndexCache(short indexNumber) {
+		IndexCache indexCache = indexCacheMap.get(indexNumber);
+		if (indexCache == null) {
+			indexCacheMap.putIfAbsent(indexNumber, new IndexCache(indexNumber));
+			indexCache = indexCacheMap.get(indexNumber);
+		}
+		return indexCache;
+	}
+
+	protected static int weigh(MongoBlock mongoBlock) {
+		return mongoBlock.capacity();
+	}
+
+	private static class Segment {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final LinkedHashMap<Long, MongoBlock> blocks = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	private static class IndexCache {
+		private static final LockIndexer segmentIndexer = new LockIndexer(SEGMENT_BITS);
+
+		private final short indexNumber;
+		private final Segment[] segments;
+		private final AtomicInteger evictionCursor;
+		private final AtomicLong usedBytes;
+		private final ConcurrentHashMap<Long, FutureTask<MongoBlock>> loading;
+
+		private final LongAdder hits;
+		private final LongAdder misses;
+		private final LongAdder evictions;
+
+		private volatile String indexName;
+		private volatile int weight;
+		private volatile long quotaBytes;
+
+		IndexCache(short indexNumber) {
+			this.indexNumber = indexNumber;
+			this.indexName = String.valueOf(indexNumber);
+			this.weight = DEFAULT_WEIGHT;
+			this.segments = new Segment[segmentIndexer.getSegmentSize()];
+			for (int i = 0; i < segments.length; i++) {
+				segments[i] = new Segment();
+			}
+			this.evictionCursor = new AtomicInteger();
+			this.usedBytes = new AtomicLong();
+			this.loading = new ConcurrentHashMap<>();
+			this.hits = new LongAdder();
+			this.misses = new LongAdder();
+			this.evictions = new LongAdder();
+		}
+
+		private Segment getSegment(long blockKey) {
+			return segments[segmentIndexer.getIndex(Long.hashCode(blockKey))];
+		}
+
+		MongoBlock get(long blockKey) {
+			Segment segment = getSegment(blockKey);
+			segment.lock.lock();
+			try {
+				return segment.blocks.get(blockKey);
+			}
+			finally {
+				segment.lock.unlock();
+			}
+		}
+
+		boolean contains(long blockKey) {
+			Segment segment = getSegment(blockKey);
+			segment.lock.lock();
+			try {
+				return segment.blocks.containsKey(blockKey);
+			}
+			finally {
+				segment.lock.unlock();
+			}
+		}
+
+		MongoBlock putIfAbsent(MongoBlock mongoBlock) {
+			Segment segment = getSegment(mongoBlock.blockKey);
+			segment.lock.lock();
+			try {
+				MongoBlock existing = segment.blocks.get(mongoBlock.blockKey);
+				if (existing != null) {
+					return existing;
+				}
+				segment.blocks.put(mongoBlock.blockKey, mongoBlock);
+				usedBytes.addAndGet(weigh(mongoBlock));
+				return null;
+			}
+			finally {
+				segment.lock.unlock();
+			}
+		}
+
+		MongoBlock put(MongoBlock mongoBlock) {
+			Segment segment = getSegment(mongoBlock.blockKey);
+			segment.lock.lock();
+			try {
+				MongoBlock replaced = segment.blocks.put(mongoBlock.blockKey, mongoBlock);
+				if (replaced == null) {
+					usedBytes.addAndGet(weigh(mongoBlock));
+				}
+				return replaced;
+			}
+			finally {
+				segment.lock.unlock();
+			}
+		}
+
+		void adjustBytes(long delta) {
+			usedBytes.addAndGet(delta);
+		}
+
+		MongoBlock remove(long blockKey) {
+			Segment segment = getSegment(blockKey);
+			segment.lock.lock();
+			try {
+				MongoBlock removed = segment.blocks.remove(blockKey);
+				if (removed != null) {
+					usedBytes.addAndGet(-weigh(removed));
+				}
+				return removed;
+			}
+			finally {
+				segment.lock.unlock();
+			}
+		}
+
+		/**
+		 * Removes the least recently used block of the next segment holding a block other than the kept one
+		 * @param keptKey - key of a block that is not evicted
+		 */
+		MongoBlock evictEldest(long keptKey) {
+			for (int i = 0; i < segments.length; i++) {
+				Segment segment = segments[(evictionCursor.getAndIncrement() & Integer.MAX_VALUE) % segments.length];
+				segment.lock.lock();
+				try {
+					Iterator<Map.Entry<Long, MongoBlock>> iterator = segment.blocks.entrySet().iterator();
+					while (iterator.hasNext()) {
+						MongoBlock eldest = iterator.next().getValue();
+						if (eldest.blockKey != keptKey) {
+							iterator.remove();
+							usedBytes.addAndGet(-weigh(eldest));
+							return eldest;
+						}
+					}
+				}
+				finally {
+					segment.lock.unlock();
+				}
+			}
+			return null;
+		}
+
+		List<MongoBlock> clear() {
+			List<MongoBlock> cleared = new ArrayList<>();
+			for (Segment segment : segments) {
+				segment.lock.lock();
+				try {
+					for (MongoBlock mongoBlock : segment.blocks.values()) {
+						usedBytes.addAndGet(-weigh(mongoBlock));
+						cleared.add(mongoBlock);
+					}
+					segment.blocks.clear();
+				}
+				finally {
+					segment.lock.unlock();
+				}
+			}
+			return cleared;
+		}
+
+		BlockCacheStats getStats() {
+			int blockCount = 0;
+			for (Segment segment : segments) {
+				segment.lock.lock();
+				try {
+					blockCount += segment.blocks.size();
+				}
+				finally {
+					segment.lock.unlock();
+				}
+			}
+			return new BlockCacheStats(indexNumber, indexName, weight, quotaBytes, usedBytes.get(), blockCount, hits.sum(), misses.sum(),
+							evictions.sum());
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package org.lumongo.storage.lucene;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to You under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+/**
+ * Point in time snapshot of the block cache usage of one index
+ */
+public class BlockCacheStats {
+
+	private final short indexNumber;
+	private final String indexName;
+	private final int weight;
+	private final long quotaBytes;
+	private final long usedBytes;
+	private final int blockCount;
+	private final long hits;
+	private final long misses;
+	private final long evictions;
+
+	public BlockCacheStats(short indexNumber, String indexName, int weight, long quotaBytes, long usedBytes, int blockCount, long hits, long misses,
+					long evictions) {
+		this.indexNumber = indexNumber;
+		this.indexName = indexName;
+		this.weight = weight;
+		this.quotaBytes = quotaBytes;
+		this.usedBytes = usedBytes;
+		this.blockCount = blockCount;
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+	}
+
+	public short getIndexNumber() {
+		return indexNumber;
+	}
+
+	public String getIndexName() {
+		return indexName;
+	}
+
+	public int getWeight() {
+		return weight;
+	}
+
+	public long getQuotaBytes() {
+		return quotaBytes;
+	}
+
+	public long getUsedBytes() {
+		return usedBytes;
+	}
+
+	public int getBlockCount() {
+		return blockCount;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public double getHitRatio() {
+		long requests = hits + misses;
+		if (requests == 0) {
+			return 0;
+		}
+		return (double) hits / requests;
+	}
+
+	@Override
+	public String toString() {
+		return "BlockCacheStats{" +
+						"indexNumber=" + indexNumber +
+						", indexName='" + indexName + '\'' +
+						", weight=" + weight +
+						", quotaBytes=" + quotaBytes +
+						", usedBytes=" + usedBytes +
+						", blockCount=" + blockCount +
+						", hits=" + hits +
+						", misses=" + misses +
+						", evictions=" + evictions +
+						'}';
+	}
+}
@@ -0,0 +1,108 @@
+package org.lumongo.storage.lucene;
+
+import org.apache.lucene.codecs.compressing.CompressionMode;
+import org.apache.lucene.codecs.compressing.Compressor;
+import org.apache.lucene.codecs.compressing.Decompressor;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ByteArrayDataOutput;
+import org.apache.lucene.util.BytesRef;
+import org.lumongo.util.Compression;
+import org.lumongo.util.Compression.CompressionLevel;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to You under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+/**
+ * Compression of blocks stored in mongo.  The id of the codec is stored with every block so blocks written with
+ * another codec, or before blocks were compressed, stay readable.
+ */
+public enum BlockCodec {
+
+	NONE(0) {
+		@Override
+		public byte[] compress(byte[] bytes) {
+			return bytes;
+		}
+
+		@Override
+		public byte[] decompress(byte[] data, int length) {
+			return data;
+		}
+	},
+
+	/**
+	 * LZ4 from the lucene stored fields compression, fast enough to run on every block
+	 */
+	LZ4(1) {
+		private final ThreadLocal<Compressor> compressor = ThreadLocal.withInitial(CompressionMode.FAST::newCompressor);
+		private final ThreadLocal<Decompressor> decompressor = ThreadLocal.withInitial(CompressionMode.FAST::newDecompressor);
+
+		@Override
+		public byte[] compress(byte[] bytes) throws IOException {
+			//worst case size of incompressible input
+			byte[] buffer = new byte[bytes.length + bytes.length / 255 + 16];
+			ByteArrayDataOutput out = new ByteArrayDataOutput(buffer);
+			compressor.get().compress(bytes, 0, bytes.length, out);
+			return Arrays.copyOf(buffer, out.getPosition());
+		}
+
+		@Override
+		public byte[] decompress(byte[] data, int length) throws IOException {
+			BytesRef bytesRef = new BytesRef();
+			decompressor.get().decompress(new ByteArrayDataInput(data), length, 0, length, bytesRef);
+			return Arrays.copyOfRange(bytesRef.bytes, bytesRef.offset, bytesRef.offset + bytesRef.length);
+		}
+	},
+
+	DEFLATE(2) {
+		@Override
+		public byte[] compress(byte[] bytes) {
+			return Compression.compressZlib(bytes, CompressionLevel.FASTEST);
+		}
+
+		@Override
+		public byte[] decompress(byte[] data, int length) throws IOException {
+			return Compression.uncompressZlib(data);
+		}
+	};
+
+	private final int id;
+
+	BlockCodec(int id) {
+		this.id = id;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public abstract byte[] compress(byte[] bytes) throws IOException;
+
+	/**
+	 * @param data - compressed bytes
+	 * @param length - length of the uncompressed block
+	 */
+	public abstract byte[] decompress(byte[] data, int length) throws IOException;
+
+	public static BlockCodec fromId(int id) throws IOException {
+		for (BlockCodec blockCodec : values()) {
+			if (blockCodec.id == id) {
+				return blockCodec;
+			}
+		}
+		throw new IOException("Unknown block codec <" + id + ">");
+	}
+}
@@ -0,0 +1,327 @@
+package org.lumongo.storage.lucene;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to You under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+/**
+ * Write behind stage for dirty blocks
+ *
+ * Blocks are queued by block key so a block queued again before it is written is only written once.  A small pool of
+ * daemon threads drains the queue in bulk writes per directory.  A block is never written by two threads at once so
+ * writes of the same block cannot land out of order.  Failed writes stay queued and are retried.
+ */
+public class BlockWriter {
+
+	private final static Logger log = Logger.getLogger(BlockWriter.class);
+
+	public static final int DEFAULT_CAPACITY = 256;
+	public static final int DEFAULT_THREADS = 2;
+
+	private static final long RETRY_DELAY_MS = 1000;
+
+	private final int capacity;
+
+	private final ReentrantLock lock;
+	private final Condition notFull;
+	private final Condition notEmpty;
+	private final Condition written;
+
+	private final LinkedHashMap<Long, MongoBlock> pending;
+	private final HashMap<Long, MongoBlock> inFlight;
+
+	private long failures;
+
+	//last failed write by file prefix, so a failure only fails the flushes waiting on the file it belongs to
+	private final HashMap<Long, Failure> fileFailures;
+
+	public BlockWriter(int capacity, int threads) {
+		this.capacity = capacity;
+		this.lock = new ReentrantLock();
+		this.notFull = lock.newCondition();
+		this.notEmpty = lock.newCondition();
+		this.written = lock.newCondition();
+		this.pending = new LinkedHashMap<>();
+		this.inFlight = new HashMap<>();
+		this.fileFailures = new HashMap<>();
+
+		for (int i = 0; i < threads; i++) {
+			Thread thread = new Thread(this::drain, "LumongoBlockWriter-" + (i + 1));
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Queues the block if it is dirty, waiting for room if the queue is full
+	 */
+	public void enqueueIfDirty(MongoBlock mongoBlock) {
+		if (mongoBlock.isDirty()) {
+			enqueue(mongoBlock);
+		}
+	}
+
+	public void enqueue(MongoBlock mongoBlock) {
+		lock.lock();
+		try {
+			if (pending.containsKey(mongoBlock.blockKey)) {
+				pending.put(mongoBlock.blockKey, mongoBlock);
+				return;
+			}
+			boolean interrupted = false;
+			while (pending.size() >= capacity) {
+				try {
+					notFull.await();
+				}
+				catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			pending.put(mongoBlock.blockKey, mongoBlock);
+			notEmpty.signal();
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the queued or in flight block for the key, or null if the block is not waiting to be written
+	 */
+	public MongoBlock getPending(long blockKey) {
+		lock.lock();
+		try {
+			MongoBlock mongoBlock = pending.get(blockKey);
+			if (mongoBlock == null) {
+				mongoBlock = inFlight.get(blockKey);
+			}
+			return mongoBlock;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits until no block of the given files is queued or being written
+	 * @param mongoFiles - files to wait for
+	 * @throws IOException if a write of a block of one of the files failed while waiting, the blocks stay queued
+	 */
+	public void awaitFiles(Collection<MongoFile> mongoFiles) throws IOException {
+		Set<Long> filePrefixes = getFilePrefixes(mongoFiles);
+
+		lock.lock();
+		try {
+			long startFailures = failures;
+			while (hasBlocks(pending, filePrefixes) || hasBlocks(inFlight, filePrefixes)) {
+				Failure failure = getFailureSince(filePrefixes, startFailures);
+				if (failure != null) {
+					throw new IOException("Failed to write blocks", failure.cause);
+				}
+				try {
+					written.await();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted waiting for blocks to be written");
+				}
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Drops the queued blocks of a deleted file and waits for the ones being written so they cannot be written again
+	 * after the file is removed
+	 */
+	public void discardFile(MongoFile mongoFile) {
+		long filePrefix = MongoBlock.computeBlockKey(mongoFile, 0) >>> 32;
+
+		lock.lock();
+		try {
+			pending.keySet().removeIf(blockKey -> (blockKey >>> 32) == filePrefix);
+			notFull.signalAll();
+			while (hasBlocks(inFlight, Collections.singleton(filePrefix))) {
+				written.awaitUninterruptibly();
+			}
+			pending.keySet().removeIf(blockKey -> (blockKey >>> 32) == filePrefix);
+			fileFailures.remove(filePrefix);
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	public int getPendingCount() {
+		lock.lock();
+		try {
+			return pending.size() + inFlight.size();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private static Set<Long> getFilePrefixes(Collection<MongoFile> mongoFiles) {
+		Set<Long> filePrefixes = new HashSet<>();
+		for (MongoFile mongoFile : mongoFiles) {
+			filePrefixes.add(MongoBlock.computeBlockKey(mongoFile, 0) >>> 32);
+		}
+		return filePrefixes;
+	}
+
+	private Failure getFailureSince(Set<Long> filePrefixes, long startFailures) {
+		for (Long filePrefix : filePrefixes) {
+			Failure failure = fileFailures.get(filePrefix);
+			if (failure != null && failure.sequence > startFailures) {
+				return failure;
+			}
+		}
+		return null;
+	}
+
+	private static boolean hasBlocks(Map<Long, MongoBlock> blocks, Set<Long> filePrefixes) {
+		for (Long blockKey : blocks.keySet()) {
+			if (filePrefixes.contains(blockKey >>> 32)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void drain() {
+		while (true) {
+			List<MongoBlock> batch = take(MongoDirectory.getFlushBatchSize());
+			try {
+				store(batch);
+				complete(batch);
+			}
+			catch (Throwable t) {
+				log.error("Failed to write <" + batch.size() + "> blocks, retrying: " + t.getMessage());
+				fail(batch, t instanceof IOException ? (IOException) t : new IOException(t));
+				try {
+					Thread.sleep(RETRY_DELAY_MS);
+				}
+				catch (InterruptedException e) {
+					//daemon thread, keep draining
+				}
+			}
+		}
+	}
+
+	/**
+	 * Moves up to batch size queued blocks that are not already being written to in flight
+	 */
+	private List<MongoBlock> take(int batchSize) {
+		lock.lock();
+		try {
+			while (true) {
+				List<MongoBlock> batch = new ArrayList<>();
+				Iterator<Map.Entry<Long, MongoBlock>> iterator = pending.entrySet().iterator();
+				while (iterator.hasNext() && batch.size() < batchSize) {
+					Map.Entry<Long, MongoBlock> entry = iterator.next();
+					if (!inFlight.containsKey(entry.getKey())) {
+						iterator.remove();
+						inFlight.put(entry.getKey(), entry.getValue());
+						batch.add(entry.getValue());
+					}
+				}
+				if (!batch.isEmpty()) {
+					notFull.signalAll();
+					return batch;
+				}
+				notEmpty.awaitUninterruptibly();
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private static void store(List<MongoBlock> batch) throws IOException {
+		Map<MongoDirectory, List<MongoBlock>> byDirectory = new IdentityHashMap<>();
+		for (MongoBlock mongoBlock : batch) {
+			byDirectory.computeIfAbsent(mongoBlock.mongoFile.getMongoDirectory(), mongoDirectory -> new ArrayList<>()).add(mongoBlock);
+		}
+		for (Map.Entry<MongoDirectory, List<MongoBlock>> entry : byDirectory.entrySet()) {
+			entry.getKey().storeBlocks(entry.getValue());
+		}
+	}
+
+	private void complete(List<MongoBlock> batch) {
+		lock.lock();
+		try {
+			for (MongoBlock mongoBlock : batch) {
+				inFlight.remove(mongoBlock.blockKey);
+			}
+			written.signalAll();
+			//blocks queued again while in flight can be taken now
+			notEmpty.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private void fail(List<MongoBlock> batch, IOException e) {
+		lock.lock();
+		try {
+			for (MongoBlock mongoBlock : batch) {
+				inFlight.remove(mongoBlock.blockKey);
+				mongoBlock.markStoreFailed();
+				pending.putIfAbsent(mongoBlock.blockKey, mongoBlock);
+			}
+			failures++;
+			Failure failure = new Failure(failures, e);
+			for (MongoBlock mongoBlock : batch) {
+				fileFailures.put(mongoBlock.blockKey >>> 32, failure);
+			}
+			written.signalAll();
+			notEmpty.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private static class Failure {
+		private final long sequence;
+		private final IOException cause;
+
+		private Failure(long sequence, IOException cause) {
+			this.sequence = sequence;
+			this.cause = cause;
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package org.lumongo.storage.lucene;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to You under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+/**
+ * Block over a heap, direct or memory mapped buffer that is never recycled, so every read validates
+ */
+public class BufferBlock implements NosqlBlock {
+
+	private final int blockNumber;
+	private final ByteBuffer buffer;
+
+	/**
+	 * @param blockNumber - number of the block in the file
+	 * @param buffer - buffer holding the block from index 0 to its capacity
+	 */
+	public BufferBlock(int blockNumber, ByteBuffer buffer) {
+		this.blockNumber = blockNumber;
+		this.buffer = buffer;
+	}
+
+	@Override
+	public int getBlockNumber() {
+		return blockNumber;
+	}
+
+	@Override
+	public int capacity() {
+		return buffer.capacity();
+	}
+
+	@Override
+	public long readStamp() {
+		return 1;
+	}
+
+	@Override
+	public boolean validate(long stamp) {
+		return true;
+	}
+
+	@Override
+	public byte get(int offset) {
+		return buffer.get(offset);
+	}
+
+	@Override
+	public short getShort(int offset) {
+		return buffer.getShort(offset);
+	}
+
+	@Override
+	public int getInt(int offset) {
+		return buffer.getInt(offset);
+	}
+
+	@Override
+	public long getLong(int offset) {
+		return buffer.getLong(offset);
+	}
+
+	@Override
+	public void get(int offset, byte[] b, int bOffset, int length) {
+		if (buffer.hasArray()) {
+			System.arraycopy(buffer.array(), buffer.arrayOffset() + offset, b, bOffset, length);
+		}
+		else {
+			ByteBuffer duplicate = buffer.duplicate();
+			duplicate.position(offset);
+			duplicate.get(b, bOffset, length);
+		}
+	}
+
+	public void put(int offset, byte b) {
+		buffer.put(offset, b);
+	}
+
+	public void put(int offset, byte[] b, int bOffset, int length) {
+		if (buffer.hasArray()) {
+			System.arraycopy(b, bOffset, buffer.array(), buffer.arrayOffset() + offset, length);
+		}
+		else {
+			ByteBuffer duplicate = buffer.duplicate();
+			duplicate.position(offset);
+			duplicate.put(b, bOffset, length);
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package org.lumongo.storage.lucene;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.index.IndexFileNames;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to You under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+/**
+ * Loads the blocks of the files queries touch first, like terms indexes, norms and doc values, into the block cache
+ * before a directory is searched
+ *
+ * Files are loaded in parallel with bulk requests on a pool shared by every warmer.  Warming stops once half of the
+ * cache of the directory is filled so warming one index cannot push out the working set of the others.  Warming is
+ * best effort, a file that fails to load is logged and skipped.
+ */
+public class CacheWarmer {
+
+	private final static Logger log = Logger.getLogger(CacheWarmer.class);
+
+	public static final int DEFAULT_THREADS = 4;
+
+	private static final int WARM_CACHE_FRACTION = 2;
+
+	private static final ThreadPoolExecutor pool;
+
+	static {
+		AtomicInteger threadNumber = new AtomicInteger();
+		pool = new ThreadPoolExecutor(DEFAULT_THREADS, DEFAULT_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+			Thread thread = new Thread(r, "LumongoCacheWarmer-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		pool.allowCoreThreadTimeOut(true);
+	}
+
+	private final NosqlDirectory nosqlDirectory;
+	private final Set<String> fileTypes;
+	private final int threads;
+
+	private final AtomicInteger filesWarmed;
+	private final AtomicLong bytesWarmed;
+	private long elapsedMs;
+
+	/**
+	 * @param nosqlDirectory - directory to warm
+	 * @param fileTypes - extensions of the files to load
+	 * @param threads - number of files of the directory loaded at once, the shared pool bounds all warmers together
+	 */
+	public CacheWarmer(NosqlDirectory nosqlDirectory, Collection<String> fileTypes, int threads) {
+		this.nosqlDirectory = nosqlDirectory;
+		this.fileTypes = new HashSet<>(fileTypes);
+		this.threads = threads;
+		this.filesWarmed = new AtomicInteger();
+		this.bytesWarmed = new AtomicLong();
+	}
+
+	public void warm() throws IOException {
+		long start = System.currentTimeMillis();
+
+		List<NosqlFile> files = new ArrayList<>();
+		for (String fileName : nosqlDirectory.getFileNames()) {
+			if (fileTypes.contains(IndexFileNames.getExtension(fileName))) {
+				files.add(nosqlDirectory.getFileHandle(fileName));
+			}
+		}
+
+		long maxBytes = nosqlDirectory.getCacheBytes() / WARM_CACHE_FRACTION;
+		if (!files.isEmpty() && maxBytes > 0) {
+			//each task takes files from the queue so no more than the given number of files are loaded at once
+			Queue<NosqlFile> queue = new ConcurrentLinkedQueue<>(files);
+			Runnable warmFiles = () -> {
+				NosqlFile nosqlFile;
+				while ((nosqlFile = queue.poll()) != null) {
+					warmFile(nosqlFile, files.size(), maxBytes);
+				}
+			};
+
+			List<Future<?>> futures = new ArrayList<>(threads);
+			for (int i = 0; i < Math.min(threads, files.size()); i++) {
+				futures.add(pool.submit(warmFiles));
+			}
+			try {
+				for (Future<?> future : futures) {
+					future.get();
+				}
+			}
+			catch (InterruptedException e) {
+				//files not started yet are skipped
+				queue.clear();
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted warming <" + nosqlDirectory + ">");
+			}
+			catch (ExecutionException e) {
+				throw new IOException("Failed to warm <" + nosqlDirectory + ">", e.getCause());
+			}
+		}
+
+		elapsedMs = System.currentTimeMillis() - start;
+		log.info("Warmed <" + filesWarmed + "> of <" + files.size() + "> files with <" + bytesWarmed + "> bytes for <" + nosqlDirectory + "> in <"
+						+ elapsedMs + "ms>");
+	}
+
+	private void warmFile(NosqlFile nosqlFile, int fileCount, long maxBytes) {
+		if (bytesWarmed.get() + nosqlFile.getFileLength() > maxBytes) {
+			log.debug("Skipped warming file <" + nosqlFile.getFileName() + ">, the warm up share of the block cache is full");
+			return;
+		}
+		try {
+			bytesWarmed.addAndGet(nosqlFile.warm());
+			log.debug("Warmed file <" + nosqlFile.getFileName() + "> (" + filesWarmed.incrementAndGet() + "/" + fileCount + ") for <" + nosqlDirectory + ">");
+		}
+		catch (Exception e) {
+			log.warn("Failed to warm file <" + nosqlFile.getFileName() + "> for <" + nosqlDirectory + ">: " + e.getMessage());
+		}
+	}
+
+	public int getFilesWarmed() {
+		return filesWarmed.get();
+	}
+
+	public long getBytesWarmed() {
+		return bytesWarmed.get();
+	}
+
+	public long getElapsedMs() {
+		return elapsedMs;
+	}
+
+	@Override
+	public String toString() {
+		return "CacheWarmer{" +
+						"nosqlDirectory=" + nosqlDirectory +
+						", fileTypes=" + fileTypes +
+						", filesWarmed=" + filesWarmed +
+						", bytesWarmed=" + bytesWarmed +
+						", elapsedMs=" + elapsedMs +
+						'}';
+	}
+}
@@ -0,0 +1,122 @@
+package org.lumongo.storage.lucene;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to You under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+/**
+ * Hands out block sized slices of large direct buffers so cached blocks live outside of the java heap
+ *
+ * Slabs are allocated on demand up to the max bytes and are never returned to the operating system.  Freed slots are
+ * kept per block size and reused by the next block of the same size.
+ */
+public class DirectBlockAllocator {
+
+	public static final int DEFAULT_SLAB_SIZE = 1024 * 1024 * 32;
+
+	private final int slabSize;
+	private final ConcurrentHashMap<Integer, ConcurrentLinkedQueue<ByteBuffer>> freeSlots;
+	private final AtomicLong allocatedBytes;
+
+	private volatile long maxBytes;
+
+	public DirectBlockAllocator(long maxBytes) {
+		this(maxBytes, DEFAULT_SLAB_SIZE);
+	}
+
+	public DirectBlockAllocator(long maxBytes, int slabSize) {
+		this.maxBytes = maxBytes;
+		this.slabSize = slabSize;
+		this.freeSlots = new ConcurrentHashMap<>();
+		this.allocatedBytes = new AtomicLong();
+	}
+
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public long getAllocatedBytes() {
+		return allocatedBytes.get();
+	}
+
+	/**
+	 * @param size - size of the block
+	 * @return a cleared direct buffer of the given capacity or null if the allocator is out of memory
+	 */
+	public ByteBuffer allocate(int size) {
+		ConcurrentLinkedQueue<ByteBuffer> slots = getSlots(size);
+
+		ByteBuffer slot = slots.poll();
+		if (slot != null) {
+			return slot;
+		}
+
+		int slotsPerSlab = (int) Math.max(1, Math.min(slabSize, maxBytes) / size);
+		long slabBytes = (long) slotsPerSlab * size;
+
+		while (true) {
+			long allocated = allocatedBytes.get();
+			if (allocated + slabBytes > maxBytes) {
+				//another thread may have freed or carved a slab while we checked
+				return slots.poll();
+			}
+			if (allocatedBytes.compareAndSet(allocated, allocated + slabBytes)) {
+				break;
+			}
+		}
+
+		ByteBuffer slab = ByteBuffer.allocateDirect((int) slabBytes);
+		for (int i = 1; i < slotsPerSlab; i++) {
+			slots.offer(slice(slab, i * size, size));
+		}
+		return slice(slab, 0, size);
+	}
+
+	public void free(ByteBuffer slot) {
+		slot.clear();
+		getSlots(slot.capacity()).offer(slot);
+	}
+
+	private ConcurrentLinkedQueue<ByteBuffer> getSlots(int size) {
+		ConcurrentLinkedQueue<ByteBuffer> slots = freeSlots.get(size);
+		if (slots == null) {
+			freeSlots.putIfAbsent(size, new ConcurrentLinkedQueue<>());
+			slots = freeSlots.get(size);
+		}
+		return slots;
+	}
+
+	private static ByteBuffer slice(ByteBuffer slab, int offset, int size) {
+		ByteBuffer duplicate = slab.duplicate();
+		duplicate.position(offset);
+		duplicate.limit(offset + size);
+		return duplicate.slice();
+	}
+
+	@Override
+	public String toString() {
+		return "DirectBlockAllocator{" +
+						"slabSize=" + slabSize +
+						", allocatedBytes=" + allocatedBytes +
+						", maxBytes=" + maxBytes +
+						'}';
+	}
+}
@@ -0,0 +1,266 @@
+package org.lumongo.storage.lucene;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to You under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+/**
+ * Second level cache of blocks on local disk between the block cache and mongo
+ *
+ * Every block is a file under root/database/index/fileNumber-created-length-fileName/blockNumber.  Lucene files do not
+ * change once written so the file number, creation time and length identify a version of a file and a new version
+ * simply misses.  Blocks are memory mapped when read.  Blocks are written in the background after they are loaded
+ * from mongo and whole file directories are removed, oldest first, when the cache is over its size.
+ */
+public class DiskBlockCache {
+
+	private final static Logger log = Logger.getLogger(DiskBlockCache.class);
+
+	private static final int WRITE_QUEUE_SIZE = 256;
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private final Path root;
+	private final long maxBytes;
+	private final AtomicLong usedBytes;
+	private final AtomicBoolean cleaning;
+	private final ThreadPoolExecutor writePool;
+
+	public DiskBlockCache(Path root, long maxBytes) throws IOException {
+		this.root = root;
+		this.maxBytes = maxBytes;
+		this.usedBytes = new AtomicLong();
+		this.cleaning = new AtomicBoolean();
+
+		Files.createDirectories(root);
+		try (Stream<Path> paths = Files.walk(root)) {
+			paths.filter(Files::isRegularFile).forEach(path -> usedBytes.addAndGet(path.toFile().length()));
+		}
+
+		//disk writes are only an optimization so they are dropped when the disk falls behind
+		writePool = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(WRITE_QUEUE_SIZE), r -> {
+			Thread thread = new Thread(r, "LumongoDiskCacheWriter");
+			thread.setDaemon(true);
+			return thread;
+		}, new ThreadPoolExecutor.DiscardPolicy());
+		writePool.allowCoreThreadTimeOut(true);
+	}
+
+	public Path getRoot() {
+		return root;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public long getUsedBytes() {
+		return usedBytes.get();
+	}
+
+	/**
+	 * @return the memory mapped block or null if the block is not on disk for this version of the file
+	 */
+	public ByteBuffer read(MongoFile mongoFile, int blockNumber) {
+		Path blockPath = getFileDirectory(mongoFile).resolve(String.valueOf(blockNumber));
+		try (FileChannel channel = FileChannel.open(blockPath, StandardOpenOption.READ)) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		catch (NoSuchFileException e) {
+			return null;
+		}
+		catch (IOException e) {
+			log.warn("Failed to read block <" + blockPath + "> from disk cache: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Queues a block loaded from mongo to be written to disk, blocks of deleted files are not written
+	 */
+	public void write(MongoFile mongoFile, int blockNumber, byte[] bytes) {
+		if (mongoFile.isDeleted()) {
+			return;
+		}
+		Path fileDirectory = getFileDirectory(mongoFile);
+		try {
+			writePool.execute(() -> writeBlock(mongoFile, fileDirectory, blockNumber, bytes));
+		}
+		catch (RejectedExecutionException e) {
+			//dropped, the block is read from mongo again next time
+		}
+	}
+
+	private void writeBlock(MongoFile mongoFile, Path fileDirectory, int blockNumber, byte[] bytes) {
+		Path blockPath = fileDirectory.resolve(String.valueOf(blockNumber));
+		if (mongoFile.isDeleted() || Files.exists(blockPath)) {
+			return;
+		}
+		try {
+			Files.createDirectories(fileDirectory);
+			Path tempPath = fileDirectory.resolve(blockNumber + TEMP_SUFFIX);
+			Files.write(tempPath, bytes);
+			Files.move(tempPath, blockPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			usedBytes.addAndGet(bytes.length);
+			//deleted while the block was written, the delete may have invalidated the file before the block was there
+			if (mongoFile.isDeleted()) {
+				deleteDirectory(fileDirectory);
+				return;
+			}
+			if (usedBytes.get() > maxBytes) {
+				evict();
+			}
+		}
+		catch (IOException e) {
+			log.warn("Failed to write block <" + blockPath + "> to disk cache: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Removes every version of the file from disk
+	 */
+	public void invalidateFile(MongoFile mongoFile) {
+		String prefix = mongoFile.getFileNumber() + "-";
+		Path indexDirectory = getIndexDirectory(mongoFile.getMongoDirectory());
+		for (Path fileDirectory : listDirectories(indexDirectory)) {
+			if (fileDirectory.getFileName().toString().startsWith(prefix)) {
+				deleteDirectory(fileDirectory);
+			}
+		}
+	}
+
+	/**
+	 * Removes the files of an index that are not in the given list, called when a directory is opened
+	 */
+	public void retainFiles(MongoDirectory mongoDirectory, Collection<MongoFile> mongoFiles) {
+		Set<Path> current = new HashSet<>();
+		for (MongoFile mongoFile : mongoFiles) {
+			current.add(getFileDirectory(mongoFile));
+		}
+		for (Path fileDirectory : listDirectories(getIndexDirectory(mongoDirectory))) {
+			if (!current.contains(fileDirectory)) {
+				deleteDirectory(fileDirectory);
+			}
+		}
+	}
+
+	/**
+	 * Removes file directories least recently written first until the cache is below 90% of its size
+	 */
+	private void evict() {
+		if (!cleaning.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			List<Path> fileDirectories = new ArrayList<>();
+			for (Path databaseDirectory : listDirectories(root)) {
+				for (Path indexDirectory : listDirectories(databaseDirectory)) {
+					fileDirectories.addAll(listDirectories(indexDirectory));
+				}
+			}
+			fileDirectories.sort((a, b) -> getLastModifiedTime(a).compareTo(getLastModifiedTime(b)));
+
+			long target = maxBytes - maxBytes / 10;
+			for (Path fileDirectory : fileDirectories) {
+				if (usedBytes.get() <= target) {
+					break;
+				}
+				deleteDirectory(fileDirectory);
+			}
+		}
+		finally {
+			cleaning.set(false);
+		}
+	}
+
+	private Path getIndexDirectory(MongoDirectory mongoDirectory) {
+		return root.resolve(mongoDirectory.getDbName()).resolve(mongoDirectory.getIndexName());
+	}
+
+	private Path getFileDirectory(MongoFile mongoFile) {
+		return getIndexDirectory(mongoFile.getMongoDirectory()).resolve(
+						mongoFile.getFileNumber() + "-" + mongoFile.getLastModified() + "-" + mongoFile.getFileLength() + "-" + mongoFile.getFileName());
+	}
+
+	private static FileTime getLastModifiedTime(Path path) {
+		try {
+			return Files.getLastModifiedTime(path);
+		}
+		catch (IOException e) {
+			return FileTime.fromMillis(0);
+		}
+	}
+
+	private static List<Path> listDirectories(Path directory) {
+		List<Path> directories = new ArrayList<>();
+		if (!Files.isDirectory(directory)) {
+			return directories;
+		}
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, Files::isDirectory)) {
+			for (Path path : stream) {
+				directories.add(path);
+			}
+		}
+		catch (IOException e) {
+			log.warn("Failed to list disk cache directory <" + directory + ">: " + e.getMessage());
+		}
+		return directories;
+	}
+
+	private void deleteDirectory(Path directory) {
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (Path path : stream) {
+				long size = Files.size(path);
+				if (Files.deleteIfExists(path)) {
+					usedBytes.addAndGet(-size);
+				}
+			}
+			Files.deleteIfExists(directory);
+		}
+		catch (IOException e) {
+			log.warn("Failed to remove disk cache directory <" + directory + ">: " + e.getMessage());
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "DiskBlockCache{" +
+						"root=" + root +
+						", maxBytes=" + maxBytes +
+						", usedBytes=" + usedBytes +
+						'}';
+	}
+}
@@ -22,67 +22,208 @@ import org.apache.lucene.store.IndexOutput;
 import org.apache.lucene.store.LockFactory;
 import org.apache.lucene.store.SingleInstanceLockFactory;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DistributedDirectory extends BaseDirectory {
 
+	public static final int DEFAULT_READ_AHEAD_BLOCKS = 8;
+
+	/**
+	 * merges and read once inputs of files too big to preload read this many times further ahead
+	 */
+	public static final int MERGE_READ_AHEAD_FACTOR = 4;
+
+	private static volatile int readAheadBlocks = DEFAULT_READ_AHEAD_BLOCKS;
+
+	private static volatile Path scratchRoot;
+
 	protected NosqlDirectory nosqlDirectory;
 
+	//local directory new files are written to until they are synced, null to write straight to the nosql directory
+	private final FSDirectory scratchDirectory;
+	private final Set<String> pendingFiles;
+
+	/**
+	 * @param blocks - number of blocks prefetched when a file is read sequentially, 0 to disable read ahead
+	 */
+	public static void setReadAheadBlocks(int blocks) {
+		readAheadBlocks = blocks;
+	}
+
+	public static int getReadAheadBlocks() {
+		return readAheadBlocks;
+	}
+
+	/**
+	 * @param root - local directory under which directories write new files until they are synced, null to disable
+	 */
+	public static void setScratchRoot(Path root) {
+		scratchRoot = root;
+	}
+
+	public static Path getScratchRoot() {
+		return scratchRoot;
+	}
+
 	public DistributedDirectory(NosqlDirectory nosqlDirectory) throws IOException {
 		this(nosqlDirectory, new SingleInstanceLockFactory());
 	}
 
 	public DistributedDirectory(NosqlDirectory nosqlDirectory, LockFactory lockFactory) throws IOException {
-		super(lockFactory);
-		this.nosqlDirectory = nosqlDirectory;
+		this(nosqlDirectory, lockFactory, null);
 	}
 
 	/**
-	 * ignore IOContext
+	 * New files are written to the local scratch directory and uploaded to the nosql directory in bulk when they are
+	 * synced.  Files left in the scratch directory by a previous process were never synced and are removed.
+	 * @param scratchPath - local directory for files that are not synced yet, null to write straight to the nosql directory
 	 */
+	public DistributedDirectory(NosqlDirectory nosqlDirectory, LockFactory lockFactory, Path scratchPath) throws IOException {
+		super(lockFactory);
+		this.nosqlDirectory = nosqlDirectory;
+		this.pendingFiles = ConcurrentHashMap.newKeySet();
+		if (scratchPath != null) {
+			this.scratchDirectory = FSDirectory.open(scratchPath);
+			for (String fileName : scratchDirectory.listAll()) {
+				scratchDirectory.deleteFile(fileName);
+			}
+		}
+		else {
+			this.scratchDirectory = null;
+		}
+	}
+
 	@Override
 	public IndexOutput createOutput(String name, IOContext context) throws IOException {
 		ensureOpen();
+		if (scratchDirectory != null) {
+			pendingFiles.add(name);
+			return scratchDirectory.createOutput(name, context);
+		}
 		NosqlFile nosqlFile = nosqlDirectory.getFileHandle(name, true);
+		nosqlFile.setStreaming(isStreaming(context));
 		return new DistributedIndexOutput(nosqlFile);
 	}
 
+	/**
+	 * Merges, flushes and single full reads go through the stream cache so they do not evict the blocks searches use
+	 */
+	private static boolean isStreaming(IOContext context) {
+		return IOContext.Context.MERGE.equals(context.context) || IOContext.Context.FLUSH.equals(context.context) || context.readOnce;
+	}
+
 	@Override
 	public void sync(Collection<String> names) throws IOException {
+		List<String> uploaded = new ArrayList<>();
 		for (String name : names) {
-			NosqlFile nosqlFile = nosqlDirectory.getFileHandle(name, true);
-			nosqlFile.flush();
+			if (pendingFiles.contains(name)) {
+				upload(name);
+				uploaded.add(name);
+			}
+		}
+
+		nosqlDirectory.sync(names);
+
+		for (String name : uploaded) {
+			pendingFiles.remove(name);
+			scratchDirectory.deleteFile(name);
 		}
+	}
 
+	/**
+	 * Streams a file from the scratch directory to the nosql directory in large sequential writes
+	 */
+	private void upload(String name) throws IOException {
+		NosqlFile nosqlFile = nosqlDirectory.getFileHandle(name, true);
+		nosqlFile.setStreaming(true);
+		int bufferSize = nosqlFile.getBlockSize() * 8;
+		byte[] buffer = new byte[bufferSize];
+		try (IndexInput input = scratchDirectory.openInput(name, IOContext.READONCE)) {
+			long length = input.length();
+			long position = 0;
+			while (position < length) {
+				int readSize = (int) Math.min(bufferSize, length - position);
+				input.readBytes(buffer, 0, readSize);
+				nosqlFile.write(position, buffer, 0, readSize);
+				position += readSize;
+			}
+		}
+		finally {
+			nosqlFile.close();
+		}
 	}
 
 	@Override
 	public void renameFile(String source, String dest) throws IOException {
 		ensureOpen();
+		if (pendingFiles.contains(source)) {
+			scratchDirectory.renameFile(source, dest);
+			pendingFiles.add(dest);
+			pendingFiles.remove(source);
+			return;
+		}
 		nosqlDirectory.rename(source, dest);
 	}
 
 	/**
-	 * ignore IOContext
+	 * Files opened for a merge or a single full read are loaded into the stream cache with one request when they fit,
+	 * otherwise they are read far ahead from the start
 	 */
 	@Override
 	public IndexInput openInput(String name, IOContext context) throws IOException {
 		ensureOpen();
+		if (pendingFiles.contains(name)) {
+			try {
+				return scratchDirectory.openInput(name, context);
+			}
+			catch (NoSuchFileException | FileNotFoundException e) {
+				//uploaded by a sync since the check
+			}
+		}
 		NosqlFile nosqlFile = nosqlDirectory.getFileHandle(name);
-		return new DistributedIndexInput(nosqlFile.getFileName(), nosqlFile);
+		if (IOContext.Context.MERGE.equals(context.context) || context.readOnce) {
+			if (nosqlFile.preload(true)) {
+				return new DistributedIndexInput(nosqlFile.getFileName(), nosqlFile, 0, nosqlFile.getFileLength(), 0, true);
+			}
+			return new DistributedIndexInput(nosqlFile.getFileName(), nosqlFile, 0, nosqlFile.getFileLength(), readAheadBlocks * MERGE_READ_AHEAD_FACTOR, true);
+		}
+		return new DistributedIndexInput(nosqlFile.getFileName(), nosqlFile, 0, nosqlFile.getFileLength(), readAheadBlocks, false);
 	}
 
 	@Override
 	public String[] listAll() throws IOException {
 		ensureOpen();
-		return nosqlDirectory.getFileNames();
+		if (pendingFiles.isEmpty()) {
+			return nosqlDirectory.getFileNames();
+		}
+		Set<String> fileNames = new LinkedHashSet<>();
+		for (String fileName : nosqlDirectory.getFileNames()) {
+			fileNames.add(fileName);
+		}
+		fileNames.addAll(pendingFiles);
+		return fileNames.toArray(new String[fileNames.size()]);
 	}
 
 	@Override
 	public long fileLength(String fileName) throws IOException {
 		ensureOpen();
+		if (pendingFiles.contains(fileName)) {
+			try {
+				return scratchDirectory.fileLength(fileName);
+			}
+			catch (NoSuchFileException | FileNotFoundException e) {
+				//uploaded by a sync since the check
+			}
+		}
 		NosqlFile nosqlFile = nosqlDirectory.getFileHandle(fileName);
 		return nosqlFile.getFileLength();
 	}
@@ -90,10 +231,26 @@ public class DistributedDirectory extends BaseDirectory {
 	@Override
 	public void deleteFile(String fileName) throws IOException {
 		ensureOpen();
+		if (pendingFiles.remove(fileName)) {
+			scratchDirectory.deleteFile(fileName);
+			return;
+		}
 		NosqlFile nosqlFile = nosqlDirectory.getFileHandle(fileName);
 		nosqlDirectory.deleteFile(nosqlFile);
 	}
 
+	/**
+	 * Loads the files with the given extensions into the block cache, see {@link CacheWarmer}
+	 * @param fileTypes - extensions of the files to load
+	 * @return the warmer with the number of files and bytes loaded and the time taken
+	 */
+	public CacheWarmer warm(Collection<String> fileTypes) throws IOException {
+		ensureOpen();
+		CacheWarmer cacheWarmer = new CacheWarmer(nosqlDirectory, fileTypes, CacheWarmer.DEFAULT_THREADS);
+		cacheWarmer.warm();
+		return cacheWarmer;
+	}
+
 	public void copyToFSDirectory(Path path) throws IOException {
 		copyToDirectory(FSDirectory.open(path));
 	}
@@ -108,6 +265,9 @@ public class DistributedDirectory extends BaseDirectory {
 	public void close() throws IOException {
 		isOpen = false;
 		nosqlDirectory.close();
+		if (scratchDirectory != null) {
+			scratchDirectory.close();
+		}
 	}
 
 	@Override
@@ -23,21 +23,59 @@ import java.io.EOFException;
 import java.io.IOException;
 
 public class DistributedIndexInput extends IndexInput {
+
+	/**
+	 * number of blocks read in order before the following blocks are prefetched
+	 */
+	public static final int SEQUENTIAL_BLOCKS = 2;
+
 	private final NosqlFile nosqlFile;
 
 	protected long position;
 	protected long sliceOffset;
 	protected long length;
 
+	private final int blockSize;
+	private final int readAheadBlocks;
+	private final int sequentialThreshold;
+	private final boolean streaming;
+
+	//read ahead state, in blocks of the underlying file
+	private long currentBlock;
+	private long blockStart;
+	private long blockEnd;
+	private long sequentialBlocks;
+	private long prefetchedBlock;
+
+	//block being read, positions are relative to the start of the input
+	private NosqlBlock block;
+	private long blockPosition;
+	private long bufferStart;
+	private long bufferEnd;
+
 	public DistributedIndexInput(String name, NosqlFile nosqlFile) {
 		this(name, nosqlFile, 0, nosqlFile.getFileLength());
 	}
 
 	public DistributedIndexInput(String name, NosqlFile nosqlFile, long sliceOffset, long length) {
+		this(name, nosqlFile, sliceOffset, length, 0, false);
+	}
+
+	/**
+	 * @param readAheadBlocks - number of blocks to prefetch once sequential access is detected, 0 to disable
+	 * @param sequential - true to treat the input as sequential from the first read and keep its blocks in the stream
+	 *                   cache, used for merges and read once inputs
+	 */
+	public DistributedIndexInput(String name, NosqlFile nosqlFile, long sliceOffset, long length, int readAheadBlocks, boolean sequential) {
 		super(DistributedIndexInput.class.getSimpleName() + "(" + name + ")");
 		this.nosqlFile = nosqlFile;
 		this.sliceOffset = sliceOffset;
 		this.length = length;
+		this.blockSize = nosqlFile.getBlockSize();
+		this.readAheadBlocks = readAheadBlocks;
+		this.sequentialThreshold = sequential ? 0 : SEQUENTIAL_BLOCKS;
+		this.streaming = sequential;
+		this.currentBlock = -1;
 	}
 
 	@Override
@@ -63,11 +101,18 @@ public class DistributedIndexInput extends IndexInput {
 
 	@Override
 	public byte readByte() throws IOException {
-		if (position >= length) {
-			throw new EOFException("read past EOF: " + this);
+		while (true) {
+			if (position < bufferStart || position >= bufferEnd) {
+				loadBlock(1);
+			}
+			long stamp = block.readStamp();
+			byte b = block.get((int) (position - blockPosition));
+			if (block.validate(stamp)) {
+				position++;
+				return b;
+			}
+			loadBlockCopy();
 		}
-
-		return nosqlFile.readByte(position++ + sliceOffset);
 	}
 
 	@Override
@@ -77,8 +122,166 @@ public class DistributedIndexInput extends IndexInput {
 			throw new EOFException("read past EOF: " + this);
 		}
 
-		nosqlFile.readBytes(position + sliceOffset, b, offset, length);
-		position += length;
+		while (length > 0) {
+			if (position < bufferStart || position >= bufferEnd) {
+				loadBlock(1);
+			}
+			int readSize = (int) Math.min(bufferEnd - position, length);
+			long stamp = block.readStamp();
+			block.get((int) (position - blockPosition), b, offset, readSize);
+			if (!block.validate(stamp)) {
+				loadBlockCopy();
+				continue;
+			}
+			position += readSize;
+			offset += readSize;
+			length -= readSize;
+		}
+	}
+
+	@Override
+	public short readShort() throws IOException {
+		if (position >= bufferStart && position + 2 <= bufferEnd) {
+			long stamp = block.readStamp();
+			short v = block.getShort((int) (position - blockPosition));
+			if (block.validate(stamp)) {
+				position += 2;
+				return v;
+			}
+		}
+		return super.readShort();
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		if (position >= bufferStart && position + 4 <= bufferEnd) {
+			long stamp = block.readStamp();
+			int v = block.getInt((int) (position - blockPosition));
+			if (block.validate(stamp)) {
+				position += 4;
+				return v;
+			}
+		}
+		return super.readInt();
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		if (position >= bufferStart && position + 8 <= bufferEnd) {
+			long stamp = block.readStamp();
+			long v = block.getLong((int) (position - blockPosition));
+			if (block.validate(stamp)) {
+				position += 8;
+				return v;
+			}
+		}
+		return super.readLong();
+	}
+
+	@Override
+	public int readVInt() throws IOException {
+		if (position >= bufferStart && position + 5 <= bufferEnd) {
+			long stamp = block.readStamp();
+			int offset = (int) (position - blockPosition);
+			byte b = block.get(offset++);
+			int i = b & 0x7F;
+			for (int shift = 7; b < 0 && shift <= 28; shift += 7) {
+				b = block.get(offset++);
+				i |= (b & 0x7F) << shift;
+			}
+			if (block.validate(stamp)) {
+				if ((b & 0xF0) != 0 && offset - (position - blockPosition) == 5) {
+					throw new IOException("Invalid vInt detected (too many bits)");
+				}
+				position = blockPosition + offset;
+				return i;
+			}
+		}
+		return super.readVInt();
+	}
+
+	@Override
+	public long readVLong() throws IOException {
+		if (position >= bufferStart && position + 9 <= bufferEnd) {
+			long stamp = block.readStamp();
+			int offset = (int) (position - blockPosition);
+			byte b = block.get(offset++);
+			long i = b & 0x7FL;
+			for (int shift = 7; b < 0 && shift <= 56; shift += 7) {
+				b = block.get(offset++);
+				i |= (b & 0x7FL) << shift;
+			}
+			if (block.validate(stamp)) {
+				if (b < 0) {
+					throw new IOException("Invalid vLong detected (negative values disallowed)");
+				}
+				position = blockPosition + offset;
+				return i;
+			}
+		}
+		return super.readVLong();
+	}
+
+	/**
+	 * Makes the block holding the current position the block being read
+	 * @param needed - number of bytes about to be read
+	 */
+	private void loadBlock(int needed) throws IOException {
+		if (position + needed > length) {
+			throw new EOFException("read past EOF: " + this);
+		}
+
+		long filePosition = position + sliceOffset;
+		if (readAheadBlocks > 0) {
+			checkReadAhead(filePosition, filePosition + needed);
+		}
+
+		int blockNumber = (int) (filePosition / blockSize);
+		block = nosqlFile.getBlock(blockNumber, streaming);
+		blockPosition = (long) blockNumber * blockSize - sliceOffset;
+		bufferStart = Math.max(0, blockPosition);
+		bufferEnd = Math.min(length, blockPosition + Math.min(blockSize, block.capacity()));
+	}
+
+	/**
+	 * Replaces a block that was released while it was read with a copy that is never released, loading it from the
+	 * cache again could find it evicted again before it is read
+	 */
+	private void loadBlockCopy() throws IOException {
+		block = nosqlFile.getBlockCopy(block.getBlockNumber());
+	}
+
+	/**
+	 * Tracks the blocks being read and asks the file to prefetch the next blocks once the reads are sequential
+	 * @param start - first position in the file being read
+	 * @param end - position after the last byte being read
+	 */
+	private void checkReadAhead(long start, long end) {
+		if (start >= blockStart && end <= blockEnd) {
+			return;
+		}
+
+		long firstBlock = start / blockSize;
+		long lastBlock = (end - 1) / blockSize;
+
+		if (firstBlock == currentBlock || firstBlock == currentBlock + 1) {
+			sequentialBlocks += lastBlock - currentBlock;
+		}
+		else {
+			sequentialBlocks = 0;
+			prefetchedBlock = 0;
+		}
+
+		currentBlock = lastBlock;
+		blockStart = lastBlock * blockSize;
+		blockEnd = blockStart + blockSize;
+
+		if (sequentialBlocks >= sequentialThreshold && lastBlock + readAheadBlocks / 2 >= prefetchedBlock) {
+			long from = Math.max(lastBlock + 1, prefetchedBlock);
+			long to = lastBlock + 1 + readAheadBlocks;
+			nosqlFile.prefetch(from * blockSize, (to - from) * blockSize, streaming);
+			prefetchedBlock = to;
+		}
 	}
 
 	@Override
@@ -86,13 +289,15 @@ public class DistributedIndexInput extends IndexInput {
 		if (sliceOffset < 0 || length < 0 || sliceOffset + length > this.length) {
 			throw new IllegalArgumentException("slice() " + sliceDescription + " out of bounds: "  + this);
 		}
-		final DistributedIndexInput dii = new DistributedIndexInput(getFullSliceDescription(sliceDescription), nosqlFile, this.sliceOffset + sliceOffset, length);
+		final DistributedIndexInput dii = new DistributedIndexInput(getFullSliceDescription(sliceDescription), nosqlFile, this.sliceOffset + sliceOffset, length,
+						readAheadBlocks, streaming);
+		dii.shareBlock(this);
 		return dii;
 	}
 
 	@Override
 	public IndexInput clone() {
-		IndexInput ii = new DistributedIndexInput(getFullSliceDescription(null), nosqlFile, sliceOffset, length);
+		DistributedIndexInput ii = new DistributedIndexInput(getFullSliceDescription(null), nosqlFile, sliceOffset, length, readAheadBlocks, streaming);
 		try {
 			ii.seek(getFilePointer());
 		}
@@ -100,6 +305,22 @@ public class DistributedIndexInput extends IndexInput {
 			throw new AssertionError(ioe);
 		}
 
+		ii.shareBlock(this);
+
 		return ii;
 	}
+
+	/**
+	 * Starts a clone or slice on the block the other input is reading.  Only the reference to the immutable block is
+	 * shared, every input moves its own position and block so clones can be read from different threads.
+	 */
+	private void shareBlock(DistributedIndexInput other) {
+		NosqlBlock otherBlock = other.block;
+		if (otherBlock != null) {
+			block = otherBlock;
+			blockPosition = (long) otherBlock.getBlockNumber() * blockSize - sliceOffset;
+			bufferStart = Math.max(0, blockPosition);
+			bufferEnd = Math.max(bufferStart, Math.min(length, blockPosition + Math.min(blockSize, otherBlock.capacity())));
+		}
+	}
 }
\ No newline at end of file
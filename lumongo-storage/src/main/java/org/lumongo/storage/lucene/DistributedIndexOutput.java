@@ -21,16 +21,24 @@ import org.apache.lucene.store.IndexOutput;
 
 import java.io.IOException;
 
+/**
+ * Buffers writes so the nosql file sees one bulk write, and one bulk checksum update, per buffer instead of one per byte
+ */
 public class DistributedIndexOutput extends IndexOutput {
 
+	public static final int BUFFER_SIZE = 8192;
+
 	private final NosqlFile nosqlFile;
+	private final byte[] buffer;
 
 	private boolean isOpen;
 	private long position;
+	private int bufferPosition;
 
 	public DistributedIndexOutput(NosqlFile nosqlFile) throws IOException {
 		super(nosqlFile.getFileName());
 		this.nosqlFile = nosqlFile;
+		this.buffer = new byte[BUFFER_SIZE];
 		nosqlFile.resetChecksum();
 		this.isOpen = true;
 	}
@@ -39,35 +47,63 @@ public class DistributedIndexOutput extends IndexOutput {
 	public void close() throws IOException {
 		if (isOpen) {
 			flush();
+			nosqlFile.close();
 			isOpen = false;
 		}
 	}
 
 	public void flush() throws IOException {
+		flushBuffer();
 		nosqlFile.flush();
 	}
 
+	private void flushBuffer() throws IOException {
+		if (bufferPosition > 0) {
+			nosqlFile.write(position, buffer, 0, bufferPosition);
+			position += bufferPosition;
+			bufferPosition = 0;
+		}
+	}
+
 	@Override
 	public long getFilePointer() {
-		return position;
+		return position + bufferPosition;
 	}
 
 	@Override
 	public void writeByte(byte b) throws IOException {
-		nosqlFile.write(position, b);
-		position += 1;
+		if (bufferPosition == BUFFER_SIZE) {
+			flushBuffer();
+		}
+		buffer[bufferPosition++] = b;
 	}
 
 	@Override
 	public void writeBytes(byte[] b, int offset, int length) throws IOException {
-		nosqlFile.write(position, b, offset, length);
-		position += length;
+		if (length <= BUFFER_SIZE - bufferPosition) {
+			System.arraycopy(b, offset, buffer, bufferPosition, length);
+			bufferPosition += length;
+		}
+		else {
+			flushBuffer();
+			if (length < BUFFER_SIZE) {
+				System.arraycopy(b, offset, buffer, 0, length);
+				bufferPosition = length;
+			}
+			else {
+				nosqlFile.write(position, b, offset, length);
+				position += length;
+			}
+		}
 	}
 
+	/**
+	 * Only hands the buffer to the nosql file, the checksum does not need the file to be stored
+	 */
 	@Override
 	public long getChecksum() throws IOException {
-		flush();
+		flushBuffer();
 		return nosqlFile.getChecksum();
 	}
 
-}
\ No newline at end of file
+}
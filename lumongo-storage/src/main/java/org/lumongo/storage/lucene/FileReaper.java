@@ -0,0 +1,116 @@
+package org.lumongo.storage.lucene;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import org.apache.log4j.Logger;
+import org.bson.Document;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to You under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+/**
+ * Removes the blocks of deleted files in the background
+ *
+ * A deleted file keeps its metadata document with {@link MongoDirectory#DELETED} set until all of its blocks are
+ * removed, which keeps its file number from being reused while stale blocks remain.  Blocks are removed a range at a
+ * time with a pause between ranges so reaping a large merged away segment does not compete with indexing for mongo.
+ * Tombstones left by a node that stopped before they were reaped are picked up when the directory is opened again.
+ */
+public class FileReaper {
+
+	private final static Logger log = Logger.getLogger(FileReaper.class);
+
+	public static final int DEFAULT_BATCH_SIZE = 64;
+	public static final long DEFAULT_PAUSE_MS = 50;
+
+	private final ExecutorService executor;
+	private final Set<MongoDirectory> scheduled;
+
+	private volatile int batchSize;
+	private volatile long pauseMs;
+
+	public FileReaper(int batchSize, long pauseMs) {
+		this.batchSize = batchSize;
+		this.pauseMs = pauseMs;
+		this.scheduled = ConcurrentHashMap.newKeySet();
+		this.executor = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "LumongoFileReaper");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * @param batchSize - blocks removed with each delete
+	 * @param pauseMs - pause between deletes in milliseconds
+	 */
+	public void setThrottle(int batchSize, long pauseMs) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Reaper batch size must be at least 1, found <" + batchSize + ">");
+		}
+		this.batchSize = batchSize;
+		this.pauseMs = pauseMs;
+	}
+
+	/**
+	 * Queues a pass over the tombstones of the directory unless one is already queued
+	 */
+	public void schedule(MongoDirectory mongoDirectory) {
+		if (scheduled.add(mongoDirectory)) {
+			executor.execute(() -> {
+				scheduled.remove(mongoDirectory);
+				reap(mongoDirectory);
+			});
+		}
+	}
+
+	private void reap(MongoDirectory mongoDirectory) {
+		try {
+			Document query = new Document(MongoDirectory.DELETED, true);
+			for (Document tombstone : mongoDirectory.getFilesCollection().find(query)) {
+				reapFile(mongoDirectory, tombstone);
+			}
+		}
+		catch (MongoException | IllegalStateException e) {
+			//the tombstones stay and are reaped on the next delete or when the directory is opened again
+			log.error("Failed to remove deleted files of index <" + mongoDirectory.getIndexName() + ">: " + e.getMessage());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void reapFile(MongoDirectory mongoDirectory, Document tombstone) throws InterruptedException {
+		Number fileNumber = (Number) tombstone.get(MongoDirectory.FILE_NUMBER);
+		long length = ((Number) tombstone.get(MongoDirectory.LENGTH)).longValue();
+		int blockSize = ((Number) tombstone.get(MongoDirectory.BLOCK_SIZE)).intValue();
+		long blocks = (length + blockSize - 1) / blockSize;
+
+		MongoCollection<Document> b = mongoDirectory.getBlocksCollection();
+		for (long start = 0; start < blocks; start += batchSize) {
+			Document range = new Document("$gte", start).append("$lt", start + batchSize);
+			b.deleteMany(new Document(MongoDirectory.FILE_NUMBER, fileNumber).append(MongoDirectory.BLOCK_NUMBER, range));
+			Thread.sleep(pauseMs);
+		}
+		//any block past the recorded length
+		b.deleteMany(new Document(MongoDirectory.FILE_NUMBER, fileNumber));
+
+		mongoDirectory.getFilesCollection().deleteOne(new Document(MongoDirectory.FILE_NUMBER, fileNumber).append(MongoDirectory.DELETED, true));
+	}
+
+}
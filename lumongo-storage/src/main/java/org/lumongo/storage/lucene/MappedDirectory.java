@@ -0,0 +1,232 @@
+package org.lumongo.storage.lucene;
+
+import org.apache.log4j.Logger;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to You under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+/**
+ * Directory of memory mapped local files under root/database/index, for single node benchmarks and tests that should
+ * not pay for mongo.  Every file is a regular file with the lucene file name, so the length and modification time
+ * come from the file system.
+ */
+public class MappedDirectory implements NosqlDirectory {
+
+	private final static Logger log = Logger.getLogger(MappedDirectory.class);
+
+	private final Path path;
+	private final String dbName;
+	private final String indexName;
+	private final int blockSize;
+
+	private final ConcurrentMap<String, MappedFile> nameToFileMap;
+
+	/**
+	 * Removes the files of an index from disk, and the database directory if no other index is left in it
+	 */
+	public static void dropIndex(Path root, String dbName, String indexName) throws IOException {
+		Path indexPath = root.resolve(dbName).resolve(indexName);
+		if (!Files.isDirectory(indexPath)) {
+			return;
+		}
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(indexPath)) {
+			for (Path file : stream) {
+				Files.deleteIfExists(file);
+			}
+		}
+		Files.deleteIfExists(indexPath);
+
+		//the database directory goes with its last index
+		Path dbPath = indexPath.getParent();
+		try (Stream<Path> remaining = Files.list(dbPath)) {
+			if (!remaining.findAny().isPresent()) {
+				Files.deleteIfExists(dbPath);
+			}
+		}
+	}
+
+	/**
+	 * @param root - local directory indexes are stored under
+	 * @param dbName - database the index belongs to
+	 * @param indexName - name of the index
+	 * @param blockSize - size of the blocks files are read in
+	 */
+	public MappedDirectory(Path root, String dbName, String indexName, int blockSize) throws IOException {
+		this.path = root.resolve(dbName).resolve(indexName);
+		this.dbName = dbName;
+		this.indexName = indexName;
+		this.blockSize = blockSize;
+		this.nameToFileMap = new ConcurrentHashMap<>();
+
+		Files.createDirectories(path);
+		short fileNumber = 0;
+		try (Stream<Path> files = Files.list(path)) {
+			for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+				String fileName = file.getFileName().toString();
+				MappedFile mappedFile = new MappedFile(this, fileName, fileNumber++, blockSize, Files.size(file),
+								Files.getLastModifiedTime(file).toMillis());
+				nameToFileMap.put(fileName, mappedFile);
+			}
+		}
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	public String getDbName() {
+		return dbName;
+	}
+
+	public String getIndexName() {
+		return indexName;
+	}
+
+	/**
+	 * Warming loads the files into the operating system page cache, which the directory does not limit
+	 */
+	@Override
+	public long getCacheBytes() {
+		return Long.MAX_VALUE;
+	}
+
+	@Override
+	public String[] getFileNames() throws IOException {
+		Set<String> fileNames = nameToFileMap.keySet();
+		return fileNames.toArray(new String[fileNames.size()]);
+	}
+
+	@Override
+	public MappedFile getFileHandle(String fileName) throws IOException {
+		return getFileHandle(fileName, false);
+	}
+
+	@Override
+	public MappedFile getFileHandle(String fileName, boolean createIfNotFound) throws IOException {
+		MappedFile mappedFile = nameToFileMap.get(fileName);
+		if (mappedFile != null) {
+			return mappedFile;
+		}
+		if (createIfNotFound) {
+			return createFile(fileName);
+		}
+		throw new FileNotFoundException(fileName);
+	}
+
+	private MappedFile createFile(String fileName) throws IOException {
+		synchronized (nameToFileMap) {
+			MappedFile existing = nameToFileMap.get(fileName);
+			if (existing != null) {
+				return existing;
+			}
+
+			Set<Short> fileNumbers = nameToFileMap.values().stream().map(MappedFile::getFileNumber).collect(Collectors.toSet());
+
+			Short fileNumber = null;
+			for (short i = 0; i < Short.MAX_VALUE; i++) {
+				if (!fileNumbers.contains(i)) {
+					fileNumber = i;
+					break;
+				}
+			}
+
+			if (fileNumber == null) {
+				throw new IOException("There are more than <" + Short.MAX_VALUE + "> files in the index");
+			}
+
+			try {
+				Files.createFile(path.resolve(fileName));
+			}
+			catch (FileAlreadyExistsException e) {
+				//left by a file that was not cleaned up, it is overwritten
+				Files.write(path.resolve(fileName), new byte[0]);
+			}
+
+			MappedFile mappedFile = new MappedFile(this, fileName, fileNumber, blockSize, 0, System.currentTimeMillis());
+			nameToFileMap.put(fileName, mappedFile);
+			return mappedFile;
+		}
+	}
+
+	@Override
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	@Override
+	public void updateFileMetadata(NosqlFile nosqlFile) throws IOException {
+		//metadata comes from the file system
+	}
+
+	@Override
+	public void deleteFile(NosqlFile nosqlFile) throws IOException {
+		MappedFile mappedFile = (MappedFile) nosqlFile;
+		synchronized (nameToFileMap) {
+			mappedFile.discard();
+			Files.deleteIfExists(mappedFile.getPath());
+			nameToFileMap.remove(mappedFile.getFileName(), mappedFile);
+		}
+	}
+
+	@Override
+	public void sync(Collection<String> fileNames) throws IOException {
+		for (String fileName : fileNames) {
+			getFileHandle(fileName, true).sync();
+		}
+	}
+
+	@Override
+	public void close() {
+		for (MappedFile mappedFile : nameToFileMap.values()) {
+			try {
+				mappedFile.close();
+			}
+			catch (RuntimeException e) {
+				log.error("Failed to close <" + mappedFile.getPath() + ">: " + e.getMessage());
+			}
+		}
+		nameToFileMap.clear();
+	}
+
+	@Override
+	public void rename(String source, String dest) throws IOException {
+		synchronized (nameToFileMap) {
+			MappedFile mappedFile = getFileHandle(source, false);
+			mappedFile.sync();
+			Files.move(path.resolve(source), path.resolve(dest), StandardCopyOption.ATOMIC_MOVE);
+			mappedFile.setFileName(dest);
+			nameToFileMap.put(dest, mappedFile);
+			nameToFileMap.remove(source);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "MappedDirectory [path=" + path + ", blockSize=" + blockSize + "]";
+	}
+
+}
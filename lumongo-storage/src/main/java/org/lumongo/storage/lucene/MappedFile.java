@@ -0,0 +1,359 @@
+package org.lumongo.storage.lucene;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to You under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+/**
+ * File of a {@link MappedDirectory} stored as a regular local file
+ *
+ * Writes are collected a block at a time and written with positional channel writes.  Reads map the file read only in
+ * chunks of whole blocks and hand out slices of the mapping as blocks, so the operating system page cache is the block
+ * cache and does the read ahead.  The mapping is dropped whenever the file is written and mapped again on the next read.
+ */
+public class MappedFile implements NosqlFile {
+
+	/**
+	 * largest part of a file covered by one mapping
+	 */
+	public static final int MAX_CHUNK_SIZE = 1 << 30;
+
+	private final MappedDirectory mappedDirectory;
+	private final short fileNumber;
+	private final int blockSize;
+	private final int chunkBlocks;
+	private final CRC32 crc;
+
+	private volatile String fileName;
+	private volatile long fileLength;
+	private volatile long lastModified;
+
+	private FileChannel writeChannel;
+	private final byte[] writeBuffer;
+	private int writeBlock;
+	private int writeFrom;
+	private int writeTo;
+
+	private volatile MappedByteBuffer[] chunks;
+
+	public MappedFile(MappedDirectory mappedDirectory, String fileName, short fileNumber, int blockSize, long fileLength, long lastModified) {
+		this.mappedDirectory = mappedDirectory;
+		this.fileName = fileName;
+		this.fileNumber = fileNumber;
+		this.blockSize = blockSize;
+		this.chunkBlocks = Math.max(1, MAX_CHUNK_SIZE / blockSize);
+		this.fileLength = fileLength;
+		this.lastModified = lastModified;
+		this.crc = new CRC32();
+		this.writeBuffer = new byte[blockSize];
+		this.writeBlock = -1;
+	}
+
+	public Path getPath() {
+		return mappedDirectory.getPath().resolve(fileName);
+	}
+
+	@Override
+	public String getFileName() {
+		return fileName;
+	}
+
+	@Override
+	public void setFileName(String fileName) {
+		this.fileName = fileName;
+	}
+
+	@Override
+	public short getFileNumber() {
+		return fileNumber;
+	}
+
+	@Override
+	public long getFileLength() {
+		return fileLength;
+	}
+
+	@Override
+	public void setFileLength(long fileLength) {
+		this.fileLength = fileLength;
+	}
+
+	@Override
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	@Override
+	public void setLastModified(long lastModified) {
+		this.lastModified = lastModified;
+	}
+
+	@Override
+	public void write(long position, byte b) throws IOException {
+		int block = (int) (position / blockSize);
+		int blockOffset = (int) (position - ((long) block * blockSize));
+
+		crc.update(b);
+
+		startWrite(block, blockOffset);
+		writeBuffer[blockOffset] = b;
+		writeTo = Math.max(writeTo, blockOffset + 1);
+
+		fileLength = Math.max(position + 1, fileLength);
+	}
+
+	@Override
+	public void write(long position, byte[] b, int offset, int length) throws IOException {
+		crc.update(b, offset, length);
+
+		while (length > 0) {
+			int block = (int) (position / blockSize);
+			int blockOffset = (int) (position - ((long) block * blockSize));
+			int writeSize = Math.min(blockSize - blockOffset, length);
+
+			startWrite(block, blockOffset);
+			System.arraycopy(b, offset, writeBuffer, blockOffset, writeSize);
+			writeTo = Math.max(writeTo, blockOffset + writeSize);
+
+			position += writeSize;
+			offset += writeSize;
+			length -= writeSize;
+			fileLength = Math.max(position, fileLength);
+		}
+	}
+
+	/**
+	 * Makes the write buffer hold the given block, writing out what was buffered if the write does not continue it
+	 */
+	private void startWrite(int block, int blockOffset) throws IOException {
+		if (block != writeBlock || blockOffset > writeTo) {
+			writeBuffered();
+			writeBlock = block;
+			writeFrom = blockOffset;
+			writeTo = blockOffset;
+		}
+		else if (blockOffset < writeFrom) {
+			writeFrom = blockOffset;
+		}
+	}
+
+	private synchronized void writeBuffered() throws IOException {
+		if (writeTo <= writeFrom) {
+			return;
+		}
+		if (writeChannel == null) {
+			writeChannel = FileChannel.open(getPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(writeBuffer, writeFrom, writeTo - writeFrom);
+		long position = (long) writeBlock * blockSize + writeFrom;
+		while (buffer.hasRemaining()) {
+			position += writeChannel.write(buffer, position);
+		}
+		writeFrom = writeTo;
+		chunks = null;
+	}
+
+	@Override
+	public void setStreaming(boolean streaming) {
+		//the page cache decides what stays in memory
+	}
+
+	@Override
+	public void flush() throws IOException {
+		writeBuffered();
+		lastModified = System.currentTimeMillis();
+	}
+
+	/**
+	 * Forces the written bytes of the file to disk
+	 */
+	public synchronized void sync() throws IOException {
+		writeBuffered();
+		if (writeChannel != null) {
+			writeChannel.force(false);
+		}
+	}
+
+	@Override
+	public byte readByte(long position) throws IOException {
+		int block = (int) (position / blockSize);
+		int blockOffset = (int) (position - ((long) block * blockSize));
+		return getBlock(block, false).get(blockOffset);
+	}
+
+	@Override
+	public void readBytes(long position, byte[] b, int offset, int length) throws IOException {
+		while (length > 0) {
+			int block = (int) (position / blockSize);
+			int blockOffset = (int) (position - ((long) block * blockSize));
+			int readSize = Math.min(blockSize - blockOffset, length);
+
+			getBlock(block, false).get(blockOffset, b, offset, readSize);
+
+			position += readSize;
+			offset += readSize;
+			length -= readSize;
+		}
+	}
+
+	@Override
+	public NosqlBlock getBlock(int blockNumber, boolean streaming) throws IOException {
+		long blockStart = (long) blockNumber * blockSize;
+		long length = fileLength;
+		if (blockStart >= length) {
+			throw new EOFException("Block <" + blockNumber + "> is past the end of file <" + fileName + ">");
+		}
+
+		MappedByteBuffer chunk = getChunks()[blockNumber / chunkBlocks];
+		int chunkOffset = (blockNumber % chunkBlocks) * blockSize;
+		ByteBuffer slice = chunk.duplicate();
+		slice.position(chunkOffset);
+		slice.limit((int) Math.min(chunk.capacity(), chunkOffset + (long) blockSize));
+		return new BufferBlock(blockNumber, slice.slice());
+	}
+
+	/**
+	 * Blocks of a mapped file are never released
+	 */
+	@Override
+	public NosqlBlock getBlockCopy(int blockNumber) throws IOException {
+		return getBlock(blockNumber, false);
+	}
+
+	private MappedByteBuffer[] getChunks() throws IOException {
+		MappedByteBuffer[] current = chunks;
+		if (current != null) {
+			return current;
+		}
+		synchronized (this) {
+			if (chunks == null) {
+				writeBuffered();
+				chunks = map();
+			}
+			return chunks;
+		}
+	}
+
+	private MappedByteBuffer[] map() throws IOException {
+		long length = fileLength;
+		long chunkSize = (long) chunkBlocks * blockSize;
+		int chunkCount = (int) ((length + chunkSize - 1) / chunkSize);
+		MappedByteBuffer[] mapped = new MappedByteBuffer[chunkCount];
+		try (FileChannel channel = FileChannel.open(getPath(), StandardOpenOption.READ)) {
+			for (int i = 0; i < chunkCount; i++) {
+				long start = i * chunkSize;
+				mapped[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize, length - start));
+			}
+		}
+		catch (NoSuchFileException e) {
+			throw new IOException("File <" + fileName + "> is missing from <" + mappedDirectory.getPath() + ">", e);
+		}
+		return mapped;
+	}
+
+	@Override
+	public void prefetch(long position, long length, boolean streaming) {
+		//the operating system reads ahead mapped files
+	}
+
+	@Override
+	public boolean preload(boolean streaming) throws IOException {
+		return true;
+	}
+
+	/**
+	 * Touches every page of the file so it is in the page cache
+	 */
+	@Override
+	public long warm() throws IOException {
+		if (fileLength == 0) {
+			return 0;
+		}
+		for (MappedByteBuffer chunk : getChunks()) {
+			chunk.load();
+		}
+		return fileLength;
+	}
+
+	@Override
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	@Override
+	public long getChecksum() {
+		return crc.getValue();
+	}
+
+	@Override
+	public void resetChecksum() {
+		crc.reset();
+	}
+
+	/**
+	 * Writes the buffered bytes and closes the channel the file was written through, the mapping stays open for reads
+	 */
+	@Override
+	public synchronized void close() {
+		try {
+			writeBuffered();
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Failed to write file <" + fileName + ">", e);
+		}
+		finally {
+			closeChannel();
+		}
+	}
+
+	/**
+	 * Closes the channel without writing the buffered bytes, for deleted files
+	 */
+	synchronized void discard() {
+		writeFrom = writeTo;
+		chunks = null;
+		closeChannel();
+	}
+
+	private void closeChannel() {
+		if (writeChannel != null) {
+			try {
+				writeChannel.close();
+			}
+			catch (IOException e) {
+				//nothing left to write
+			}
+			writeChannel = null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "MappedFile{" +
+						"fileName='" + fileName + '\'' +
+						", fileNumber=" + fileNumber +
+						", blockSize=" + blockSize +
+						", fileLength=" + fileLength +
+						", lastModified=" + lastModified +
+						'}';
+	}
+}
@@ -0,0 +1,180 @@
+package org.lumongo.storage.lucene;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to You under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+/**
+ * Directory held in heap or direct memory for single node benchmarks and tests that should not pay for mongo.
+ *
+ * The files of an index are kept for the life of the process under the database and index name, so closing and
+ * opening the directory again sees the same files.  Nothing is durable.
+ */
+public class MemoryDirectory implements NosqlDirectory {
+
+	private static final ConcurrentMap<String, ConcurrentMap<String, MemoryFile>> indexes = new ConcurrentHashMap<>();
+
+	private final String dbName;
+	private final String indexName;
+	private final int blockSize;
+	private final boolean offHeap;
+
+	private final ConcurrentMap<String, MemoryFile> nameToFileMap;
+
+	/**
+	 * Releases the files of an index
+	 */
+	public static void dropIndex(String dbName, String indexName) {
+		indexes.remove(getIndexKey(dbName, indexName));
+	}
+
+	private static String getIndexKey(String dbName, String indexName) {
+		return dbName + "/" + indexName;
+	}
+
+	/**
+	 * @param dbName - database the index belongs to
+	 * @param indexName - name of the index
+	 * @param blockSize - size of the blocks files are allocated in
+	 * @param offHeap - true to allocate blocks in direct memory instead of on the heap
+	 */
+	public MemoryDirectory(String dbName, String indexName, int blockSize, boolean offHeap) {
+		this.dbName = dbName;
+		this.indexName = indexName;
+		this.blockSize = blockSize;
+		this.offHeap = offHeap;
+		this.nameToFileMap = indexes.computeIfAbsent(getIndexKey(dbName, indexName), key -> new ConcurrentHashMap<>());
+	}
+
+	public String getDbName() {
+		return dbName;
+	}
+
+	public String getIndexName() {
+		return indexName;
+	}
+
+	public boolean isOffHeap() {
+		return offHeap;
+	}
+
+	/**
+	 * @return bytes of memory held by the files of the directory
+	 */
+	public long getAllocatedBytes() {
+		return nameToFileMap.values().stream().mapToLong(MemoryFile::getAllocatedBytes).sum();
+	}
+
+	/**
+	 * The files are always in memory so there is nothing to warm
+	 */
+	@Override
+	public long getCacheBytes() {
+		return 0;
+	}
+
+	@Override
+	public String[] getFileNames() throws IOException {
+		Set<String> fileNames = nameToFileMap.keySet();
+		return fileNames.toArray(new String[fileNames.size()]);
+	}
+
+	@Override
+	public MemoryFile getFileHandle(String fileName) throws IOException {
+		return getFileHandle(fileName, false);
+	}
+
+	@Override
+	public MemoryFile getFileHandle(String fileName, boolean createIfNotFound) throws IOException {
+		MemoryFile memoryFile = nameToFileMap.get(fileName);
+		if (memoryFile != null) {
+			return memoryFile;
+		}
+		if (createIfNotFound) {
+			return createFile(fileName);
+		}
+		throw new FileNotFoundException(fileName);
+	}
+
+	private MemoryFile createFile(String fileName) throws IOException {
+		synchronized (nameToFileMap) {
+			Set<Short> fileNumbers = nameToFileMap.values().stream().map(MemoryFile::getFileNumber).collect(Collectors.toSet());
+
+			Short fileNumber = null;
+			for (short i = 0; i < Short.MAX_VALUE; i++) {
+				if (!fileNumbers.contains(i)) {
+					fileNumber = i;
+					break;
+				}
+			}
+
+			if (fileNumber == null) {
+				throw new IOException("There are more than <" + Short.MAX_VALUE + "> files in the index");
+			}
+
+			nameToFileMap.putIfAbsent(fileName, new MemoryFile(this, fileName, fileNumber, blockSize, offHeap));
+			return nameToFileMap.get(fileName);
+		}
+	}
+
+	@Override
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	@Override
+	public void updateFileMetadata(NosqlFile nosqlFile) throws IOException {
+		//metadata lives on the file itself
+	}
+
+	@Override
+	public void deleteFile(NosqlFile nosqlFile) throws IOException {
+		nameToFileMap.remove(nosqlFile.getFileName(), nosqlFile);
+		nosqlFile.close();
+	}
+
+	@Override
+	public void sync(Collection<String> fileNames) throws IOException {
+		for (String fileName : fileNames) {
+			getFileHandle(fileName, true);
+		}
+	}
+
+	@Override
+	public void close() {
+		//files stay registered until the index is dropped
+	}
+
+	@Override
+	public void rename(String source, String dest) throws IOException {
+		synchronized (nameToFileMap) {
+			MemoryFile memoryFile = getFileHandle(source, false);
+			memoryFile.setFileName(dest);
+			nameToFileMap.put(dest, memoryFile);
+			nameToFileMap.remove(source);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "MemoryDirectory [dbname=" + dbName + ", indexName=" + indexName + ", blockSize=" + blockSize + ", offHeap=" + offHeap + "]";
+	}
+
+}
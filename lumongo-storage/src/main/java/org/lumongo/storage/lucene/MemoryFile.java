@@ -0,0 +1,236 @@
+package org.lumongo.storage.lucene;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to You under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+/**
+ * File of a {@link MemoryDirectory} held as an array of heap or direct blocks.  Every block is always in memory so
+ * prefetching, preloading and warming are no-ops.
+ */
+public class MemoryFile implements NosqlFile {
+
+	private final MemoryDirectory memoryDirectory;
+	private final short fileNumber;
+	private final int blockSize;
+	private final boolean offHeap;
+	private final CRC32 crc;
+
+	private volatile String fileName;
+	private volatile long fileLength;
+	private volatile long lastModified;
+
+	//only grown by the single writer of the file, replaced rather than resized so readers see a consistent array
+	private volatile BufferBlock[] blocks;
+
+	public MemoryFile(MemoryDirectory memoryDirectory, String fileName, short fileNumber, int blockSize, boolean offHeap) {
+		this.memoryDirectory = memoryDirectory;
+		this.fileName = fileName;
+		this.fileNumber = fileNumber;
+		this.blockSize = blockSize;
+		this.offHeap = offHeap;
+		this.crc = new CRC32();
+		this.blocks = new BufferBlock[0];
+		this.lastModified = System.currentTimeMillis();
+	}
+
+	public MemoryDirectory getMemoryDirectory() {
+		return memoryDirectory;
+	}
+
+	@Override
+	public String getFileName() {
+		return fileName;
+	}
+
+	@Override
+	public void setFileName(String fileName) {
+		this.fileName = fileName;
+	}
+
+	@Override
+	public short getFileNumber() {
+		return fileNumber;
+	}
+
+	@Override
+	public long getFileLength() {
+		return fileLength;
+	}
+
+	@Override
+	public void setFileLength(long fileLength) {
+		this.fileLength = fileLength;
+	}
+
+	@Override
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	@Override
+	public void setLastModified(long lastModified) {
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * @return bytes of memory held by the blocks of the file
+	 */
+	public long getAllocatedBytes() {
+		return (long) blocks.length * blockSize;
+	}
+
+	@Override
+	public void write(long position, byte b) throws IOException {
+		int block = (int) (position / blockSize);
+		int blockOffset = (int) (position - ((long) block * blockSize));
+
+		crc.update(b);
+		getWritableBlock(block).put(blockOffset, b);
+
+		fileLength = Math.max(position + 1, fileLength);
+	}
+
+	@Override
+	public void write(long position, byte[] b, int offset, int length) throws IOException {
+		crc.update(b, offset, length);
+
+		while (length > 0) {
+			int block = (int) (position / blockSize);
+			int blockOffset = (int) (position - ((long) block * blockSize));
+			int writeSize = Math.min(blockSize - blockOffset, length);
+
+			getWritableBlock(block).put(blockOffset, b, offset, writeSize);
+
+			position += writeSize;
+			offset += writeSize;
+			length -= writeSize;
+			fileLength = Math.max(position, fileLength);
+		}
+	}
+
+	private BufferBlock getWritableBlock(int block) {
+		BufferBlock[] current = blocks;
+		if (block < current.length) {
+			return current[block];
+		}
+		BufferBlock[] grown = Arrays.copyOf(current, block + 1);
+		for (int i = current.length; i < grown.length; i++) {
+			ByteBuffer buffer = offHeap ? ByteBuffer.allocateDirect(blockSize) : ByteBuffer.allocate(blockSize);
+			grown[i] = new BufferBlock(i, buffer);
+		}
+		blocks = grown;
+		return grown[block];
+	}
+
+	@Override
+	public void setStreaming(boolean streaming) {
+		//no cache to keep streamed blocks out of
+	}
+
+	@Override
+	public void flush() throws IOException {
+		lastModified = System.currentTimeMillis();
+	}
+
+	@Override
+	public byte readByte(long position) throws IOException {
+		int block = (int) (position / blockSize);
+		int blockOffset = (int) (position - ((long) block * blockSize));
+		return getBlock(block, false).get(blockOffset);
+	}
+
+	@Override
+	public void readBytes(long position, byte[] b, int offset, int length) throws IOException {
+		while (length > 0) {
+			int block = (int) (position / blockSize);
+			int blockOffset = (int) (position - ((long) block * blockSize));
+			int readSize = Math.min(blockSize - blockOffset, length);
+
+			getBlock(block, false).get(blockOffset, b, offset, readSize);
+
+			position += readSize;
+			offset += readSize;
+			length -= readSize;
+		}
+	}
+
+	@Override
+	public NosqlBlock getBlock(int blockNumber, boolean streaming) throws IOException {
+		BufferBlock[] current = blocks;
+		if (blockNumber >= current.length) {
+			throw new EOFException("Block <" + blockNumber + "> is past the end of file <" + fileName + ">");
+		}
+		return current[blockNumber];
+	}
+
+	/**
+	 * Blocks of a memory file are never released
+	 */
+	@Override
+	public NosqlBlock getBlockCopy(int blockNumber) throws IOException {
+		return getBlock(blockNumber, false);
+	}
+
+	@Override
+	public void prefetch(long position, long length, boolean streaming) {
+
+	}
+
+	@Override
+	public boolean preload(boolean streaming) throws IOException {
+		return true;
+	}
+
+	@Override
+	public long warm() throws IOException {
+		return 0;
+	}
+
+	@Override
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	@Override
+	public long getChecksum() {
+		return crc.getValue();
+	}
+
+	@Override
+	public void resetChecksum() {
+		crc.reset();
+	}
+
+	@Override
+	public void close() {
+
+	}
+
+	@Override
+	public String toString() {
+		return "MemoryFile{" +
+						"fileName='" + fileName + '\'' +
+						", fileNumber=" + fileNumber +
+						", blockSize=" + blockSize +
+						", offHeap=" + offHeap +
+						", fileLength=" + fileLength +
+						", lastModified=" + lastModified +
+						'}';
+	}
+}
@@ -1,5 +1,11 @@
 package org.lumongo.storage.lucene;
 
+import com.mongodb.client.model.ReplaceOneModel;
+import org.bson.Document;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.StampedLock;
+
 /**
  * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
  * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
@@ -13,7 +19,7 @@ package org.lumongo.storage.lucene;
  * specific language governing permissions and limitations under the License.
  */
 
-public class MongoBlock {
+public class MongoBlock implements NosqlBlock {
 
 	protected final MongoFile mongoFile;
 	protected final int blockNumber;
@@ -21,19 +27,171 @@ public class MongoBlock {
 
 	protected final Object lock;
 
-	protected byte[] bytes;
+	protected final ByteBuffer buffer;
+
+	//only set for off heap blocks, the slot is write locked forever once it is handed back to the allocator
+	private final DirectBlockAllocator allocator;
+	private final StampedLock releaseLock;
 
 	private boolean dirty;
 
+	//counts writes so a store model built from contents that were written to since is not kept
+	private long writeCount;
+
+	//store model of the current contents, kept until it is stored
+	private ReplaceOneModel<Document> storeModel;
+
 	public MongoBlock(MongoFile mongoFile, int blockNumber, byte[] bytes) {
+		this(mongoFile, blockNumber, ByteBuffer.wrap(bytes), null);
+	}
+
+	/**
+	 * @param mongoFile - file the block belongs to
+	 * @param blockNumber - number of the block in the file
+	 * @param slot - direct or memory mapped buffer holding the block
+	 * @param allocator - allocator the slot is returned to when the block is released, null if the buffer is not pooled
+	 */
+	public MongoBlock(MongoFile mongoFile, int blockNumber, ByteBuffer slot, DirectBlockAllocator allocator) {
 		this.mongoFile = mongoFile;
 		this.blockNumber = blockNumber;
-		this.bytes = bytes;
+		this.buffer = slot;
+		this.allocator = allocator;
+		this.releaseLock = allocator != null ? new StampedLock() : null;
 		this.dirty = false;
 		this.blockKey = computeBlockKey(mongoFile, blockNumber);
 		this.lock = new Object();
 	}
 
+	@Override
+	public int getBlockNumber() {
+		return blockNumber;
+	}
+
+	/**
+	 * @return true if the block is held in direct or memory mapped memory and can not be written to
+	 */
+	public boolean isOffHeap() {
+		return !buffer.hasArray();
+	}
+
+	@Override
+	public int capacity() {
+		return buffer.capacity();
+	}
+
+	/**
+	 * Off heap reads must be bracketed by {@link #readStamp()} and {@link #validate(long)} because the slot can be
+	 * recycled for another block at any time after eviction
+	 * @return a stamp to validate the read with, 0 if the block is already released
+	 */
+	@Override
+	public long readStamp() {
+		if (releaseLock == null) {
+			return 1;
+		}
+		return releaseLock.tryOptimisticRead();
+	}
+
+	/**
+	 * @param stamp - stamp from {@link #readStamp()}
+	 * @return true if the block was not released since the stamp was taken
+	 */
+	@Override
+	public boolean validate(long stamp) {
+		return releaseLock == null || releaseLock.validate(stamp);
+	}
+
+	@Override
+	public byte get(int offset) {
+		return buffer.get(offset);
+	}
+
+	@Override
+	public short getShort(int offset) {
+		return buffer.getShort(offset);
+	}
+
+	@Override
+	public int getInt(int offset) {
+		return buffer.getInt(offset);
+	}
+
+	@Override
+	public long getLong(int offset) {
+		return buffer.getLong(offset);
+	}
+
+	@Override
+	public void get(int offset, byte[] b, int bOffset, int length) {
+		if (buffer.hasArray()) {
+			System.arraycopy(buffer.array(), offset, b, bOffset, length);
+		}
+		else {
+			ByteBuffer duplicate = buffer.duplicate();
+			duplicate.position(offset);
+			duplicate.get(b, bOffset, length);
+		}
+	}
+
+	/**
+	 * Writes are only allowed on heap blocks, see {@link #toHeap()}
+	 */
+	public void put(int offset, byte b) {
+		buffer.array()[offset] = b;
+	}
+
+	/**
+	 * Writes are only allowed on heap blocks, see {@link #toHeap()}
+	 */
+	public void put(int offset, byte[] b, int bOffset, int length) {
+		System.arraycopy(b, bOffset, buffer.array(), offset, length);
+	}
+
+	/**
+	 * @return the contents of the block as an array, a copy for off heap blocks
+	 */
+	public byte[] getBytes() {
+		if (buffer.hasArray()) {
+			return buffer.array();
+		}
+		return copyBytes();
+	}
+
+	/**
+	 * The writing thread does not lock the block, so a store works from a copy to compress and checksum the same bytes
+	 * @return a copy of the contents of the block
+	 */
+	public byte[] copyBytes() {
+		byte[] bytes = new byte[buffer.capacity()];
+		get(0, bytes, 0, bytes.length);
+		return bytes;
+	}
+
+	/**
+	 * @return a heap copy of an off heap block that is safe to write to, or this block if it is already on heap
+	 */
+	public MongoBlock toHeap() {
+		if (!isOffHeap()) {
+			return this;
+		}
+		return new MongoBlock(mongoFile, blockNumber, getBytes());
+	}
+
+	/**
+	 * Hands the memory of an off heap block back to the allocator.  Readers still holding the block fail validation
+	 * and have to fetch it again.
+	 */
+	public void release() {
+		if (releaseLock != null) {
+			synchronized (lock) {
+				if (!releaseLock.isWriteLocked()) {
+					releaseLock.writeLock();
+					allocator.free(buffer);
+				}
+			}
+		}
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) {
@@ -54,20 +212,73 @@ public class MongoBlock {
 	}
 
 	public void markDirty() {
+		synchronized (lock) {
+			dirty = true;
+			writeCount++;
+			storeModel = null;
+		}
+	}
+
+	/**
+	 * Marks the block dirty again after a failed store without dropping the store model built for it
+	 */
+	public void markStoreFailed() {
 		synchronized (lock) {
 			dirty = true;
 		}
 	}
 
-	public void flushIfDirty() {
+	protected long getWriteCount() {
 		synchronized (lock) {
-			if (dirty) {
-				mongoFile.storeBlock(this);
-				dirty = false;
+			return writeCount;
+		}
+	}
+
+	protected ReplaceOneModel<Document> getStoreModel() {
+		synchronized (lock) {
+			return storeModel;
+		}
+	}
+
+	/**
+	 * @param storeModel - store model built from the contents of the block
+	 * @param writeCount - write count taken before the contents were copied, the model is dropped if the block was written to since
+	 */
+	protected void keepStoreModel(ReplaceOneModel<Document> storeModel, long writeCount) {
+		synchronized (lock) {
+			if (this.writeCount == writeCount) {
+				this.storeModel = storeModel;
 			}
 		}
 	}
 
+	/**
+	 * Called once the block is stored, the store model is not needed any more
+	 */
+	protected void storeCompleted() {
+		synchronized (lock) {
+			storeModel = null;
+		}
+	}
+
+	/**
+	 * Marks the block clean before it is written with other blocks, the caller must mark it dirty again if the write fails
+	 * @return true if the block was dirty
+	 */
+	public boolean clearDirty() {
+		synchronized (lock) {
+			boolean wasDirty = dirty;
+			dirty = false;
+			return wasDirty;
+		}
+	}
+
+	public boolean isDirty() {
+		synchronized (lock) {
+			return dirty;
+		}
+	}
+
 	@Override
 	public int hashCode() {
 		return Long.hashCode(blockKey);
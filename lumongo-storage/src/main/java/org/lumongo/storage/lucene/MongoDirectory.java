@@ -5,12 +5,23 @@ import com.mongodb.MongoException;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.ReplaceOneModel;
 import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.apache.lucene.index.IndexFileNames;
 import org.bson.Document;
+import org.bson.types.Binary;
 import org.lumongo.storage.constants.MongoConstants;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
@@ -36,6 +47,10 @@ public class MongoDirectory implements NosqlDirectory {
 	public static final String LENGTH = "length";
 	public static final String FILE_NAME = "fileName";
 	public static final String FILE_NUMBER = "fileNumber";
+	public static final String CODEC = "codec";
+	public static final String CHECKSUM = "checksum";
+	public static final String DELETED = "deleted";
+	public static final String INLINE_BYTES = "inlineBytes";
 
 	public static String BYTES = "bytes";
 
@@ -44,6 +59,32 @@ public class MongoDirectory implements NosqlDirectory {
 
 	public static final int DEFAULT_BLOCK_SIZE = 1024 * 128;
 	public static final int DEFAULT_BLOCK_MAX = 12500;
+	public static final long DEFAULT_BLOCK_CACHE_SIZE = (long) DEFAULT_BLOCK_MAX * DEFAULT_BLOCK_SIZE;
+	public static final int DEFAULT_FLUSH_BATCH_SIZE = 64;
+	public static final int DEFAULT_INLINE_FILE_SIZE = 1024 * 16;
+
+	/**
+	 * stored fields and postings are read in long runs and get blocks this many times the directory block size
+	 *
+	 * Extension block sizes only apply to segments written as separate files.  A compound file holds every file of its
+	 * segment, so .cfs files get the directory block size and .cfe files are small enough to be stored inline.  Use
+	 * IndexWriterConfig.setUseCompoundFile(false) and a merge policy with a noCFSRatio of 0 for the sizes to apply to
+	 * every segment, with the defaults they only apply to the segments merges make too large to be compound.
+	 */
+	public static final int SEQUENTIAL_BLOCK_FACTOR = 4;
+	public static final String[] SEQUENTIAL_EXTENSIONS = { "fdt", "doc", "pos", "pay" };
+
+	/**
+	 * terms indexes, norms and doc values are read a few bytes at a time and get blocks this many times smaller
+	 */
+	public static final int RANDOM_ACCESS_BLOCK_FACTOR = 4;
+	public static final String[] RANDOM_ACCESS_EXTENSIONS = { "tip", "nvd", "dvd" };
+
+	public static final int MIN_BLOCK_SIZE = 1024 * 4;
+
+	private static volatile int flushBatchSize = DEFAULT_FLUSH_BATCH_SIZE;
+
+	private static final FileReaper fileReaper = new FileReaper(FileReaper.DEFAULT_BATCH_SIZE, FileReaper.DEFAULT_PAUSE_MS);
 
 	private static short indexCount = 0;
 	private static final ConcurrentHashMap<String, Short> indexNameToNumberMap = new ConcurrentHashMap<>();
@@ -54,11 +95,72 @@ public class MongoDirectory implements NosqlDirectory {
 	private final int blockSize;
 	protected final short indexNumber;
 	private final ConcurrentHashMap<String, MongoFile> nameToFileMap;
+	private final ConcurrentHashMap<String, Integer> extensionBlockSizes;
+
+	private volatile BlockCodec blockCodec = BlockCodec.NONE;
 
+	private volatile int inlineFileSize = DEFAULT_INLINE_FILE_SIZE;
+
+	/**
+	 * @deprecated the block cache is bounded by bytes, use {@link #setBlockCacheSize(long)}
+	 */
+	@Deprecated
 	public static void setMaxIndexBlocks(int blocks) {
 		MongoFile.setMaxIndexBlocks(blocks);
 	}
 
+	/**
+	 * Resizes the node level block cache shared by all indexes
+	 * @param bytes - maximum bytes of index blocks held in memory
+	 */
+	public static void setBlockCacheSize(long bytes) {
+		MongoFile.setBlockCacheSize(bytes);
+	}
+
+	/**
+	 * Moves blocks read from mongo into direct memory slabs outside of the java heap
+	 * @param offHeap - true to keep cached blocks off heap
+	 */
+	public static void setBlockCacheOffHeap(boolean offHeap) {
+		MongoFile.setOffHeap(offHeap);
+	}
+
+	/**
+	 * @param blocks - maximum number of blocks sent to mongo in one bulk write when files are flushed
+	 */
+	public static void setFlushBatchSize(int blocks) {
+		if (blocks < 1) {
+			throw new IllegalArgumentException("Flush batch size must be at least 1, found <" + blocks + ">");
+		}
+		flushBatchSize = blocks;
+	}
+
+	public static int getFlushBatchSize() {
+		return flushBatchSize;
+	}
+
+	/**
+	 * Throttles the background removal of the blocks of deleted files
+	 * @param blocks - blocks removed with each delete
+	 * @param pauseMs - pause between deletes in milliseconds
+	 */
+	public static void setReaperThrottle(int blocks, long pauseMs) {
+		fileReaper.setThrottle(blocks, pauseMs);
+	}
+
+	/**
+	 * Keeps blocks read from mongo on local disk so they survive restarts and segment moves
+	 * @param directory - local directory for the cached blocks
+	 * @param maxBytes - maximum bytes kept on disk
+	 */
+	public static void setDiskCache(Path directory, long maxBytes) throws IOException {
+		MongoFile.setDiskCache(new DiskBlockCache(directory, maxBytes));
+	}
+
+	public static List<BlockCacheStats> getBlockCacheStats() {
+		return MongoFile.getCache().getStats();
+	}
+
 	/**
 	 * Removes an index from a database
 	 * @param mongo
@@ -87,19 +189,29 @@ public class MongoDirectory implements NosqlDirectory {
 		this.indexName = indexName;
 		this.blockSize = blockSize;
 
+		this.extensionBlockSizes = new ConcurrentHashMap<>();
+		for (String extension : SEQUENTIAL_EXTENSIONS) {
+			extensionBlockSizes.put(extension, blockSize * SEQUENTIAL_BLOCK_FACTOR);
+		}
+		for (String extension : RANDOM_ACCESS_EXTENSIONS) {
+			extensionBlockSizes.put(extension, Math.max(MIN_BLOCK_SIZE, blockSize / RANDOM_ACCESS_BLOCK_FACTOR));
+		}
+
 		synchronized (MongoDirectory.class) {
 			//get back a index number to use instead of the string
 			//this is not a persisted number and is just in memory
 			String key = ddName + "-" + indexName;
 			Short indexNumber = indexNameToNumberMap.get(key);
 			if (indexNumber == null) {
-				indexNameToNumberMap.put(key, indexCount);
-				indexCount++;
 				indexNumber = indexCount;
+				indexNameToNumberMap.put(key, indexNumber);
+				indexCount++;
 			}
 			this.indexNumber = indexNumber;
 		}
 
+		MongoFile.getCache().registerIndex(indexNumber, ddName + "." + indexName);
+
 		getFilesCollection().createIndex(new Document(FILE_NUMBER, 1));
 
 		Document indexes = new Document();
@@ -125,15 +237,125 @@ public class MongoDirectory implements NosqlDirectory {
 		return indexName;
 	}
 
+	public String getDbName() {
+		return dbname;
+	}
+
+	/**
+	 * @return number of the index in the block keys and the block cache
+	 */
+	public short getIndexNumber() {
+		return indexNumber;
+	}
+
+	/**
+	 * @return bytes of the block cache this index can use, its quota if it has one
+	 */
+	@Override
+	public long getCacheBytes() {
+		long cacheBytes = MongoFile.getCache().getMaxBytes();
+		long quotaBytes = MongoFile.getCache().getStats(indexNumber).getQuotaBytes();
+		return quotaBytes > 0 ? Math.min(quotaBytes, cacheBytes) : cacheBytes;
+	}
+
+	/**
+	 * Sets the share of the block cache this index gets relative to other indexes when the cache is full
+	 * @param weight - relative weight, defaults to {@link BlockCache#DEFAULT_WEIGHT}
+	 */
+	public void setCacheWeight(int weight) {
+		MongoFile.getCache().setIndexWeight(indexNumber, weight);
+	}
+
+	/**
+	 * Limits the bytes this index can hold in the block cache
+	 * @param quotaBytes - maximum bytes or 0 for no limit
+	 */
+	public void setCacheQuota(long quotaBytes) {
+		MongoFile.getCache().setIndexQuota(indexNumber, quotaBytes);
+	}
+
+	/**
+	 * Sets the codec new blocks are written with, existing blocks are read with the codec they were written with
+	 * @param blockCodec - codec for new blocks, defaults to {@link BlockCodec#NONE}
+	 */
+	public void setBlockCodec(BlockCodec blockCodec) {
+		this.blockCodec = blockCodec;
+	}
+
+	public BlockCodec getBlockCodec() {
+		return blockCodec;
+	}
+
+	/**
+	 * Sets the block size of new files with the given extension, existing files keep the block size they were written
+	 * with.  Files packed into a compound file use the block size of the .cfs file instead, see
+	 * {@link #SEQUENTIAL_BLOCK_FACTOR}.
+	 * @param extension - file extension without the dot
+	 * @param blockSize - block size in bytes, 0 to use the directory block size
+	 */
+	public void setBlockSize(String extension, int blockSize) {
+		if (blockSize > 0) {
+			extensionBlockSizes.put(extension, blockSize);
+		}
+		else {
+			extensionBlockSizes.remove(extension);
+		}
+	}
+
+	/**
+	 * @return the block size for a new file with the given name
+	 */
+	public int getBlockSize(String fileName) {
+		String extension = IndexFileNames.getExtension(fileName);
+		if (extension != null) {
+			Integer extensionBlockSize = extensionBlockSizes.get(extension);
+			if (extensionBlockSize != null) {
+				return extensionBlockSize;
+			}
+		}
+		return blockSize;
+	}
+
+	/**
+	 * Files up to this size are stored in their metadata document and loaded with the file list instead of being
+	 * stored as blocks
+	 * @param bytes - largest file stored inline, 0 to store every file as blocks
+	 */
+	public void setInlineFileSize(int bytes) {
+		this.inlineFileSize = bytes;
+	}
+
+	public int getInlineFileSize() {
+		return inlineFileSize;
+	}
+
+	public BlockCacheStats getCacheStats() {
+		return MongoFile.getCache().getStats(indexNumber);
+	}
+
 	private void fetchInitialContents() throws MongoException, IOException {
 		MongoCollection<Document> c = getFilesCollection();
 
 
+		boolean hasTombstones = false;
 		FindIterable<Document> cur = c.find();
 		for (Document d : cur) {
+			if (Boolean.TRUE.equals(d.get(DELETED))) {
+				hasTombstones = true;
+				continue;
+			}
 			MongoFile mf = loadFileFromDBObject(d);
 			nameToFileMap.put(mf.getFileName(), mf);
 		}
+
+		if (hasTombstones) {
+			fileReaper.schedule(this);
+		}
+
+		DiskBlockCache diskCache = MongoFile.getDiskCache();
+		if (diskCache != null) {
+			diskCache.retainFiles(this, nameToFileMap.values());
+		}
 	}
 
 	public MongoCollection<Document> getFilesCollection() {
@@ -170,6 +392,7 @@ public class MongoDirectory implements NosqlDirectory {
 
 		Document query = new Document();
 		query.put(FILE_NAME, filename);
+		query.put(DELETED, new Document("$ne", true));
 
 		Document doc = c.find(query).first();
 
@@ -207,7 +430,7 @@ public class MongoDirectory implements NosqlDirectory {
 				throw new IOException("There are more than <" + Short.MAX_VALUE + "> files in the index");
 			}
 
-			MongoFile mongoFile = new MongoFile(this, fileName, fileNumber, blockSize);
+			MongoFile mongoFile = new MongoFile(this, fileName, fileNumber, getBlockSize(fileName));
 
 			updateFileMetadata(mongoFile);
 
@@ -230,6 +453,11 @@ public class MongoDirectory implements NosqlDirectory {
 							((Number) document.get(BLOCK_SIZE)).intValue());
 			mongoFile.setFileLength(((Number) document.get(LENGTH)).longValue());
 			mongoFile.setLastModified(((Number) document.get(LAST_MODIFIED)).longValue());
+			Binary inlineBytes = (Binary) document.get(INLINE_BYTES);
+			if (inlineBytes != null) {
+				mongoFile.setInlineBytes(inlineBytes.getData());
+			}
+			mongoFile.setStoredMetadata(toMetadataDocument(mongoFile));
 			return mongoFile;
 		}
 		catch (Exception e) {
@@ -258,34 +486,159 @@ public class MongoDirectory implements NosqlDirectory {
 		return blockSize;
 	}
 
+	/**
+	 * @return the document stored in the files collection for the file, with the bytes of a file stored inline
+	 */
+	private static Document toMetadataDocument(MongoFile mongoFile) throws IOException {
+		Document object = toDocument(mongoFile);
+		byte[] inlineBytes = mongoFile.getInlineBytes();
+		if (inlineBytes != null) {
+			object.put(INLINE_BYTES, new Binary(inlineBytes));
+		}
+		return object;
+	}
+
+	private static ReplaceOneModel<Document> getMetadataModel(MongoFile mongoFile, Document object) {
+		Document query = new Document();
+		query.put(FILE_NUMBER, mongoFile.getFileNumber());
+		return new ReplaceOneModel<>(query, object, new UpdateOptions().upsert(true));
+	}
+
 	@Override
 	public void updateFileMetadata(NosqlFile nosqlFile) throws IOException {
 		MongoCollection<Document> c = getFilesCollection();
 
-		Document query = new Document();
-		query.put(FILE_NUMBER, nosqlFile.getFileNumber());
+		MongoFile mongoFile = (MongoFile) nosqlFile;
+		Document object = toMetadataDocument(mongoFile);
+		ReplaceOneModel<Document> metadataModel = getMetadataModel(mongoFile, object);
+		c.replaceOne(metadataModel.getFilter(), metadataModel.getReplacement(), metadataModel.getOptions());
+		mongoFile.setStoredMetadata(object);
+
+	}
+
+	/**
+	 * Writes the metadata of all the given files whose length, modified time or inline bytes changed since they were
+	 * last stored with a single unordered bulk write
+	 */
+	protected void updateFileMetadata(List<MongoFile> files) throws IOException {
+		List<WriteModel<Document>> batch = new ArrayList<>(files.size());
+		Map<MongoFile, Document> changed = new LinkedHashMap<>();
+		for (MongoFile mongoFile : files) {
+			Document object = toMetadataDocument(mongoFile);
+			if (!object.equals(mongoFile.getStoredMetadata()) && changed.put(mongoFile, object) == null) {
+				batch.add(getMetadataModel(mongoFile, object));
+			}
+		}
 
-		Document object = toDocument(nosqlFile);
-		c.replaceOne(query, object, new UpdateOptions().upsert(true));
+		if (batch.isEmpty()) {
+			return;
+		}
 
+		try {
+			getFilesCollection().bulkWrite(batch, new BulkWriteOptions().ordered(false));
+		}
+		catch (MongoException e) {
+			throw new IOException("Failed to store metadata of <" + batch.size() + "> files for index <" + indexName + ">", e);
+		}
+		changed.forEach(MongoFile::setStoredMetadata);
+	}
+
+	@Override
+	public void sync(Collection<String> fileNames) throws IOException {
+		List<MongoFile> files = new ArrayList<>(fileNames.size());
+		for (String fileName : fileNames) {
+			files.add(getFileHandle(fileName, true));
+		}
+		flushFiles(files);
+	}
+
+	/**
+	 * Queues the dirty blocks of all the given files to be written together, waits for every block of the files to be
+	 * written and then updates the metadata that changed in one bulk write.  Small files are written with their metadata
+	 * instead.
+	 */
+	protected void flushFiles(List<MongoFile> files) throws IOException {
+		Map<Long, MongoBlock> blocks = new LinkedHashMap<>();
+		for (MongoFile mongoFile : files) {
+			mongoFile.prepareInline(inlineFileSize);
+			mongoFile.collectDirtyBlocks(blocks);
+		}
+
+		BlockWriter blockWriter = MongoFile.getBlockWriter();
+		for (MongoBlock mongoBlock : blocks.values()) {
+			blockWriter.enqueueIfDirty(mongoBlock);
+		}
+		blockWriter.awaitFiles(files);
+
+		updateFileMetadata(files);
+	}
+
+	/**
+	 * Writes the blocks that are dirty with unordered bulk writes of up to {@link #getFlushBatchSize()} blocks
+	 */
+	protected void storeBlocks(Collection<MongoBlock> blocks) throws IOException {
+		int batchSize = flushBatchSize;
+
+		List<WriteModel<Document>> batch = new ArrayList<>(Math.min(batchSize, blocks.size()));
+		List<MongoBlock> batchBlocks = new ArrayList<>(Math.min(batchSize, blocks.size()));
+		for (MongoBlock mongoBlock : blocks) {
+			if (mongoBlock.clearDirty()) {
+				batch.add(MongoFile.getStoreModel(mongoBlock));
+				batchBlocks.add(mongoBlock);
+				if (batch.size() >= batchSize) {
+					storeBatch(batch, batchBlocks);
+					batch.clear();
+					batchBlocks.clear();
+				}
+			}
+		}
+
+		if (!batch.isEmpty()) {
+			storeBatch(batch, batchBlocks);
+		}
+	}
+
+	private void storeBatch(List<WriteModel<Document>> batch, List<MongoBlock> batchBlocks) throws IOException {
+		try {
+			getBlocksCollection().bulkWrite(batch, new BulkWriteOptions().ordered(false));
+			for (MongoBlock mongoBlock : batchBlocks) {
+				mongoBlock.storeCompleted();
+			}
+		}
+		catch (MongoException e) {
+			for (MongoBlock mongoBlock : batchBlocks) {
+				mongoBlock.mongoFile.requeueDirty(mongoBlock);
+			}
+			throw new IOException("Failed to store <" + batchBlocks.size() + "> blocks for index <" + indexName + ">", e);
+		}
 	}
 
 	@Override
 	public void deleteFile(NosqlFile nosqlFile) throws IOException {
-		MongoCollection<Document> c = getFilesCollection();
+		((MongoFile) nosqlFile).markDeleted();
+		((MongoFile) nosqlFile).discardWrites();
+		MongoFile.getBlockWriter().discardFile((MongoFile) nosqlFile);
+		((MongoFile) nosqlFile).invalidateBlocks();
 
+		//the blocks are removed in the background, the tombstone holds on to the file number until they are gone
 		Document query = new Document();
 		query.put(FILE_NUMBER, nosqlFile.getFileNumber());
-		c.deleteMany(query);
-
-		MongoCollection<Document> b = getBlocksCollection();
-		b.deleteMany(query);
 
+		Document tombstone = new Document();
+		tombstone.put(DELETED, true);
+		tombstone.put(LENGTH, nosqlFile.getFileLength());
+		getFilesCollection().updateOne(query, new Document("$set", tombstone));
 
 		nameToFileMap.remove(nosqlFile.getFileName());
 
+		DiskBlockCache diskCache = MongoFile.getDiskCache();
+		if (diskCache != null) {
+			diskCache.invalidateFile((MongoFile) nosqlFile);
+		}
+
 		nosqlFile.close();
 
+		fileReaper.schedule(this);
 	}
 
 	@Override
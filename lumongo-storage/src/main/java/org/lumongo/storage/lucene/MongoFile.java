@@ -1,21 +1,33 @@
 package org.lumongo.storage.lucene;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.RemovalListener;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.ReplaceOneModel;
 import com.mongodb.client.model.UpdateOptions;
+import org.apache.log4j.Logger;
+import org.apache.lucene.index.CorruptIndexException;
 import org.bson.Document;
 import org.bson.types.Binary;
 import org.lumongo.util.LockHandler;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.zip.CRC32;
@@ -35,6 +47,23 @@ import java.util.zip.CRC32;
 
 public class MongoFile implements NosqlFile {
 
+	private final static Logger log = Logger.getLogger(MongoFile.class);
+
+	private static final int PREFETCH_THREADS = 4;
+	private static final int PREFETCH_QUEUE_SIZE = 64;
+
+	private static final int CRC_BUFFER_SIZE = 1024;
+
+	/**
+	 * only files up to this fraction of the block cache are preloaded so a merge cannot flush the whole cache
+	 */
+	private static final int PRELOAD_CACHE_FRACTION = 4;
+
+	/**
+	 * the stream cache used by merges, flushes and read once inputs is this fraction of the block cache
+	 */
+	private static final int STREAM_CACHE_FRACTION = 8;
+
 	private final MongoDirectory mongoDirectory;
 
 	protected final short indexNumber;
@@ -46,60 +75,130 @@ public class MongoFile implements NosqlFile {
 	private long lastModified;
 	private String fileName;
 
-	private MongoBlock currentReadBlock;
 	private MongoBlock currentWriteBlock;
 
 	private ConcurrentMap<Long, Boolean> dirtyBlocks;
 
+	//blocks written to the file go to the stream cache
+	private volatile boolean streaming;
+
+	//contents of a small file stored in its metadata document instead of in blocks
+	private volatile byte[] inlineBytes;
+
+	//set when the file is deleted so reads through inputs that are still open do not put its blocks back on disk
+	private volatile boolean deleted;
+
+	//metadata document last written to the files collection, null if it is not known to be stored
+	private volatile Document storedMetadata;
+
+	private final ConcurrentMap<Integer, CompletableFuture<Void>> prefetchingBlocks;
+
 	private final CRC32 crc;
 
+	//single byte writes are added to the checksum in bulk
+	private final byte[] crcBuffer;
+	private int crcBufferLength;
+
 	private final static LockHandler lockHandler;
 
-	private static Cache<Long, MongoBlock> cache;
-	private static RemovalListener<Long, MongoBlock> removalListener;
+	private static final BlockWriter blockWriter;
+
+	private static final BlockCache cache;
+
+	private static final BlockCache streamCache;
+
+	private static volatile DirectBlockAllocator directAllocator;
+
+	private static volatile DiskBlockCache diskCache;
+
+	private static final ThreadPoolExecutor prefetchPool;
 
 	static {
 
 		lockHandler = new LockHandler();
 
-		createCache();
+		blockWriter = new BlockWriter(BlockWriter.DEFAULT_CAPACITY, BlockWriter.DEFAULT_THREADS);
 
-	}
+		//evicted dirty blocks are written in the background so the evicting thread does not wait on mongo
+		cache = new BlockCache(MongoDirectory.DEFAULT_BLOCK_CACHE_SIZE, blockWriter::enqueueIfDirty);
+
+		//small separate area for merges and flushes so streaming whole files does not evict the blocks searches use
+		streamCache = new BlockCache(MongoDirectory.DEFAULT_BLOCK_CACHE_SIZE / STREAM_CACHE_FRACTION, blockWriter::enqueueIfDirty);
+
+		//prefetching is only a hint so requests are rejected when the pool falls behind
+		AtomicInteger threadNumber = new AtomicInteger();
+		prefetchPool = new ThreadPoolExecutor(PREFETCH_THREADS, PREFETCH_THREADS, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(PREFETCH_QUEUE_SIZE), r -> {
+			Thread thread = new Thread(r, "LumongoPrefetch-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		prefetchPool.allowCoreThreadTimeOut(true);
 
-	private static void createCache() {
-		removalListener = notification -> {
-			/*
-			ReadWriteLock lock = lockHandler.getLock(notification.getKey());
-			Lock wLock = lock.writeLock();
-			wLock.lock();
-			try {
-			*/
-				MongoBlock mongoBlock = notification.getValue();
-				mongoBlock.flushIfDirty();
-			/*
-			}
-			finally {
-				wLock.unlock();
-			}
-			*/
-		};
-		cache = CacheBuilder.newBuilder().concurrencyLevel(32).maximumSize(MongoDirectory.DEFAULT_BLOCK_MAX).removalListener(
-						removalListener).build();
 	}
 
 	public static void clearCache() {
-		createCache();
+		cache.clear();
+		streamCache.clear();
 	}
 
 	public static void setMaxIndexBlocks(int blocks) {
-		Cache<Long, MongoBlock> oldCache = cache;
-		cache = CacheBuilder.newBuilder().concurrencyLevel(32).maximumSize(blocks).removalListener(removalListener).build();
-		cache.putAll(oldCache.asMap());
+		setBlockCacheSize((long) blocks * MongoDirectory.DEFAULT_BLOCK_SIZE);
+	}
+
+	public static void setBlockCacheSize(long bytes) {
+		cache.setMaxBytes(bytes);
+		streamCache.setMaxBytes(bytes / STREAM_CACHE_FRACTION);
+		DirectBlockAllocator allocator = directAllocator;
+		if (allocator != null) {
+			allocator.setMaxBytes(bytes);
+		}
+	}
+
+	/**
+	 * Keeps blocks loaded from mongo in direct memory instead of on the java heap.  Blocks being written stay on the heap
+	 * until they are flushed.  The JVM max direct memory must be at least the block cache size.
+	 * @param offHeap - true to cache blocks off heap
+	 */
+	public static synchronized void setOffHeap(boolean offHeap) {
+		if (offHeap && directAllocator == null) {
+			directAllocator = new DirectBlockAllocator(cache.getMaxBytes());
+		}
+		else if (!offHeap) {
+			directAllocator = null;
+		}
+	}
+
+	public static DirectBlockAllocator getDirectAllocator() {
+		return directAllocator;
+	}
+
+	/**
+	 * @param diskBlockCache - local disk tier checked before mongo on a cache miss, null to disable
+	 */
+	public static void setDiskCache(DiskBlockCache diskBlockCache) {
+		diskCache = diskBlockCache;
+	}
+
+	public static DiskBlockCache getDiskCache() {
+		return diskCache;
+	}
+
+	public static BlockCache getCache() {
+		return cache;
+	}
+
+	public static BlockCache getStreamCache() {
+		return streamCache;
+	}
+
+	public static BlockWriter getBlockWriter() {
+		return blockWriter;
 	}
 
 	protected MongoFile(MongoDirectory mongoDirectory, String fileName, short fileNumber, int blockSize) {
 
 		this.crc = new CRC32();
+		this.crcBuffer = new byte[CRC_BUFFER_SIZE];
 
 		this.mongoDirectory = mongoDirectory;
 		this.indexNumber = mongoDirectory.indexNumber;
@@ -112,6 +211,7 @@ public class MongoFile implements NosqlFile {
 		this.blockSize = blockSize;
 
 		this.dirtyBlocks = new ConcurrentHashMap<>();
+		this.prefetchingBlocks = new ConcurrentHashMap<>();
 
 	}
 
@@ -149,26 +249,52 @@ public class MongoFile implements NosqlFile {
 	@Override
 	public byte readByte(long position) throws IOException {
 		try {
-			int block = (int) (position / mongoDirectory.getBlockSize());
-			int blockOffset = (int) (position - (block * mongoDirectory.getBlockSize()));
+			int block = (int) (position / blockSize);
+			int blockOffset = (int) (position - (block * blockSize));
 
-			MongoBlock mb = currentReadBlock;
+			//inputs keep their own current block, see DistributedIndexInput
+			MongoBlock mb = getMongoBlock(block);
 
-			if (mb == null || block != mb.blockNumber) {
-				currentReadBlock = mb = getMongoBlock(block);
+			long stamp = mb.readStamp();
+			byte b = mb.get(blockOffset);
+			if (mb.validate(stamp)) {
+				return b;
 			}
-
-			return mb.bytes[blockOffset];
+			return getHeapBlock(block).get(blockOffset);
 		}
 		catch (ExecutionException e) {
-			throw new IOException("Failed to read byte at position: " + position);
+			throw readFailure(e, "Failed to read byte at position: " + position);
 		}
 	}
 
+	/**
+	 * A corrupt block is reported as it is so callers can tell it apart from a failure to reach mongo
+	 */
+	private static IOException readFailure(ExecutionException e, String message) {
+		if (e.getCause() instanceof CorruptIndexException) {
+			return (CorruptIndexException) e.getCause();
+		}
+		return new IOException(message, e.getCause());
+	}
+
 	private MongoBlock getMongoBlock(int block) throws ExecutionException, IOException {
+		return getMongoBlock(block, false);
+	}
+
+	/**
+	 * @param streaming - true to load the block into the stream cache instead of the block cache on a miss
+	 */
+	private MongoBlock getMongoBlock(int block, boolean streaming) throws ExecutionException, IOException {
 
 		long blockKey = MongoBlock.computeBlockKey(this, block);
 
+		if (streaming) {
+			MongoBlock cached = cache.getIfPresent(blockKey);
+			if (cached != null) {
+				return cached;
+			}
+		}
+
 		Callable<MongoBlock> loadBlockIfNeeded = () -> {
 			/*
 			ReadWriteLock lock = lockHandler.getLock(blockKey);
@@ -176,7 +302,18 @@ public class MongoFile implements NosqlFile {
 			wLock.lock();
 			try {
 			*/
-				MongoBlock mb1 = fetchBlock(block, true);
+				//an evicted block waiting to be written is newer than the copy in mongo
+				MongoBlock mb1 = blockWriter.getPending(blockKey);
+				if (mb1 == null && !streaming) {
+					//stream cache blocks are never pooled so they can be shared with the block cache
+					mb1 = streamCache.getIfPresent(blockKey);
+				}
+				if (mb1 == null) {
+					mb1 = getPrefetchedBlock(block);
+				}
+				if (mb1 == null) {
+					mb1 = fetchBlock(block, true, streaming);
+				}
 				return mb1;
 			/*
 			}
@@ -186,7 +323,57 @@ public class MongoFile implements NosqlFile {
 
 			*/
 		};
-		return cache.get(blockKey, loadBlockIfNeeded);
+		return getTargetCache(streaming).get(blockKey, loadBlockIfNeeded);
+	}
+
+	private static BlockCache getTargetCache(boolean streaming) {
+		return streaming ? streamCache : cache;
+	}
+
+	private static MongoBlock getCachedBlock(long blockKey) {
+		MongoBlock mb = cache.getIfPresent(blockKey);
+		if (mb == null) {
+			mb = streamCache.getIfPresent(blockKey);
+		}
+		return mb;
+	}
+
+	@Override
+	public NosqlBlock getBlock(int blockNumber, boolean streaming) throws IOException {
+		try {
+			return getMongoBlock(blockNumber, streaming);
+		}
+		catch (ExecutionException e) {
+			throw readFailure(e, "Failed to read block <" + blockNumber + "> of file <" + fileName + ">");
+		}
+	}
+
+	@Override
+	public NosqlBlock getBlockCopy(int blockNumber) throws IOException {
+		return getHeapBlock(blockNumber);
+	}
+
+	/**
+	 * Reads a block onto the heap without caching it, for readers whose off heap block was released before they could
+	 * read it.  Going back to the cache could find the block evicted again before it is read.
+	 */
+	private MongoBlock getHeapBlock(int block) throws IOException {
+		long blockKey = MongoBlock.computeBlockKey(this, block);
+
+		MongoBlock mb = blockWriter.getPending(blockKey);
+		if (mb == null) {
+			mb = getCachedBlock(blockKey);
+		}
+		if (mb != null) {
+			long stamp = mb.readStamp();
+			MongoBlock heapBlock = mb.toHeap();
+			if (mb.validate(stamp)) {
+				return heapBlock;
+			}
+		}
+
+		//off heap blocks are never dirty so the stored block is current
+		return fetchBlock(block, true, true);
 	}
 
 	public void readBytes(long position, byte[] b, int offset, int length) throws IOException {
@@ -199,21 +386,22 @@ public class MongoFile implements NosqlFile {
 
 				int readSize = Math.min(blockSize - blockOffset, length);
 
-				MongoBlock mb = currentReadBlock;
+				MongoBlock mb = getMongoBlock(block);
 
-				if (mb == null || block != mb.blockNumber) {
-					currentReadBlock = mb = getMongoBlock(block);
+				long stamp = mb.readStamp();
+				mb.get(blockOffset, b, offset, readSize);
+				if (!mb.validate(stamp)) {
+					//evicted and recycled while copying
+					getHeapBlock(block).get(blockOffset, b, offset, readSize);
 				}
 
-				System.arraycopy(mb.bytes, blockOffset, b, offset, readSize);
-
 				position += readSize;
 				offset += readSize;
 				length -= readSize;
 			}
 		}
 		catch (ExecutionException e) {
-			throw new IOException("Failed to read bytes at position: " + position);
+			throw readFailure(e, "Failed to read bytes at position: " + position);
 		}
 	}
 
@@ -223,18 +411,21 @@ public class MongoFile implements NosqlFile {
 			int block = (int) (position / blockSize);
 			int blockOffset = (int) (position - (block * blockSize));
 
-			crc.update(b);
+			crcBuffer[crcBufferLength++] = b;
+			if (crcBufferLength == CRC_BUFFER_SIZE) {
+				updateChecksum();
+			}
 
 			MongoBlock mb = currentWriteBlock;
 
 			if (mb == null || block != mb.blockNumber) {
 				if (mb != null) {
-					markDirty(mb);
+					finishWriteBlock(mb);
 				}
-				currentWriteBlock = mb = getMongoBlock(block);
+				currentWriteBlock = mb = getWritableBlock(block);
 			}
 
-			mb.bytes[blockOffset] = b;
+			mb.put(blockOffset, b);
 			mb.markDirty();
 
 			fileLength = Math.max(position + 1, fileLength);
@@ -247,6 +438,7 @@ public class MongoFile implements NosqlFile {
 	@Override
 	public void write(long position, byte[] b, int offset, int length) throws IOException {
 		try {
+			updateChecksum();
 			crc.update(b, offset, length);
 
 			while (length > 0) {
@@ -258,70 +450,209 @@ public class MongoFile implements NosqlFile {
 
 				if (mb == null || block != mb.blockNumber) {
 					if (mb != null) {
-						markDirty(mb);
+						finishWriteBlock(mb);
 					}
-					currentWriteBlock = mb = getMongoBlock(block);
+					currentWriteBlock = mb = getWritableBlock(block);
 				}
 
-				System.arraycopy(b, offset, mb.bytes, blockOffset, writeSize);
+				mb.put(blockOffset, b, offset, writeSize);
 				mb.markDirty();
 				position += writeSize;
 				offset += writeSize;
 				length -= writeSize;
+				fileLength = Math.max(position, fileLength);
 			}
-			fileLength = Math.max(position + length, fileLength);
 		}
 		catch (ExecutionException e) {
 			throw new IOException("Failed to write bytes at position: " + position);
 		}
 	}
 
+	/**
+	 * A block that starts at or past the end of the file has never been stored so appending to a file allocates the
+	 * block in memory without looking for it in the cache or mongo
+	 */
+	private MongoBlock getWritableBlock(int block) throws ExecutionException, IOException {
+		BlockCache targetCache = getTargetCache(streaming);
+		if ((long) block * blockSize >= fileLength) {
+			MongoBlock mb = new MongoBlock(this, block, new byte[blockSize]);
+			targetCache.put(mb);
+			return mb;
+		}
+
+		MongoBlock mb = getMongoBlock(block, streaming);
+		if (mb.isOffHeap()) {
+			mb = mb.toHeap();
+			targetCache.put(mb);
+		}
+		return mb;
+	}
+
+	/**
+	 * Called when writing moves on to another block.  A block filled to the end by an append does not change again so
+	 * it is queued to be written now instead of waiting for the next flush.
+	 */
+	private void finishWriteBlock(MongoBlock mb) {
+		if (fileLength >= (long) (mb.blockNumber + 1) * blockSize) {
+			getTargetCache(streaming).put(mb);
+			blockWriter.enqueueIfDirty(mb);
+		}
+		else {
+			markDirty(mb);
+		}
+	}
+
 	private void markDirty(MongoBlock mb) {
 		mb.markDirty();
-		cache.put(mb.blockKey, mb);
+		getTargetCache(streaming).put(mb);
 		dirtyBlocks.put(mb.blockKey, true);
 	}
 
-	@Override
-	public void flush() throws IOException {
+	/**
+	 * Called when a bulk write of the block failed so the block is written by the next flush
+	 */
+	protected void requeueDirty(MongoBlock mb) {
+		mb.markStoreFailed();
+		dirtyBlocks.put(mb.blockKey, true);
+	}
 
-		if (currentWriteBlock != null) {
-			currentWriteBlock.flushIfDirty();
+	/**
+	 * Forgets the block being written and the dirty blocks of a deleted file so they are not written after it is removed
+	 */
+	protected void discardWrites() {
+		currentWriteBlock = null;
+		dirtyBlocks.clear();
+	}
+
+	protected void markDeleted() {
+		deleted = true;
+	}
+
+	public boolean isDeleted() {
+		return deleted;
+	}
+
+	/**
+	 * Drops the cached blocks of a deleted file so a new file given the same file number cannot read them
+	 */
+	protected void invalidateBlocks() {
+		long blocks = (fileLength + blockSize - 1) / blockSize;
+		for (int block = 0; block < blocks; block++) {
+			long blockKey = MongoBlock.computeBlockKey(this, block);
+			cache.invalidate(blockKey);
+			streamCache.invalidate(blockKey);
 		}
+	}
 
-		if (!dirtyBlocks.isEmpty()) {
-			Set<Long> dirtyBlockKeys = new HashSet<>(dirtyBlocks.keySet());
+	public byte[] getInlineBytes() {
+		return inlineBytes;
+	}
 
-			for (Long key : dirtyBlockKeys) {
-				/*
-				ReadWriteLock lock = lockHandler.getLock(key);
-				Lock wLock = lock.writeLock();
-				wLock.lock();
-				try {
+	public void setInlineBytes(byte[] inlineBytes) {
+		this.inlineBytes = inlineBytes;
+	}
 
-*/
-					dirtyBlocks.remove(key);
+	protected Document getStoredMetadata() {
+		return storedMetadata;
+	}
 
-					MongoBlock mb = cache.getIfPresent(key);
-					if (mb != null) {
-						mb.flushIfDirty();
+	protected void setStoredMetadata(Document storedMetadata) {
+		this.storedMetadata = storedMetadata;
+	}
+
+	/**
+	 * Decides before a flush whether the file is stored in its metadata document.  The block of a file stored inline
+	 * is marked clean so it is not written to the blocks collection.  A file that grew past the inline size has its
+	 * block marked dirty again so it is written with the other blocks.
+	 * @param maxInlineBytes - largest file stored inline
+	 */
+	protected void prepareInline(int maxInlineBytes) throws IOException {
+		try {
+			if (fileLength > maxInlineBytes || fileLength > blockSize) {
+				if (inlineBytes != null) {
+					MongoBlock mb = currentWriteBlock;
+					if (mb == null || mb.blockNumber != 0) {
+						mb = getWritableBlock(0);
 					}
+					markDirty(mb);
+					inlineBytes = null;
+				}
+				return;
+			}
 
-				/*
+			byte[] bytes = new byte[(int) fileLength];
+			if (fileLength > 0) {
+				MongoBlock mb = currentWriteBlock;
+				if (mb == null || mb.blockNumber != 0) {
+					mb = getMongoBlock(0, streaming);
 				}
-				finally {
-					wLock.unlock();
+				long stamp = mb.readStamp();
+				mb.get(0, bytes, 0, bytes.length);
+				if (!mb.validate(stamp)) {
+					getHeapBlock(0).get(0, bytes, 0, bytes.length);
 				}
-				*/
+				mb.clearDirty();
+				dirtyBlocks.remove(mb.blockKey);
 			}
+			inlineBytes = bytes;
+		}
+		catch (ExecutionException e) {
+			throw readFailure(e, "Failed to read contents of file <" + fileName + ">");
+		}
+	}
+
+	@Override
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		mongoDirectory.flushFiles(Collections.singletonList(this));
+	}
 
+	protected MongoDirectory getMongoDirectory() {
+		return mongoDirectory;
+	}
+
+	/**
+	 * Adds the blocks of this file that may be dirty to the map so they can be written in bulk.  Blocks evicted from the
+	 * cache were already queued by the removal listener.
+	 * @param blocks - blocks by block key
+	 */
+	protected void collectDirtyBlocks(Map<Long, MongoBlock> blocks) {
+
+		MongoBlock writeBlock = currentWriteBlock;
+		if (writeBlock != null) {
+			blocks.put(writeBlock.blockKey, writeBlock);
 		}
 
-		mongoDirectory.updateFileMetadata(this);
+		if (!dirtyBlocks.isEmpty()) {
+			Set<Long> dirtyBlockKeys = new HashSet<>(dirtyBlocks.keySet());
+
+			for (Long key : dirtyBlockKeys) {
+				dirtyBlocks.remove(key);
 
+				MongoBlock mb = getCachedBlock(key);
+				if (mb != null) {
+					blocks.putIfAbsent(key, mb);
+				}
+			}
+
+		}
 	}
 
-	private MongoBlock fetchBlock(Integer blockNumber, boolean createIfNotExist) throws IOException {
+	private MongoBlock fetchBlock(Integer blockNumber, boolean createIfNotExist, boolean streaming) throws IOException {
+
+		byte[] inline = inlineBytes;
+		if (inline != null && blockNumber == 0) {
+			return new MongoBlock(this, blockNumber, Arrays.copyOf(inline, blockSize));
+		}
+
+		MongoBlock diskBlock = readFromDisk(blockNumber);
+		if (diskBlock != null) {
+			return diskBlock;
+		}
 
 		MongoCollection<Document> c = mongoDirectory.getBlocksCollection();
 
@@ -333,26 +664,267 @@ public class MongoFile implements NosqlFile {
 
 		byte[] bytes;
 		if (result != null) {
-			bytes = ((Binary) result.get(MongoDirectory.BYTES)).getData();
-			return new MongoBlock(this, blockNumber, bytes);
+			bytes = decodeBlock(result);
+			if (!streaming) {
+				writeToDisk(blockNumber, bytes);
+			}
+			return newBlock(blockNumber, bytes, streaming);
 		}
 
 		if (createIfNotExist) {
-			bytes = new byte[blockSize];
-			MongoBlock mongoBlock = new MongoBlock(this, blockNumber, bytes);
-			storeBlock(mongoBlock);
-			return mongoBlock;
+			//stored when it is written to
+			return new MongoBlock(this, blockNumber, new byte[blockSize]);
+		}
+
+		return null;
+
+	}
+
+	/**
+	 * Waits for a prefetch in progress of the block instead of fetching it a second time
+	 * @return the prefetched block or null if the block is not being prefetched
+	 */
+	private MongoBlock getPrefetchedBlock(int block) throws ExecutionException {
+		CompletableFuture<Void> prefetch = prefetchingBlocks.get(block);
+		if (prefetch == null) {
+			return null;
+		}
+		try {
+			prefetch.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		return getCachedBlock(MongoBlock.computeBlockKey(this, block));
+	}
+
+	@Override
+	public void prefetch(long position, long length, boolean streaming) {
+		List<Integer> blockNumbers = getUncachedBlocks(position, length);
+		if (blockNumbers.isEmpty()) {
+			return;
+		}
+
+		CompletableFuture<Void> prefetch = new CompletableFuture<>();
+		blockNumbers.removeIf(block -> prefetchingBlocks.putIfAbsent(block, prefetch) != null);
+		if (blockNumbers.isEmpty()) {
+			return;
+		}
+
+		Runnable finish = () -> {
+			for (Integer block : blockNumbers) {
+				prefetchingBlocks.remove(block, prefetch);
+			}
+			prefetch.complete(null);
+		};
+
+		try {
+			prefetchPool.execute(() -> {
+				try {
+					fetchBlocks(blockNumbers, streaming);
+				}
+				catch (Exception e) {
+					log.error("Failed to prefetch blocks <" + blockNumbers + "> of file <" + fileName + "> for index <" + indexName + ">: " + e.getMessage());
+				}
+				finally {
+					finish.run();
+				}
+			});
+		}
+		catch (RejectedExecutionException e) {
+			finish.run();
+		}
+	}
+
+	@Override
+	public boolean preload(boolean streaming) throws IOException {
+		if (fileLength > getTargetCache(streaming).getMaxBytes() / PRELOAD_CACHE_FRACTION) {
+			return false;
+		}
+
+		List<Integer> blockNumbers = getUncachedBlocks(0, fileLength);
+		if (!blockNumbers.isEmpty()) {
+			try {
+				fetchBlocks(blockNumbers, streaming);
+			}
+			catch (Exception e) {
+				throw new IOException("Failed to preload file <" + fileName + "> for index <" + indexName + ">", e);
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public long warm() throws IOException {
+		List<Integer> blockNumbers = getUncachedBlocks(0, fileLength);
+		int batchSize = MongoDirectory.getFlushBatchSize();
+		for (int i = 0; i < blockNumbers.size(); i += batchSize) {
+			fetchBlocks(blockNumbers.subList(i, Math.min(i + batchSize, blockNumbers.size())), false);
+		}
+		return Math.min((long) blockNumbers.size() * blockSize, fileLength);
+	}
+
+	private List<Integer> getUncachedBlocks(long position, long length) {
+		List<Integer> blockNumbers = new ArrayList<>();
+
+		long end = Math.min(position + length, fileLength);
+		if (end <= position) {
+			return blockNumbers;
+		}
+
+		int firstBlock = (int) (position / blockSize);
+		int lastBlock = (int) ((end - 1) / blockSize);
+		for (int block = firstBlock; block <= lastBlock; block++) {
+			long blockKey = MongoBlock.computeBlockKey(this, block);
+			if (!cache.contains(blockKey) && !streamCache.contains(blockKey)) {
+				blockNumbers.add(block);
+			}
+		}
+		return blockNumbers;
+	}
+
+	/**
+	 * Loads the given blocks into the cache with one request, blocks that are cached in the meantime are left alone
+	 * @param streaming - true to load the blocks into the stream cache
+	 */
+	private void fetchBlocks(List<Integer> blockNumbers, boolean streaming) throws IOException {
+
+		BlockCache targetCache = getTargetCache(streaming);
+
+		byte[] inline = inlineBytes;
+		if (inline != null) {
+			//an inline file is a single block
+			if (blockNumbers.contains(0)) {
+				targetCache.putIfAbsent(new MongoBlock(this, 0, Arrays.copyOf(inline, blockSize)));
+			}
+			return;
+		}
+
+		if (diskCache != null) {
+			List<Integer> notOnDisk = new ArrayList<>(blockNumbers.size());
+			for (Integer blockNumber : blockNumbers) {
+				MongoBlock diskBlock = readFromDisk(blockNumber);
+				if (diskBlock == null) {
+					notOnDisk.add(blockNumber);
+				}
+				else {
+					targetCache.putIfAbsent(diskBlock);
+				}
+			}
+			if (notOnDisk.isEmpty()) {
+				return;
+			}
+			blockNumbers = notOnDisk;
+		}
+
+		MongoCollection<Document> c = mongoDirectory.getBlocksCollection();
+
+		Document query = new Document();
+		query.put(MongoDirectory.FILE_NUMBER, fileNumber);
+		query.put(MongoDirectory.BLOCK_NUMBER, new Document("$in", blockNumbers));
+
+		for (Document result : c.find(query)) {
+			int blockNumber = (int) result.get(MongoDirectory.BLOCK_NUMBER);
+			if (blockWriter.getPending(MongoBlock.computeBlockKey(this, blockNumber)) != null) {
+				//the copy in mongo is stale, a cache miss picks up the pending block
+				continue;
+			}
+			byte[] bytes = decodeBlock(result);
+			if (!streaming) {
+				writeToDisk(blockNumber, bytes);
+			}
+			MongoBlock mongoBlock = newBlock(blockNumber, bytes, streaming);
+			if (!targetCache.putIfAbsent(mongoBlock)) {
+				mongoBlock.release();
+			}
+		}
+	}
+
+	/**
+	 * @param streaming - true for blocks of the stream cache, which stay on the heap
+	 */
+	private MongoBlock newBlock(int blockNumber, byte[] bytes, boolean streaming) {
+		DirectBlockAllocator allocator = directAllocator;
+		if (allocator != null && !streaming) {
+			ByteBuffer slot = allocator.allocate(bytes.length);
+			//falls back to the heap when the direct memory is used up by blocks waiting on eviction
+			if (slot != null) {
+				slot.put(bytes);
+				slot.clear();
+				return new MongoBlock(this, blockNumber, slot, allocator);
+			}
 		}
+		return new MongoBlock(this, blockNumber, bytes);
+	}
 
+	private MongoBlock readFromDisk(int blockNumber) {
+		DiskBlockCache diskBlockCache = diskCache;
+		if (diskBlockCache != null) {
+			ByteBuffer mapped = diskBlockCache.read(this, blockNumber);
+			if (mapped != null) {
+				return new MongoBlock(this, blockNumber, mapped, null);
+			}
+		}
 		return null;
+	}
+
+	private void writeToDisk(int blockNumber, byte[] bytes) {
+		DiskBlockCache diskBlockCache = diskCache;
+		//only complete files are kept on disk
+		if (diskBlockCache != null && currentWriteBlock == null && !deleted) {
+			diskBlockCache.write(this, blockNumber, bytes);
+		}
+	}
 
+	/**
+	 * @return the uncompressed bytes of a block document, blocks without a codec were stored uncompressed
+	 * @throws CorruptIndexException if the block does not match its stored checksum
+	 */
+	private byte[] decodeBlock(Document result) throws IOException {
+		byte[] data = ((Binary) result.get(MongoDirectory.BYTES)).getData();
+		Number codecId = (Number) result.get(MongoDirectory.CODEC);
+		byte[] bytes = codecId == null ? data : BlockCodec.fromId(codecId.intValue()).decompress(data, blockSize);
+
+		//blocks stored before checksums were added have none
+		Number checksum = (Number) result.get(MongoDirectory.CHECKSUM);
+		if (checksum != null) {
+			long actual = computeChecksum(bytes);
+			if (checksum.longValue() != actual) {
+				throw new CorruptIndexException(
+								"Checksum mismatch for block <" + result.get(MongoDirectory.BLOCK_NUMBER) + ">: expected <" + checksum + "> but found <" + actual
+												+ ">", fileName + " in index " + indexName);
+			}
+		}
+		return bytes;
 	}
 
-	public static void storeBlock(MongoBlock mongoBlock) {
-		// System.out.println("Store: " + mongoBlock.getBlockNumber());
+	/**
+	 * @return the CRC32 of the whole block, computed with a single bulk update
+	 */
+	protected static long computeChecksum(byte[] bytes) {
+		CRC32 blockCrc = new CRC32();
+		blockCrc.update(bytes, 0, bytes.length);
+		return blockCrc.getValue();
+	}
 
-		MongoCollection<Document> c = mongoBlock.mongoFile.mongoDirectory.getBlocksCollection();
+	/**
+	 * The store model is built once per version of the block, a store retried after a failed write reuses it instead of
+	 * copying, compressing and checksumming the block again
+	 */
+	protected static ReplaceOneModel<Document> getStoreModel(MongoBlock mongoBlock) throws IOException {
+		ReplaceOneModel<Document> storeModel = mongoBlock.getStoreModel();
+		if (storeModel != null) {
+			return storeModel;
+		}
 
+		long writeCount = mongoBlock.getWriteCount();
+		storeModel = createStoreModel(mongoBlock);
+		mongoBlock.keepStoreModel(storeModel, writeCount);
+		return storeModel;
+	}
+
+	private static ReplaceOneModel<Document> createStoreModel(MongoBlock mongoBlock) throws IOException {
 		Document query = new Document();
 		query.put(MongoDirectory.FILE_NUMBER, mongoBlock.mongoFile.fileNumber);
 		query.put(MongoDirectory.BLOCK_NUMBER, mongoBlock.blockNumber);
@@ -360,10 +932,20 @@ public class MongoFile implements NosqlFile {
 		Document object = new Document();
 		object.put(MongoDirectory.FILE_NUMBER, mongoBlock.mongoFile.fileNumber);
 		object.put(MongoDirectory.BLOCK_NUMBER, mongoBlock.blockNumber);
-		object.put(MongoDirectory.BYTES, new Binary(mongoBlock.bytes));
 
-		c.replaceOne(query, object, new UpdateOptions().upsert(true));
+		//a block can be written to while it is stored, it is marked dirty again and stored with the later bytes next time
+		byte[] bytes = mongoBlock.copyBytes();
+		BlockCodec blockCodec = mongoBlock.mongoFile.mongoDirectory.getBlockCodec();
+		byte[] data = blockCodec.compress(bytes);
+		if (data.length >= bytes.length) {
+			blockCodec = BlockCodec.NONE;
+			data = bytes;
+		}
+		object.put(MongoDirectory.CODEC, blockCodec.getId());
+		object.put(MongoDirectory.CHECKSUM, computeChecksum(bytes));
+		object.put(MongoDirectory.BYTES, new Binary(data));
 
+		return new ReplaceOneModel<>(query, object, new UpdateOptions().upsert(true));
 	}
 
 	@Override
@@ -378,18 +960,34 @@ public class MongoFile implements NosqlFile {
 
 	@Override
 	public long getChecksum() {
+		updateChecksum();
 		return crc.getValue();
 	}
 
 	@Override
 	public void resetChecksum() {
+		crcBufferLength = 0;
 		crc.reset();
 	}
 
+	private void updateChecksum() {
+		if (crcBufferLength > 0) {
+			crc.update(crcBuffer, 0, crcBufferLength);
+			crcBufferLength = 0;
+		}
+	}
+
+	/**
+	 * Hands the block being written over to the next flush, a file closed before it is synced would otherwise lose its
+	 * last block
+	 */
 	@Override
 	public void close() {
+		MongoBlock mb = currentWriteBlock;
+		if (mb != null && mb.isDirty()) {
+			finishWriteBlock(mb);
+		}
 		currentWriteBlock = null;
-		currentReadBlock = null;
 	}
 
 	@Override
@@ -403,7 +1001,6 @@ public class MongoFile implements NosqlFile {
 						", fileLength=" + fileLength +
 						", lastModified=" + lastModified +
 						", fileName='" + fileName + '\'' +
-						", currentReadBlock=" + currentReadBlock +
 						", currentWriteBlock=" + currentWriteBlock +
 						", dirtyBlocks=" + dirtyBlocks +
 						", crc=" + crc +
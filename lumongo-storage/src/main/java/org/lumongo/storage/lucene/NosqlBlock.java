@@ -0,0 +1,45 @@
+package org.lumongo.storage.lucene;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Read access to a block of a file held in memory.  Multi-byte values are big endian like lucene's DataInput.
+ *
+ * The memory of a block can be recycled after it is evicted so every read must be bracketed by {@link #readStamp()}
+ * and {@link #validate(long)} and the value discarded if validation fails.
+ */
+public interface NosqlBlock {
+
+	int getBlockNumber();
+
+	int capacity();
+
+	long readStamp();
+
+	boolean validate(long stamp);
+
+	byte get(int offset);
+
+	short getShort(int offset);
+
+	int getInt(int offset);
+
+	long getLong(int offset);
+
+	void get(int offset, byte[] b, int bOffset, int length);
+}
@@ -18,6 +18,7 @@ package org.lumongo.storage.lucene;
  */
 
 import java.io.IOException;
+import java.util.Collection;
 
 public interface NosqlDirectory {
 	
@@ -28,10 +29,21 @@ public interface NosqlDirectory {
 	NosqlFile getFileHandle(String fileName, boolean createIfNotFound) throws IOException;
 	
 	int getBlockSize();
+
+	/**
+	 * @return bytes of memory the files of the directory are cached in when they are warmed, 0 if they are not cached
+	 */
+	long getCacheBytes();
 	
 	void updateFileMetadata(NosqlFile nosqlFile) throws IOException;
 	
 	void deleteFile(NosqlFile nosqlFile) throws IOException;
+
+	/**
+	 * Writes all pending changes of the given files, creating empty files for names that do not exist
+	 * @param fileNames - names of the files to make durable
+	 */
+	void sync(Collection<String> fileNames) throws IOException;
 	
 	void close();
 
@@ -39,12 +39,53 @@ public interface NosqlFile {
 
 	void write(long position, byte[] b, int offset, int length) throws IOException;
 
+	/**
+	 * @param streaming - true if the file is written by a merge or flush and its blocks should not displace blocks used
+	 *                  by searches
+	 */
+	void setStreaming(boolean streaming);
+
 	void flush() throws IOException;
 
 	byte readByte(long position) throws IOException;
 
 	void readBytes(long position, byte[] b, int offset, int length) throws IOException;
 
+	/**
+	 * @param blockNumber - number of the block in the file
+	 * @param streaming - true if the block is read by a merge or a single full read and should not displace blocks
+	 *                  used by searches
+	 * @return the block loaded into memory, for readers that decode directly from the block
+	 */
+	NosqlBlock getBlock(int blockNumber, boolean streaming) throws IOException;
+
+	/**
+	 * @param blockNumber - number of the block in the file
+	 * @return the block in memory that is never released, read when a block was released before it could be read
+	 */
+	NosqlBlock getBlockCopy(int blockNumber) throws IOException;
+
+	/**
+	 * Starts loading the blocks covering the range in the background, blocks already in memory are skipped
+	 * @param position - start of the range
+	 * @param length - length of the range
+	 * @param streaming - true if the range is read by a merge or a single full read
+	 */
+	void prefetch(long position, long length, boolean streaming);
+
+	/**
+	 * Loads every block of the file with a single request if the file is small enough to keep in memory
+	 * @param streaming - true if the file is read by a merge or a single full read
+	 * @return true if the file was loaded
+	 */
+	boolean preload(boolean streaming) throws IOException;
+
+	/**
+	 * Loads every block of the file that is not in memory into the block cache with bulk requests
+	 * @return number of bytes loaded
+	 */
+	long warm() throws IOException;
+
 	int getBlockSize();
 
 	long getChecksum();
@@ -1,5 +1,9 @@
 package org.lumongo.util;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -23,6 +27,22 @@ public class LockHandler {
 		return readWriteLock[index];
 	}
 
+	/**
+	 * Locks have to be taken in the returned order when more than one is held at a time
+	 * @return the distinct locks for the unique ids in a fixed order
+	 */
+	public List<ReadWriteLock> getLocks(Collection<String> uniqueIds) {
+		TreeSet<Integer> indexes = new TreeSet<>();
+		for (String uniqueId : uniqueIds) {
+			indexes.add(segmentIndexer.getIndex(uniqueId.hashCode()));
+		}
+		List<ReadWriteLock> locks = new ArrayList<>(indexes.size());
+		for (int index : indexes) {
+			locks.add(readWriteLock[index]);
+		}
+		return locks;
+	}
+
 	public ReadWriteLock getLock(long uniqueId) {
 		int h = Long.hashCode(uniqueId);
 		int index = segmentIndexer.getIndex(h);
@@ -0,0 +1,317 @@
+package org.lumongo.test.storage;
+
+import com.mongodb.MongoClient;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.MergeInfo;
+import org.lumongo.storage.lucene.BlockCache;
+import org.lumongo.storage.lucene.DirectBlockAllocator;
+import org.lumongo.storage.lucene.DistributedDirectory;
+import org.lumongo.storage.lucene.MongoBlock;
+import org.lumongo.storage.lucene.MongoDirectory;
+import org.lumongo.storage.lucene.MongoFile;
+import org.lumongo.storage.lucene.NosqlBlock;
+import org.lumongo.util.TestHelper;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+public class BlockCacheTest {
+	private static final int BLOCK_SIZE = 4096;
+
+	private static MongoClient mongo;
+	private static MongoDirectory directoryA;
+	private static MongoDirectory directoryB;
+
+	@BeforeClass
+	public static void cleanDatabaseAndInit() throws Exception {
+		mongo = TestHelper.getMongo();
+		mongo.dropDatabase(TestHelper.TEST_DATABASE_NAME);
+		directoryA = new MongoDirectory(mongo, TestHelper.TEST_DATABASE_NAME, "cacheTestA", false, BLOCK_SIZE);
+		directoryB = new MongoDirectory(mongo, TestHelper.TEST_DATABASE_NAME, "cacheTestB", false, BLOCK_SIZE);
+	}
+
+	@AfterClass
+	public static void closeDirectories() throws Exception {
+		MongoDirectory.setBlockCacheSize(MongoDirectory.DEFAULT_BLOCK_CACHE_SIZE);
+		directoryA.close();
+		directoryB.close();
+	}
+
+	@Test
+	public void testQuota() throws Exception {
+		MongoFile file = directoryA.getFileHandle("quota.bin", true);
+
+		List<MongoBlock> evicted = new ArrayList<>();
+		BlockCache blockCache = new BlockCache(100 * BLOCK_SIZE, evicted::add);
+		blockCache.setIndexQuota(directoryA.getIndexNumber(), 4 * BLOCK_SIZE);
+
+		for (int i = 0; i < 10; i++) {
+			blockCache.put(new MongoBlock(file, i, new byte[BLOCK_SIZE]));
+			assertTrue(blockCache.getStats(directoryA.getIndexNumber()).getUsedBytes() <= 4 * BLOCK_SIZE);
+		}
+
+		assertEquals(4 * BLOCK_SIZE, blockCache.getUsedBytes());
+		assertEquals(6, blockCache.getStats(directoryA.getIndexNumber()).getEvictions());
+		assertEquals(6, evicted.size());
+	}
+
+	@Test
+	public void testWeights() throws Exception {
+		MongoFile fileA = directoryA.getFileHandle("weightA.bin", true);
+		MongoFile fileB = directoryB.getFileHandle("weightB.bin", true);
+
+		BlockCache blockCache = new BlockCache(8 * BLOCK_SIZE, mongoBlock -> {
+		});
+		blockCache.setIndexWeight(directoryA.getIndexNumber(), 3);
+
+		for (int i = 0; i < 20; i++) {
+			blockCache.put(new MongoBlock(fileA, i, new byte[BLOCK_SIZE]));
+			blockCache.put(new MongoBlock(fileB, i, new byte[BLOCK_SIZE]));
+		}
+
+		//the index with three times the weight keeps three times the blocks
+		assertEquals(8 * BLOCK_SIZE, blockCache.getUsedBytes());
+		assertEquals(6, blockCache.getStats(directoryA.getIndexNumber()).getBlockCount());
+		assertEquals(2, blockCache.getStats(directoryB.getIndexNumber()).getBlockCount());
+	}
+
+	@Test
+	public void testDirtyEviction() throws Exception {
+		MongoDirectory.setBlockCacheSize(4 * BLOCK_SIZE);
+		try {
+			MongoFile file = directoryA.getFileHandle("dirty.bin", true);
+			int blocks = 20;
+
+			byte[] expected = new byte[blocks * BLOCK_SIZE];
+			new Random(1234).nextBytes(expected);
+
+			//the first half of every block leaves partial dirty blocks that are evicted before the flush
+			for (int i = 0; i < blocks; i++) {
+				file.write((long) i * BLOCK_SIZE, expected, i * BLOCK_SIZE, BLOCK_SIZE / 2);
+			}
+			long evictions = MongoFile.getCache().getStats(directoryA.getIndexNumber()).getEvictions();
+			assertTrue(evictions > 0);
+
+			for (int i = 0; i < blocks; i++) {
+				file.write((long) i * BLOCK_SIZE + BLOCK_SIZE / 2, expected, i * BLOCK_SIZE + BLOCK_SIZE / 2, BLOCK_SIZE / 2);
+			}
+			file.flush();
+			file.close();
+
+			MongoFile.clearCache();
+
+			MongoDirectory reopened = new MongoDirectory(mongo, TestHelper.TEST_DATABASE_NAME, "cacheTestA", false, BLOCK_SIZE);
+			try {
+				MongoFile reopenedFile = reopened.getFileHandle("dirty.bin");
+				assertEquals(expected.length, reopenedFile.getFileLength());
+
+				byte[] actual = new byte[expected.length];
+				reopenedFile.readBytes(0, actual, 0, actual.length);
+				for (int i = 0; i < expected.length; i++) {
+					assertEquals("Byte at position <" + i + ">", expected[i], actual[i]);
+				}
+			}
+			finally {
+				reopened.close();
+			}
+		}
+		finally {
+			MongoDirectory.setBlockCacheSize(MongoDirectory.DEFAULT_BLOCK_CACHE_SIZE);
+		}
+	}
+
+	@Test
+	public void testReleasedOffHeap() throws Exception {
+		MongoFile file = directoryA.getFileHandle("offHeap.bin", true);
+
+		//room for a single block so the next block has to reuse the memory of the evicted one
+		DirectBlockAllocator allocator = new DirectBlockAllocator(BLOCK_SIZE, BLOCK_SIZE);
+		List<MongoBlock> evicted = new ArrayList<>();
+		BlockCache blockCache = new BlockCache(BLOCK_SIZE, evicted::add);
+
+		MongoBlock first = newOffHeapBlock(file, 0, allocator, (byte) 1);
+		assertTrue(first.isOffHeap());
+		blockCache.put(first);
+
+		long stamp = first.readStamp();
+		assertTrue(stamp != 0);
+		assertEquals(1, first.get(0));
+		assertTrue(first.validate(stamp));
+
+		//evicts and releases the first block
+		blockCache.setMaxBytes(0);
+		assertEquals(1, evicted.size());
+		assertEquals(first, evicted.get(0));
+		assertEquals(0, blockCache.getUsedBytes());
+
+		//the released slot is recycled for another block, reads of the first block fail validation instead of returning its bytes
+		MongoBlock second = newOffHeapBlock(file, 1, allocator, (byte) 2);
+		assertEquals(2, first.get(0));
+		assertFalse(first.validate(stamp));
+		assertEquals(0, first.readStamp());
+		assertTrue(second.validate(second.readStamp()));
+	}
+
+	@Test
+	public void testOffHeapTier() throws Exception {
+		MongoDirectory.setBlockCacheOffHeap(true);
+		try {
+			byte[] expected = new byte[4 * BLOCK_SIZE];
+			new Random(8642).nextBytes(expected);
+
+			MongoFile file = directoryA.getFileHandle("offHeapTier.bin", true);
+			file.write(0, expected, 0, expected.length);
+			directoryA.sync(Collections.singleton("offHeapTier.bin"));
+
+			//blocks loaded from mongo are kept in direct memory
+			MongoFile.clearCache();
+			long allocated = MongoFile.getDirectAllocator().getAllocatedBytes();
+			for (int i = 0; i < 4; i++) {
+				NosqlBlock block = file.getBlock(i, false);
+				assertTrue(((MongoBlock) block).isOffHeap());
+				assertEquals(expected[i * BLOCK_SIZE], block.get(0));
+				assertEquals(expected[(i + 1) * BLOCK_SIZE - 1], block.get(BLOCK_SIZE - 1));
+			}
+			assertTrue(MongoFile.getDirectAllocator().getAllocatedBytes() >= allocated + 4 * BLOCK_SIZE);
+
+			//a block that is written to is copied back to the heap and the new bytes are stored
+			byte[] rewritten = new byte[BLOCK_SIZE / 2];
+			new Random(2468).nextBytes(rewritten);
+			file.write(BLOCK_SIZE + 10, rewritten, 0, rewritten.length);
+			System.arraycopy(rewritten, 0, expected, BLOCK_SIZE + 10, rewritten.length);
+			assertFalse(((MongoBlock) file.getBlock(1, false)).isOffHeap());
+			directoryA.sync(Collections.singleton("offHeapTier.bin"));
+
+			MongoFile.clearCache();
+			byte[] actual = new byte[expected.length];
+			file.readBytes(0, actual, 0, actual.length);
+			for (int i = 0; i < expected.length; i++) {
+				assertEquals("Byte at position <" + i + ">", expected[i], actual[i]);
+			}
+			assertTrue(((MongoBlock) file.getBlock(1, false)).isOffHeap());
+		}
+		finally {
+			MongoDirectory.setBlockCacheOffHeap(false);
+		}
+	}
+
+	@Test
+	public void testStreamingContexts() throws Exception {
+		MongoDirectory directory = new MongoDirectory(mongo, TestHelper.TEST_DATABASE_NAME, "cacheTestStream", false, BLOCK_SIZE);
+		try (Directory distributedDirectory = new DistributedDirectory(directory)) {
+			byte[] bytes = new byte[8 * BLOCK_SIZE];
+			new Random(1212).nextBytes(bytes);
+			MongoFile.clearCache();
+
+			//a merge writes through the stream cache
+			try (IndexOutput output = distributedDirectory.createOutput("merged.bin", new IOContext(new MergeInfo(100, bytes.length, false, 1)))) {
+				output.writeBytes(bytes, bytes.length);
+			}
+			distributedDirectory.sync(Collections.singleton("merged.bin"));
+			assertEquals(0, getBlockCount(MongoFile.getCache(), directory));
+			assertTrue(getBlockCount(MongoFile.getStreamCache(), directory) > 0);
+
+			try (IndexOutput output = distributedDirectory.createOutput("searched.bin", IOContext.DEFAULT)) {
+				output.writeBytes(bytes, bytes.length);
+			}
+			distributedDirectory.sync(Collections.singleton("searched.bin"));
+
+			//searches load the main cache, read once inputs only the stream cache
+			MongoFile.clearCache();
+			byte[] actual = new byte[BLOCK_SIZE];
+			try (IndexInput input = distributedDirectory.openInput("searched.bin", IOContext.DEFAULT)) {
+				input.readBytes(actual, 0, actual.length);
+			}
+			assertEquals(1, getBlockCount(MongoFile.getCache(), directory));
+			assertEquals(0, getBlockCount(MongoFile.getStreamCache(), directory));
+
+			actual = new byte[bytes.length];
+			try (IndexInput input = distributedDirectory.openInput("merged.bin", IOContext.READONCE)) {
+				input.readBytes(actual, 0, actual.length);
+			}
+			assertTrue(Arrays.equals(bytes, actual));
+			assertEquals(1, getBlockCount(MongoFile.getCache(), directory));
+			assertEquals(8, getBlockCount(MongoFile.getStreamCache(), directory));
+		}
+	}
+
+	private static int getBlockCount(BlockCache blockCache, MongoDirectory directory) {
+		return blockCache.getStats(directory.getIndexNumber()).getBlockCount();
+	}
+
+	@Test(timeOut = 30000)
+	public void testQuotaBelowOneBlock() throws Exception {
+		MongoDirectory directory = new MongoDirectory(mongo, TestHelper.TEST_DATABASE_NAME, "cacheTestQuota", false, BLOCK_SIZE);
+		Directory distributedDirectory = new DistributedDirectory(directory);
+		MongoDirectory.setBlockCacheOffHeap(true);
+		try {
+			byte[] expected = new byte[3 * BLOCK_SIZE + BLOCK_SIZE / 2];
+			new Random(9753).nextBytes(expected);
+
+			MongoFile file = directory.getFileHandle("tinyQuota.bin", true);
+			file.write(0, expected, 0, expected.length);
+			directory.sync(Collections.singleton("tinyQuota.bin"));
+			file.close();
+
+			//every block loaded off heap is over the quota as soon as it is cached
+			MongoFile.clearCache();
+			directory.setCacheQuota(BLOCK_SIZE / 2);
+
+			byte[] actual = new byte[expected.length];
+			try (IndexInput indexInput = distributedDirectory.openInput("tinyQuota.bin", IOContext.DEFAULT)) {
+				indexInput.readBytes(actual, 0, actual.length);
+				for (int i = 0; i < expected.length; i++) {
+					assertEquals("Byte at position <" + i + ">", expected[i], actual[i]);
+				}
+
+				indexInput.seek(BLOCK_SIZE - 2);
+				assertEquals(ByteBuffer.wrap(expected, BLOCK_SIZE - 2, 4).getInt(), indexInput.readInt());
+				indexInput.seek(2 * BLOCK_SIZE + 5);
+				assertEquals(expected[2 * BLOCK_SIZE + 5], indexInput.readByte());
+			}
+
+			actual = new byte[expected.length];
+			file.readBytes(0, actual, 0, actual.length);
+			for (int i = 0; i < expected.length; i++) {
+				assertEquals("Byte at position <" + i + ">", expected[i], actual[i]);
+			}
+			assertTrue(MongoFile.getCache().getStats(directory.getIndexNumber()).getUsedBytes() <= BLOCK_SIZE);
+
+			//what a reader falls back to when its block was released before it could read it
+			NosqlBlock copy = file.getBlockCopy(1);
+			assertEquals(expected[BLOCK_SIZE], copy.get(0));
+			assertTrue(copy.validate(copy.readStamp()));
+			MongoFile.clearCache();
+			assertTrue(copy.validate(copy.readStamp()));
+			assertEquals(expected[2 * BLOCK_SIZE - 1], copy.get(BLOCK_SIZE - 1));
+		}
+		finally {
+			MongoDirectory.setBlockCacheOffHeap(false);
+			directory.setCacheQuota(0);
+			distributedDirectory.close();
+		}
+	}
+
+	private static MongoBlock newOffHeapBlock(MongoFile file, int blockNumber, DirectBlockAllocator allocator, byte value) {
+		ByteBuffer slot = allocator.allocate(BLOCK_SIZE);
+		assertTrue(slot != null);
+		for (int i = 0; i < BLOCK_SIZE; i++) {
+			slot.put(i, value);
+		}
+		return new MongoBlock(file, blockNumber, slot, allocator);
+	}
+}
@@ -0,0 +1,144 @@
+package org.lumongo.test.storage;
+
+import com.mongodb.MongoClient;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.bson.Document;
+import org.lumongo.storage.lucene.BlockCodec;
+import org.lumongo.storage.lucene.DistributedDirectory;
+import org.lumongo.storage.lucene.MongoDirectory;
+import org.lumongo.storage.lucene.MongoFile;
+import org.lumongo.util.TestHelper;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.Random;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+public class BlockCodecTest {
+	private static final String BLOCK_CODEC_TEST_INDEX = "blockCodecTest";
+	private static final int BLOCK_SIZE = 4096;
+
+	private static MongoClient mongo;
+	private static MongoDirectory mongoDirectory;
+
+	@BeforeClass
+	public static void cleanDatabaseAndInit() throws Exception {
+		mongo = TestHelper.getMongo();
+		mongo.dropDatabase(TestHelper.TEST_DATABASE_NAME);
+		mongoDirectory = openDirectory();
+	}
+
+	@AfterClass
+	public static void closeDirectory() throws Exception {
+		mongoDirectory.close();
+	}
+
+	@Test
+	public void testCodecs() throws Exception {
+		for (BlockCodec blockCodec : BlockCodec.values()) {
+			String fileName = "codec_" + blockCodec + ".bin";
+			byte[] expected = writeFile(fileName, blockCodec);
+
+			short fileNumber = mongoDirectory.getFileHandle(fileName).getFileNumber();
+			assertEquals(4, mongoDirectory.getBlocksCollection()
+							.count(new Document(MongoDirectory.FILE_NUMBER, fileNumber).append(MongoDirectory.CODEC, new Document("$exists", true))));
+
+			MongoFile.clearCache();
+			assertContents(fileName, expected);
+		}
+	}
+
+	@Test
+	public void testLegacyBlocks() throws Exception {
+		byte[] expected = writeFile("legacy.bin", BlockCodec.NONE);
+
+		//blocks stored before codecs and checksums were added only have their raw bytes
+		short fileNumber = mongoDirectory.getFileHandle("legacy.bin").getFileNumber();
+		mongoDirectory.getBlocksCollection().updateMany(new Document(MongoDirectory.FILE_NUMBER, fileNumber),
+						new Document("$unset", new Document(MongoDirectory.CODEC, "").append(MongoDirectory.CHECKSUM, "")));
+		assertEquals(0, mongoDirectory.getBlocksCollection().count(new Document(MongoDirectory.FILE_NUMBER, fileNumber)
+						.append(MongoDirectory.CODEC, new Document("$exists", true))));
+
+		MongoFile.clearCache();
+		assertContents("legacy.bin", expected);
+	}
+
+	@Test
+	public void testChecksumMismatch() throws Exception {
+		writeFile("corrupt.bin", BlockCodec.LZ4);
+
+		short fileNumber = mongoDirectory.getFileHandle("corrupt.bin").getFileNumber();
+		mongoDirectory.getBlocksCollection().updateOne(new Document(MongoDirectory.FILE_NUMBER, fileNumber).append(MongoDirectory.BLOCK_NUMBER, 2),
+						new Document("$set", new Document(MongoDirectory.CHECKSUM, 12345L)));
+
+		MongoFile.clearCache();
+
+		Directory directory = new DistributedDirectory(openDirectory());
+		try (IndexInput indexInput = directory.openInput("corrupt.bin", IOContext.DEFAULT)) {
+			byte[] bytes = new byte[(int) indexInput.length()];
+			indexInput.readBytes(bytes, 0, bytes.length);
+			fail("Expected a corrupt block to be reported");
+		}
+		catch (CorruptIndexException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("Checksum mismatch for block <2>"));
+			assertTrue(e.getMessage(), e.getMessage().contains("corrupt.bin"));
+		}
+		finally {
+			directory.close();
+		}
+	}
+
+	/**
+	 * @return the bytes written, three full blocks and a partial one
+	 */
+	private static byte[] writeFile(String fileName, BlockCodec blockCodec) throws Exception {
+		mongoDirectory.setBlockCodec(blockCodec);
+		try {
+			MongoFile file = mongoDirectory.getFileHandle(fileName, true);
+
+			//half random and half repeated so the compressing codecs have something to compress
+			byte[] expected = new byte[3 * BLOCK_SIZE + BLOCK_SIZE / 2];
+			new Random(fileName.hashCode()).nextBytes(expected);
+			for (int i = 0; i < expected.length; i += 2) {
+				expected[i] = 7;
+			}
+
+			file.write(0, expected, 0, expected.length);
+			mongoDirectory.sync(Collections.singleton(fileName));
+			file.close();
+			return expected;
+		}
+		finally {
+			mongoDirectory.setBlockCodec(BlockCodec.NONE);
+		}
+	}
+
+	private static void assertContents(String fileName, byte[] expected) throws Exception {
+		MongoDirectory reopened = openDirectory();
+		try {
+			MongoFile file = reopened.getFileHandle(fileName);
+			assertEquals(expected.length, file.getFileLength());
+
+			byte[] actual = new byte[expected.length];
+			file.readBytes(0, actual, 0, actual.length);
+			for (int i = 0; i < expected.length; i++) {
+				assertEquals("Byte at position <" + i + "> of file <" + fileName + ">", expected[i], actual[i]);
+			}
+		}
+		finally {
+			reopened.close();
+		}
+	}
+
+	private static MongoDirectory openDirectory() throws Exception {
+		return new MongoDirectory(mongo, TestHelper.TEST_DATABASE_NAME, BLOCK_CODEC_TEST_INDEX, false, BLOCK_SIZE);
+	}
+}
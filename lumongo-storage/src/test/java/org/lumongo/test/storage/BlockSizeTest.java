@@ -0,0 +1,95 @@
+package org.lumongo.test.storage;
+
+import com.mongodb.MongoClient;
+import org.bson.Document;
+import org.lumongo.storage.lucene.MongoDirectory;
+import org.lumongo.storage.lucene.MongoFile;
+import org.lumongo.util.TestHelper;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+public class BlockSizeTest {
+	private static final String BLOCK_SIZE_TEST_INDEX = "blockSizeTest";
+	private static final int BLOCK_SIZE = 32 * 1024;
+
+	private static MongoClient mongo;
+
+	@BeforeClass
+	public static void cleanDatabase() throws Exception {
+		mongo = TestHelper.getMongo();
+		mongo.dropDatabase(TestHelper.TEST_DATABASE_NAME);
+	}
+
+	@Test
+	public void testExtensionBlockSizes() throws Exception {
+		MongoDirectory mongoDirectory = openDirectory();
+		try {
+			assertEquals(BLOCK_SIZE * MongoDirectory.SEQUENTIAL_BLOCK_FACTOR, mongoDirectory.getBlockSize("_0.fdt"));
+			assertEquals(BLOCK_SIZE * MongoDirectory.SEQUENTIAL_BLOCK_FACTOR, mongoDirectory.getBlockSize("_0_Lucene50_0.doc"));
+			assertEquals(BLOCK_SIZE / MongoDirectory.RANDOM_ACCESS_BLOCK_FACTOR, mongoDirectory.getBlockSize("_0_Lucene50_0.tip"));
+			assertEquals(BLOCK_SIZE, mongoDirectory.getBlockSize("_0.si"));
+			assertEquals(BLOCK_SIZE, mongoDirectory.getBlockSize("segments_1"));
+
+			mongoDirectory.setBlockSize("si", 2 * BLOCK_SIZE);
+			assertEquals(2 * BLOCK_SIZE, mongoDirectory.getBlockSize("_1.si"));
+			mongoDirectory.setBlockSize("si", 0);
+			assertEquals(BLOCK_SIZE, mongoDirectory.getBlockSize("_1.si"));
+
+			//the block size never drops below the minimum
+			MongoDirectory smallBlocks = new MongoDirectory(mongo, TestHelper.TEST_DATABASE_NAME, BLOCK_SIZE_TEST_INDEX + "Small", false, 8 * 1024);
+			assertEquals(MongoDirectory.MIN_BLOCK_SIZE, smallBlocks.getBlockSize("_0.nvd"));
+			smallBlocks.close();
+
+			//files keep the block size they were written with
+			byte[] bytes = new byte[3 * BLOCK_SIZE * MongoDirectory.SEQUENTIAL_BLOCK_FACTOR / 2];
+			new Random(4242).nextBytes(bytes);
+			for (String fileName : Arrays.asList("_0.fdt", "_0.tip", "_0.si")) {
+				MongoFile file = mongoDirectory.getFileHandle(fileName, true);
+				file.write(0, bytes, 0, bytes.length);
+			}
+			mongoDirectory.sync(Arrays.asList("_0.fdt", "_0.tip", "_0.si"));
+		}
+		finally {
+			mongoDirectory.close();
+		}
+
+		MongoFile.clearCache();
+		mongoDirectory = openDirectory();
+		try {
+			mongoDirectory.setBlockSize("fdt", BLOCK_SIZE);
+			assertBlocks(mongoDirectory, "_0.fdt", BLOCK_SIZE * MongoDirectory.SEQUENTIAL_BLOCK_FACTOR);
+			assertBlocks(mongoDirectory, "_0.tip", BLOCK_SIZE / MongoDirectory.RANDOM_ACCESS_BLOCK_FACTOR);
+			assertBlocks(mongoDirectory, "_0.si", BLOCK_SIZE);
+		}
+		finally {
+			mongoDirectory.close();
+		}
+	}
+
+	private static void assertBlocks(MongoDirectory mongoDirectory, String fileName, int blockSize) throws Exception {
+		MongoFile file = mongoDirectory.getFileHandle(fileName);
+		assertEquals(blockSize, file.getBlockSize());
+
+		Document metadata = mongoDirectory.getFilesCollection().find(new Document(MongoDirectory.FILE_NAME, fileName)).first();
+		assertEquals(blockSize, ((Number) metadata.get(MongoDirectory.BLOCK_SIZE)).intValue());
+
+		long blocks = (file.getFileLength() + blockSize - 1) / blockSize;
+		assertEquals(blocks, mongoDirectory.getBlocksCollection().count(new Document(MongoDirectory.FILE_NUMBER, file.getFileNumber())));
+
+		byte[] expected = new byte[(int) file.getFileLength()];
+		new Random(4242).nextBytes(expected);
+		byte[] actual = new byte[expected.length];
+		file.readBytes(0, actual, 0, actual.length);
+		assertTrue(Arrays.equals(expected, actual));
+	}
+
+	private static MongoDirectory openDirectory() throws Exception {
+		return new MongoDirectory(mongo, TestHelper.TEST_DATABASE_NAME, BLOCK_SIZE_TEST_INDEX, false, BLOCK_SIZE);
+	}
+}
@@ -0,0 +1,313 @@
+package org.lumongo.test.storage;
+
+import com.mongodb.MongoClient;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.lumongo.storage.lucene.BlockCodec;
+import org.lumongo.storage.lucene.BlockWriter;
+import org.lumongo.storage.lucene.MongoBlock;
+import org.lumongo.storage.lucene.MongoDirectory;
+import org.lumongo.storage.lucene.MongoFile;
+import org.lumongo.util.TestHelper;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+public class BlockWriterTest {
+	private static final String BLOCK_WRITER_TEST_INDEX = "blockWriterTest";
+	private static final int BLOCK_SIZE = 4096;
+	private static final int STORE_WHILE_WRITING_SIZE = 4 * 1024 * 1024;
+
+	private static MongoClient mongo;
+	private static ControlledMongoDirectory directory;
+	private static ExecutorService executor;
+
+	@BeforeClass
+	public static void cleanDatabaseAndInit() throws Exception {
+		mongo = TestHelper.getMongo();
+		mongo.dropDatabase(TestHelper.TEST_DATABASE_NAME);
+		directory = new ControlledMongoDirectory(mongo);
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@AfterClass
+	public static void closeDirectory() throws Exception {
+		executor.shutdownNow();
+		directory.close();
+	}
+
+	@Test
+	public void testSyncAndColdReopen() throws Exception {
+		MongoFile file = directory.getFileHandle("synced.bin", true);
+
+		//ends in a partial block
+		byte[] expected = new byte[5 * BLOCK_SIZE + BLOCK_SIZE / 3];
+		new Random(4321).nextBytes(expected);
+		file.write(0, expected, 0, expected.length);
+
+		directory.sync(Collections.singleton("synced.bin"));
+		MongoFile.clearCache();
+
+		MongoDirectory reopened = new MongoDirectory(mongo, TestHelper.TEST_DATABASE_NAME, BLOCK_WRITER_TEST_INDEX, false, BLOCK_SIZE);
+		try {
+			MongoFile reopenedFile = reopened.getFileHandle("synced.bin");
+			assertEquals(expected.length, reopenedFile.getFileLength());
+			assertEquals(6, reopened.getBlocksCollection().count(new Document(MongoDirectory.FILE_NUMBER, reopenedFile.getFileNumber())));
+
+			byte[] actual = new byte[expected.length];
+			reopenedFile.readBytes(0, actual, 0, actual.length);
+			for (int i = 0; i < expected.length; i++) {
+				assertEquals("Byte at position <" + i + ">", expected[i], actual[i]);
+			}
+		}
+		finally {
+			reopened.close();
+		}
+	}
+
+	@Test
+	public void testDiscardDuringWrite() throws Exception {
+		MongoFile file = directory.getFileHandle("discarded.bin", true);
+		BlockWriter blockWriter = new BlockWriter(16, 1);
+
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		directory.reset();
+		directory.entered = entered;
+		directory.release = release;
+
+		MongoBlock inFlight = newDirtyBlock(file, 0);
+		blockWriter.enqueue(inFlight);
+		assertTrue(entered.await(10, TimeUnit.SECONDS));
+
+		MongoBlock queued = newDirtyBlock(file, 1);
+		blockWriter.enqueue(queued);
+		assertEquals(2, blockWriter.getPendingCount());
+
+		Future<?> discard = executor.submit(() -> blockWriter.discardFile(file));
+
+		//the queued block is dropped right away but the discard waits for the block being written
+		Thread.sleep(250);
+		assertFalse(discard.isDone());
+		assertEquals(1, blockWriter.getPendingCount());
+
+		release.countDown();
+		discard.get(10, TimeUnit.SECONDS);
+
+		assertEquals(0, blockWriter.getPendingCount());
+		assertEquals(Collections.singletonList(Collections.singletonList(0)), directory.getStored());
+		assertEquals(0, directory.getBlocksCollection()
+						.count(new Document(MongoDirectory.FILE_NUMBER, file.getFileNumber()).append(MongoDirectory.BLOCK_NUMBER, 1)));
+	}
+
+	@Test
+	public void testRequeueAfterFailedWrite() throws Exception {
+		MongoFile file = directory.getFileHandle("failed.bin", true);
+		BlockWriter blockWriter = new BlockWriter(16, 1);
+
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		directory.reset();
+		directory.entered = entered;
+		directory.release = release;
+		directory.failNext = true;
+
+		MongoBlock mongoBlock = newDirtyBlock(file, 0);
+		blockWriter.enqueue(mongoBlock);
+		assertTrue(entered.await(10, TimeUnit.SECONDS));
+
+		Future<?> await = executor.submit(() -> {
+			blockWriter.awaitFiles(Collections.singleton(file));
+			return null;
+		});
+
+		Thread.sleep(250);
+		release.countDown();
+
+		//the failure is reported to the flush waiting on the file
+		try {
+			await.get(10, TimeUnit.SECONDS);
+			fail("Expected the failed write to be reported");
+		}
+		catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+
+		//the block is queued again and written by the retry
+		assertEquals(1, blockWriter.getPendingCount());
+		assertTrue(mongoBlock.isDirty());
+		blockWriter.awaitFiles(Collections.singleton(file));
+
+		assertEquals(0, blockWriter.getPendingCount());
+		assertFalse(mongoBlock.isDirty());
+		assertEquals(2, directory.getStored().size());
+		assertEquals(1, directory.getBlocksCollection().count(new Document(MongoDirectory.FILE_NUMBER, file.getFileNumber())));
+	}
+
+	@Test
+	public void testFailureOfOtherFile() throws Exception {
+		MongoFile failedFile = directory.getFileHandle("otherFailed.bin", true);
+		MongoFile file = directory.getFileHandle("otherWritten.bin", true);
+		BlockWriter blockWriter = new BlockWriter(16, 1);
+
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		directory.reset();
+		directory.entered = entered;
+		directory.release = release;
+		directory.failNext = true;
+
+		blockWriter.enqueue(newDirtyBlock(failedFile, 0));
+		assertTrue(entered.await(10, TimeUnit.SECONDS));
+
+		MongoBlock mongoBlock = newDirtyBlock(file, 0);
+		blockWriter.enqueue(mongoBlock);
+
+		Future<?> await = executor.submit(() -> {
+			blockWriter.awaitFiles(Collections.singleton(file));
+			return null;
+		});
+
+		Thread.sleep(250);
+		release.countDown();
+
+		//the failed write of the other file is retried without failing the flush of this one
+		await.get(10, TimeUnit.SECONDS);
+		assertFalse(mongoBlock.isDirty());
+		assertEquals(1, directory.getBlocksCollection().count(new Document(MongoDirectory.FILE_NUMBER, file.getFileNumber())));
+
+		blockWriter.awaitFiles(Collections.singleton(failedFile));
+		assertEquals(0, blockWriter.getPendingCount());
+	}
+
+	@Test
+	public void testStoreWhileWriting() throws Exception {
+		MongoFile file = directory.getFileHandle("rewritten.bin", true);
+		BlockWriter blockWriter = new BlockWriter(16, 1);
+		directory.reset();
+		directory.setBlockCodec(BlockCodec.LZ4);
+
+		//large and compressible so compressing and checksumming the block take long enough to be interleaved with writes
+		byte[] bytes = new byte[STORE_WHILE_WRITING_SIZE];
+		MongoBlock mongoBlock = new MongoBlock(file, 0, bytes);
+		mongoBlock.markDirty();
+
+		//keeps rewriting the block without locking it, as the thread writing a file does
+		AtomicBoolean writing = new AtomicBoolean(true);
+		Future<?> writer = executor.submit(() -> {
+			byte value = 0;
+			while (writing.get()) {
+				Arrays.fill(bytes, value++);
+				mongoBlock.markDirty();
+			}
+		});
+
+		try {
+			Document query = new Document(MongoDirectory.FILE_NUMBER, file.getFileNumber()).append(MongoDirectory.BLOCK_NUMBER, 0);
+			for (int i = 0; i < 50; i++) {
+				blockWriter.enqueueIfDirty(mongoBlock);
+				blockWriter.awaitFiles(Collections.singleton(file));
+
+				//every stored version has to match its own checksum
+				Document stored = directory.getBlocksCollection().find(query).first();
+				byte[] data = ((Binary) stored.get(MongoDirectory.BYTES)).getData();
+				byte[] storedBytes = BlockCodec.fromId(((Number) stored.get(MongoDirectory.CODEC)).intValue()).decompress(data, bytes.length);
+				CRC32 crc = new CRC32();
+				crc.update(storedBytes, 0, storedBytes.length);
+				assertEquals("Checksum of store <" + i + ">", ((Number) stored.get(MongoDirectory.CHECKSUM)).longValue(), crc.getValue());
+			}
+		}
+		finally {
+			writing.set(false);
+			writer.get(10, TimeUnit.SECONDS);
+			directory.setBlockCodec(BlockCodec.NONE);
+		}
+	}
+
+	private static MongoBlock newDirtyBlock(MongoFile file, int blockNumber) {
+		byte[] bytes = new byte[BLOCK_SIZE];
+		new Random(blockNumber).nextBytes(bytes);
+		MongoBlock mongoBlock = new MongoBlock(file, blockNumber, bytes);
+		mongoBlock.markDirty();
+		return mongoBlock;
+	}
+
+	/**
+	 * Records the block numbers of each bulk write and can hold or fail the next write
+	 */
+	private static class ControlledMongoDirectory extends MongoDirectory {
+		private final List<List<Integer>> stored;
+
+		private volatile CountDownLatch entered;
+		private volatile CountDownLatch release;
+		private volatile boolean failNext;
+
+		ControlledMongoDirectory(MongoClient mongo) throws IOException {
+			super(mongo, TestHelper.TEST_DATABASE_NAME, BLOCK_WRITER_TEST_INDEX, false, BlockWriterTest.BLOCK_SIZE);
+			this.stored = Collections.synchronizedList(new ArrayList<>());
+		}
+
+		void reset() {
+			stored.clear();
+			entered = null;
+			release = null;
+			failNext = false;
+		}
+
+		List<List<Integer>> getStored() {
+			synchronized (stored) {
+				return new ArrayList<>(stored);
+			}
+		}
+
+		@Override
+		protected void storeBlocks(Collection<MongoBlock> blocks) throws IOException {
+			List<Integer> blockNumbers = new ArrayList<>();
+			for (MongoBlock mongoBlock : blocks) {
+				blockNumbers.add(mongoBlock.getBlockNumber());
+			}
+			stored.add(blockNumbers);
+
+			CountDownLatch enteredLatch = entered;
+			CountDownLatch releaseLatch = release;
+			entered = null;
+			release = null;
+			if (enteredLatch != null) {
+				enteredLatch.countDown();
+				try {
+					releaseLatch.await();
+				}
+				catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+
+			if (failNext) {
+				failNext = false;
+				throw new IOException("Simulated bulk write failure");
+			}
+			super.storeBlocks(blocks);
+		}
+	}
+}
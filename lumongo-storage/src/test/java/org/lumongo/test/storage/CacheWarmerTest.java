@@ -0,0 +1,110 @@
+package org.lumongo.test.storage;
+
+import com.mongodb.MongoClient;
+import org.lumongo.storage.lucene.CacheWarmer;
+import org.lumongo.storage.lucene.MemoryDirectory;
+import org.lumongo.storage.lucene.MongoDirectory;
+import org.lumongo.storage.lucene.MongoFile;
+import org.lumongo.storage.lucene.NosqlDirectory;
+import org.lumongo.storage.lucene.NosqlFile;
+import org.lumongo.util.TestHelper;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+public class CacheWarmerTest {
+	private static final String CACHE_WARMER_TEST_INDEX = "cacheWarmerTest";
+	private static final int BLOCK_SIZE = 4096;
+	private static final int FILE_SIZE = 8 * BLOCK_SIZE;
+
+	private static MongoClient mongo;
+
+	@BeforeClass
+	public static void cleanDatabase() throws Exception {
+		mongo = TestHelper.getMongo();
+		mongo.dropDatabase(TestHelper.TEST_DATABASE_NAME);
+	}
+
+	@Test
+	public void testBudgetFromDirectory() throws Exception {
+		MongoDirectory mongoDirectory = new MongoDirectory(mongo, TestHelper.TEST_DATABASE_NAME, CACHE_WARMER_TEST_INDEX, false, BLOCK_SIZE);
+		try {
+			writeFiles(mongoDirectory);
+			MongoFile.clearCache();
+
+			//half of the quota is room for one file
+			mongoDirectory.setCacheQuota(2 * FILE_SIZE);
+			assertEquals(2 * FILE_SIZE, mongoDirectory.getCacheBytes());
+
+			CacheWarmer cacheWarmer = new CacheWarmer(mongoDirectory, Collections.singleton("tim"), 1);
+			cacheWarmer.warm();
+			assertEquals(1, cacheWarmer.getFilesWarmed());
+			assertEquals(FILE_SIZE, cacheWarmer.getBytesWarmed());
+			assertEquals(FILE_SIZE, MongoFile.getCache().getStats(mongoDirectory.getIndexNumber()).getUsedBytes());
+		}
+		finally {
+			mongoDirectory.setCacheQuota(0);
+			mongoDirectory.close();
+		}
+	}
+
+	@Test
+	public void testMemoryDirectoryNotWarmed() throws Exception {
+		MemoryDirectory memoryDirectory = new MemoryDirectory(TestHelper.TEST_DATABASE_NAME, CACHE_WARMER_TEST_INDEX, BLOCK_SIZE, false);
+		try {
+			writeFiles(memoryDirectory);
+			long usedBytes = MongoFile.getCache().getUsedBytes();
+
+			//the files are already in memory and must not be counted against the block cache
+			CacheWarmer cacheWarmer = new CacheWarmer(memoryDirectory, Collections.singleton("tim"), CacheWarmer.DEFAULT_THREADS);
+			cacheWarmer.warm();
+			assertEquals(0, cacheWarmer.getFilesWarmed());
+			assertEquals(usedBytes, MongoFile.getCache().getUsedBytes());
+		}
+		finally {
+			memoryDirectory.close();
+			MemoryDirectory.dropIndex(TestHelper.TEST_DATABASE_NAME, CACHE_WARMER_TEST_INDEX);
+		}
+	}
+
+	@Test
+	public void testSharedPool() throws Exception {
+		MongoDirectory mongoDirectory = new MongoDirectory(mongo, TestHelper.TEST_DATABASE_NAME, CACHE_WARMER_TEST_INDEX, false, BLOCK_SIZE);
+		try {
+			writeFiles(mongoDirectory);
+			for (int i = 0; i < 3; i++) {
+				MongoFile.clearCache();
+				CacheWarmer cacheWarmer = new CacheWarmer(mongoDirectory, Collections.singleton("tim"), CacheWarmer.DEFAULT_THREADS);
+				cacheWarmer.warm();
+				assertEquals(4, cacheWarmer.getFilesWarmed());
+			}
+
+			//warmers share one pool of numbered threads instead of starting threads of their own
+			long warmerThreads = Thread.getAllStackTraces().keySet().stream().filter(thread -> thread.getName().startsWith("LumongoCacheWarmer")).count();
+			assertTrue(warmerThreads > 0 && warmerThreads <= CacheWarmer.DEFAULT_THREADS);
+			assertTrue(Thread.getAllStackTraces().keySet().stream().filter(thread -> thread.getName().startsWith("LumongoCacheWarmer"))
+							.allMatch(thread -> thread.getName().matches("LumongoCacheWarmer-\\d+")));
+		}
+		finally {
+			mongoDirectory.close();
+		}
+	}
+
+	private static void writeFiles(NosqlDirectory nosqlDirectory) throws Exception {
+		byte[] bytes = new byte[FILE_SIZE];
+		new Random(4680).nextBytes(bytes);
+		for (String fileName : Arrays.asList("_0.tim", "_1.tim", "_2.tim", "_3.tim", "_0.fdt")) {
+			NosqlFile nosqlFile = nosqlDirectory.getFileHandle(fileName, true);
+			if (nosqlFile.getFileLength() == 0) {
+				nosqlFile.write(0, bytes, 0, bytes.length);
+			}
+		}
+		nosqlDirectory.sync(Arrays.asList(nosqlDirectory.getFileNames()));
+	}
+}
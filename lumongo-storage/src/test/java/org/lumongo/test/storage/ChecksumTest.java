@@ -0,0 +1,72 @@
+package org.lumongo.test.storage;
+
+import com.mongodb.MongoClient;
+import org.lumongo.storage.lucene.MongoDirectory;
+import org.lumongo.storage.lucene.MongoFile;
+import org.lumongo.util.TestHelper;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+public class ChecksumTest {
+	private static final String CHECKSUM_TEST_INDEX = "checksumTest";
+
+	private static MongoClient mongo;
+	private static MongoDirectory mongoDirectory;
+
+	@BeforeClass
+	public static void cleanDatabaseAndInit() throws Exception {
+		mongo = TestHelper.getMongo();
+		mongo.dropDatabase(TestHelper.TEST_DATABASE_NAME);
+		mongoDirectory = new MongoDirectory(mongo, TestHelper.TEST_DATABASE_NAME, CHECKSUM_TEST_INDEX, false, 4096);
+	}
+
+	@AfterClass
+	public static void closeDirectory() throws Exception {
+		mongoDirectory.close();
+	}
+
+	@Test
+	public void testSingleAndBulkWrites() throws Exception {
+		byte[] bytes = new byte[20000];
+		new Random(1357).nextBytes(bytes);
+
+		MongoFile file = mongoDirectory.getFileHandle("checksum.bin", true);
+		file.resetChecksum();
+
+		//runs of single bytes longer and shorter than the checksum buffer between bulk writes
+		CRC32 expected = new CRC32();
+		Random random = new Random(2468);
+		int position = 0;
+		while (position < bytes.length) {
+			int length = Math.min(random.nextInt(3000) + 1, bytes.length - position);
+			if (random.nextBoolean()) {
+				for (int i = position; i < position + length; i++) {
+					file.write(i, bytes[i]);
+				}
+			}
+			else {
+				file.write(position, bytes, position, length);
+			}
+			expected.update(bytes, position, length);
+			position += length;
+
+			assertEquals("Checksum at position <" + position + ">", expected.getValue(), file.getChecksum());
+		}
+
+		//single bytes written before a reset are not part of the next checksum
+		file.write(0, bytes[0]);
+		file.resetChecksum();
+		file.write(1, bytes[1]);
+		expected.reset();
+		expected.update(bytes[1]);
+		assertEquals(expected.getValue(), file.getChecksum());
+
+		file.close();
+	}
+}
@@ -0,0 +1,204 @@
+package org.lumongo.test.storage;
+
+import com.mongodb.MongoClient;
+import com.mongodb.client.MongoCollection;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.bson.Document;
+import org.lumongo.storage.lucene.DistributedDirectory;
+import org.lumongo.storage.lucene.MongoDirectory;
+import org.lumongo.storage.lucene.MongoFile;
+import org.lumongo.util.TestHelper;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+public class FileReaperTest {
+	private static final String FILE_REAPER_TEST_INDEX = "fileReaperTest";
+	private static final int BLOCK_SIZE = 4096;
+
+	private static MongoClient mongo;
+
+	@BeforeClass
+	public static void cleanDatabase() throws Exception {
+		mongo = TestHelper.getMongo();
+		mongo.dropDatabase(TestHelper.TEST_DATABASE_NAME);
+	}
+
+	@Test
+	public void testDeleteAndReap() throws Exception {
+		GatedMongoDirectory mongoDirectory = new GatedMongoDirectory(mongo);
+		Directory directory = new DistributedDirectory(mongoDirectory);
+		try {
+			byte[] expected = new byte[4 * BLOCK_SIZE];
+			new Random(2468).nextBytes(expected);
+
+			MongoFile file = mongoDirectory.getFileHandle("reaped.bin", true);
+			file.write(0, expected, 0, expected.length);
+			mongoDirectory.sync(Collections.singleton("reaped.bin"));
+			file.close();
+			short fileNumber = file.getFileNumber();
+
+			try (IndexInput indexInput = directory.openInput("reaped.bin", IOContext.DEFAULT)) {
+				assertEquals(expected[0], indexInput.readByte());
+
+				directory.deleteFile("reaped.bin");
+
+				//gone from the listing right away, also for a directory opened after the delete, whose reaper pass queues behind the held one
+				assertFalse(Arrays.asList(directory.listAll()).contains("reaped.bin"));
+				MongoDirectory reopened = new MongoDirectory(mongo, TestHelper.TEST_DATABASE_NAME, FILE_REAPER_TEST_INDEX, false, BLOCK_SIZE);
+				assertFalse(Arrays.asList(reopened.getFileNames()).contains("reaped.bin"));
+				reopened.close();
+
+				//the tombstone and the blocks stay until the reaper gets to them
+				Document tombstone = mongoDirectory.getFilesCollection().find(new Document(MongoDirectory.FILE_NUMBER, fileNumber)).first();
+				assertNotNull(tombstone);
+				assertEquals(Boolean.TRUE, tombstone.get(MongoDirectory.DELETED));
+				assertEquals(4, countBlocks(mongoDirectory, fileNumber));
+
+				//the open input reads the whole file from mongo
+				MongoFile.clearCache();
+				byte[] actual = new byte[expected.length];
+				indexInput.seek(0);
+				indexInput.readBytes(actual, 0, actual.length);
+				for (int i = 0; i < expected.length; i++) {
+					assertEquals("Byte at position <" + i + ">", expected[i], actual[i]);
+				}
+			}
+
+			mongoDirectory.reaperGate.countDown();
+
+			long timeout = System.currentTimeMillis() + 30000;
+			while (countBlocks(mongoDirectory, fileNumber) > 0
+							|| mongoDirectory.getFilesCollection().count(new Document(MongoDirectory.FILE_NUMBER, fileNumber)) > 0) {
+				assertTrue("Reaper did not remove file <" + fileNumber + ">", System.currentTimeMillis() < timeout);
+				Thread.sleep(50);
+			}
+		}
+		finally {
+			mongoDirectory.reaperGate.countDown();
+			directory.close();
+		}
+	}
+
+	@Test
+	public void testDeletedFileNotCachedOnDisk() throws Exception {
+		Path diskCachePath = Files.createTempDirectory("lumongoDiskCache");
+		Path indexDirectory = diskCachePath.resolve(TestHelper.TEST_DATABASE_NAME).resolve(FILE_REAPER_TEST_INDEX);
+		MongoDirectory.setDiskCache(diskCachePath, 64 * 1024 * 1024);
+
+		GatedMongoDirectory mongoDirectory = new GatedMongoDirectory(mongo);
+		Directory directory = new DistributedDirectory(mongoDirectory);
+		try {
+			byte[] expected = new byte[4 * BLOCK_SIZE];
+			new Random(1357).nextBytes(expected);
+
+			MongoFile file = mongoDirectory.getFileHandle("diskCached.bin", true);
+			file.write(0, expected, 0, expected.length);
+			MongoFile marker = mongoDirectory.getFileHandle("marker.bin", true);
+			//two blocks so it is not stored inline
+			marker.write(0, expected, 0, 2 * BLOCK_SIZE);
+			mongoDirectory.sync(Arrays.asList("diskCached.bin", "marker.bin"));
+			file.close();
+			marker.close();
+			short fileNumber = file.getFileNumber();
+
+			MongoFile.clearCache();
+
+			try (IndexInput indexInput = directory.openInput("diskCached.bin", IOContext.DEFAULT)) {
+				byte[] actual = new byte[expected.length];
+				indexInput.readBytes(actual, 0, actual.length);
+				waitFor(() -> countDiskBlocks(indexDirectory, fileNumber) == 4);
+
+				directory.deleteFile("diskCached.bin");
+				assertEquals(0, countDiskBlocks(indexDirectory, fileNumber));
+
+				//reads through the open input go to mongo again and must not put the file back on disk
+				MongoFile.clearCache();
+				indexInput.seek(0);
+				indexInput.readBytes(actual, 0, actual.length);
+				assertEquals(expected[expected.length - 1], actual[actual.length - 1]);
+
+				//the disk cache writes blocks in order, once the marker is on disk every earlier block was handled
+				MongoFile.clearCache();
+				mongoDirectory.getFileHandle("marker.bin").readBytes(0, actual, 0, 2 * BLOCK_SIZE);
+				waitFor(() -> countDiskBlocks(indexDirectory, marker.getFileNumber()) == 2);
+
+				assertEquals(0, countDiskBlocks(indexDirectory, fileNumber));
+			}
+		}
+		finally {
+			mongoDirectory.reaperGate.countDown();
+			directory.close();
+			MongoFile.setDiskCache(null);
+		}
+	}
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		long timeout = System.currentTimeMillis() + 30000;
+		while (!condition.getAsBoolean()) {
+			assertTrue("Timed out waiting on the disk cache", System.currentTimeMillis() < timeout);
+			Thread.sleep(50);
+		}
+	}
+
+	/**
+	 * @return the number of blocks of the file on disk over all versions of the file
+	 */
+	private static long countDiskBlocks(Path indexDirectory, short fileNumber) {
+		File[] fileDirectories = indexDirectory.toFile().listFiles((dir, name) -> name.startsWith(fileNumber + "-"));
+		long blocks = 0;
+		if (fileDirectories != null) {
+			for (File fileDirectory : fileDirectories) {
+				String[] blockFiles = fileDirectory.list((dir, name) -> !name.endsWith(".tmp"));
+				if (blockFiles != null) {
+					blocks += blockFiles.length;
+				}
+			}
+		}
+		return blocks;
+	}
+
+	private static long countBlocks(MongoDirectory mongoDirectory, short fileNumber) {
+		return mongoDirectory.getBlocksCollection().count(new Document(MongoDirectory.FILE_NUMBER, fileNumber));
+	}
+
+	/**
+	 * Holds the reaper before it removes any block until the gate is opened
+	 */
+	private static class GatedMongoDirectory extends MongoDirectory {
+		private final CountDownLatch reaperGate = new CountDownLatch(1);
+
+		GatedMongoDirectory(MongoClient mongo) throws IOException {
+			super(mongo, TestHelper.TEST_DATABASE_NAME, FILE_REAPER_TEST_INDEX, false, FileReaperTest.BLOCK_SIZE);
+		}
+
+		@Override
+		public MongoCollection<Document> getBlocksCollection() {
+			if ("LumongoFileReaper".equals(Thread.currentThread().getName())) {
+				try {
+					reaperGate.await();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return super.getBlocksCollection();
+		}
+	}
+}
@@ -0,0 +1,235 @@
+package org.lumongo.test.storage;
+
+import com.mongodb.MongoClient;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.lumongo.storage.lucene.MongoBlock;
+import org.lumongo.storage.lucene.MongoDirectory;
+import org.lumongo.storage.lucene.MongoFile;
+import org.lumongo.util.TestHelper;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+public class FlushTest {
+	private static final String FLUSH_TEST_INDEX = "flushTest";
+	private static final int BLOCK_SIZE = 4096;
+
+	private static MongoClient mongo;
+	private static RecordingMongoDirectory directory;
+
+	@BeforeClass
+	public static void cleanDatabaseAndInit() throws Exception {
+		mongo = TestHelper.getMongo();
+		mongo.dropDatabase(TestHelper.TEST_DATABASE_NAME);
+		directory = new RecordingMongoDirectory(mongo);
+	}
+
+	@AfterClass
+	public static void closeDirectory() throws Exception {
+		MongoDirectory.setFlushBatchSize(MongoDirectory.DEFAULT_FLUSH_BATCH_SIZE);
+		directory.close();
+	}
+
+	@Test
+	public void testBulkWriteBatches() throws Exception {
+		MongoDirectory.setFlushBatchSize(4);
+		try {
+			MongoFile file = directory.getFileHandle("batches.bin", true);
+			List<MongoBlock> blocks = new ArrayList<>();
+			for (int i = 0; i < 10; i++) {
+				byte[] bytes = new byte[BLOCK_SIZE];
+				new Random(i).nextBytes(bytes);
+				MongoBlock mongoBlock = new MongoBlock(file, i, bytes);
+				mongoBlock.markDirty();
+				blocks.add(mongoBlock);
+			}
+			//a clean block is skipped
+			blocks.add(5, new MongoBlock(file, 10, new byte[BLOCK_SIZE]));
+
+			directory.reset();
+			directory.storeBlocks(blocks);
+
+			assertEquals(Arrays.asList(4, 4, 2), directory.getBlockBulkWrites());
+			for (MongoBlock mongoBlock : blocks) {
+				assertFalse(mongoBlock.isDirty());
+			}
+			assertEquals(10, directory.getBlocksCollection().count(new Document(MongoDirectory.FILE_NUMBER, file.getFileNumber())));
+
+			//a sync writes the blocks of every file in batches of the flush batch size
+			byte[] bytes = new byte[10 * BLOCK_SIZE + BLOCK_SIZE / 2];
+			new Random(1357).nextBytes(bytes);
+			MongoFile first = directory.getFileHandle("syncFirst.bin", true);
+			MongoFile second = directory.getFileHandle("syncSecond.bin", true);
+			directory.reset();
+			first.write(0, bytes, 0, bytes.length);
+			second.write(0, bytes, 0, bytes.length);
+			directory.sync(Arrays.asList("syncFirst.bin", "syncSecond.bin"));
+
+			int written = 0;
+			for (int size : directory.getBlockBulkWrites()) {
+				assertTrue(size <= 4);
+				written += size;
+			}
+			assertEquals(22, written);
+		}
+		finally {
+			MongoDirectory.setFlushBatchSize(MongoDirectory.DEFAULT_FLUSH_BATCH_SIZE);
+		}
+	}
+
+	@Test
+	public void testAppendWritesEachBlockOnce() throws Exception {
+		byte[] bytes = new byte[10 * BLOCK_SIZE + BLOCK_SIZE / 2];
+		new Random(2468).nextBytes(bytes);
+
+		MongoFile file = directory.getFileHandle("append.bin", true);
+		directory.reset();
+
+		//small appends as an index output makes them
+		for (int offset = 0; offset < bytes.length; offset += 1000) {
+			file.write(offset, bytes, offset, Math.min(1000, bytes.length - offset));
+		}
+		directory.sync(Collections.singleton("append.bin"));
+
+		//blocks past the end of the file are never looked up or stored before they are filled
+		assertEquals(0, directory.getBlockQueries());
+		int written = 0;
+		for (int size : directory.getBlockBulkWrites()) {
+			written += size;
+		}
+		assertEquals(11, written);
+		assertEquals(11, directory.getBlocksCollection().count(new Document(MongoDirectory.FILE_NUMBER, file.getFileNumber())));
+
+		MongoFile.clearCache();
+		byte[] actual = new byte[bytes.length];
+		file.readBytes(0, actual, 0, actual.length);
+		assertTrue(Arrays.equals(bytes, actual));
+	}
+
+	@Test
+	public void testMetadataOfChangedFilesOnly() throws Exception {
+		byte[] bytes = new byte[3 * BLOCK_SIZE];
+		new Random(3579).nextBytes(bytes);
+
+		List<String> fileNames = Arrays.asList("metadataA.bin", "metadataB.bin", "metadataC.bin");
+		for (String fileName : fileNames) {
+			directory.getFileHandle(fileName, true).write(0, bytes, 0, bytes.length);
+		}
+
+		//the new lengths of every file go in one bulk write
+		directory.reset();
+		directory.sync(fileNames);
+		assertEquals(Collections.singletonList(3), directory.getFileBulkWrites());
+
+		//only the file that grew is written
+		MongoFile grown = directory.getFileHandle("metadataB.bin");
+		grown.write(bytes.length, bytes, 0, BLOCK_SIZE);
+		directory.reset();
+		directory.sync(fileNames);
+		assertEquals(Collections.singletonList(1), directory.getFileBulkWrites());
+
+		Document metadata = directory.getFilesCollection().find(new Document(MongoDirectory.FILE_NAME, "metadataB.bin")).first();
+		assertEquals(4L * BLOCK_SIZE, ((Number) metadata.get(MongoDirectory.LENGTH)).longValue());
+
+		//nothing changed so nothing is written
+		directory.reset();
+		directory.sync(fileNames);
+		assertTrue(directory.getFileBulkWrites().isEmpty());
+	}
+
+	/**
+	 * Records the bulk writes sent to the files and blocks collections and the block queries
+	 */
+	private static class RecordingMongoDirectory extends MongoDirectory {
+		private final List<Integer> blockBulkWrites;
+		private final List<Integer> fileBulkWrites;
+		private final AtomicInteger blockQueries;
+
+		RecordingMongoDirectory(MongoClient mongo) throws IOException {
+			super(mongo, TestHelper.TEST_DATABASE_NAME, FLUSH_TEST_INDEX, false, FlushTest.BLOCK_SIZE);
+			this.blockBulkWrites = Collections.synchronizedList(new ArrayList<>());
+			this.fileBulkWrites = Collections.synchronizedList(new ArrayList<>());
+			this.blockQueries = new AtomicInteger();
+		}
+
+		void reset() {
+			blockBulkWrites.clear();
+			fileBulkWrites.clear();
+			blockQueries.set(0);
+		}
+
+		List<Integer> getBlockBulkWrites() {
+			synchronized (blockBulkWrites) {
+				return new ArrayList<>(blockBulkWrites);
+			}
+		}
+
+		List<Integer> getFileBulkWrites() {
+			synchronized (fileBulkWrites) {
+				return new ArrayList<>(fileBulkWrites);
+			}
+		}
+
+		int getBlockQueries() {
+			return blockQueries.get();
+		}
+
+		//visible to the test
+		@Override
+		protected void storeBlocks(Collection<MongoBlock> blocks) throws IOException {
+			super.storeBlocks(blocks);
+		}
+
+		@Override
+		public MongoCollection<Document> getFilesCollection() {
+			//called by the super constructor before the fields are set
+			if (fileBulkWrites == null) {
+				return super.getFilesCollection();
+			}
+			return record(super.getFilesCollection(), fileBulkWrites, null);
+		}
+
+		@Override
+		public MongoCollection<Document> getBlocksCollection() {
+			if (blockBulkWrites == null) {
+				return super.getBlocksCollection();
+			}
+			return record(super.getBlocksCollection(), blockBulkWrites, blockQueries);
+		}
+
+		@SuppressWarnings("unchecked")
+		private static MongoCollection<Document> record(MongoCollection<Document> collection, List<Integer> bulkWrites, AtomicInteger queries) {
+			return (MongoCollection<Document>) Proxy.newProxyInstance(MongoCollection.class.getClassLoader(), new Class<?>[] { MongoCollection.class },
+							(proxy, method, args) -> {
+								if ("bulkWrite".equals(method.getName())) {
+									bulkWrites.add(((List<?>) args[0]).size());
+								}
+								else if ("find".equals(method.getName()) && queries != null) {
+									queries.incrementAndGet();
+								}
+								try {
+									return method.invoke(collection, args);
+								}
+								catch (InvocationTargetException e) {
+									throw e.getCause();
+								}
+							});
+		}
+	}
+}
@@ -0,0 +1,286 @@
+package org.lumongo.test.storage;
+
+import com.mongodb.MongoClient;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.lumongo.storage.lucene.DistributedDirectory;
+import org.lumongo.storage.lucene.MemoryDirectory;
+import org.lumongo.storage.lucene.MongoDirectory;
+import org.lumongo.storage.lucene.MongoFile;
+import org.lumongo.util.TestHelper;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.fail;
+
+public class IndexInputTest {
+	private static final String INDEX_INPUT_TEST_INDEX = "indexInputTest";
+
+	//small enough that many values straddle the boundary between two blocks
+	private static final int BLOCK_SIZE = 16;
+	private static final int VALUES = 2000;
+	private static final int CLONE_BLOCK_SIZE = 1024;
+
+	private static final int BYTE = 0;
+	private static final int SHORT = 1;
+	private static final int INT = 2;
+	private static final int LONG = 3;
+	private static final int VINT = 4;
+	private static final int VLONG = 5;
+
+	private static MongoClient mongo;
+
+	@BeforeClass
+	public static void cleanDatabase() throws Exception {
+		mongo = TestHelper.getMongo();
+		mongo.dropDatabase(TestHelper.TEST_DATABASE_NAME);
+	}
+
+	@Test
+	public void testMemoryDirectory() throws Exception {
+		MemoryDirectory memoryDirectory = new MemoryDirectory(TestHelper.TEST_DATABASE_NAME, INDEX_INPUT_TEST_INDEX, BLOCK_SIZE, false);
+		try (Directory directory = new DistributedDirectory(memoryDirectory)) {
+			testValues(directory);
+			testMalformed(directory);
+		}
+		finally {
+			MemoryDirectory.dropIndex(TestHelper.TEST_DATABASE_NAME, INDEX_INPUT_TEST_INDEX);
+		}
+	}
+
+	@Test
+	public void testMongoDirectory() throws Exception {
+		MongoDirectory mongoDirectory = new MongoDirectory(mongo, TestHelper.TEST_DATABASE_NAME, INDEX_INPUT_TEST_INDEX, false, BLOCK_SIZE);
+		try (Directory directory = new DistributedDirectory(mongoDirectory)) {
+			testValues(directory);
+			testMalformed(directory);
+
+			//read the blocks back from mongo instead of the blocks written
+			MongoFile.clearCache();
+			testValues(directory);
+		}
+	}
+
+	@Test
+	public void testConcurrentClones() throws Exception {
+		MongoDirectory mongoDirectory = new MongoDirectory(mongo, TestHelper.TEST_DATABASE_NAME, INDEX_INPUT_TEST_INDEX + "Clones", false, CLONE_BLOCK_SIZE);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try (Directory directory = new DistributedDirectory(mongoDirectory)) {
+			byte[] expected = new byte[64 * CLONE_BLOCK_SIZE + 100];
+			new Random(8080).nextBytes(expected);
+			try (IndexOutput output = directory.createOutput("clones.bin", IOContext.DEFAULT)) {
+				output.writeBytes(expected, expected.length);
+			}
+			directory.sync(Collections.singleton("clones.bin"));
+			MongoFile.clearCache();
+
+			try (IndexInput input = directory.openInput("clones.bin", IOContext.DEFAULT)) {
+				input.seek(12345);
+				input.readByte();
+
+				//every clone and slice moves its own block cursor while the others read other blocks of the file
+				List<Future<?>> readers = new ArrayList<>();
+				for (int t = 0; t < 8; t++) {
+					int seed = t;
+					boolean slice = t % 2 == 1;
+					IndexInput reader = slice ? input.slice("slice" + t, 100, expected.length - 200) : input.clone();
+					long offset = slice ? 100 : 0;
+					readers.add(executor.submit(() -> {
+						Random random = new Random(seed);
+						byte[] actual = new byte[3 * CLONE_BLOCK_SIZE];
+						for (int i = 0; i < 500; i++) {
+							int length = random.nextInt(actual.length);
+							long position = (long) (random.nextDouble() * (reader.length() - length));
+							reader.seek(position);
+							reader.readBytes(actual, 0, length);
+							for (int j = 0; j < length; j++) {
+								assertEquals("Byte at position <" + (offset + position + j) + ">", expected[(int) (offset + position + j)], actual[j]);
+							}
+							if (reader.getFilePointer() + 4 <= reader.length()) {
+								long intPosition = offset + reader.getFilePointer();
+								assertEquals(ByteBuffer.wrap(expected, (int) intPosition, 4).getInt(), reader.readInt());
+							}
+						}
+						return null;
+					}));
+				}
+				for (Future<?> reader : readers) {
+					reader.get(60, TimeUnit.SECONDS);
+				}
+
+				//the clones did not move the input they were cloned from
+				assertEquals(12346, input.getFilePointer());
+				assertEquals(expected[12346], input.readByte());
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Writes values of every type at every offset in a block and reads them back through the fast paths, the slow path
+	 * of the super class and a clone seeked to each value
+	 */
+	private static void testValues(Directory directory) throws IOException {
+		Random random = new Random(1357);
+		int[] types = new int[VALUES];
+		long[] values = new long[VALUES];
+		long[] positions = new long[VALUES];
+
+		try (IndexOutput output = directory.createOutput("values.bin", IOContext.DEFAULT)) {
+			for (int i = 0; i < VALUES; i++) {
+				types[i] = random.nextInt(6);
+				positions[i] = output.getFilePointer();
+				switch (types[i]) {
+					case BYTE:
+						values[i] = (byte) random.nextInt();
+						output.writeByte((byte) values[i]);
+						break;
+					case SHORT:
+						values[i] = (short) random.nextInt();
+						output.writeShort((short) values[i]);
+						break;
+					case INT:
+						values[i] = random.nextInt();
+						output.writeInt((int) values[i]);
+						break;
+					case LONG:
+						values[i] = random.nextLong();
+						output.writeLong(values[i]);
+						break;
+					case VINT:
+						//negative vInts are written in all five bytes
+						values[i] = random.nextInt() >> random.nextInt(32);
+						output.writeVInt((int) values[i]);
+						break;
+					case VLONG:
+						values[i] = random.nextLong() >>> (1 + random.nextInt(63));
+						output.writeVLong(values[i]);
+						break;
+				}
+			}
+		}
+		directory.sync(Collections.singleton("values.bin"));
+
+		try (IndexInput input = directory.openInput("values.bin", IOContext.DEFAULT)) {
+			for (int i = 0; i < VALUES; i++) {
+				assertEquals("value <" + i + "> at position <" + positions[i] + ">", positions[i], input.getFilePointer());
+				assertEquals("value <" + i + "> at position <" + positions[i] + ">", values[i], read(input, types[i]));
+			}
+			assertEquals(input.length(), input.getFilePointer());
+
+			input.seek(0);
+			DataInput slowInput = new ByteInput(input);
+			for (int i = 0; i < VALUES; i++) {
+				assertEquals("value <" + i + "> at position <" + positions[i] + ">", values[i], read(slowInput, types[i]));
+			}
+
+			//seeks land both inside the current block and on blocks that are not loaded yet
+			IndexInput clone = input.clone();
+			List<Integer> order = new ArrayList<>();
+			for (int i = 0; i < VALUES; i++) {
+				order.add(i);
+			}
+			Collections.shuffle(order, random);
+			for (int i : order) {
+				clone.seek(positions[i]);
+				assertEquals("value <" + i + "> at position <" + positions[i] + ">", values[i], read(clone, types[i]));
+			}
+		}
+	}
+
+	/**
+	 * Writes vInts and vLongs with too many bits inside a block and across the boundary of two blocks
+	 */
+	private static void testMalformed(Directory directory) throws IOException {
+		try (IndexOutput output = directory.createOutput("malformed.bin", IOContext.DEFAULT)) {
+			for (int i = 0; i < 4 * BLOCK_SIZE; i++) {
+				output.writeByte((byte) 0xFF);
+			}
+		}
+		directory.sync(Collections.singleton("malformed.bin"));
+
+		try (IndexInput input = directory.openInput("malformed.bin", IOContext.DEFAULT)) {
+			for (int position = 0; position < 2 * BLOCK_SIZE; position++) {
+				assertMalformed(input, position, VINT);
+				assertMalformed(input, position, VLONG);
+				assertMalformed(new ByteInput(input), input, position, VINT);
+				assertMalformed(new ByteInput(input), input, position, VLONG);
+			}
+		}
+	}
+
+	private static void assertMalformed(IndexInput input, long position, int type) throws IOException {
+		assertMalformed(input, input, position, type);
+	}
+
+	private static void assertMalformed(DataInput dataInput, IndexInput input, long position, int type) throws IOException {
+		//load the block holding the position so the fast path is taken when the value fits in the block
+		input.seek(position);
+		input.readByte();
+		input.seek(position);
+		try {
+			read(dataInput, type);
+			fail("Expected malformed value at position <" + position + ">");
+		}
+		catch (IOException e) {
+			//expected
+		}
+	}
+
+	private static long read(DataInput input, int type) throws IOException {
+		switch (type) {
+			case BYTE:
+				return input.readByte();
+			case SHORT:
+				return input.readShort();
+			case INT:
+				return input.readInt();
+			case LONG:
+				return input.readLong();
+			case VINT:
+				return input.readVInt();
+			case VLONG:
+				return input.readVLong();
+			default:
+				throw new IllegalArgumentException("Unknown type <" + type + ">");
+		}
+	}
+
+	/**
+	 * Reads only single bytes and byte arrays so the default implementations of the super class are used
+	 */
+	private static class ByteInput extends DataInput {
+		private final IndexInput input;
+
+		public ByteInput(IndexInput input) {
+			this.input = input;
+		}
+
+		@Override
+		public byte readByte() throws IOException {
+			return input.readByte();
+		}
+
+		@Override
+		public void readBytes(byte[] b, int offset, int len) throws IOException {
+			input.readBytes(b, offset, len);
+		}
+	}
+}
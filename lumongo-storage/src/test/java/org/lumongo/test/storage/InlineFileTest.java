@@ -0,0 +1,108 @@
+package org.lumongo.test.storage;
+
+import com.mongodb.MongoClient;
+import org.bson.Document;
+import org.lumongo.storage.lucene.MongoDirectory;
+import org.lumongo.storage.lucene.MongoFile;
+import org.lumongo.util.TestHelper;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+
+public class InlineFileTest {
+	private static final String INLINE_TEST_INDEX = "inlineTest";
+
+	private static MongoClient mongo;
+
+	@BeforeClass
+	public static void cleanDatabase() throws Exception {
+		mongo = TestHelper.getMongo();
+		mongo.dropDatabase(TestHelper.TEST_DATABASE_NAME);
+	}
+
+	@Test
+	public void testGrowPastInlineSize() throws Exception {
+		Random random = new Random(5678);
+
+		byte[] small = new byte[100];
+		random.nextBytes(small);
+
+		MongoDirectory mongoDirectory = openDirectory();
+		MongoFile file = mongoDirectory.getFileHandle("grow.tmp", true);
+		file.write(0, small, 0, small.length);
+		mongoDirectory.sync(Collections.singleton("grow.tmp"));
+		file.close();
+
+		Document metadata = getMetadata(mongoDirectory, "grow.tmp");
+		assertNotNull(metadata.get(MongoDirectory.INLINE_BYTES));
+		assertEquals(0, countBlocks(mongoDirectory, file.getFileNumber()));
+
+		//the inline bytes follow the file to its new name
+		mongoDirectory.rename("grow.tmp", "grow.bin");
+		mongoDirectory.close();
+		assertNull(getMetadata(mongoDirectory, "grow.tmp"));
+		assertNotNull(getMetadata(mongoDirectory, "grow.bin").get(MongoDirectory.INLINE_BYTES));
+
+		MongoFile.clearCache();
+		assertContents("grow.bin", small);
+
+		//append to the reopened file until it no longer fits inline
+		byte[] appended = new byte[MongoDirectory.DEFAULT_INLINE_FILE_SIZE * 2];
+		random.nextBytes(appended);
+
+		mongoDirectory = openDirectory();
+		file = mongoDirectory.getFileHandle("grow.bin");
+		file.write(file.getFileLength(), appended, 0, appended.length);
+		mongoDirectory.sync(Collections.singleton("grow.bin"));
+		file.close();
+		mongoDirectory.close();
+
+		metadata = getMetadata(mongoDirectory, "grow.bin");
+		assertFalse(metadata.containsKey(MongoDirectory.INLINE_BYTES));
+		assertEquals((long) small.length + appended.length, ((Number) metadata.get(MongoDirectory.LENGTH)).longValue());
+		assertEquals(1, countBlocks(mongoDirectory, file.getFileNumber()));
+
+		byte[] expected = Arrays.copyOf(small, small.length + appended.length);
+		System.arraycopy(appended, 0, expected, small.length, appended.length);
+
+		MongoFile.clearCache();
+		assertContents("grow.bin", expected);
+	}
+
+	private static void assertContents(String fileName, byte[] expected) throws Exception {
+		MongoDirectory reopened = openDirectory();
+		try {
+			MongoFile file = reopened.getFileHandle(fileName);
+			assertEquals(expected.length, file.getFileLength());
+
+			byte[] actual = new byte[expected.length];
+			file.readBytes(0, actual, 0, actual.length);
+			for (int i = 0; i < expected.length; i++) {
+				assertEquals("Byte at position <" + i + "> of file <" + fileName + ">", expected[i], actual[i]);
+			}
+		}
+		finally {
+			reopened.close();
+		}
+	}
+
+	private static Document getMetadata(MongoDirectory mongoDirectory, String fileName) {
+		return mongoDirectory.getFilesCollection().find(new Document(MongoDirectory.FILE_NAME, fileName)).first();
+	}
+
+	private static long countBlocks(MongoDirectory mongoDirectory, short fileNumber) {
+		return mongoDirectory.getBlocksCollection().count(new Document(MongoDirectory.FILE_NUMBER, fileNumber));
+	}
+
+	private static MongoDirectory openDirectory() throws Exception {
+		return new MongoDirectory(mongo, TestHelper.TEST_DATABASE_NAME, INLINE_TEST_INDEX);
+	}
+}
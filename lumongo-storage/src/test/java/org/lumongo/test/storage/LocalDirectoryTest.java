@@ -0,0 +1,176 @@
+package org.lumongo.test.storage;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.lumongo.storage.lucene.DistributedDirectory;
+import org.lumongo.storage.lucene.MappedDirectory;
+import org.lumongo.storage.lucene.MemoryDirectory;
+import org.lumongo.storage.lucene.NosqlDirectory;
+import org.lumongo.util.TestHelper;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.stream.Stream;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+/**
+ * Round trips an index and single files through the directories that keep files in memory or in local files
+ */
+public class LocalDirectoryTest {
+	private static final String LOCAL_TEST_INDEX = "localTest";
+	private static final int BLOCK_SIZE = 1024;
+
+	private static Path root;
+
+	@BeforeClass
+	public static void createRoot() throws Exception {
+		root = Files.createTempDirectory("lumongoLocalDirectoryTest");
+	}
+
+	@AfterClass
+	public static void deleteRoot() throws Exception {
+		try (Stream<Path> paths = Files.walk(root)) {
+			for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+				Files.deleteIfExists(path);
+			}
+		}
+	}
+
+	@Test
+	public void testMemoryDirectory() throws Exception {
+		testRoundTrip(() -> new MemoryDirectory(TestHelper.TEST_DATABASE_NAME, LOCAL_TEST_INDEX, BLOCK_SIZE, false));
+		MemoryDirectory.dropIndex(TestHelper.TEST_DATABASE_NAME, LOCAL_TEST_INDEX);
+		assertDropped(new MemoryDirectory(TestHelper.TEST_DATABASE_NAME, LOCAL_TEST_INDEX, BLOCK_SIZE, false));
+	}
+
+	@Test
+	public void testOffHeapMemoryDirectory() throws Exception {
+		testRoundTrip(() -> new MemoryDirectory(TestHelper.TEST_DATABASE_NAME, LOCAL_TEST_INDEX + "OffHeap", BLOCK_SIZE, true));
+		MemoryDirectory.dropIndex(TestHelper.TEST_DATABASE_NAME, LOCAL_TEST_INDEX + "OffHeap");
+		assertDropped(new MemoryDirectory(TestHelper.TEST_DATABASE_NAME, LOCAL_TEST_INDEX + "OffHeap", BLOCK_SIZE, true));
+	}
+
+	@Test
+	public void testMappedDirectory() throws Exception {
+		testRoundTrip(() -> new MappedDirectory(root, TestHelper.TEST_DATABASE_NAME, LOCAL_TEST_INDEX, BLOCK_SIZE));
+		MappedDirectory.dropIndex(root, TestHelper.TEST_DATABASE_NAME, LOCAL_TEST_INDEX);
+		assertFalse(Files.exists(root.resolve(TestHelper.TEST_DATABASE_NAME)));
+		assertDropped(new MappedDirectory(root, TestHelper.TEST_DATABASE_NAME, LOCAL_TEST_INDEX, BLOCK_SIZE));
+	}
+
+	/**
+	 * Writes an index and a file spanning several blocks, then reopens the directory and reads, renames and deletes
+	 * @param directoryFactory - opens the directory under test, called again to reopen it
+	 */
+	private static void testRoundTrip(Callable<NosqlDirectory> directoryFactory) throws Exception {
+		byte[] bytes = new byte[BLOCK_SIZE * 5 + 123];
+		new Random(2468).nextBytes(bytes);
+
+		try (Directory directory = new DistributedDirectory(directoryFactory.call())) {
+			IndexWriter w = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()));
+			addDoc(w, "Random java Title that is long", "id-1");
+			addDoc(w, "MongoDB is awesome", "id-2");
+			addDoc(w, "Java is awesome", "id-3");
+			addDoc(w, "Really big fish", "id-4");
+			w.commit();
+			w.close();
+
+			try (IndexOutput output = directory.createOutput("test.bin", IOContext.DEFAULT)) {
+				output.writeBytes(bytes, bytes.length);
+			}
+			directory.sync(Collections.singleton("test.bin"));
+		}
+
+		try (Directory directory = new DistributedDirectory(directoryFactory.call())) {
+			try (IndexReader indexReader = DirectoryReader.open(directory)) {
+				IndexSearcher searcher = new IndexSearcher(indexReader);
+				assertEquals(2, searcher.search(new TermQuery(new Term("title", "java")), 10).totalHits);
+				assertEquals(1, searcher.search(new TermQuery(new Term("uid", "id-4")), 10).totalHits);
+				assertEquals("Really big fish", searcher.doc(searcher.search(new TermQuery(new Term("uid", "id-4")), 1).scoreDocs[0].doc).get("title"));
+			}
+
+			assertContents(directory, "test.bin", bytes);
+
+			directory.renameFile("test.bin", "renamed.bin");
+			List<String> fileNames = Arrays.asList(directory.listAll());
+			assertFalse(fileNames.contains("test.bin"));
+			assertTrue(fileNames.contains("renamed.bin"));
+			assertContents(directory, "renamed.bin", bytes);
+		}
+
+		try (Directory directory = new DistributedDirectory(directoryFactory.call())) {
+			assertContents(directory, "renamed.bin", bytes);
+			directory.deleteFile("renamed.bin");
+			assertFalse(Arrays.asList(directory.listAll()).contains("renamed.bin"));
+			assertMissing(directory, "renamed.bin");
+		}
+
+		try (Directory directory = new DistributedDirectory(directoryFactory.call())) {
+			assertFalse(Arrays.asList(directory.listAll()).contains("renamed.bin"));
+			try (IndexReader indexReader = DirectoryReader.open(directory)) {
+				assertEquals(4, indexReader.numDocs());
+			}
+		}
+	}
+
+	private static void addDoc(IndexWriter w, String title, String uid) throws IOException {
+		Document doc = new Document();
+		doc.add(new TextField("title", title, Field.Store.YES));
+		doc.add(new StringField("uid", uid, Field.Store.YES));
+		w.updateDocument(new Term("uid", uid), doc);
+	}
+
+	private static void assertContents(Directory directory, String fileName, byte[] expected) throws IOException {
+		assertEquals(expected.length, directory.fileLength(fileName));
+		try (IndexInput input = directory.openInput(fileName, IOContext.DEFAULT)) {
+			byte[] actual = new byte[expected.length];
+			input.readBytes(actual, 0, actual.length);
+			assertTrue(Arrays.equals(expected, actual));
+		}
+	}
+
+	private static void assertMissing(Directory directory, String fileName) throws IOException {
+		try {
+			directory.openInput(fileName, IOContext.DEFAULT).close();
+			fail("Expected <" + fileName + "> to be deleted");
+		}
+		catch (FileNotFoundException | NoSuchFileException e) {
+			//expected
+		}
+	}
+
+	private static void assertDropped(NosqlDirectory nosqlDirectory) throws IOException {
+		assertEquals(0, nosqlDirectory.getFileNames().length);
+		nosqlDirectory.close();
+	}
+}
@@ -0,0 +1,165 @@
+package org.lumongo.test.storage;
+
+import com.mongodb.MongoClient;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.lumongo.storage.lucene.DistributedDirectory;
+import org.lumongo.storage.lucene.DistributedIndexInput;
+import org.lumongo.storage.lucene.MongoBlock;
+import org.lumongo.storage.lucene.MongoDirectory;
+import org.lumongo.storage.lucene.MongoFile;
+import org.lumongo.util.TestHelper;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+public class ReadAheadTest {
+	private static final String READ_AHEAD_TEST_INDEX = "readAheadTest";
+	private static final int BLOCK_SIZE = 4096;
+
+	private static MongoClient mongo;
+	private static HeldMongoDirectory directory;
+
+	@BeforeClass
+	public static void cleanDatabaseAndInit() throws Exception {
+		mongo = TestHelper.getMongo();
+		mongo.dropDatabase(TestHelper.TEST_DATABASE_NAME);
+		directory = new HeldMongoDirectory(mongo);
+	}
+
+	@AfterClass
+	public static void closeDirectory() throws Exception {
+		directory.close();
+	}
+
+	@Test
+	public void testSequentialReadAhead() throws Exception {
+		int blocks = 4 * DistributedDirectory.DEFAULT_READ_AHEAD_BLOCKS;
+		byte[] expected = writeFile("sequential.bin", blocks);
+
+		try (DistributedDirectory distributedDirectory = new DistributedDirectory(directory)) {
+			MongoFile.clearCache();
+			try (IndexInput input = distributedDirectory.openInput("sequential.bin", IOContext.DEFAULT)) {
+				byte[] actual = new byte[(DistributedIndexInput.SEQUENTIAL_BLOCKS + 1) * BLOCK_SIZE];
+				input.readBytes(actual, 0, actual.length);
+				assertTrue(Arrays.equals(Arrays.copyOf(expected, actual.length), actual));
+
+				//the blocks after the first sequential blocks are prefetched and nothing further
+				int readAhead = DistributedIndexInput.SEQUENTIAL_BLOCKS + DistributedDirectory.DEFAULT_READ_AHEAD_BLOCKS;
+				waitFor(() -> getCachedBlocks() >= readAhead);
+				Thread.sleep(250);
+				assertEquals(readAhead, getCachedBlocks());
+
+				//random access does not read ahead
+				MongoFile.clearCache();
+				input.seek((long) (blocks - 1) * BLOCK_SIZE);
+				input.readByte();
+				input.seek((long) (blocks / 2) * BLOCK_SIZE);
+				input.readByte();
+				Thread.sleep(250);
+				assertEquals(2, getCachedBlocks());
+			}
+		}
+	}
+
+	@Test
+	public void testPrefetchSkipsPending() throws Exception {
+		byte[] expected = writeFile("pending.bin", 4);
+		MongoFile file = directory.getFileHandle("pending.bin");
+
+		//a newer copy of the second block is held in the block writer while mongo still has the old one
+		byte[] newer = new byte[BLOCK_SIZE];
+		new Random(1111).nextBytes(newer);
+		MongoBlock pendingBlock = new MongoBlock(file, 1, newer);
+		pendingBlock.markDirty();
+
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		directory.entered = entered;
+		directory.release = release;
+		try {
+			MongoFile.clearCache();
+			MongoFile.getBlockWriter().enqueue(pendingBlock);
+			assertTrue(entered.await(10, TimeUnit.SECONDS));
+
+			//the prefetch loads the other blocks but leaves the pending block to the next cache miss
+			file.prefetch(0, file.getFileLength(), false);
+			waitFor(() -> getCachedBlocks() == 3);
+			Thread.sleep(250);
+			assertEquals(3, getCachedBlocks());
+
+			byte[] actual = new byte[BLOCK_SIZE];
+			file.readBytes(BLOCK_SIZE, actual, 0, BLOCK_SIZE);
+			assertTrue(Arrays.equals(newer, actual));
+			file.readBytes(2 * BLOCK_SIZE, actual, 0, BLOCK_SIZE);
+			assertTrue(Arrays.equals(Arrays.copyOfRange(expected, 2 * BLOCK_SIZE, 3 * BLOCK_SIZE), actual));
+		}
+		finally {
+			release.countDown();
+			MongoFile.getBlockWriter().awaitFiles(Collections.singleton(file));
+		}
+	}
+
+	private static byte[] writeFile(String fileName, int blocks) throws IOException {
+		byte[] bytes = new byte[blocks * BLOCK_SIZE];
+		new Random(fileName.hashCode()).nextBytes(bytes);
+		MongoFile file = directory.getFileHandle(fileName, true);
+		file.write(0, bytes, 0, bytes.length);
+		directory.sync(Collections.singleton(fileName));
+		return bytes;
+	}
+
+	private static long getCachedBlocks() {
+		return MongoFile.getCache().getStats(directory.getIndexNumber()).getBlockCount();
+	}
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		long end = System.currentTimeMillis() + 10000;
+		while (!condition.getAsBoolean()) {
+			assertTrue("Timed out waiting for the prefetch", System.currentTimeMillis() < end);
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Can hold the next write of the block writer so blocks stay pending
+	 */
+	private static class HeldMongoDirectory extends MongoDirectory {
+		private volatile CountDownLatch entered;
+		private volatile CountDownLatch release;
+
+		HeldMongoDirectory(MongoClient mongo) throws IOException {
+			super(mongo, TestHelper.TEST_DATABASE_NAME, READ_AHEAD_TEST_INDEX, false, ReadAheadTest.BLOCK_SIZE);
+		}
+
+		@Override
+		protected void storeBlocks(Collection<MongoBlock> blocks) throws IOException {
+			CountDownLatch enteredLatch = entered;
+			CountDownLatch releaseLatch = release;
+			entered = null;
+			release = null;
+			if (enteredLatch != null) {
+				enteredLatch.countDown();
+				try {
+					releaseLatch.await();
+				}
+				catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+			super.storeBlocks(blocks);
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package org.lumongo.test.storage;
+
+import com.mongodb.MongoClient;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.CheckIndex;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.SingleInstanceLockFactory;
+import org.lumongo.storage.lucene.DistributedDirectory;
+import org.lumongo.storage.lucene.MongoDirectory;
+import org.lumongo.storage.lucene.MongoFile;
+import org.lumongo.util.TestHelper;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+public class ScratchDirectoryTest {
+	private static final String SCRATCH_TEST_INDEX = "scratchTest";
+	private static final int DOC_COUNT = 2000;
+
+	private static MongoClient mongo;
+
+	@BeforeClass
+	public static void cleanDatabase() throws Exception {
+		mongo = TestHelper.getMongo();
+		mongo.dropDatabase(TestHelper.TEST_DATABASE_NAME);
+	}
+
+	@Test
+	public void testScratchCommitAndColdReopen() throws Exception {
+		Path scratchPath = Files.createTempDirectory("lumongoScratch");
+
+		Directory directory = new DistributedDirectory(new MongoDirectory(mongo, TestHelper.TEST_DATABASE_NAME, SCRATCH_TEST_INDEX),
+						new SingleInstanceLockFactory(), scratchPath);
+		try {
+			IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
+			try (IndexWriter w = new IndexWriter(directory, config)) {
+				for (int i = 0; i < DOC_COUNT; i++) {
+					Document doc = new Document();
+					doc.add(new StringField("uid", "id-" + i, Field.Store.YES));
+					doc.add(new TextField("title", "Scratch document number " + i + " with some text to fill the blocks", Field.Store.YES));
+					w.addDocument(doc);
+				}
+				w.commit();
+			}
+		}
+		finally {
+			directory.close();
+		}
+
+		//every synced file was uploaded and removed from the scratch directory
+		assertEquals(0, scratchPath.toFile().list().length);
+
+		//only what reached mongo is left
+		MongoFile.clearCache();
+
+		Directory reopened = new DistributedDirectory(new MongoDirectory(mongo, TestHelper.TEST_DATABASE_NAME, SCRATCH_TEST_INDEX));
+		try {
+			CheckIndex.Status status;
+			try (CheckIndex checkIndex = new CheckIndex(reopened)) {
+				status = checkIndex.checkIndex();
+			}
+			assertTrue(status.clean);
+
+			try (DirectoryReader directoryReader = DirectoryReader.open(reopened)) {
+				assertEquals(DOC_COUNT, directoryReader.numDocs());
+			}
+		}
+		finally {
+			reopened.close();
+		}
+	}
+}